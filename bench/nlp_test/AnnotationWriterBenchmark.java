@@ -0,0 +1,124 @@
+package nlp_test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A small benchmark of the output formats. It builds the sentences of a
+ * text once, with its named entities, and times writing them in each
+ * format. The output is encoded to UTF-8 and counted but not kept, so only
+ * the writing is timed.
+ *
+ * Usage: AnnotationWriterBenchmark [text file] [copies]
+ *
+ * The text file defaults to data/nlp_data.txt, the input of nlp_data.xml,
+ * and the number of copies of it to put together into one document to
+ * 1000.
+ *
+ * @author Dave Turner
+ *
+ */
+public class AnnotationWriterBenchmark {
+
+	/*
+	 * The number of timed runs of each format.
+	 */
+	private static final int RUNS = 5;
+
+	/*
+	 * File of named entities to match.
+	 */
+	private static final String NER_FILE = "data/NER.txt";
+
+	public static void main(String[] args) throws IOException
+	{
+		String textFile = args.length > 0 ? args[0] : "data/nlp_data.txt";
+		int copies = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+		String text = new String(Files.readAllBytes(Paths.get(textFile)), StandardCharsets.UTF_8);
+		StringBuilder sb = new StringBuilder();
+		for(int c=0; c<copies; c++)
+			sb.append(text).append("\n\n");
+		text = sb.toString();
+
+		SentenceTokenizer tokenizer = new PunktFirstPassSentenceTokenizer();
+		ArrayList<Token> tokens = tokenizer.annotate(tokenizer.createTokenStream(text));
+		NamedEntityMatcher nerer = AhoCorasickNamedEntityMatcher.open(NER_FILE);
+		List<TokenNE> tokens_mod = nerer.annotate(tokens, text);
+		tokens.clear();
+		tokens.addAll(tokens_mod);
+		SentenceList sents = tokenizer.buildSentenceList(text, tokens);
+
+		System.out.println(textFile + " x " + copies + ", " + text.length() + " characters, " +
+				sents.size() + " sentences, " + tokens.size() + " tokens");
+		System.out.println(String.format("%12s %14s %10s %10s %10s %14s", "format", "bytes", "vs xml", "best ms", "MB/s",
+				"tokens/ms"));
+
+		long xmlBytes = 0;
+		for(OutputFormat format: OutputFormat.values())
+		{
+			// One run to warm up the JVM
+			long bytes = write(format, sents, nerer);
+
+			double best = Double.MAX_VALUE;
+			for(int r=0; r<RUNS; r++)
+			{
+				long start = System.nanoTime();
+				write(format, sents, nerer);
+				best = Math.min(best, (System.nanoTime() - start) / 1e6);
+			}
+
+			if(format == OutputFormat.XML)
+				xmlBytes = bytes;
+
+			System.out.println(String.format("%12s %14d %9.0f%% %10.1f %10.1f %14.0f", format, bytes,
+					100.0 * bytes / xmlBytes, best, bytes / 1e3 / best, tokens.size() / best));
+		}
+	}
+
+	/*
+	 * Write the sentences in a format. Returns the number of bytes written.
+	 */
+	private static long write(OutputFormat format, SentenceList sents, NamedEntityMatcher nerer) throws IOException
+	{
+		CountingOutputStream out = new CountingOutputStream();
+		AnnotationWriter writer = format.createWriter(out, nerer);
+		try
+		{
+			for(Sentence sent: sents)
+				writer.writeSentence(sent);
+		}
+		finally
+		{
+			writer.close();
+		}
+
+		return out.count;
+	}
+
+	/*
+	 * Counts the bytes written to it and throws them away.
+	 */
+	private static class CountingOutputStream extends OutputStream {
+
+		long count = 0;
+
+		@Override
+		public void write(int b)
+		{
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len)
+		{
+			count += len;
+		}
+	}
+
+}
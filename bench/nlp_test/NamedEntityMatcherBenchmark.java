@@ -0,0 +1,141 @@
+package nlp_test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A small benchmark of the named entity matchers. It times annotating one
+ * document as the number of entities grows from 10 to 1,000,000. The build
+ * time and node count are for the Aho-Corasick automaton. The real
+ * entities from the named entity file are always included so there are
+ * matches to annotate, the rest are made up names.
+ *
+ * Usage: NamedEntityMatcherBenchmark [text file] [entity file]
+ *
+ * The regular expression matcher is only run for up to 10,000 entities,
+ * beyond that it takes far too long. Give the JVM a couple of gigabytes of
+ * heap for the largest automaton.
+ *
+ * @author Dave Turner
+ *
+ */
+public class NamedEntityMatcherBenchmark {
+
+	/*
+	 * The largest number of entities the regular expression matcher is run for.
+	 */
+	private static final int MAX_SIMPLE_ENTITIES = 10000;
+
+	/*
+	 * How long to run each measurement for, in nanoseconds.
+	 */
+	private static final long RUN_NANOS = 2000000000L;
+
+	public static void main(String[] args) throws IOException
+	{
+		String textFile = args.length > 0 ? args[0] : "data/nlp_data.txt";
+		String entityFile = args.length > 1 ? args[1] : "data/NER.txt";
+
+		String text = new String(Files.readAllBytes(Paths.get(textFile)), StandardCharsets.UTF_8);
+		String entityText = new String(Files.readAllBytes(Paths.get(entityFile)), StandardCharsets.UTF_8);
+
+		List<Token> tokens = new ArrayList<Token>();
+		TokenStream stream = new PunktTokenStream(text);
+		Token t;
+		while((t = stream.getToken()) != null)
+			tokens.add(t);
+
+		System.out.println("Document: " + text.length() + " chars, " + tokens.size() + " tokens");
+		System.out.println(String.format("%10s %12s %12s %14s %14s %14s %14s",
+				"entities", "nodes", "build ms", "aho ms/doc", "trie ms/doc", "minhash ms/doc", "regex ms/doc"));
+
+		Random random = new Random(1);
+		List<String> entities = new ArrayList<String>();
+		for(String e: entityText.split("\n"))
+			entities.add(e);
+
+		for(int count=10; count<=1000000; count*=10)
+		{
+			while(entities.size() < count)
+				entities.add(makeName(random));
+
+			List<String> subset = entities.subList(0, count);
+
+			long start = System.nanoTime();
+			AhoCorasickNamedEntityMatcher aho = new AhoCorasickNamedEntityMatcher(subset);
+			double buildMillis = (System.nanoTime() - start) / 1e6;
+
+			double ahoMillis = timeAnnotate(aho, tokens, text);
+			double trieMillis = timeAnnotate(new TokenTrieNamedEntityMatcher(subset), tokens, text);
+			double minHashMillis = timeAnnotate(new MinHashNamedEntityMatcher(subset), tokens, text);
+
+			String simpleMillis = "-";
+			if(count <= MAX_SIMPLE_ENTITIES)
+				simpleMillis = String.format("%.3f", timeAnnotate(new SimpleNamedEntityMatcher(subset), tokens, text));
+
+			System.out.println(String.format("%10d %12d %12.1f %14.3f %14.3f %14.3f %14s",
+					count, aho.getNodeCount(), buildMillis, ahoMillis, trieMillis, minHashMillis, simpleMillis));
+		}
+	}
+
+	/*
+	 * Time annotating a document. Returns the average number of milliseconds
+	 * per document after warming up.
+	 */
+	private static double timeAnnotate(NamedEntityMatcher matcher, List<Token> tokens, String text)
+	{
+		// Warm up
+		long end = System.nanoTime() + RUN_NANOS / 2;
+		while(System.nanoTime() < end)
+			matcher.annotate(tokens, text);
+
+		int runs = 0;
+		long start = System.nanoTime();
+		end = start + RUN_NANOS;
+		long now;
+		do
+		{
+			matcher.annotate(tokens, text);
+			runs++;
+			now = System.nanoTime();
+		} while(now < end);
+
+		return (now - start) / 1e6 / runs;
+	}
+
+	/*
+	 * Make up a name of one to three words.
+	 */
+	private static String makeName(Random random)
+	{
+		String[] syllables = {"an", "ber", "cal", "dor", "el", "fin", "gar", "hal", "is", "jon",
+				"kar", "lin", "mar", "nor", "os", "per", "quin", "ros", "sta", "tor", "ul", "ven",
+				"wil", "xan", "yor", "zel"};
+
+		StringBuilder name = new StringBuilder();
+		int words = 1 + random.nextInt(3);
+		for(int w=0; w<words; w++)
+		{
+			if(w > 0)
+				name.append(' ');
+
+			int length = 2 + random.nextInt(3);
+			for(int s=0; s<length; s++)
+			{
+				String syllable = syllables[random.nextInt(syllables.length)];
+				if(s == 0)
+					name.append(Character.toUpperCase(syllable.charAt(0))).append(syllable.substring(1));
+				else
+					name.append(syllable);
+			}
+		}
+
+		return name.toString();
+	}
+
+}
@@ -0,0 +1,190 @@
+package nlp_test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A small benchmark of looking things up in the parameters of the Punkt
+ * algorithm. It trains parameters on the Brown corpus and, with the
+ * parameters as trained, frozen and written to a file and mapped back,
+ * times:
+ *
+ *   the first pass annotation of a text, tokenizing included,
+ *   for each token, whether it is an abbreviation less its last character,
+ *     through a lower cased window as the first pass does, and whether its
+ *     type is a sentence starter, the orthographic context of its type and
+ *     whether its type and the next token's are a collocation, as the
+ *     second pass looks them up.
+ *
+ * They are timed in turn so all see the same state of the machine. The
+ * time to load the mapped parameters is shown too.
+ *
+ * Usage: PunktParamsBenchmark [text file] [copies]
+ *
+ * The text file defaults to data/nlp_data.txt and the number of copies of
+ * it to put together into one document to 200.
+ *
+ * @author Dave Turner
+ *
+ */
+public class PunktParamsBenchmark {
+
+	/*
+	 * The number of rounds, the number of them that warm up the JVM, and the
+	 * number of timed runs of each lookup in a round.
+	 */
+	private static final int ROUNDS = 12;
+	private static final int WARM_UP = 8;
+	private static final int RUNS = 20;
+
+	/*
+	 * The corpus to train on.
+	 */
+	private static final String TRAINING_ZIP = "data/brown.zip";
+	private static final String TRAINING_FILES = "brown/c[a-r]\\d\\d";
+
+	/*
+	 * Keeps the answers of the lookups so they aren't optimized away.
+	 */
+	private static long sink = 0;
+
+	public static void main(String[] args) throws IOException
+	{
+		String textFile = args.length > 0 ? args[0] : "data/nlp_data.txt";
+		int copies = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+		String text = new String(Files.readAllBytes(Paths.get(textFile)), StandardCharsets.UTF_8);
+		StringBuilder sb = new StringBuilder();
+		for(int c=0; c<copies; c++)
+			sb.append(text).append("\n\n");
+		text = sb.toString();
+
+		PunktTrainer trainer = new PunktTrainer();
+		trainer.setTaggedCorpus(true);
+		PunktParams params = trainer.trainZip(TRAINING_ZIP, TRAINING_FILES);
+
+		PunktAlgoBase base = new PunktAlgoBase(params);
+		ArrayList<Token> tokens = base.annotate(base.createTokenStream(text));
+		for(Token tok: tokens)
+			tok.getTokenType();
+
+		System.out.println(textFile + " x " + copies + ", " + text.length() + " characters, " +
+				tokens.size() + " tokens; " + params.getAbbreviations().size() + " abbreviations, " +
+				params.getSentenceStarters().size() + " sentence starters, " +
+				params.getCollocations().size() + " collocations, " + params.ortho_context.size() +
+				" orthographic contexts");
+		System.out.println(String.format("%10s %12s %10s %10s %10s %10s", "params", "annotate ms",
+				"abbrev ns", "starter ns", "ortho ns", "colloc ns"));
+
+		File file = File.createTempFile("punkt", ".params");
+		file.deleteOnExit();
+		params.write(file.getPath());
+		long start = System.nanoTime();
+		PunktParams mapped = PunktParams.load(file.getPath());
+		System.out.println(String.format("Loaded %d bytes of parameters in %.2f ms", file.length(),
+				(System.nanoTime() - start) / 1e6));
+
+		PunktParams[] all = {params, params.freeze(), mapped};
+		String[] names = {"trained", "frozen", "mapped"};
+		PunktAlgoBase[] algos = {base, new PunktAlgoBase(all[1]), new PunktAlgoBase(all[2])};
+		double[][] best = new double[all.length][5];
+		for(int round=0; round<ROUNDS; round++)
+		{
+			for(int p=0; p<all.length; p++)
+			{
+				double[] times = {annotate(algos[p], text), Double.MAX_VALUE, Double.MAX_VALUE,
+						Double.MAX_VALUE, Double.MAX_VALUE};
+				for(int r=0; r<RUNS; r++)
+				{
+					times[1] = Math.min(times[1], abbreviations(all[p], tokens));
+					times[2] = Math.min(times[2], sentenceStarters(all[p], tokens));
+					times[3] = Math.min(times[3], orthoContexts(all[p], tokens));
+					times[4] = Math.min(times[4], collocations(all[p], tokens));
+				}
+
+				for(int i=0; i<times.length; i++)
+					best[p][i] = round == WARM_UP || times[i] < best[p][i] ? times[i] : best[p][i];
+			}
+		}
+
+		for(int p=0; p<all.length; p++)
+			System.out.println(String.format("%10s %12.1f %10.1f %10.1f %10.1f %10.1f", names[p], best[p][0] / 1e6,
+					best[p][1] / tokens.size(), best[p][2] / tokens.size(), best[p][3] / tokens.size(),
+					best[p][4] / tokens.size()));
+
+		if(sink == 42)
+			System.out.println();
+	}
+
+	/*
+	 * The time in ns to annotate a text.
+	 */
+	private static double annotate(PunktAlgoBase algo, String text)
+	{
+		long start = System.nanoTime();
+		sink += algo.annotate(algo.createTokenStream(text)).size();
+
+		return System.nanoTime() - start;
+	}
+
+	/*
+	 * The time in ns to look up each token less its last character as an
+	 * abbreviation.
+	 */
+	private static double abbreviations(PunktParams params, List<Token> tokens)
+	{
+		CharWindow lookupKey = new CharWindow(true);
+		long start = System.nanoTime();
+		for(Token tok: tokens)
+			if(params.isAbbreviation(lookupKey.set(tok).narrow(0, Math.max(tok.getLength()-1, 0))))
+				sink++;
+
+		return System.nanoTime() - start;
+	}
+
+	/*
+	 * The time in ns to look up the type of each token as a sentence starter.
+	 */
+	private static double sentenceStarters(PunktParams params, List<Token> tokens)
+	{
+		long start = System.nanoTime();
+		for(Token tok: tokens)
+			if(params.isSentenceStarter(tok.getTokenType()))
+				sink++;
+
+		return System.nanoTime() - start;
+	}
+
+	/*
+	 * The time in ns to look up the orthographic context of each token's
+	 * type.
+	 */
+	private static double orthoContexts(PunktParams params, List<Token> tokens)
+	{
+		long start = System.nanoTime();
+		for(Token tok: tokens)
+			sink += params.getOrthoContext(tok.getTokenType());
+
+		return System.nanoTime() - start;
+	}
+
+	/*
+	 * The time in ns to look up the type of each token and the next as a
+	 * collocation.
+	 */
+	private static double collocations(PunktParams params, List<Token> tokens)
+	{
+		long start = System.nanoTime();
+		for(int i=0; i+1<tokens.size(); i++)
+			if(params.isCollocation(tokens.get(i).getTokenType(), tokens.get(i+1).getTokenType()))
+				sink++;
+
+		return System.nanoTime() - start;
+	}
+
+}
@@ -0,0 +1,227 @@
+package nlp_test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A report of how far the parameters a PunktTrainer learns with a memory
+ * budget drift from the ones it learns with exact counts. It trains on a
+ * corpus exactly, then with each budget, and for each budget prints:
+ *
+ *   the time to train,
+ *   the abbreviations, sentence starters and collocations learned, and how
+ *     many of the exact ones are missing and how many are extra,
+ *   the number of orthographic contexts kept and how many of them differ
+ *     from the exact ones,
+ *   the number of tokens ending in a period whose first pass sentence break
+ *     differs from the exact parameters', over the whole corpus.
+ *
+ * Usage: PunktTrainerDriftReport [zip file] [entry regex] [budget KB]...
+ *
+ * The zip file defaults to data/brown.zip, the regex to the files of the
+ * Brown corpus in it, which are tagged, and the budgets to 256K up to 64M.
+ * Tags are only stripped if the regex is the default.
+ *
+ * @author Dave Turner
+ *
+ */
+public class PunktTrainerDriftReport {
+
+	/*
+	 * The corpus files of data/brown.zip.
+	 */
+	private static final String BROWN_FILES = "brown/c[a-r]\\d\\d";
+
+	/*
+	 * The budgets tried if none are given, in KB.
+	 */
+	private static final long[] BUDGETS = {256, 1024, 4096, 16384, 65536};
+
+	public static void main(String[] args) throws IOException
+	{
+		String zipFile = args.length > 0 ? args[0] : "data/brown.zip";
+		String entryNames = args.length > 1 ? args[1] : BROWN_FILES;
+		long[] budgets = BUDGETS;
+		if(args.length > 2)
+		{
+			budgets = new long[args.length - 2];
+			for(int i=2; i<args.length; i++)
+				budgets[i-2] = Long.parseLong(args[i]);
+		}
+
+		List<String> texts = readTexts(zipFile, entryNames, entryNames.equals(BROWN_FILES));
+
+		long start = System.nanoTime();
+		PunktParams exact = new PunktTrainer().train(texts);
+		double exactMs = (System.nanoTime() - start) / 1e6;
+		List<boolean[]> exactBreaks = firstPassBreaks(exact, texts);
+
+		System.out.println(zipFile + " " + entryNames + ", " + texts.size() + " documents");
+		System.out.println(String.format("%10s %9s %21s %21s %21s %15s %13s", "budget KB", "ms",
+				"abbrevs (-/+)", "starters (-/+)", "collocations (-/+)", "ortho (differ)", "breaks differ"));
+		System.out.println(String.format("%10s %9.0f %21s %21s %21s %15s %13d", "exact", exactMs,
+				drift(exact.getAbbreviations(), exact.getAbbreviations()),
+				drift(exact.getSentenceStarters(), exact.getSentenceStarters()),
+				drift(exact.getCollocations(), exact.getCollocations()),
+				exact.ortho_context.size() + " (0)", 0));
+
+		for(long budget: budgets)
+		{
+			PunktTrainer trainer = new PunktTrainer();
+			trainer.setMemoryBudget(budget * 1024);
+
+			start = System.nanoTime();
+			PunktParams params = trainer.train(texts);
+			double ms = (System.nanoTime() - start) / 1e6;
+
+			System.out.println(String.format("%10d %9.0f %21s %21s %21s %15s %13d", budget, ms,
+					drift(exact.getAbbreviations(), params.getAbbreviations()),
+					drift(exact.getSentenceStarters(), params.getSentenceStarters()),
+					drift(exact.getCollocations(), params.getCollocations()),
+					orthoDrift(exact, params), breaksDiffer(exactBreaks, firstPassBreaks(params, texts))));
+		}
+	}
+
+	/*
+	 * The size of a learned set, and how many of the exact set are missing
+	 * from it and how many it has that the exact set doesn't.
+	 */
+	private static <T> String drift(Set<T> exact, Set<T> learned)
+	{
+		int missing = 0;
+		for(T t: exact)
+			if(!learned.contains(t))
+				missing++;
+
+		int extra = 0;
+		for(T t: learned)
+			if(!exact.contains(t))
+				extra++;
+
+		return learned.size() + " (" + missing + "/" + extra + ")";
+	}
+
+	/*
+	 * The number of orthographic contexts learned and how many of them
+	 * differ from the exact ones.
+	 */
+	private static String orthoDrift(PunktParams exact, PunktParams learned)
+	{
+		int differ = 0;
+		for(Map.Entry<String, Long> e: learned.ortho_context.entrySet())
+			if(exact.getOrthoContext(e.getKey()) != e.getValue())
+				differ++;
+
+		return learned.ortho_context.size() + " (" + differ + ")";
+	}
+
+	/*
+	 * Whether each token ending in a period of each text is a sentence break
+	 * after the first pass with some parameters.
+	 */
+	private static List<boolean[]> firstPassBreaks(PunktParams params, List<String> texts)
+	{
+		PunktAlgoBase base = new PunktAlgoBase(params);
+		List<boolean[]> breaks = new ArrayList<boolean[]>(texts.size());
+		for(String text: texts)
+		{
+			ArrayList<Token> tokens = base.annotate(base.createTokenStream(text));
+
+			int periods = 0;
+			for(Token tok: tokens)
+				if(isPeriodFinal(tok))
+					periods++;
+
+			boolean[] isBreak = new boolean[periods];
+			int i = 0;
+			for(Token tok: tokens)
+				if(isPeriodFinal(tok))
+					isBreak[i++] = tok.getIsSentBreak();
+			breaks.add(isBreak);
+		}
+
+		return breaks;
+	}
+
+	/*
+	 * The number of tokens ending in a period whose sentence breaks differ.
+	 * The tokens are the same whatever the parameters.
+	 */
+	private static int breaksDiffer(List<boolean[]> exact, List<boolean[]> learned)
+	{
+		int differ = 0;
+		for(int t=0; t<exact.size(); t++)
+		{
+			boolean[] a = exact.get(t);
+			boolean[] b = learned.get(t);
+			for(int i=0; i<a.length; i++)
+				if(a[i] != b[i])
+					differ++;
+		}
+
+		return differ;
+	}
+
+	/*
+	 * Does a token end in a period.
+	 */
+	private static boolean isPeriodFinal(Token tok)
+	{
+		return tok.getLength() > 0 && tok.charAt(tok.getLength()-1) == '.';
+	}
+
+	/*
+	 * Read the files of a zip file whose names match a regex, in UTF-8.
+	 */
+	private static List<String> readTexts(String zipFileName, String entryNames, boolean tagged) throws IOException
+	{
+		Pattern names = Pattern.compile(entryNames);
+		List<String> texts = new ArrayList<String>();
+
+		ZipFile zip = new ZipFile(zipFileName);
+		try
+		{
+			Enumeration<? extends ZipEntry> e = zip.entries();
+			while(e.hasMoreElements())
+			{
+				ZipEntry entry = e.nextElement();
+				if(entry.isDirectory() || !names.matcher(entry.getName()).matches())
+					continue;
+
+				InputStream in = zip.getInputStream(entry);
+				try
+				{
+					ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+					byte[] buffer = new byte[8192];
+					int n;
+					while((n = in.read(buffer)) > 0)
+						bytes.write(buffer, 0, n);
+
+					String text = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+					texts.add(tagged ? PunktTrainer.untag(text) : text);
+				}
+				finally
+				{
+					in.close();
+				}
+			}
+		}
+		finally
+		{
+			zip.close();
+		}
+
+		return texts;
+	}
+
+}
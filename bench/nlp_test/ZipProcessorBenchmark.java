@@ -0,0 +1,128 @@
+package nlp_test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * A small benchmark of the ZipProcessor execution modes. It times
+ * processing a whole zip file with the fixed pool and with a thread per
+ * entry, both with a warm page cache and with a cold one.
+ *
+ * Usage: ZipProcessorBenchmark [zip file] [threads]
+ *
+ * The zip file defaults to data/brown.zip and the number of threads to the
+ * number of processors. Dropping the page cache for the cold runs needs
+ * Linux and root, without them the cold runs are skipped. The output is
+ * written to a temporary directory.
+ *
+ * @author Dave Turner
+ *
+ */
+public class ZipProcessorBenchmark {
+
+	/*
+	 * The number of timed runs of each mode and cache state.
+	 */
+	private static final int RUNS = 3;
+
+	/*
+	 * Writing 3 here drops the page cache, dentries and inodes.
+	 */
+	private static final String DROP_CACHES = "/proc/sys/vm/drop_caches";
+
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		String zipFile = args.length > 0 ? args[0] : "data/brown.zip";
+		int numThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+		File outDir = Files.createTempDirectory("zipbench").toFile();
+
+		System.out.println(zipFile + ", " + numThreads + " threads, " +
+				(ZipProcessor.hasVirtualThreads() ? "virtual" : "platform") + " threads per entry");
+		System.out.println(String.format("%18s %8s %12s %12s", "mode", "cache", "best ms", "mean ms"));
+
+		boolean canDrop = dropCaches();
+		if(!canDrop)
+			System.out.println("Can't drop the page cache, skipping cold runs.");
+
+		for(ZipProcessor.ExecutionMode mode: ZipProcessor.ExecutionMode.values())
+		{
+			ZipProcessor processor = new ZipProcessor(zipFile, outDir.getPath(), numThreads);
+			processor.setExecutionMode(mode);
+
+			// One run to warm up the JVM and the page cache
+			processor.process();
+			report(mode, "warm", time(processor, false));
+
+			if(canDrop)
+				report(mode, "cold", time(processor, true));
+		}
+	}
+
+	/*
+	 * Time processing the zip file. Returns the time of each run in
+	 * milliseconds.
+	 */
+	private static double[] time(ZipProcessor processor, boolean cold) throws IOException, InterruptedException
+	{
+		double[] millis = new double[RUNS];
+		for(int r=0; r<RUNS; r++)
+		{
+			if(cold)
+				dropCaches();
+
+			long start = System.nanoTime();
+			processor.process();
+			millis[r] = (System.nanoTime() - start) / 1e6;
+		}
+
+		return millis;
+	}
+
+	/*
+	 * Print the best and mean times of some runs.
+	 */
+	private static void report(ZipProcessor.ExecutionMode mode, String cache, double[] millis)
+	{
+		double best = Double.MAX_VALUE;
+		double total = 0;
+		for(double m: millis)
+		{
+			best = Math.min(best, m);
+			total += m;
+		}
+
+		System.out.println(String.format("%18s %8s %12.1f %12.1f", mode, cache, best, total / millis.length));
+	}
+
+	/*
+	 * Write dirty pages out and drop the page cache. Returns false if we
+	 * aren't allowed to.
+	 */
+	private static boolean dropCaches() throws InterruptedException
+	{
+		try
+		{
+			new ProcessBuilder("sync").inheritIO().start().waitFor();
+
+			FileOutputStream out = new FileOutputStream(DROP_CACHES);
+			try
+			{
+				out.write('3');
+			}
+			finally
+			{
+				out.close();
+			}
+
+			return true;
+		}
+		catch(IOException e)
+		{
+			return false;
+		}
+	}
+
+}
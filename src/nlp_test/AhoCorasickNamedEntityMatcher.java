@@ -0,0 +1,1125 @@
+package nlp_test;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class implements named entity matching with an Aho-Corasick automaton.
+ * All of the entities are compiled into a single case folded automaton when
+ * the matcher is created, so the text is scanned once no matter how many
+ * entities there are instead of once per entity.
+ *
+ * The annotations are the same as SimpleNamedEntityMatcher gives. Matching
+ * ignores case the same way its regular expressions do, and the matches of
+ * each entity are the same non-overlapping matches a regular expression
+ * would find scanning the text from left to right. Empty entities never
+ * match anything.
+ *
+ * A built automaton can be written to a compiled gazetteer file with
+ * write(). Loading that file with load() maps it into memory read only
+ * instead of reading it, so a matcher is ready straight away however many
+ * entities there are, and processes on the same machine share one copy of
+ * it in the page cache.
+ *
+ * Nodes are numbered breadth first with the children of each node
+ * next to each other, sorted by character. So a node only needs the index of
+ * its first child and the character of the edge into it, and an edge is
+ * found with a binary search of the children. The file is a header of 8 ints
+ * (magic number, format version, node count, entity count, entity text
+ * size, column widths, and two reserved 0s) followed by columns of the first
+ * child of each node (plus one past the last), the edge character, fail
+ * link, output link and first entity of each node, the next entity and
+ * length of each entity, then the offsets of each entity's text and finally
+ * the UTF-8 text of the entities. Each column is 1, 2, 3 or 4 bytes wide,
+ * whatever its largest value needs, with the largest value of the width
+ * meaning none. The widths of the node, character, entity and length
+ * columns are the bytes of the widths int, from the top. Columns are padded
+ * to a multiple of 4 bytes. All numbers are big endian.
+ *
+ * @author Dave Turner
+ *
+ */
+public class AhoCorasickNamedEntityMatcher extends NamedEntityMatcher {
+
+	/*
+	 * The magic number that starts a compiled gazetteer and the version of
+	 * the format we read and write.
+	 */
+	public static final int FILE_MAGIC = 0x4e455241;
+	public static final int FILE_VERSION = 2;
+
+	/*
+	 * The number of bytes in the header of a compiled gazetteer.
+	 */
+	private static final int HEADER_SIZE = 32;
+
+	/*
+	 * The root node of the automaton and the value used for missing nodes,
+	 * entities and edges.
+	 */
+	private static final int ROOT = 0;
+	private static final int NONE = -1;
+
+	/*
+	 * Marks an empty slot in the edge table of the builder. Real keys are
+	 * never negative.
+	 */
+	private static final long EMPTY = -1L;
+
+	/*
+	 * The number of bits of an edge key used for the code point.
+	 */
+	private static final int CODE_POINT_BITS = 21;
+
+	/*
+	 * The number of children a node can have before its edges are binary
+	 * searched rather than looked at one by one.
+	 */
+	private static final int LINEAR_SEARCH_CHILDREN = 8;
+
+	/*
+	 * The compiled gazetteer a loaded matcher reads its tables from, null
+	 * for a built matcher, which keeps them in arrays.
+	 */
+	private final ByteBuffer image;
+
+	/*
+	 * The number of nodes in the automaton.
+	 */
+	protected final int nodeCount;
+
+	/*
+	 * For each node, its first child. The children of a node run up to the
+	 * first child of the next node, so there is one more of these than
+	 * there are nodes.
+	 */
+	private final Column childStart;
+
+	/*
+	 * For each node, the case folded code point of the edge into it.
+	 */
+	private final Column labels;
+
+	/*
+	 * For each node, the node we fall back to when there is no edge for the
+	 * next character. This is the node for the longest proper suffix of the
+	 * node's text that is also in the automaton.
+	 */
+	private final Column fail;
+
+	/*
+	 * For each node, the nearest node along the fail links that ends an
+	 * entity, or NONE.
+	 */
+	private final Column outLink;
+
+	/*
+	 * For each node, the first entity that ends at the node, or NONE. Further
+	 * entities that end at the same node are chained through nextEntity.
+	 */
+	private final Column firstEntity;
+	private final Column nextEntity;
+
+	/*
+	 * For each entity, the number of characters it matches.
+	 */
+	private final Column entityLengths;
+
+	/*
+	 * The children of the root for ASCII characters, or NONE, looked up
+	 * directly since most characters of a text are looked up at the root.
+	 */
+	private final int[] rootChildren;
+
+	/*
+	 * A column of numbers, either an array or part of a compiled gazetteer
+	 * where each number is 1, 2, 3 or 4 bytes wide. There the largest number
+	 * of a width is read as NONE.
+	 */
+	private static final class Column {
+
+		private final int[] values;
+		private final ByteBuffer buffer;
+		private final int offset;
+		private final int width;
+
+		Column(int[] values)
+		{
+			this.values = values;
+			this.buffer = null;
+			this.offset = 0;
+			this.width = 4;
+		}
+
+		Column(ByteBuffer buffer, int offset, int width)
+		{
+			this.values = null;
+			this.buffer = buffer;
+			this.offset = offset;
+			this.width = width;
+		}
+
+		int get(int index)
+		{
+			if(values != null)
+				return values[index];
+
+			switch(width)
+			{
+			case 1:
+				int b = buffer.get(offset + index) & 0xFF;
+				return b == 0xFF ? NONE : b;
+			case 2:
+				int c = buffer.getChar(offset + 2 * index);
+				return c == 0xFFFF ? NONE : c;
+			case 3:
+				int at = offset + 3 * index;
+				int n = (buffer.get(at) & 0xFF) << 16 | buffer.getChar(at + 1);
+				return n == 0xFFFFFF ? NONE : n;
+			default:
+				return buffer.getInt(offset + 4 * index);
+			}
+		}
+
+		/*
+		 * Write the first numbers of the column into a compiled gazetteer,
+		 * NONE as the largest number of the width.
+		 */
+		void write(ByteBuffer image, int at, int width, int count)
+		{
+			for(int i=0; i<count; i++)
+			{
+				if(width == 1)
+					image.put(at + i, (byte)get(i));
+				else if(width == 2)
+					image.putChar(at + 2 * i, (char)get(i));
+				else if(width == 3)
+				{
+					image.put(at + 3 * i, (byte)(get(i) >> 16));
+					image.putChar(at + 3 * i + 1, (char)get(i));
+				}
+				else
+					image.putInt(at + 4 * i, get(i));
+			}
+		}
+
+		/*
+		 * The largest of the first numbers of the column.
+		 */
+		int max(int count)
+		{
+			int max = 0;
+			for(int i=0; i<count; i++)
+				max = Math.max(max, get(i));
+
+			return max;
+		}
+
+		/*
+		 * The narrowest width that holds numbers below a limit, and NONE.
+		 */
+		static int widthFor(int limit)
+		{
+			return limit < 0xFF ? 1 : limit < 0xFFFF ? 2 : limit < 0xFFFFFF ? 3 : 4;
+		}
+
+		/*
+		 * The number of bytes a column takes, padded to a multiple of 4.
+		 */
+		static int size(int width, int count)
+		{
+			return (width * count + 3) & ~3;
+		}
+	}
+
+	/**
+	 * Construct an Aho-Corasick named entity matcher from file which lists known
+	 * named entities separated by new lines.
+	 *
+	 * @param filePath The path of the file to load.
+	 * @throws IOException
+	 */
+	public AhoCorasickNamedEntityMatcher(String filePath) throws IOException {
+		this(readEntities(filePath), false);
+	}
+
+	/**
+	 * Construct an Aho-Corasick named entity matcher from a list of known named
+	 * entities.
+	 *
+	 * @param entities
+	 */
+	public AhoCorasickNamedEntityMatcher(List<String> entities) {
+		this(entities, true);
+	}
+
+	/*
+	 * Build the automaton for some entities, copying the list or not.
+	 */
+	private AhoCorasickNamedEntityMatcher(List<String> entities, boolean copy)
+	{
+		super(entities, copy);
+
+		Builder builder = new Builder();
+		builder.build(this.entities);
+
+		image = null;
+		nodeCount = builder.nodeCount;
+		childStart = new Column(builder.childStart);
+		labels = new Column(builder.labels);
+		fail = new Column(builder.fail);
+		outLink = new Column(builder.outLink);
+		firstEntity = new Column(builder.firstEntity);
+		nextEntity = new Column(builder.nextEntity);
+		entityLengths = new Column(builder.entityLengths);
+		rootChildren = indexRoot(childStart, labels);
+	}
+
+	/*
+	 * Create a matcher that reads its tables from a compiled gazetteer
+	 * checked by imageEnd(), and its entities from a list mapped from the
+	 * same file.
+	 */
+	private AhoCorasickNamedEntityMatcher(ByteBuffer image, List<String> entities)
+	{
+		super(entities, false);
+
+		int nodes = image.getInt(8);
+		int widths = image.getInt(20);
+		int nodeWidth = widths >>> 24;
+		int labelWidth = (widths >>> 16) & 0xFF;
+		int entityWidth = (widths >>> 8) & 0xFF;
+		int lengthWidth = widths & 0xFF;
+
+		this.image = image;
+		nodeCount = nodes;
+
+		int at = HEADER_SIZE;
+		childStart = new Column(image, at, nodeWidth);
+		at += Column.size(nodeWidth, nodes + 1);
+		labels = new Column(image, at, labelWidth);
+		at += Column.size(labelWidth, nodes);
+		fail = new Column(image, at, nodeWidth);
+		at += Column.size(nodeWidth, nodes);
+		outLink = new Column(image, at, nodeWidth);
+		at += Column.size(nodeWidth, nodes);
+		firstEntity = new Column(image, at, entityWidth);
+		at += Column.size(entityWidth, nodes);
+		nextEntity = new Column(image, at, entityWidth);
+		at += Column.size(entityWidth, entities.size());
+		entityLengths = new Column(image, at, lengthWidth);
+		rootChildren = indexRoot(childStart, labels);
+	}
+
+	/**
+	 * Load a compiled gazetteer written by write(). The file is mapped into
+	 * memory, not read, so this takes the same time for any size of file.
+	 *
+	 * @param filePath The path of the compiled gazetteer.
+	 * @return The matcher.
+	 * @throws IOException If the file can't be read or isn't a compiled
+	 * gazetteer of a version we understand.
+	 */
+	public static AhoCorasickNamedEntityMatcher load(String filePath) throws IOException
+	{
+		MappedByteBuffer file;
+		FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+		try
+		{
+			if(channel.size() > Integer.MAX_VALUE)
+				throw new IOException("Compiled gazetteer " + filePath + " is too large to map.");
+
+			file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		finally
+		{
+			channel.close();
+		}
+
+		if(file.capacity() < HEADER_SIZE || file.getInt(0) != FILE_MAGIC)
+			throw new IOException(filePath + " is not a compiled gazetteer.");
+		if(file.getInt(4) != FILE_VERSION)
+			throw new IOException("Compiled gazetteer " + filePath + " is version " + file.getInt(4) +
+					", only version " + FILE_VERSION + " is supported.");
+
+		int textStart = imageEnd(file);
+		int entityCount = file.getInt(12);
+		int textSize = file.getInt(16);
+		if(textStart < 0 || file.capacity() != textStart + 4L * (entityCount + 1) + textSize)
+			throw new IOException("Compiled gazetteer " + filePath + " is truncated or corrupt.");
+
+		IntBuffer textOffsets = slice(file, textStart, 4 * (entityCount + 1)).asIntBuffer();
+		ByteBuffer text = slice(file, textStart + 4 * (entityCount + 1), textSize);
+		return new AhoCorasickNamedEntityMatcher(file, new MappedEntityList(textOffsets, text));
+	}
+
+	/*
+	 * Get a view of part of a buffer.
+	 */
+	private static ByteBuffer slice(ByteBuffer buffer, int offset, int length)
+	{
+		ByteBuffer view = buffer.duplicate();
+		view.position(offset);
+		view.limit(offset + length);
+
+		return view.slice();
+	}
+
+	/**
+	 * Open a gazetteer. If the file is a compiled gazetteer it is loaded,
+	 * otherwise it is read as a list of named entities separated by new
+	 * lines and an automaton is built for them.
+	 *
+	 * @param filePath The path of the file.
+	 * @return The matcher.
+	 * @throws IOException
+	 */
+	public static AhoCorasickNamedEntityMatcher open(String filePath) throws IOException
+	{
+		if(isCompiled(filePath))
+			return load(filePath);
+
+		return new AhoCorasickNamedEntityMatcher(filePath);
+	}
+
+	/**
+	 * Check whether a file starts like a compiled gazetteer.
+	 *
+	 * @param filePath The path of the file.
+	 * @return true if yes, false if no.
+	 * @throws IOException
+	 */
+	public static boolean isCompiled(String filePath) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new FileInputStream(filePath));
+		try
+		{
+			return in.available() >= 4 && in.readInt() == FILE_MAGIC;
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * Write this matcher's automaton as a compiled gazetteer that load() can
+	 * map.
+	 *
+	 * @param filePath The path of the file to write.
+	 * @throws IOException
+	 */
+	public void write(String filePath) throws IOException
+	{
+		// Encode all the entities up front so we know the size of the text
+		int entityCount = entities.size();
+		byte[][] encoded = new byte[entityCount][];
+		long textSize = 0;
+		for(int e=0; e<entityCount; e++)
+		{
+			encoded[e] = entities.get(e).getBytes(StandardCharsets.UTF_8);
+			textSize += encoded[e].length;
+		}
+
+		ByteBuffer image = this.image != null ? this.image : layout();
+		int textStart = imageSize(image);
+		long fileSize = textStart + 4L * (entityCount + 1) + textSize;
+		if(fileSize > Integer.MAX_VALUE)
+			throw new IOException("Automaton is too large to write as a compiled gazetteer.");
+
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(filePath), 1 << 16));
+		try
+		{
+			// The header, with the size of the text, then the automaton as
+			// it is.
+			for(int i=0; i<HEADER_SIZE; i+=4)
+				out.writeInt(i == 16 ? (int)textSize : image.getInt(i));
+			for(int i=HEADER_SIZE; i<textStart; i++)
+				out.writeByte(image.get(i));
+
+			int offset = 0;
+			for(int e=0; e<entityCount; e++)
+			{
+				out.writeInt(offset);
+				offset += encoded[e].length;
+			}
+			out.writeInt(offset);
+
+			for(int e=0; e<entityCount; e++)
+				out.write(encoded[e]);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/*
+	 * The entities of a loaded matcher. Each entity is decoded from the
+	 * mapped file when it is asked for.
+	 */
+	private static class MappedEntityList extends AbstractList<String> {
+
+		private IntBuffer offsets;
+		private ByteBuffer text;
+
+		MappedEntityList(IntBuffer offsets, ByteBuffer text)
+		{
+			this.offsets = offsets;
+			this.text = text;
+		}
+
+		@Override
+		public String get(int index)
+		{
+			if(index < 0 || index >= size())
+				throw new IndexOutOfBoundsException("Index " + index + " is outside of " + size() + " entities");
+
+			int start = offsets.get(index);
+			byte[] bytes = new byte[offsets.get(index+1) - start];
+			for(int i=0; i<bytes.length; i++)
+				bytes[i] = text.get(start + i);
+
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public int size()
+		{
+			return offsets.capacity() - 1;
+		}
+
+		/*
+		 * Check an entity is a string without decoding it, by comparing its
+		 * UTF-8 text with the string encoded a code point at a time.
+		 */
+		boolean equals(int index, String entity)
+		{
+			int at = offsets.get(index);
+			int end = offsets.get(index+1);
+			for(int i=0; i<entity.length(); )
+			{
+				int cp = entity.codePointAt(i);
+				i += Character.charCount(cp);
+
+				int length = cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+				if(end - at < length)
+					return false;
+
+				int lead = length == 1 ? cp : (0xF00 >> length) | (cp >> (6 * (length - 1)));
+				if(text.get(at++) != (byte)lead)
+					return false;
+				for(int shift=6*(length-2); shift>=0; shift-=6)
+					if(text.get(at++) != (byte)(0x80 | ((cp >> shift) & 0x3F)))
+						return false;
+			}
+
+			return at == end;
+		}
+	}
+
+	/*
+	 * Fold the case of a character. This is how case insensitive regular
+	 * expressions compare characters.
+	 */
+	private static int foldCase(int cp)
+	{
+		return Character.toLowerCase(Character.toUpperCase(cp));
+	}
+
+	/*
+	 * Lay the tables out as the start of a compiled gazetteer, with the size
+	 * of the entity text left as 0.
+	 */
+	private ByteBuffer layout()
+	{
+		int numEntities = entities.size();
+		int nodeWidth = Column.widthFor(nodeCount + 1);
+		int labelWidth = Column.widthFor(labels.max(nodeCount) + 1);
+		int entityWidth = Column.widthFor(numEntities);
+		int lengthWidth = Column.widthFor(entityLengths.max(numEntities) + 1);
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(0, FILE_MAGIC);
+		header.putInt(4, FILE_VERSION);
+		header.putInt(8, nodeCount);
+		header.putInt(12, numEntities);
+		header.putInt(16, 0);
+		header.putInt(20, (nodeWidth << 24) | (labelWidth << 16) | (entityWidth << 8) | lengthWidth);
+
+		int size = imageSize(header);
+		if(size < 0)
+			throw new IllegalStateException("Automaton of " + nodeCount + " nodes is too large.");
+
+		ByteBuffer image = ByteBuffer.allocate(size);
+		image.put(header);
+
+		int at = HEADER_SIZE;
+		childStart.write(image, at, nodeWidth, nodeCount + 1);
+		at += Column.size(nodeWidth, nodeCount + 1);
+		labels.write(image, at, labelWidth, nodeCount);
+		at += Column.size(labelWidth, nodeCount);
+		fail.write(image, at, nodeWidth, nodeCount);
+		at += Column.size(nodeWidth, nodeCount);
+		outLink.write(image, at, nodeWidth, nodeCount);
+		at += Column.size(nodeWidth, nodeCount);
+		firstEntity.write(image, at, entityWidth, nodeCount);
+		at += Column.size(entityWidth, nodeCount);
+		nextEntity.write(image, at, entityWidth, numEntities);
+		at += Column.size(entityWidth, numEntities);
+		entityLengths.write(image, at, lengthWidth, numEntities);
+
+		return image;
+	}
+
+	/*
+	 * The size of the automaton part of an image, where the entity text
+	 * offsets start, from the counts and widths in its header.
+	 */
+	private static int imageSize(ByteBuffer image)
+	{
+		int nodes = image.getInt(8);
+		int entities = image.getInt(12);
+		int widths = image.getInt(20);
+		int nodeWidth = widths >>> 24;
+		int labelWidth = (widths >>> 16) & 0xFF;
+		int entityWidth = (widths >>> 8) & 0xFF;
+		int lengthWidth = widths & 0xFF;
+
+		long size = HEADER_SIZE + Column.size(nodeWidth, nodes + 1) + Column.size(labelWidth, nodes) +
+				2L * Column.size(nodeWidth, nodes) + Column.size(entityWidth, nodes) +
+				Column.size(entityWidth, entities) + Column.size(lengthWidth, entities);
+
+		return size > Integer.MAX_VALUE ? -1 : (int)size;
+	}
+
+	/*
+	 * Check the header of a compiled gazetteer. Returns where the entity
+	 * text offsets start, or -1 if the header makes no sense.
+	 */
+	private static int imageEnd(ByteBuffer image)
+	{
+		int nodes = image.getInt(8);
+		int entities = image.getInt(12);
+		int widths = image.getInt(20);
+
+		for(int shift=0; shift<32; shift+=8)
+		{
+			int width = (widths >>> shift) & 0xFF;
+			if(width < 1 || width > 4)
+				return -1;
+		}
+		if(nodes < 1 || entities < 0)
+			return -1;
+
+		int end = imageSize(image);
+		if(end < 0 || end > image.capacity())
+			return -1;
+
+		return end;
+	}
+
+	/*
+	 * Look up the ASCII children of the root.
+	 */
+	private static int[] indexRoot(Column childStart, Column labels)
+	{
+		int[] rootChildren = new int[0x80];
+		Arrays.fill(rootChildren, NONE);
+		for(int child=childStart.get(ROOT); child<childStart.get(ROOT+1); child++)
+			if(labels.get(child) < 0x80)
+				rootChildren[labels.get(child)] = child;
+
+		return rootChildren;
+	}
+
+	/*
+	 * Make the key of the edge from a node for a character.
+	 */
+	private static long edgeKey(int node, int c)
+	{
+		return ((long)node << CODE_POINT_BITS) | c;
+	}
+
+	/*
+	 * Find the slot an edge key would like to be in, in a table of a given
+	 * size.
+	 */
+	private static int edgeSlot(long key, int tableSize)
+	{
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32)) & (tableSize - 1);
+	}
+
+	/*
+	 * This class builds the tables of an automaton in arrays. First the
+	 * entities are added to a trie with its edges in a hash table. Then the
+	 * nodes are numbered again breadth first, with the children of each
+	 * node in order of their characters, and the fail and output links are
+	 * found in that order.
+	 */
+	private static class Builder {
+
+		int nodeCount;
+		int[] fail;
+		int[] outLink;
+		int[] firstEntity;
+		int[] nextEntity;
+		int[] entityLengths;
+		long[] edgeKeys;
+		int[] edgeTargets;
+		int edgeCount;
+
+		/*
+		 * For each node once numbered breadth first, its first child and the
+		 * code point of the edge into it.
+		 */
+		int[] childStart;
+		int[] labels;
+
+		void build(List<String> entities)
+		{
+			int numEntities = entities.size();
+			nextEntity = new int[numEntities];
+			entityLengths = new int[numEntities];
+
+			firstEntity = new int[Math.max(16, numEntities)];
+			Arrays.fill(firstEntity, NONE);
+			nodeCount = 1;
+
+			edgeKeys = new long[64];
+			edgeTargets = new int[64];
+			Arrays.fill(edgeKeys, EMPTY);
+			edgeCount = 0;
+
+			// Add each entity to the trie. The entities are lower cased first
+			// just like the regular expressions are.
+			for(int e=0; e<numEntities; e++)
+			{
+				String entity = entities.get(e).toLowerCase();
+				entityLengths[e] = entity.length();
+				nextEntity[e] = NONE;
+
+				if(entity.isEmpty())
+					continue;
+
+				int node = ROOT;
+				for(int i=0; i<entity.length(); )
+				{
+					int cp = entity.codePointAt(i);
+					i += Character.charCount(cp);
+
+					int child = getEdge(node, foldCase(cp));
+					if(child == NONE)
+					{
+						child = addNode();
+						putEdge(node, foldCase(cp), child);
+					}
+
+					node = child;
+				}
+
+				// Chain the entity onto the end of the node's list so entities
+				// are reported in order.
+				if(firstEntity[node] == NONE)
+					firstEntity[node] = e;
+				else
+				{
+					int last = firstEntity[node];
+					while(nextEntity[last] != NONE)
+						last = nextEntity[last];
+					nextEntity[last] = e;
+				}
+			}
+
+			firstEntity = Arrays.copyOf(firstEntity, nodeCount);
+
+			renumber();
+			link();
+		}
+
+		/*
+		 * Add a new node to the trie.
+		 */
+		private int addNode()
+		{
+			if(nodeCount == firstEntity.length)
+			{
+				int oldLength = firstEntity.length;
+				firstEntity = Arrays.copyOf(firstEntity, oldLength * 2);
+				Arrays.fill(firstEntity, oldLength, firstEntity.length, NONE);
+			}
+
+			return nodeCount++;
+		}
+
+		/*
+		 * Number the nodes breadth first, visiting the children of each node
+		 * in order of their characters, so the children of every node are
+		 * numbered one after the other.
+		 */
+		private void renumber()
+		{
+			// Group the edges by their source node, each packed as the code
+			// point in the high half and the target in the low half so
+			// sorting puts them in order of their characters.
+			int[] edgeStart = new int[nodeCount + 1];
+			for(int i=0; i<edgeKeys.length; i++)
+				if(edgeKeys[i] != EMPTY)
+					edgeStart[(int)(edgeKeys[i] >>> CODE_POINT_BITS) + 1]++;
+
+			for(int n=0; n<nodeCount; n++)
+				edgeStart[n+1] += edgeStart[n];
+
+			long[] edges = new long[edgeCount];
+			int[] fill = Arrays.copyOf(edgeStart, nodeCount);
+			for(int i=0; i<edgeKeys.length; i++)
+			{
+				if(edgeKeys[i] == EMPTY)
+					continue;
+
+				int parent = (int)(edgeKeys[i] >>> CODE_POINT_BITS);
+				long c = edgeKeys[i] & ((1 << CODE_POINT_BITS) - 1);
+				edges[fill[parent]++] = (c << 32) | edgeTargets[i];
+			}
+
+			for(int n=0; n<nodeCount; n++)
+				Arrays.sort(edges, edgeStart[n], edgeStart[n+1]);
+
+			// The queue holds the old numbers of the nodes, so a node's place
+			// in it is its new number.
+			int[] queue = new int[nodeCount];
+			int tail = 0;
+			queue[tail++] = ROOT;
+
+			childStart = new int[nodeCount + 1];
+			labels = new int[nodeCount];
+			for(int head=0; head<nodeCount; head++)
+			{
+				int node = queue[head];
+				childStart[head] = tail;
+
+				for(int i=edgeStart[node]; i<edgeStart[node+1]; i++)
+				{
+					labels[tail] = (int)(edges[i] >>> 32);
+					queue[tail++] = (int)edges[i];
+				}
+			}
+			childStart[nodeCount] = nodeCount;
+
+			int[] renumbered = new int[nodeCount];
+			for(int n=0; n<nodeCount; n++)
+				renumbered[n] = firstEntity[queue[n]];
+			firstEntity = renumbered;
+
+			// The hash table is no longer needed
+			edgeKeys = null;
+			edgeTargets = null;
+		}
+
+		/*
+		 * Find the fail and output links of every node. Nodes are numbered
+		 * breadth first so the links of shorter suffixes are always ready
+		 * when we need them.
+		 */
+		private void link()
+		{
+			fail = new int[nodeCount];
+			outLink = new int[nodeCount];
+			fail[ROOT] = ROOT;
+			outLink[ROOT] = NONE;
+
+			for(int node=0; node<nodeCount; node++)
+			{
+				for(int child=childStart[node]; child<childStart[node+1]; child++)
+				{
+					int c = labels[child];
+
+					// The fail link of the child is found by following the fail
+					// links of the parent until one has an edge for the character.
+					int f = ROOT;
+					if(node != ROOT)
+					{
+						f = fail[node];
+						int target;
+						while((target = findChild(f, c)) == NONE && f != ROOT)
+							f = fail[f];
+
+						f = target == NONE ? ROOT : target;
+					}
+
+					fail[child] = f;
+					outLink[child] = firstEntity[f] != NONE ? f : outLink[f];
+				}
+			}
+		}
+
+		/*
+		 * Find the child of a numbered node for a character, or NONE.
+		 */
+		private int findChild(int node, int c)
+		{
+			int low = childStart[node];
+			int high = childStart[node+1] - 1;
+			while(low <= high)
+			{
+				int mid = (low + high) >>> 1;
+				if(labels[mid] < c)
+					low = mid + 1;
+				else if(labels[mid] > c)
+					high = mid - 1;
+				else
+					return mid;
+			}
+
+			return NONE;
+		}
+
+		/*
+		 * Get the node an edge leads to, or NONE if there is no such edge.
+		 */
+		private int getEdge(int node, int c)
+		{
+			long key = edgeKey(node, c);
+			int mask = edgeKeys.length - 1;
+
+			for(int i=edgeSlot(key, edgeKeys.length); ; i=(i+1) & mask)
+			{
+				long k = edgeKeys[i];
+				if(k == key)
+					return edgeTargets[i];
+				if(k == EMPTY)
+					return NONE;
+			}
+		}
+
+		/*
+		 * Add an edge to the edge table. The edge must not already be there.
+		 */
+		private void putEdge(int node, int c, int target)
+		{
+			// Keep the table at most half full
+			if((edgeCount + 1) * 2 > edgeKeys.length)
+			{
+				long[] oldKeys = edgeKeys;
+				int[] oldTargets = edgeTargets;
+
+				edgeKeys = new long[oldKeys.length * 2];
+				edgeTargets = new int[oldKeys.length * 2];
+				Arrays.fill(edgeKeys, EMPTY);
+
+				for(int i=0; i<oldKeys.length; i++)
+					if(oldKeys[i] != EMPTY)
+						insertEdge(oldKeys[i], oldTargets[i]);
+			}
+
+			insertEdge(edgeKey(node, c), target);
+			edgeCount++;
+		}
+
+		/*
+		 * Put an edge in the first free slot from where it would like to be.
+		 */
+		private void insertEdge(long key, int target)
+		{
+			int mask = edgeKeys.length - 1;
+			int i = edgeSlot(key, edgeKeys.length);
+			while(edgeKeys[i] != EMPTY)
+				i = (i+1) & mask;
+
+			edgeKeys[i] = key;
+			edgeTargets[i] = target;
+		}
+	}
+
+	/*
+	 * Get the node an edge leads to, or NONE if there is no such edge. Nodes
+	 * with few children are searched one by one, the rest by halves.
+	 */
+	private int getEdge(int node, int c)
+	{
+		if(node == ROOT && c < 0x80)
+			return rootChildren[c];
+
+		int low = childStart.get(node);
+		int high = childStart.get(node+1) - 1;
+
+		if(high - low < LINEAR_SEARCH_CHILDREN)
+		{
+			for(int i=low; i<=high; i++)
+			{
+				int label = labels.get(i);
+				if(label >= c)
+					return label == c ? i : NONE;
+			}
+
+			return NONE;
+		}
+
+		while(low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			int label = labels.get(mid);
+			if(label < c)
+				low = mid + 1;
+			else if(label > c)
+				high = mid - 1;
+			else
+				return mid;
+		}
+
+		return NONE;
+	}
+
+	/**
+	 * Get the number of nodes in the automaton.
+	 *
+	 * @return The number of nodes.
+	 */
+	public int getNodeCount()
+	{
+		return nodeCount;
+	}
+
+	/**
+	 * Get the id of a named entity by walking the entity through the
+	 * automaton, so the entities aren't put in a map and a loaded matcher
+	 * doesn't decode them all. Only the entities that end at the node the
+	 * walk ends at are compared with it. Empty entities never match, so they
+	 * have no id here.
+	 *
+	 * @param entity The entity, as TokenNE holds it.
+	 * @return The id, -1 if this matcher doesn't look for the entity.
+	 */
+	@Override
+	public int getEntityId(String entity)
+	{
+		// The trie is built from lower cased entities. Only a string with
+		// characters outside ASCII can lower case differently than it folds.
+		String key = entity;
+		for(int i=0; i<entity.length(); i++)
+			if(entity.charAt(i) >= 0x80)
+			{
+				key = entity.toLowerCase();
+				break;
+			}
+
+		int node = ROOT;
+		for(int i=0; i<key.length() && node != NONE; )
+		{
+			int cp = key.codePointAt(i);
+			i += Character.charCount(cp);
+			node = getEdge(node, foldCase(cp));
+		}
+		if(node == NONE || node == ROOT)
+			return NONE;
+
+		// The entities are chained in order, so the first match is the first
+		// of any copies.
+		for(int e=firstEntity.get(node); e != NONE; e=nextEntity.get(e))
+		{
+			boolean same = entities instanceof MappedEntityList ? ((MappedEntityList)entities).equals(e, entity) :
+				entities.get(e).equals(entity);
+			if(same)
+				return e;
+		}
+
+		return NONE;
+	}
+
+	@Override
+	public List<TokenNE> annotate(List<Token> tokens, String origText) {
+
+		// Create a new list of TokenNE so we can annotate named entities
+		List<TokenNE> mod_tokens = new ArrayList<TokenNE>(tokens.size());
+
+		// Copy the existing tokens to their new objects
+		for(Token t: tokens)
+			mod_tokens.add(new TokenNE(t));
+
+		if(tokens.isEmpty())
+			return mod_tokens;
+
+		// Run the text through the automaton once, collecting every match of
+		// every entity. Each match is packed as the entity in the high half
+		// and the start of the match in the low half.
+		long[] matches = new long[16];
+		int numMatches = 0;
+
+		int state = ROOT;
+		for(int i=0; i<origText.length(); )
+		{
+			int cp = origText.codePointAt(i);
+			i += Character.charCount(cp);
+			int c = foldCase(cp);
+
+			int target;
+			while((target = getEdge(state, c)) == NONE && state != ROOT)
+				state = fail.get(state);
+
+			state = target == NONE ? ROOT : target;
+
+			// Report every entity that ends here
+			int node = firstEntity.get(state) != NONE ? state : outLink.get(state);
+			for(; node != NONE; node = outLink.get(node))
+			{
+				for(int e=firstEntity.get(node); e != NONE; e=nextEntity.get(e))
+				{
+					if(numMatches == matches.length)
+						matches = Arrays.copyOf(matches, numMatches * 2);
+
+					matches[numMatches++] = ((long)e << 32) | (i - entityLengths.get(e));
+				}
+			}
+		}
+
+		// Sort the matches by entity and then by position. This is the order
+		// the entities and their matches are added to the tokens in.
+		Arrays.sort(matches, 0, numMatches);
+
+		int lastEntity = NONE;
+		int lastEnd = 0;
+		for(int m=0; m<numMatches; m++)
+		{
+			int e = (int)(matches[m] >>> 32);
+			int start = (int)matches[m];
+
+			// Skip any match that overlaps the last match we kept for the
+			// same entity.
+			if(e != lastEntity)
+			{
+				lastEntity = e;
+				lastEnd = 0;
+			}
+
+			if(start < lastEnd)
+				continue;
+
+			lastEnd = start + entityLengths.get(e);
+
+			// Annotate the tokens that fall within the match
+			String entity = entities.get(e);
+			for(Integer index: binaryRangeSearch(tokens, start, lastEnd-1))
+				mod_tokens.get(index).addEntity(entity, start);
+		}
+
+		return mod_tokens;
+	}
+
+}
@@ -0,0 +1,32 @@
+package nlp_test;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * This interface is for the classes that write sentences and their
+ * annotated tokens out in some format. Sentences are written one at a time
+ * as they are finished and close() finishes the output. See OutputFormat
+ * for the formats there are.
+ * 
+ * @author Dave Turner
+ *
+ */
+public interface AnnotationWriter extends Closeable {
+
+	/**
+	 * Write a sentence and all of its tokens.
+	 * 
+	 * @param sent The sentence.
+	 * @throws IOException If writing fails.
+	 */
+	public abstract void writeSentence(Sentence sent) throws IOException;
+	
+	/**
+	 * Finish the output and close what it is written to.
+	 * 
+	 * @throws IOException If writing fails.
+	 */
+	public abstract void close() throws IOException;
+	
+}
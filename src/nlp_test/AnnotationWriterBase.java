@@ -0,0 +1,168 @@
+package nlp_test;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * This base class holds what the annotation writers have in common. The
+ * output is put together in a buffer of characters that is written out
+ * when it fills, so writing a token is a handful of array copies and no
+ * objects are made for it.
+ * 
+ * @author Dave Turner
+ *
+ */
+public abstract class AnnotationWriterBase implements AnnotationWriter {
+
+	/*
+	 * The number of characters we put together before writing them out.
+	 */
+	private static final int BUFFER_SIZE = 32 * 1024;
+
+	/*
+	 * The most characters a long takes in decimal, "-9223372036854775808".
+	 */
+	private static final int MAX_LONG_LENGTH = 20;
+
+	/*
+	 * Where the output goes.
+	 */
+	private Writer out;
+
+	/*
+	 * The characters not yet written to out.
+	 */
+	private char[] buffer = new char[BUFFER_SIZE];
+	private int bufferLength = 0;
+
+	/**
+	 * Create a writer that writes to a Writer.
+	 * 
+	 * @param out The Writer.
+	 */
+	public AnnotationWriterBase(Writer out)
+	{
+		this.out = out;
+	}
+
+	/**
+	 * Write a list of sentences.
+	 *
+	 * @param sents The sentences.
+	 * @throws IOException If writing fails.
+	 */
+	public void writeSentences(List<Sentence> sents) throws IOException
+	{
+		for(Sentence sent: sents)
+			writeSentence(sent);
+	}
+
+	/* (non-Javadoc)
+	 * @see nlp_test.AnnotationWriter#close()
+	 */
+	public void close() throws IOException
+	{
+		try
+		{
+			finish();
+			flushBuffer();
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * Write whatever comes after the last sentence. This does nothing
+	 * unless it is overridden.
+	 * 
+	 * @throws IOException If writing fails.
+	 */
+	protected void finish() throws IOException
+	{
+
+	}
+
+	/**
+	 * Write a string as it is.
+	 * 
+	 * @param s The string.
+	 * @throws IOException If writing fails.
+	 */
+	protected void write(String s) throws IOException
+	{
+		int length = s.length();
+		if(bufferLength + length > buffer.length)
+		{
+			flushBuffer();
+			if(length > buffer.length)
+			{
+				out.write(s);
+				return;
+			}
+		}
+
+		s.getChars(0, length, buffer, bufferLength);
+		bufferLength += length;
+	}
+
+	/**
+	 * Write a character as it is.
+	 * 
+	 * @param c The character.
+	 * @throws IOException If writing fails.
+	 */
+	protected void write(char c) throws IOException
+	{
+		if(bufferLength == buffer.length)
+			flushBuffer();
+
+		buffer[bufferLength++] = c;
+	}
+
+	/**
+	 * Write a number in decimal.
+	 * 
+	 * @param n The number.
+	 * @throws IOException If writing fails.
+	 */
+	protected void write(long n) throws IOException
+	{
+		if(bufferLength + MAX_LONG_LENGTH > buffer.length)
+			flushBuffer();
+
+		// The digits are worked out from the end, with the number kept
+		// negative so the most negative one works too.
+		int length = 1;
+		for(long rest = n / 10; rest != 0; rest /= 10)
+			length++;
+		if(n < 0)
+		{
+			buffer[bufferLength] = '-';
+			length++;
+		}
+		else
+			n = -n;
+
+		for(int at = bufferLength + length - 1; ; at--)
+		{
+			buffer[at] = (char)('0' - n % 10);
+			n /= 10;
+			if(n == 0)
+				break;
+		}
+		bufferLength += length;
+	}
+
+	/*
+	 * Write out the buffered characters.
+	 */
+	private void flushBuffer() throws IOException
+	{
+		out.write(buffer, 0, bufferLength);
+		bufferLength = 0;
+	}
+
+}
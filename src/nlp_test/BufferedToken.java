@@ -0,0 +1,188 @@
+package nlp_test;
+
+/**
+ * A token that is a view of one entry of a TokenBuffer. Reading or setting
+ * annotations reads or writes the columns of the buffer, so any number of
+ * views of the same token see the same annotations. A single view can be
+ * moved from token to token to walk a buffer without creating an object per
+ * token.
+ *
+ * @author Dave Turner
+ *
+ */
+public class BufferedToken extends Token {
+
+	/*
+	 * The buffer this token is a view of.
+	 */
+	protected TokenBuffer buffer;
+
+	/*
+	 * The index of the token within the buffer.
+	 */
+	protected int index;
+
+	/**
+	 * Create a view of a token in a buffer.
+	 *
+	 * @param buffer The buffer.
+	 * @param index The index of the token within the buffer.
+	 */
+	public BufferedToken(TokenBuffer buffer, int index)
+	{
+		this.buffer = buffer;
+		moveTo(index);
+	}
+
+	/**
+	 * Point this view at a different token of the same buffer.
+	 *
+	 * @param index The index of the token within the buffer.
+	 * @return This view.
+	 */
+	public BufferedToken moveTo(int index)
+	{
+		this.index = index;
+
+		source = buffer.getSource();
+		offset = buffer.getStart(index);
+		length = buffer.getLength(index);
+		token = null;
+		type = null;
+
+		// The annotations without accessors are read directly by subclasses
+		// so keep a copy of them.
+		long flags = buffer.getFlags(index);
+		isAlpha = (flags & TokenBuffer.ALPHA) != 0;
+		isNonPunct = (flags & TokenBuffer.NON_PUNCT) != 0;
+
+		return this;
+	}
+
+	/**
+	 * Get the index of this token within its buffer.
+	 *
+	 * @return The index.
+	 */
+	public int getIndex()
+	{
+		return index;
+	}
+
+	/**
+	 * Get the buffer this token is a view of.
+	 *
+	 * @return The buffer.
+	 */
+	public TokenBuffer getBuffer()
+	{
+		return buffer;
+	}
+
+	/**
+	 * Tokens in a buffer are always positioned at their start within the
+	 * buffer's source text, so this is not supported.
+	 */
+	@Override
+	public void setPosition(long pos)
+	{
+		throw new UnsupportedOperationException("Positions of buffered tokens can't be changed.");
+	}
+
+	@Override
+	public long getPosition()
+	{
+		return offset;
+	}
+
+	@Override
+	public String getTokenType()
+	{
+		return buffer.getType(buffer.getTypeId(index));
+	}
+
+	@Override
+	public boolean getIsAbbreviation()
+	{
+		return buffer.hasFlag(index, TokenBuffer.ABBREVIATION);
+	}
+
+	@Override
+	public void setIsAbbreviation(boolean val)
+	{
+		buffer.setFlag(index, TokenBuffer.ABBREVIATION, val);
+	}
+
+	@Override
+	public boolean getIsParaStart()
+	{
+		return buffer.hasFlag(index, TokenBuffer.PARA_START);
+	}
+
+	@Override
+	public void setIsParaStart(boolean val)
+	{
+		buffer.setFlag(index, TokenBuffer.PARA_START, val);
+	}
+
+	@Override
+	public boolean getIsLineStart()
+	{
+		return buffer.hasFlag(index, TokenBuffer.LINE_START);
+	}
+
+	@Override
+	public void setIsLineStart(boolean val)
+	{
+		buffer.setFlag(index, TokenBuffer.LINE_START, val);
+	}
+
+	@Override
+	public boolean getIsSentBreak()
+	{
+		return buffer.hasFlag(index, TokenBuffer.SENT_BREAK);
+	}
+
+	@Override
+	public void setIsSentBreak(boolean val)
+	{
+		buffer.setFlag(index, TokenBuffer.SENT_BREAK, val);
+	}
+
+	@Override
+	public boolean getIsInitial()
+	{
+		return buffer.hasFlag(index, TokenBuffer.INITIAL);
+	}
+
+	@Override
+	public void setIsInitial(boolean val)
+	{
+		buffer.setFlag(index, TokenBuffer.INITIAL, val);
+	}
+
+	@Override
+	public boolean getIsEllipsis()
+	{
+		return buffer.hasFlag(index, TokenBuffer.ELLIPSIS);
+	}
+
+	@Override
+	public void setIsEllipsis(boolean val)
+	{
+		buffer.setFlag(index, TokenBuffer.ELLIPSIS, val);
+	}
+
+	@Override
+	public boolean getIsNumber()
+	{
+		return buffer.hasFlag(index, TokenBuffer.NUMBER);
+	}
+
+	@Override
+	public void setIsNumber(boolean val)
+	{
+		buffer.setFlag(index, TokenBuffer.NUMBER, val);
+	}
+
+}
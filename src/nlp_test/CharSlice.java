@@ -0,0 +1,306 @@
+package nlp_test;
+
+import java.util.Locale;
+
+/**
+ * A light weight view of a range of characters within some larger piece of
+ * text. No characters are copied, the slice just keeps a reference to the
+ * source text along with an offset and length. A slice can also present its
+ * characters lower cased, the same as String.toLowerCase() would. That is
+ * done without copying unless some rule of lower casing needs more than one
+ * character at a time, which is rare, see lowerCasesByChar().
+ *
+ * A slice is equal to any slice or CharWindow with the same characters, so
+ * hash based collections keyed by slices can be looked up through a reused
+ * window without building anything. A slice is never equal to a String,
+ * just as a String is never equal to a slice. The hash code of a slice is
+ * the same as the hash code of a String with the same characters, which
+ * lets the string tables hash either one the same way.
+ *
+ * @author Dave Turner
+ *
+ */
+public final class CharSlice implements CharSequence {
+
+	/*
+	 * The text this slice is a view of.
+	 */
+	private final CharSequence source;
+
+	/*
+	 * The index of the first character of the slice within the source.
+	 */
+	private final int start;
+
+	/*
+	 * The number of characters in the slice.
+	 */
+	private final int length;
+
+	/*
+	 * Should the characters of this slice be lower cased.
+	 */
+	private final boolean lowerCase;
+
+	/*
+	 * The lower cased characters when they can't be lower cased one at a
+	 * time, otherwise null.
+	 */
+	private final String lowered;
+
+	/**
+	 * Create a view of a range of characters in some text.
+	 *
+	 * @param source The text to view.
+	 * @param start The index of the first character.
+	 * @param length The number of characters.
+	 */
+	public CharSlice(CharSequence source, int start, int length)
+	{
+		this(source, start, length, false);
+	}
+
+	/**
+	 * Create a view of a range of characters in some text.
+	 *
+	 * @param source The text to view.
+	 * @param start The index of the first character.
+	 * @param length The number of characters.
+	 * @param lowerCase Should characters be lower cased.
+	 */
+	public CharSlice(CharSequence source, int start, int length, boolean lowerCase)
+	{
+		if(start < 0 || length < 0 || start + length > source.length())
+			throw new IndexOutOfBoundsException("Slice [" + start + ", " + (start+length) +
+					") is outside of text of length " + source.length());
+
+		this.source = source;
+		this.start = start;
+		this.length = length;
+		this.lowerCase = lowerCase;
+		this.lowered = lowerCase ? lowerCaseCopy(source, start, length) : null;
+	}
+
+	/**
+	 * Get a lower cased view of this slice. The characters are the same as
+	 * those of toString().toLowerCase().
+	 *
+	 * @return The lower cased slice.
+	 */
+	public CharSlice toLowerCase()
+	{
+		if(lowerCase)
+			return this;
+
+		return new CharSlice(source, start, length, true);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.CharSequence#length()
+	 */
+	public int length()
+	{
+		if(lowered != null)
+			return lowered.length();
+
+		return length;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.CharSequence#charAt(int)
+	 */
+	public char charAt(int index)
+	{
+		if(lowered != null)
+			return lowered.charAt(index);
+
+		if(index < 0 || index >= length)
+			throw new IndexOutOfBoundsException("Index " + index + " is outside of slice of length " + length);
+
+		if(lowerCase)
+			return lowerCaseCharAt(source, start, length, index);
+
+		return source.charAt(start + index);
+	}
+
+	/**
+	 * Can a range of some text be lower cased one character at a time, as
+	 * lowerCaseCharAt() does, with the same result as String.toLowerCase().
+	 * A capital sigma lower cases depending on the letters around it and a
+	 * capital I with a dot lower cases to two characters. Turkish, Azeri
+	 * and Lithuanian have rules of their own for the letter I, so nothing
+	 * is lower cased one character at a time when one of them is the
+	 * default locale.
+	 *
+	 * @param source The text.
+	 * @param start The index of the first character of the range.
+	 * @param length The number of characters in the range.
+	 * @return true if yes, false if no.
+	 */
+	static boolean lowerCasesByChar(CharSequence source, int start, int length)
+	{
+		String language = Locale.getDefault().getLanguage();
+		if(language.equals("tr") || language.equals("az") || language.equals("lt"))
+			return false;
+
+		for(int i=start; i<start+length; i++)
+		{
+			char c = source.charAt(i);
+			if(c == '\u03a3' || c == '\u0130')
+				return false;
+		}
+
+		return true;
+	}
+
+	/*
+	 * The lower cased characters of a range of some text if they can't be
+	 * lower cased one at a time, otherwise null.
+	 */
+	static String lowerCaseCopy(CharSequence source, int start, int length)
+	{
+		if(lowerCasesByChar(source, start, length))
+			return null;
+
+		return source.subSequence(start, start + length).toString().toLowerCase();
+	}
+
+	/**
+	 * Get a lower cased character from a range of some text. Characters 
+	 * outside the basic plane are lower cased as a whole, so either half
+	 * of the pair of chars is the matching half of the lower cased pair.
+	 *
+	 * @param source The text.
+	 * @param start The index of the first character of the range.
+	 * @param length The number of characters in the range.
+	 * @param index The index of the character within the range.
+	 * @return The lower cased character.
+	 */
+	static char lowerCaseCharAt(CharSequence source, int start, int length, int index)
+	{
+		char c = source.charAt(start + index);
+
+		if(!Character.isSurrogate(c))
+			return Character.toLowerCase(c);
+
+		if(Character.isHighSurrogate(c) && index+1 < length)
+		{
+			char low = source.charAt(start + index + 1);
+			if(Character.isLowSurrogate(low))
+			{
+				int lower = Character.toLowerCase(Character.toCodePoint(c, low));
+				if(Character.isSupplementaryCodePoint(lower))
+					return Character.highSurrogate(lower);
+			}
+		}
+		else if(Character.isLowSurrogate(c) && index > 0)
+		{
+			char high = source.charAt(start + index - 1);
+			if(Character.isHighSurrogate(high))
+			{
+				int lower = Character.toLowerCase(Character.toCodePoint(high, c));
+				if(Character.isSupplementaryCodePoint(lower))
+					return Character.lowSurrogate(lower);
+			}
+		}
+
+		return c;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.CharSequence#subSequence(int, int)
+	 */
+	public CharSlice subSequence(int start, int end)
+	{
+		if(lowered != null)
+			return new CharSlice(lowered, start, end - start);
+
+		if(start < 0 || end > length || start > end)
+			throw new IndexOutOfBoundsException("Range [" + start + ", " + end +
+					") is outside of slice of length " + length);
+
+		return new CharSlice(source, this.start + start, end - start, lowerCase);
+	}
+
+	/**
+	 * Find the last occurrence of a character at or before an index.
+	 *
+	 * @param c The character to find.
+	 * @param fromIndex The index to start searching backwards from.
+	 * @return The index of the character or -1 if not found.
+	 */
+	public int lastIndexOf(char c, int fromIndex)
+	{
+		for(int i=Math.min(fromIndex, length()-1); i>=0; i--)
+			if(charAt(i) == c)
+				return i;
+
+		return -1;
+	}
+
+	/**
+	 * Check whether two character sequences contain the same characters.
+	 *
+	 * @param a The first sequence.
+	 * @param b The second sequence.
+	 * @return true if they are equal, false if not.
+	 */
+	public static boolean contentEquals(CharSequence a, CharSequence b)
+	{
+		if(a.length() != b.length())
+			return false;
+
+		for(int i=0; i<a.length(); i++)
+			if(a.charAt(i) != b.charAt(i))
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * A slice is equal to any slice or window with the same characters.
+	 */
+	@Override
+	public boolean equals(Object other)
+	{
+		if(this == other)
+			return true;
+
+		if(!(other instanceof CharSlice || other instanceof CharWindow))
+			return false;
+
+		return contentEquals(this, (CharSequence)other);
+	}
+
+	/**
+	 * The hash code is computed the same way as String.hashCode().
+	 */
+	@Override
+	public int hashCode()
+	{
+		if(lowered != null)
+			return lowered.hashCode();
+
+		int h = 0;
+		for(int i=0; i<length; i++)
+			h = 31*h + charAt(i);
+
+		return h;
+	}
+
+	/**
+	 * Copy the characters of this slice into a new String.
+	 */
+	@Override
+	public String toString()
+	{
+		if(lowered != null)
+			return lowered;
+
+		if(!lowerCase)
+			return source.subSequence(start, start + length).toString();
+
+		return new StringBuilder(length).append(this).toString();
+	}
+
+}
@@ -0,0 +1,203 @@
+package nlp_test;
+
+/**
+ * A window onto a range of characters within some text that can be moved
+ * around. Like CharSlice, it can present its characters lower cased and it
+ * is equal to any slice or window with the same characters, so it can look
+ * up the keys of hash based collections keyed by slices. Unlike CharSlice,
+ * one window can be reused for any number of lookups so hot loops can look
+ * up token text without creating any objects.
+ *
+ * Windows are mutable, so they should never be stored in a collection.
+ *
+ * @author Dave Turner
+ *
+ */
+public final class CharWindow implements CharSequence {
+
+	/*
+	 * The text we are looking at.
+	 */
+	private CharSequence source;
+
+	/*
+	 * The index of the first character of the window within the source.
+	 */
+	private int start;
+
+	/*
+	 * The number of characters in the window.
+	 */
+	private int length;
+
+	/*
+	 * Should the characters of the window be lower cased.
+	 */
+	private boolean lowerCase;
+
+	/*
+	 * The lower cased characters of the window when they can't be lower
+	 * cased one at a time, see CharSlice.lowerCasesByChar(), otherwise null.
+	 */
+	private String lowered;
+
+	/**
+	 * Create an empty window.
+	 *
+	 * @param lowerCase Should characters be lower cased.
+	 */
+	public CharWindow(boolean lowerCase)
+	{
+		this.source = "";
+		this.lowerCase = lowerCase;
+	}
+
+	/**
+	 * Move the window to a range of characters in some text.
+	 *
+	 * @param source The text to look at.
+	 * @param start The index of the first character.
+	 * @param length The number of characters.
+	 * @return This window.
+	 */
+	public CharWindow set(CharSequence source, int start, int length)
+	{
+		if(start < 0 || length < 0 || start + length > source.length())
+			throw new IndexOutOfBoundsException("Window [" + start + ", " + (start+length) +
+					") is outside of text of length " + source.length());
+
+		this.source = source;
+		this.start = start;
+		this.length = length;
+		this.lowered = lowerCase ? CharSlice.lowerCaseCopy(source, start, length) : null;
+
+		return this;
+	}
+
+	/**
+	 * Move the window to the characters of a token.
+	 *
+	 * @param token The token to look at.
+	 * @return This window.
+	 */
+	public CharWindow set(Token token)
+	{
+		return set(token.source, token.offset, token.length);
+	}
+
+	/**
+	 * Shrink the window to a range within its current range. The range is
+	 * of the characters of the text, which are as many as the characters
+	 * of the window unless lower casing changed how many there are.
+	 *
+	 * @param start The index of the first character relative to the window.
+	 * @param end The index past the last character relative to the window.
+	 * @return This window.
+	 */
+	public CharWindow narrow(int start, int end)
+	{
+		if(start < 0 || end > length || start > end)
+			throw new IndexOutOfBoundsException("Range [" + start + ", " + end +
+					") is outside of window of length " + length);
+
+		return set(source, this.start + start, end - start);
+	}
+
+	/**
+	 * Are the characters of this window lower cased.
+	 * 
+	 * @return true if yes, false if no.
+	 */
+	public boolean isLowerCase()
+	{
+		return lowerCase;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.CharSequence#length()
+	 */
+	public int length()
+	{
+		if(lowered != null)
+			return lowered.length();
+
+		return length;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.CharSequence#charAt(int)
+	 */
+	public char charAt(int index)
+	{
+		if(lowered != null)
+			return lowered.charAt(index);
+
+		if(index < 0 || index >= length)
+			throw new IndexOutOfBoundsException("Index " + index + " is outside of window of length " + length);
+
+		if(lowerCase)
+			return CharSlice.lowerCaseCharAt(source, start, length, index);
+
+		return source.charAt(start + index);
+	}
+
+	/**
+	 * Get a slice of the characters currently in the window. The slice
+	 * does not move with the window.
+	 */
+	public CharSlice subSequence(int start, int end)
+	{
+		if(lowered != null)
+			return new CharSlice(lowered, start, end - start);
+
+		if(start < 0 || end > length || start > end)
+			throw new IndexOutOfBoundsException("Range [" + start + ", " + end +
+					") is outside of window of length " + length);
+
+		return new CharSlice(source, this.start + start, end - start, lowerCase);
+	}
+
+	/**
+	 * A window is equal to any slice or window with the same characters.
+	 */
+	@Override
+	public boolean equals(Object other)
+	{
+		if(this == other)
+			return true;
+
+		if(!(other instanceof CharSlice || other instanceof CharWindow))
+			return false;
+
+		return CharSlice.contentEquals(this, (CharSequence)other);
+	}
+
+	/**
+	 * The hash code is computed the same way as String.hashCode().
+	 */
+	@Override
+	public int hashCode()
+	{
+		if(lowered != null)
+			return lowered.hashCode();
+
+		int h = 0;
+		for(int i=0; i<length; i++)
+			h = 31*h + charAt(i);
+
+		return h;
+	}
+
+	/**
+	 * Copy the characters in the window into a new String.
+	 */
+	@Override
+	public String toString()
+	{
+		if(lowered != null)
+			return lowered;
+
+		return new StringBuilder(length).append(this).toString();
+	}
+
+}
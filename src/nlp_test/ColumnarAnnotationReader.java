@@ -0,0 +1,409 @@
+package nlp_test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * This class reads a file written by ColumnarAnnotationWriter by mapping
+ * it into memory. Opening the file reads only its footer. Getting a
+ * sentence maps the block of its document, the first time any sentence of
+ * that document is asked for, and looks up where the sentence's tokens are
+ * in the block. Nothing else in the file is read, so getting sentence M of
+ * document N takes the same time whatever N and M are.
+ *
+ * The sentences and tokens are views of the mapped columns. A Sentence is
+ * a sentence of the document's text over a list of ColumnarTokens, which
+ * are TokenNEs whose annotations and entities are read from the columns
+ * when they are asked for. Their text is read from the document's text
+ * column, which the tokens and sentences use as their source. The views
+ * are read only.
+ *
+ * A reader can be shared by threads.
+ *
+ * @author Dave Turner
+ *
+ */
+public class ColumnarAnnotationReader implements Closeable {
+
+	/*
+	 * The file and its size.
+	 */
+	private RandomAccessFile file;
+	private FileChannel channel;
+
+	/*
+	 * The footer, and where the document names and entities are in it.
+	 */
+	private ByteBuffer footer;
+	private int documentCount;
+	private int namesOffset;
+	private int entitiesOffset;
+
+	/*
+	 * The documents that have been mapped, by number.
+	 */
+	private ColumnarDocument[] documents;
+
+	/*
+	 * The entities of the file by id. Each is decoded the first time it is
+	 * asked for.
+	 */
+	private String[] entities;
+
+	/**
+	 * Open a file.
+	 *
+	 * @param fileName The file.
+	 * @throws IOException If the file can't be read or isn't in the
+	 * columnar format.
+	 */
+	public ColumnarAnnotationReader(String fileName) throws IOException
+	{
+		file = new RandomAccessFile(fileName, "r");
+		try
+		{
+			channel = file.getChannel();
+			long size = channel.size();
+			if(size < ColumnarAnnotationWriter.HEADER_SIZE + ColumnarAnnotationWriter.TRAILER_SIZE)
+				throw new IOException("File is too short to be in the columnar format: " + fileName);
+
+			ByteBuffer header = map(0, ColumnarAnnotationWriter.HEADER_SIZE);
+			ByteBuffer trailer = map(size - ColumnarAnnotationWriter.TRAILER_SIZE, ColumnarAnnotationWriter.TRAILER_SIZE);
+			if(header.getInt(0) != ColumnarAnnotationWriter.MAGIC || trailer.getInt(12) != ColumnarAnnotationWriter.MAGIC)
+				throw new IOException("File isn't in the columnar format: " + fileName);
+			if(header.getInt(4) != ColumnarAnnotationWriter.VERSION)
+				throw new IOException("Unknown version of the columnar format: " + header.getInt(4));
+
+			long footerOffset = trailer.getLong(0);
+			footer = map(footerOffset, size - ColumnarAnnotationWriter.TRAILER_SIZE - footerOffset);
+
+			documentCount = footer.getInt(0);
+			namesOffset = 8 + documentCount * ColumnarAnnotationWriter.DOCUMENT_RECORD_SIZE;
+			entitiesOffset = endOfStrings(namesOffset);
+
+			documents = new ColumnarDocument[documentCount];
+			entities = new String[footer.getInt(entitiesOffset)];
+		}
+		catch(IOException e)
+		{
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Get the number of documents in the file.
+	 *
+	 * @return The number of documents.
+	 */
+	public int getDocumentCount()
+	{
+		return documentCount;
+	}
+
+	/**
+	 * Get the name of a document.
+	 *
+	 * @param doc The number of the document.
+	 * @return The name, empty if it was given none.
+	 */
+	public String getDocumentName(int doc)
+	{
+		checkDocument(doc);
+		return getString(namesOffset, doc);
+	}
+
+	/**
+	 * Get the number of sentences of a document.
+	 *
+	 * @param doc The number of the document.
+	 * @return The number of sentences.
+	 */
+	public int getSentenceCount(int doc)
+	{
+		checkDocument(doc);
+		return footer.getInt(recordOffset(doc) + 16);
+	}
+
+	/**
+	 * Get the text of a document up to the end of its last sentence. This is
+	 * a view of the mapped text.
+	 *
+	 * @param doc The number of the document.
+	 * @return The text.
+	 * @throws IOException If the document can't be mapped.
+	 */
+	public CharSequence getText(int doc) throws IOException
+	{
+		return getDocument(doc).text;
+	}
+
+	/**
+	 * Get a sentence of a document.
+	 *
+	 * @param doc The number of the document.
+	 * @param sent The number of the sentence within the document.
+	 * @return The sentence, a view of the mapped columns.
+	 * @throws IOException If the document can't be mapped.
+	 */
+	public Sentence getSentence(int doc, int sent) throws IOException
+	{
+		ColumnarDocument document = getDocument(doc);
+		if(sent < 0 || sent >= document.sentenceCount)
+			throw new IndexOutOfBoundsException("Sentence " + sent + " is outside of document " + doc +
+					" with " + document.sentenceCount + " sentences");
+
+		return document.getSentence(sent);
+	}
+
+	/**
+	 * Get all the sentences of a document. The sentences are made as they
+	 * are got from the list.
+	 *
+	 * @param doc The number of the document.
+	 * @return The sentences, views of the mapped columns.
+	 * @throws IOException If the document can't be mapped.
+	 */
+	public SentenceList getSentences(int doc) throws IOException
+	{
+		final ColumnarDocument document = getDocument(doc);
+
+		return new SentenceList(new AbstractList<Sentence>() {
+			@Override
+			public Sentence get(int index)
+			{
+				if(index < 0 || index >= document.sentenceCount)
+					throw new IndexOutOfBoundsException("Sentence " + index + " is outside of document with " +
+							document.sentenceCount + " sentences");
+
+				return document.getSentence(index);
+			}
+
+			@Override
+			public int size()
+			{
+				return document.sentenceCount;
+			}
+		});
+	}
+
+	/**
+	 * Get an entity from its id in this file.
+	 *
+	 * @param id The id.
+	 * @return The entity.
+	 */
+	public String getEntity(int id)
+	{
+		String entity = entities[id];
+		if(entity == null)
+		{
+			entity = getString(entitiesOffset, id);
+			entities[id] = entity;
+		}
+
+		return entity;
+	}
+
+	/**
+	 * Get the number of distinct entities in the file.
+	 *
+	 * @return The number of entities.
+	 */
+	public int getEntityCount()
+	{
+		return entities.length;
+	}
+
+	/**
+	 * Close the file. The sentences and tokens already got can still be read.
+	 */
+	public void close() throws IOException
+	{
+		file.close();
+	}
+
+	/*
+	 * Get a document, mapping its block if it hasn't been yet.
+	 */
+	private ColumnarDocument getDocument(int doc) throws IOException
+	{
+		checkDocument(doc);
+
+		ColumnarDocument document = documents[doc];
+		if(document == null)
+		{
+			int record = recordOffset(doc);
+			document = new ColumnarDocument(footer.getLong(record), footer.getInt(record + 8),
+					footer.getInt(record + 12), footer.getInt(record + 16), footer.getInt(record + 20));
+			documents[doc] = document;
+		}
+
+		return document;
+	}
+
+	/*
+	 * Check a document number is within the file.
+	 */
+	private void checkDocument(int doc)
+	{
+		if(doc < 0 || doc >= documentCount)
+			throw new IndexOutOfBoundsException("Document " + doc + " is outside of file with " +
+					documentCount + " documents");
+	}
+
+	/*
+	 * The offset in the footer of the record of a document.
+	 */
+	private static int recordOffset(int doc)
+	{
+		return 8 + doc * ColumnarAnnotationWriter.DOCUMENT_RECORD_SIZE;
+	}
+
+	/*
+	 * Get a string of the table of strings at an offset in the footer.
+	 */
+	private String getString(int table, int index)
+	{
+		int count = footer.getInt(table);
+		int start = footer.getInt(table + 4 + 4 * index);
+		int end = footer.getInt(table + 8 + 4 * index);
+
+		byte[] bytes = new byte[end - start];
+		ByteBuffer strings = footer.duplicate();
+		strings.position(table + 8 + 4 * count + start);
+		strings.get(bytes);
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/*
+	 * Get the offset in the footer after the table of strings at an offset.
+	 */
+	private int endOfStrings(int table)
+	{
+		int count = footer.getInt(table);
+		int end = table + 8 + 4 * count + footer.getInt(table + 4 + 4 * count);
+
+		return (end + 3) & ~3;
+	}
+
+	/*
+	 * Map some of the file, little endian.
+	 */
+	private ByteBuffer map(long offset, long size) throws IOException
+	{
+		if(offset < 0 || size < 0 || size > Integer.MAX_VALUE || offset + size > channel.size())
+			throw new IOException("Columnar file is corrupt, bad range: " + offset + " + " + size);
+
+		return channel.map(FileChannel.MapMode.READ_ONLY, offset, size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/*
+	 * Get a view of the ints of some of a buffer.
+	 */
+	private static IntBuffer intColumn(ByteBuffer block, int offset, int count)
+	{
+		ByteBuffer column = block.duplicate();
+		column.position(offset);
+		column.limit(offset + 4 * count);
+
+		return column.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+	}
+
+	/**
+	 * This class is the mapped block of a document, split into its columns.
+	 * The columns are only read with absolute gets, so one can be shared
+	 * by threads.
+	 */
+	class ColumnarDocument {
+
+		final CharBuffer text;
+		final IntBuffer starts;
+		final IntBuffer lengths;
+		final IntBuffer flags;
+		final IntBuffer entityStarts;
+		final IntBuffer entityIds;
+		final IntBuffer sentStarts;
+
+		final int tokenCount;
+		final int sentenceCount;
+
+		/*
+		 * All the tokens of the document, made as they are got.
+		 */
+		final List<Token> tokens;
+
+		ColumnarDocument(long offset, int textLength, int tokenCount, int sentenceCount, int entityRefs)
+				throws IOException
+		{
+			this.tokenCount = tokenCount;
+			this.sentenceCount = sentenceCount;
+
+			int textBytes = (2 * textLength + 3) & ~3;
+			long size = textBytes + 4L * (4 * tokenCount + 1 + entityRefs + sentenceCount + 1);
+			ByteBuffer block = map(offset, size);
+
+			ByteBuffer textBlock = block.duplicate();
+			textBlock.limit(2 * textLength);
+			text = textBlock.slice().order(ByteOrder.LITTLE_ENDIAN).asCharBuffer();
+
+			int column = textBytes;
+			starts = intColumn(block, column, tokenCount);
+			column += 4 * tokenCount;
+			lengths = intColumn(block, column, tokenCount);
+			column += 4 * tokenCount;
+			flags = intColumn(block, column, tokenCount);
+			column += 4 * tokenCount;
+			entityStarts = intColumn(block, column, tokenCount + 1);
+			column += 4 * (tokenCount + 1);
+			entityIds = intColumn(block, column, entityRefs);
+			column += 4 * entityRefs;
+			sentStarts = intColumn(block, column, sentenceCount + 1);
+
+			tokens = new AbstractList<Token>() {
+				@Override
+				public Token get(int index)
+				{
+					if(index < 0 || index >= ColumnarDocument.this.tokenCount)
+						throw new IndexOutOfBoundsException("Token " + index + " is outside of document with " +
+								ColumnarDocument.this.tokenCount + " tokens");
+
+					return new ColumnarToken(ColumnarDocument.this, index);
+				}
+
+				@Override
+				public int size()
+				{
+					return ColumnarDocument.this.tokenCount;
+				}
+			};
+		}
+
+		/*
+		 * Get a view of a sentence.
+		 */
+		Sentence getSentence(int sent)
+		{
+			return new Sentence(text, tokens, sentStarts.get(sent), sentStarts.get(sent + 1));
+		}
+
+		/*
+		 * Get an entity from its id.
+		 */
+		String getEntity(int id)
+		{
+			return ColumnarAnnotationReader.this.getEntity(id);
+		}
+	}
+
+}
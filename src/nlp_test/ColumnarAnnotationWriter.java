@@ -0,0 +1,389 @@
+package nlp_test;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * This class writes sentences in a binary columnar format that can be read
+ * back by mapping the file, see ColumnarAnnotationReader. The file holds
+ * any number of documents. The columns of a document are written together
+ * as a block when the document is finished, each column one array:
+ *
+ *   text           char[textLength]     The text up to the end of the last
+ *                                       sentence, in UTF-16.
+ *   starts         int[tokens]          The offset of each token in text.
+ *   lengths        int[tokens]          The length of each token.
+ *   flags          int[tokens]          The TokenBuffer flags of each token.
+ *   entityStarts   int[tokens + 1]      The index of each token's first
+ *                                       entity in entityIds.
+ *   entityIds      int[entityRefs]      The entities of all the tokens, as
+ *                                       indexes into the entity table.
+ *   sentStarts     int[sentences + 1]   The index of each sentence's first
+ *                                       token.
+ *
+ * After the blocks comes a footer with a fixed size record for each
+ * document, giving where its block is and the sizes of its columns, then
+ * the table of document names and the table of entities. The file ends with
+ * the offset of the footer, so a reader can find any sentence of any
+ * document without reading anything else. Everything is little endian and
+ * each block starts on 8 bytes.
+ *
+ * A new document is started by startDocument(), or when a sentence is of a
+ * different text than the one before. Only sentences of a text can be
+ * written, and a document's text must be under 2G characters. All of the
+ * columns of the document being written are kept in memory, but not its
+ * text.
+ *
+ * This is the COLUMNAR output format, see OutputFormat.
+ *
+ * @author Dave Turner
+ *
+ */
+public class ColumnarAnnotationWriter implements AnnotationWriter {
+
+	/**
+	 * The first and last int of the file, "NLPC" in ASCII.
+	 */
+	public static final int MAGIC = 0x43504c4e;
+
+	/**
+	 * The version of the format.
+	 */
+	public static final int VERSION = 1;
+
+	/*
+	 * The size of the header and of the trailer after the footer.
+	 */
+	static final int HEADER_SIZE = 8;
+	static final int TRAILER_SIZE = 16;
+
+	/*
+	 * The size of a document record in the footer.
+	 */
+	static final int DOCUMENT_RECORD_SIZE = 24;
+
+	/*
+	 * The number of bytes we put together before writing them out.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/*
+	 * Where the file goes and how many bytes have been written to it.
+	 */
+	private OutputStream out;
+	private long position = 0;
+
+	/*
+	 * The bytes not yet written to out.
+	 */
+	private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+	/*
+	 * The document being written, or not if docOpen is false. Its text is
+	 * null till its first sentence is written.
+	 */
+	private boolean docOpen = false;
+	private String docName;
+	private CharSequence docText;
+	private long docTextEnd;
+
+	/*
+	 * The columns of the document being written.
+	 */
+	private IntColumn starts = new IntColumn();
+	private IntColumn lengths = new IntColumn();
+	private IntColumn flags = new IntColumn();
+	private IntColumn entityStarts = new IntColumn();
+	private IntColumn entityIds = new IntColumn();
+	private IntColumn sentStarts = new IntColumn();
+
+	/*
+	 * The documents that have been written, and their names.
+	 */
+	private List<long[]> documents = new ArrayList<long[]>();
+	private List<String> documentNames = new ArrayList<String>();
+
+	/*
+	 * The entities of the file in order of their ids, and the other way.
+	 */
+	private List<String> entities = new ArrayList<String>();
+	private HashMap<String, Integer> entityIdMap = new HashMap<String, Integer>();
+
+	/**
+	 * Create a writer that writes to a stream.
+	 *
+	 * @param out The stream.
+	 * @throws IOException If writing the header fails.
+	 */
+	public ColumnarAnnotationWriter(OutputStream out) throws IOException
+	{
+		this.out = out instanceof BufferedOutputStream ? out : new BufferedOutputStream(out);
+
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+	}
+
+	/**
+	 * Create a writer that writes to a file.
+	 *
+	 * @param file The file to create or overwrite.
+	 * @throws IOException If the file can't be created.
+	 */
+	public ColumnarAnnotationWriter(String file) throws IOException
+	{
+		this(new FileOutputStream(file));
+	}
+
+	/**
+	 * Finish the document being written and start a new one. The sentences
+	 * written after this, up to the next document, are the sentences of the
+	 * new document.
+	 *
+	 * @param name The name of the document, null if it has none.
+	 * @throws IOException If writing fails.
+	 */
+	public void startDocument(String name) throws IOException
+	{
+		endDocument();
+
+		docOpen = true;
+		docName = name;
+	}
+
+	/* (non-Javadoc)
+	 * @see nlp_test.AnnotationWriter#writeSentence(nlp_test.Sentence)
+	 */
+	public void writeSentence(Sentence sent) throws IOException
+	{
+		if(sent.source == null)
+			throw new IllegalArgumentException("Only sentences of a text can be written in columns.");
+
+		if(!docOpen || (docText != null && docText != sent.source))
+			startDocument(null);
+
+		if(sent.getEnd() > Integer.MAX_VALUE)
+			throw new IOException("Text is too long for the columnar format: " + sent.getEnd());
+
+		docText = sent.source;
+		docTextEnd = Math.max(docTextEnd, sent.getEnd());
+
+		sentStarts.add(starts.size);
+		for(Token tk: sent.getTokens())
+		{
+			starts.add((int)tk.getPosition());
+			lengths.add(tk.getLength());
+			flags.add((int)TokenBuffer.packFlags(tk));
+
+			entityStarts.add(entityIds.size);
+			if(tk instanceof TokenNE)
+			{
+				for(String entity: ((TokenNE)tk).entities)
+					entityIds.add(getEntityId(entity));
+			}
+		}
+	}
+
+	/**
+	 * Finish the last document and write the footer.
+	 */
+	public void close() throws IOException
+	{
+		try
+		{
+			endDocument();
+			writeFooter();
+			flushBuffer();
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/*
+	 * Get the id of an entity in this file, giving it the next one if it
+	 * hasn't got one yet.
+	 */
+	private int getEntityId(String entity)
+	{
+		Integer id = entityIdMap.get(entity);
+		if(id == null)
+		{
+			id = entities.size();
+			entities.add(entity);
+			entityIdMap.put(entity, id);
+		}
+
+		return id;
+	}
+
+	/*
+	 * Write the block of the document being written, if there is one.
+	 */
+	private void endDocument() throws IOException
+	{
+		if(!docOpen)
+			return;
+
+		pad(8);
+		int textLength = (int)docTextEnd;
+		documents.add(new long[] {offset(), textLength, starts.size, sentStarts.size, entityIds.size});
+		documentNames.add(docName == null ? "" : docName);
+
+		for(int i=0; i<textLength; i++)
+			putChar(docText.charAt(i));
+		pad(4);
+
+		entityStarts.add(entityIds.size);
+		sentStarts.add(starts.size);
+		for(IntColumn column: new IntColumn[] {starts, lengths, flags, entityStarts, entityIds, sentStarts})
+		{
+			for(int i=0; i<column.size; i++)
+				putInt(column.values[i]);
+			column.size = 0;
+		}
+
+		docOpen = false;
+		docName = null;
+		docText = null;
+		docTextEnd = 0;
+	}
+
+	/*
+	 * Write the footer: the document records, the document names and the
+	 * entities, then where the footer starts.
+	 */
+	private void writeFooter() throws IOException
+	{
+		pad(8);
+		long footer = offset();
+
+		putInt(documents.size());
+		putInt(0);
+		for(long[] doc: documents)
+		{
+			putLong(doc[0]);
+			for(int i=1; i<doc.length; i++)
+				putInt((int)doc[i]);
+		}
+
+		writeStrings(documentNames);
+		writeStrings(entities);
+
+		putLong(footer);
+		putInt(VERSION);
+		putInt(MAGIC);
+	}
+
+	/*
+	 * Write a table of strings: the number of strings, the offset of each
+	 * within the bytes and of the end of them, then the strings in UTF-8.
+	 */
+	private void writeStrings(List<String> strings) throws IOException
+	{
+		List<byte[]> bytes = new ArrayList<byte[]>(strings.size());
+		for(String s: strings)
+			bytes.add(s.getBytes(StandardCharsets.UTF_8));
+
+		putInt(strings.size());
+		int offset = 0;
+		for(byte[] b: bytes)
+		{
+			putInt(offset);
+			offset += b.length;
+		}
+		putInt(offset);
+
+		for(byte[] b: bytes)
+			for(byte c: b)
+				putByte(c);
+		pad(4);
+	}
+
+	/*
+	 * Make room in the buffer for some bytes.
+	 */
+	private void ensureRoom(int bytes) throws IOException
+	{
+		if(buffer.remaining() < bytes)
+			flushBuffer();
+	}
+
+	private void putByte(byte b) throws IOException
+	{
+		ensureRoom(1);
+		buffer.put(b);
+	}
+
+	private void putChar(char c) throws IOException
+	{
+		ensureRoom(2);
+		buffer.putChar(c);
+	}
+
+	private void putInt(int n) throws IOException
+	{
+		ensureRoom(4);
+		buffer.putInt(n);
+	}
+
+	private void putLong(long n) throws IOException
+	{
+		ensureRoom(8);
+		buffer.putLong(n);
+	}
+
+	/*
+	 * Write zeros till the position is a multiple of some number of bytes.
+	 */
+	private void pad(int alignment) throws IOException
+	{
+		while(offset() % alignment != 0)
+			putByte((byte)0);
+	}
+
+	/*
+	 * The offset in the file of the next byte written.
+	 */
+	private long offset()
+	{
+		return position + buffer.position();
+	}
+
+	/*
+	 * Write out the buffered bytes.
+	 */
+	private void flushBuffer() throws IOException
+	{
+		out.write(buffer.array(), 0, buffer.position());
+		position += buffer.position();
+		buffer.clear();
+	}
+
+	/*
+	 * A growable column of ints.
+	 */
+	private static class IntColumn {
+
+		int[] values = new int[256];
+		int size = 0;
+
+		void add(int value)
+		{
+			if(size == values.length)
+				values = Arrays.copyOf(values, size * 2);
+
+			values[size++] = value;
+		}
+	}
+
+}
@@ -0,0 +1,201 @@
+package nlp_test;
+
+import java.util.AbstractList;
+
+/**
+ * A token that is a view of one token of a document mapped by a
+ * ColumnarAnnotationReader. Its characters are in the document's text
+ * column and its annotations and entities are read from the other columns
+ * when they are asked for. The mapping is read only so the annotations
+ * can't be changed.
+ *
+ * @author Dave Turner
+ *
+ */
+public class ColumnarToken extends TokenNE {
+
+	/*
+	 * The document this token is a view of.
+	 */
+	protected ColumnarAnnotationReader.ColumnarDocument document;
+
+	/*
+	 * The index of the token within the document.
+	 */
+	protected int index;
+
+	/*
+	 * The flags column entry of the token.
+	 */
+	protected long flags;
+
+	/*
+	 * Create a view of a token of a document.
+	 */
+	ColumnarToken(final ColumnarAnnotationReader.ColumnarDocument document, final int index)
+	{
+		this.document = document;
+		this.index = index;
+
+		source = document.text;
+		offset = document.starts.get(index);
+		length = document.lengths.get(index);
+		pos = offset;
+
+		// The annotations without accessors are read directly by subclasses
+		// so keep a copy of them.
+		flags = document.flags.get(index) & 0xffffffffL;
+		isAlpha = (flags & TokenBuffer.ALPHA) != 0;
+		isNonPunct = (flags & TokenBuffer.NON_PUNCT) != 0;
+
+		final int firstEntity = document.entityStarts.get(index);
+		final int entityCount = document.entityStarts.get(index + 1) - firstEntity;
+		isNamedEntity = entityCount > 0;
+		entities = new AbstractList<String>() {
+			@Override
+			public String get(int i)
+			{
+				if(i < 0 || i >= entityCount)
+					throw new IndexOutOfBoundsException("Entity " + i + " is outside of token with " +
+							entityCount + " entities");
+
+				return document.getEntity(document.entityIds.get(firstEntity + i));
+			}
+
+			@Override
+			public int size()
+			{
+				return entityCount;
+			}
+		};
+	}
+
+	/**
+	 * Get the index of this token within its document.
+	 *
+	 * @return The index.
+	 */
+	public int getIndex()
+	{
+		return index;
+	}
+
+	/**
+	 * Get the id of one of the entities of this token within the file, see
+	 * ColumnarAnnotationReader.getEntity().
+	 *
+	 * @param i The number of the entity within this token.
+	 * @return The entity id.
+	 */
+	public int getEntityId(int i)
+	{
+		if(i < 0 || i >= entities.size())
+			throw new IndexOutOfBoundsException("Entity " + i + " is outside of token with " +
+					entities.size() + " entities");
+
+		return document.entityIds.get(document.entityStarts.get(index) + i);
+	}
+
+	@Override
+	public void setPosition(long pos)
+	{
+		throw new UnsupportedOperationException("Mapped tokens can't be changed.");
+	}
+
+	@Override
+	public boolean getIsAbbreviation()
+	{
+		return (flags & TokenBuffer.ABBREVIATION) != 0;
+	}
+
+	@Override
+	public void setIsAbbreviation(boolean val)
+	{
+		throw new UnsupportedOperationException("Mapped tokens can't be changed.");
+	}
+
+	@Override
+	public boolean getIsParaStart()
+	{
+		return (flags & TokenBuffer.PARA_START) != 0;
+	}
+
+	@Override
+	public void setIsParaStart(boolean val)
+	{
+		throw new UnsupportedOperationException("Mapped tokens can't be changed.");
+	}
+
+	@Override
+	public boolean getIsLineStart()
+	{
+		return (flags & TokenBuffer.LINE_START) != 0;
+	}
+
+	@Override
+	public void setIsLineStart(boolean val)
+	{
+		throw new UnsupportedOperationException("Mapped tokens can't be changed.");
+	}
+
+	@Override
+	public boolean getIsSentBreak()
+	{
+		return (flags & TokenBuffer.SENT_BREAK) != 0;
+	}
+
+	@Override
+	public void setIsSentBreak(boolean val)
+	{
+		throw new UnsupportedOperationException("Mapped tokens can't be changed.");
+	}
+
+	@Override
+	public boolean getIsInitial()
+	{
+		return (flags & TokenBuffer.INITIAL) != 0;
+	}
+
+	@Override
+	public void setIsInitial(boolean val)
+	{
+		throw new UnsupportedOperationException("Mapped tokens can't be changed.");
+	}
+
+	@Override
+	public boolean getIsEllipsis()
+	{
+		return (flags & TokenBuffer.ELLIPSIS) != 0;
+	}
+
+	@Override
+	public void setIsEllipsis(boolean val)
+	{
+		throw new UnsupportedOperationException("Mapped tokens can't be changed.");
+	}
+
+	@Override
+	public boolean getIsNumber()
+	{
+		return (flags & TokenBuffer.NUMBER) != 0;
+	}
+
+	@Override
+	public void setIsNumber(boolean val)
+	{
+		throw new UnsupportedOperationException("Mapped tokens can't be changed.");
+	}
+
+	@Override
+	public void addEntity(String entity, long matchStart)
+	{
+		throw new UnsupportedOperationException("Mapped tokens can't be changed.");
+	}
+
+	@Override
+	public void clearEntities()
+	{
+		throw new UnsupportedOperationException("Mapped tokens can't be changed.");
+	}
+
+}
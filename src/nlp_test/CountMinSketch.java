@@ -0,0 +1,220 @@
+package nlp_test;
+
+/**
+ * This class is a count-min sketch of the number of times each string is
+ * seen. It is a fixed table of counters, some rows of a power of two
+ * counters each, and each string adds to one counter of every row picked
+ * by a hash of it. The estimate of a string's count is its smallest
+ * counter, which is never less than the true count and is over it only by
+ * the counts of the strings that share all of its counters.
+ *
+ * The counters are updated conservatively, only those that are below the
+ * new estimate are raised to it, which keeps the estimates closer than
+ * adding to all of them. Sketches of the same size can be merged by adding
+ * up their counters, and the estimates are still never under the counts.
+ * The counters are ints that stop at Integer.MAX_VALUE.
+ *
+ * A sketch can't be shared by threads that add to it.
+ *
+ * @author Dave Turner
+ *
+ */
+public class CountMinSketch {
+
+	/*
+	 * The number of rows and of counters in each, and the counters row after
+	 * row.
+	 */
+	private final int depth;
+	private final int width;
+	private final int[] table;
+
+	/*
+	 * The total of all the counts added.
+	 */
+	private long total = 0;
+
+	/**
+	 * Create an empty sketch.
+	 *
+	 * @param depth The number of rows.
+	 * @param width The number of counters in a row, a power of two.
+	 */
+	public CountMinSketch(int depth, int width)
+	{
+		if(depth <= 0)
+			throw new IllegalArgumentException("Depth must be positive: " + depth);
+		if(width <= 0 || Integer.bitCount(width) != 1)
+			throw new IllegalArgumentException("Width must be a power of two: " + width);
+		if((long)depth * width > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Sketch is too big: " + depth + " x " + width);
+
+		this.depth = depth;
+		this.width = width;
+		table = new int[depth * width];
+	}
+
+	/**
+	 * Create an empty sketch with the widest rows that fit in some bytes.
+	 *
+	 * @param bytes The most bytes the counters may take.
+	 * @param depth The number of rows.
+	 * @return The sketch.
+	 */
+	public static CountMinSketch forBytes(long bytes, int depth)
+	{
+		long width = Math.max(bytes / (4L * depth), 1);
+		width = Math.min(Long.highestOneBit(width), Integer.highestOneBit(Integer.MAX_VALUE / depth));
+
+		return new CountMinSketch(depth, (int)width);
+	}
+
+	/**
+	 * Count a string once.
+	 *
+	 * @param key The string.
+	 */
+	public void add(CharSequence key)
+	{
+		add(key, 1);
+	}
+
+	/**
+	 * Count a string some number of times.
+	 *
+	 * @param key The string.
+	 * @param n The number of times, not negative.
+	 */
+	public void add(CharSequence key, int n)
+	{
+		if(n < 0)
+			throw new IllegalArgumentException("Can't take away from a count: " + n);
+
+		long hash = hash(key);
+		int h1 = (int)hash;
+		int h2 = (int)(hash >>> 32) | 1;
+
+		int min = Integer.MAX_VALUE;
+		for(int row=0; row<depth; row++)
+			min = Math.min(min, table[index(row, h1, h2)]);
+
+		int estimate = (int)Math.min((long)min + n, Integer.MAX_VALUE);
+		for(int row=0; row<depth; row++)
+		{
+			int i = index(row, h1, h2);
+			if(table[i] < estimate)
+				table[i] = estimate;
+		}
+
+		total += n;
+	}
+
+	/**
+	 * Estimate the number of times a string has been counted. This is never
+	 * less than the true count.
+	 *
+	 * @param key The string.
+	 * @return The estimate.
+	 */
+	public long estimate(CharSequence key)
+	{
+		long hash = hash(key);
+		int h1 = (int)hash;
+		int h2 = (int)(hash >>> 32) | 1;
+
+		int min = Integer.MAX_VALUE;
+		for(int row=0; row<depth; row++)
+			min = Math.min(min, table[index(row, h1, h2)]);
+
+		return min;
+	}
+
+	/**
+	 * Add the counts of another sketch of the same size to this one.
+	 *
+	 * @param other The other sketch.
+	 */
+	public void merge(CountMinSketch other)
+	{
+		if(other.depth != depth || other.width != width)
+			throw new IllegalArgumentException("Can't merge sketches of different sizes: " + depth + " x " + width +
+					" and " + other.depth + " x " + other.width);
+
+		for(int i=0; i<table.length; i++)
+			table[i] = (int)Math.min((long)table[i] + other.table[i], Integer.MAX_VALUE);
+		total += other.total;
+	}
+
+	/**
+	 * Get the total of all the counts added to the sketch.
+	 *
+	 * @return The total.
+	 */
+	public long getTotal()
+	{
+		return total;
+	}
+
+	/**
+	 * Get the number of rows of the sketch.
+	 *
+	 * @return The depth.
+	 */
+	public int getDepth()
+	{
+		return depth;
+	}
+
+	/**
+	 * Get the number of counters in each row of the sketch.
+	 *
+	 * @return The width.
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+
+	/**
+	 * Get the number of bytes the counters take.
+	 *
+	 * @return The size in bytes.
+	 */
+	public long getBytes()
+	{
+		return 4L * table.length;
+	}
+
+	/*
+	 * The index in the table of the counter of a hash in a row. The rows
+	 * use different combinations of the two halves of the hash.
+	 */
+	private int index(int row, int h1, int h2)
+	{
+		return row * width + ((h1 + row * h2) & (width - 1));
+	}
+
+	/*
+	 * A 64 bit hash of the characters of a string, FNV-1a mixed with the
+	 * finaliser of MurmurHash3 so all the bits depend on all the characters.
+	 */
+	static long hash(CharSequence key)
+	{
+		long h = 0xcbf29ce484222325L;
+		int length = key.length();
+		for(int i=0; i<length; i++)
+		{
+			h ^= key.charAt(i);
+			h *= 0x100000001b3L;
+		}
+
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+
+		return h;
+	}
+
+}
@@ -0,0 +1,354 @@
+package nlp_test;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * This class is a PunktParams that can't be changed, made by
+ * PunktParams.freeze() once training is done. Its abbreviations, sentence
+ * starters, collocations and orthographic contexts are kept in
+ * StringTables rather than hash sets and maps, so a lookup neither
+ * copies the characters looked up nor boxes a Long, and it is safe to share
+ * one between any number of threads annotating texts.
+ *
+ * The lookups give the same answers as the PunktParams it was made from.
+ * The getters return read only views of the tables and anything that would
+ * change the parameters throws an UnsupportedOperationException. The protected sets and map of a
+ * PunktParams are left empty.
+ *
+ * PunktParams.load() maps parameters written to a file by write() as
+ * frozen parameters whose tables are looked up in the file in place.
+ *
+ * @author Dave Turner
+ *
+ */
+public final class FrozenPunktParams extends PunktParams {
+
+	/*
+	 * The tables of the parameters. The orthographic contexts are the values
+	 * of the ortho table. PunktParamsFile writes and maps them.
+	 */
+	final StringTable abbrevTable;
+	final StringTable collocTable;
+	final StringTable starterTable;
+	final StringTable orthoTable;
+
+	/*
+	 * Freeze a copy of some parameters.
+	 */
+	FrozenPunktParams(PunktParams params)
+	{
+		abbrevTable = FrozenStringTable.build(new ArrayList<String>(params.abbrevs), null);
+		collocTable = FrozenStringTable.buildPairs(params.collocs);
+		starterTable = FrozenStringTable.build(new ArrayList<String>(params.sent_starters), null);
+		orthoTable = buildOrtho(params);
+	}
+
+	/*
+	 * Make parameters of some tables, as PunktParamsFile maps them.
+	 */
+	FrozenPunktParams(StringTable abbrevTable, StringTable collocTable, StringTable starterTable,
+			StringTable orthoTable)
+	{
+		this.abbrevTable = abbrevTable;
+		this.collocTable = collocTable;
+		this.starterTable = starterTable;
+		this.orthoTable = orthoTable;
+	}
+
+	/*
+	 * The table of the orthographic contexts of some parameters.
+	 */
+	private static FrozenStringTable buildOrtho(PunktParams params)
+	{
+		List<String> types = new ArrayList<String>(params.ortho_context.size());
+		long[] flags = new long[params.ortho_context.size()];
+		for(Map.Entry<String, Long> e: params.ortho_context.entrySet())
+		{
+			flags[types.size()] = e.getValue();
+			types.add(e.getKey());
+		}
+
+		return FrozenStringTable.build(types, flags);
+	}
+
+	/**
+	 * Get the set of common collocations. It can't be changed.
+	 * @return The set.
+	 */
+	@Override
+	public Set<Tuple> getCollocations()
+	{
+		final StringTable table = collocTable;
+		return new TableSet<Tuple>(table) {
+			@Override
+			Tuple get(int slot)
+			{
+				return new Tuple(table.getKey(slot), table.getSecond(slot));
+			}
+
+			@Override
+			public boolean contains(Object o)
+			{
+				if(!(o instanceof Tuple))
+					return false;
+
+				Tuple t = (Tuple)o;
+				return t.x != null && t.y != null && table.findPair(t.x, t.y, false) >= 0;
+			}
+		};
+	}
+
+	/**
+	 * Get the set of common abbreviations. It can't be changed.
+	 * @return The set.
+	 */
+	@Override
+	public Set<String> getAbbreviations()
+	{
+		return keys(abbrevTable);
+	}
+
+	/**
+	 * Get the set of sentence starter tokens. It can't be changed.
+	 * @return The set.
+	 */
+	@Override
+	public Set<String> getSentenceStarters()
+	{
+		return keys(starterTable);
+	}
+
+	/**
+	 * Not supported, the parameters can't be changed.
+	 */
+	@Override
+	public void clearAbbreviations()
+	{
+		throw new UnsupportedOperationException("Frozen parameters can't be changed");
+	}
+
+	/**
+	 * Not supported, the parameters can't be changed.
+	 */
+	@Override
+	public void clearCollocations()
+	{
+		throw new UnsupportedOperationException("Frozen parameters can't be changed");
+	}
+
+	/**
+	 * Not supported, the parameters can't be changed.
+	 */
+	@Override
+	public void clearSentenceStarters()
+	{
+		throw new UnsupportedOperationException("Frozen parameters can't be changed");
+	}
+
+	/**
+	 * Not supported, the parameters can't be changed.
+	 */
+	@Override
+	public void clearOrthoContext()
+	{
+		throw new UnsupportedOperationException("Frozen parameters can't be changed");
+	}
+
+	/**
+	 * Check to see if a string matches our abbreviations list. Ignore case.
+	 * Assumes that trailing periods have been removed from token.
+	 * @param val The string to test. No trailing period.
+	 * @return true if it is and abbreviation, false if not.
+	 */
+	@Override
+	public boolean isAbbreviation(CharSequence val)
+	{
+		return abbrevTable.find(val, !isLowerCase(val)) >= 0;
+	}
+
+	/**
+	 * Is the string a sentence starter.
+	 *
+	 * @param val String to check.
+	 * @return True if yes, false if no.
+	 */
+	@Override
+	public boolean isSentenceStarter(CharSequence val)
+	{
+		return starterTable.find(val, !isLowerCase(val)) >= 0;
+	}
+
+	/**
+	 * Is the string Tuple a common collocation.
+	 *
+	 * @param val Tuple to check.
+	 * @return True if yes, false if no.
+	 */
+	@Override
+	public boolean isCollocation(Tuple val)
+	{
+		return collocTable.findPair(val.x, val.y, false) >= 0;
+	}
+
+	/**
+	 * Is a pair of strings a common collocation, the same as isCollocation()
+	 * of a Tuple of them, without making one.
+	 *
+	 * @param first The first string, the type ending in a period.
+	 * @param second The string that follows it.
+	 * @return True if yes, false if no.
+	 */
+	@Override
+	public boolean isCollocation(CharSequence first, CharSequence second)
+	{
+		return collocTable.findPair(first, second, false) >= 0;
+	}
+
+	/**
+	 * Get the current orthographic context flags for a given
+	 * string.
+	 * @param val The string to check.
+	 * @return This flags expressed as a long value.
+	 */
+	@Override
+	public long getOrthoContext(String val)
+	{
+		int slot = orthoTable.find(val);
+
+		return slot < 0 ? 0 : orthoTable.getValue(slot);
+	}
+
+	/**
+	 * Get the current orthographic context flags for some characters, the
+	 * same as getOrthoContext() of a String of them.
+	 * @param val The characters to check.
+	 * @return This flags expressed as a long value.
+	 */
+	@Override
+	public long getOrthoContext(CharSequence val)
+	{
+		int slot = orthoTable.find(val, false);
+
+		return slot < 0 ? 0 : orthoTable.getValue(slot);
+	}
+
+	/**
+	 * Not supported, the parameters can't be changed.
+	 */
+	@Override
+	public void addOrthoContext(String val, Long flag)
+	{
+		throw new UnsupportedOperationException("Frozen parameters can't be changed");
+	}
+
+	/**
+	 * These parameters are already frozen.
+	 *
+	 * @return These parameters.
+	 */
+	@Override
+	public FrozenPunktParams freeze()
+	{
+		return this;
+	}
+
+	/*
+	 * Are some characters known to be lower cased already, as a lower cased
+	 * window of a token is, so they can be looked up as they are.
+	 */
+	private static boolean isLowerCase(CharSequence val)
+	{
+		return val instanceof CharWindow && ((CharWindow)val).isLowerCase();
+	}
+
+	/*
+	 * A read only view of the keys of a table.
+	 */
+	private static Set<String> keys(final StringTable table)
+	{
+		return new TableSet<String>(table) {
+			@Override
+			String get(int slot)
+			{
+				return table.getKey(slot);
+			}
+
+			@Override
+			public boolean contains(Object o)
+			{
+				return o instanceof String && table.find((String)o, false) >= 0;
+			}
+		};
+	}
+
+	/*
+	 * A read only set of what is in the slots of a table, looked up in the
+	 * table rather than copied out of it.
+	 */
+	private static abstract class TableSet<T> extends AbstractSet<T> {
+
+		private final StringTable table;
+
+		TableSet(StringTable table)
+		{
+			this.table = table;
+		}
+
+		/*
+		 * The element in a slot that has a key.
+		 */
+		abstract T get(int slot);
+
+		@Override
+		public int size()
+		{
+			return table.size();
+		}
+
+		@Override
+		public Iterator<T> iterator()
+		{
+			return new Iterator<T>() {
+				private int slot = next(0);
+
+				private int next(int from)
+				{
+					while(from < table.getCapacity() && table.getKey(from) == null)
+						from++;
+
+					return from;
+				}
+
+				@Override
+				public boolean hasNext()
+				{
+					return slot < table.getCapacity();
+				}
+
+				@Override
+				public T next()
+				{
+					if(!hasNext())
+						throw new NoSuchElementException();
+
+					T element = get(slot);
+					slot = next(slot + 1);
+					return element;
+				}
+
+				@Override
+				public void remove()
+				{
+					throw new UnsupportedOperationException("Frozen parameters can't be changed");
+				}
+			};
+		}
+	}
+
+}
@@ -0,0 +1,278 @@
+package nlp_test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * This class is a StringTable that keeps its slots in arrays indexed by
+ * slot:
+ *
+ *   hashes    The hash of the key in each slot, the same as the hash of a
+ *             String, or for a pair see pairHash(), so most keys that don't
+ *             match are never read.
+ *   keys      The key in each slot, the first string of a pair, or null if
+ *             the slot is empty.
+ *   seconds   The second string of each pair. Not there for strings.
+ *   values    The value of each key, if there are values.
+ *
+ * A string longer than any key isn't even hashed. A lookup of characters
+ * already lower cased can be exact rather than ignore case.
+ *
+ * Nothing changes a table once it is made, so it can be shared by threads.
+ *
+ * @author Dave Turner
+ *
+ */
+final class FrozenStringTable extends StringTable {
+
+	/*
+	 * The arrays of the table, see above.
+	 */
+	private final int[] hashes;
+	private final String[] keys;
+	private final String[] seconds;
+	private final long[] values;
+
+	/*
+	 * The number of keys, the number of slots less one and the length of the
+	 * longest key, the longest first string of a pair.
+	 */
+	private final int size;
+	private final int mask;
+	private final int maxLength;
+
+	/*
+	 * Build a table of strings, or of pairs if there are second strings.
+	 * values may be null.
+	 */
+	private FrozenStringTable(List<String> firsts, List<String> seconds, long[] values)
+	{
+		size = firsts.size();
+
+		int capacity = capacityFor(size);
+		mask = capacity - 1;
+		hashes = new int[capacity];
+		keys = new String[capacity];
+		this.seconds = seconds == null ? null : new String[capacity];
+		this.values = values == null ? null : new long[capacity];
+
+		int longest = 0;
+		for(int i=0; i<size; i++)
+		{
+			String key = firsts.get(i);
+			longest = Math.max(longest, key.length());
+			int hash = seconds == null ? key.hashCode() : pairHash(key.hashCode(), seconds.get(i).hashCode());
+
+			int slot = mix(hash) & mask;
+			while(keys[slot] != null)
+				slot = (slot + 1) & mask;
+
+			hashes[slot] = hash;
+			keys[slot] = key;
+			if(seconds != null)
+				this.seconds[slot] = seconds.get(i);
+			if(values != null)
+				this.values[slot] = values[i];
+		}
+		maxLength = longest;
+	}
+
+	/*
+	 * Build a table of strings. values may be null.
+	 */
+	static FrozenStringTable build(List<String> keys, long[] values)
+	{
+		return new FrozenStringTable(keys, null, values);
+	}
+
+	/*
+	 * Build a table of pairs.
+	 */
+	static FrozenStringTable buildPairs(Collection<Tuple> pairs)
+	{
+		List<String> firsts = new ArrayList<String>(pairs.size());
+		List<String> seconds = new ArrayList<String>(pairs.size());
+		for(Tuple pair: pairs)
+		{
+			firsts.add(pair.x);
+			seconds.add(pair.y);
+		}
+
+		return new FrozenStringTable(firsts, seconds, null);
+	}
+
+	/*
+	 * The slot of a String, or -1 if it isn't in the table. The String
+	 * keeps its hash, so this is the quickest lookup.
+	 */
+	@Override
+	int find(String key)
+	{
+		return find(key, false);
+	}
+
+	/*
+	 * The slot of a string, or -1 if it isn't in the table. Most lookups are
+	 * of strings that aren't there and most of those end at an empty slot
+	 * straight away, so only the first slot is looked at here.
+	 */
+	@Override
+	int find(CharSequence key, boolean ignoreCase)
+	{
+		if(ignoreCase && !CharSlice.lowerCasesByChar(key, 0, key.length()))
+			return find(key.toString().toLowerCase(), false);
+
+		if(seconds != null || key.length() > maxLength)
+			return -1;
+
+		// Strings, windows and slices hash the same way and their own
+		// hashCode() is the quickest. Only a String compares quickest with
+		// its own equals().
+		int hash = !ignoreCase && hasStringHash(key) ? key.hashCode() : hash(key, ignoreCase);
+		int slot = mix(hash) & mask;
+		if(keys[slot] == null)
+			return -1;
+
+		return probe(key, hash, slot, ignoreCase, !ignoreCase && key instanceof String);
+	}
+
+	/*
+	 * Find the slot of a string from the first slot it could be in.
+	 */
+	private int probe(CharSequence key, int hash, int slot, boolean ignoreCase, boolean own)
+	{
+		for(; ; slot=(slot + 1) & mask)
+		{
+			String k = keys[slot];
+			if(k == null)
+				return -1;
+			if(hashes[slot] == hash && (own ? k.equals(key) : matches(k, key, ignoreCase)))
+				return slot;
+		}
+	}
+
+	/*
+	 * The slot of a pair of strings, or -1 if it isn't in the table.
+	 */
+	@Override
+	int findPair(CharSequence first, CharSequence second, boolean ignoreCase)
+	{
+		if(ignoreCase && !(CharSlice.lowerCasesByChar(first, 0, first.length()) &&
+				CharSlice.lowerCasesByChar(second, 0, second.length())))
+			return findPair(first.toString().toLowerCase(), second.toString().toLowerCase(), false);
+
+		if(seconds == null || first.length() > maxLength)
+			return -1;
+
+		int hash = pairHash(hash(first, ignoreCase), hash(second, ignoreCase));
+		for(int slot=mix(hash) & mask; ; slot=(slot + 1) & mask)
+		{
+			String k = keys[slot];
+			if(k == null)
+				return -1;
+			if(hashes[slot] == hash && matches(k, first, ignoreCase) && matches(seconds[slot], second, ignoreCase))
+				return slot;
+		}
+	}
+
+	/*
+	 * The number of keys.
+	 */
+	@Override
+	int size()
+	{
+		return size;
+	}
+
+	/*
+	 * The number of slots.
+	 */
+	@Override
+	int getCapacity()
+	{
+		return mask + 1;
+	}
+
+	/*
+	 * Is this a table of pairs.
+	 */
+	@Override
+	boolean hasPairs()
+	{
+		return seconds != null;
+	}
+
+	/*
+	 * Does this table have a value for each key.
+	 */
+	@Override
+	boolean hasValues()
+	{
+		return values != null;
+	}
+
+	/*
+	 * The length of the longest key, the longest first string of a pair.
+	 */
+	@Override
+	int getMaxLength()
+	{
+		return maxLength;
+	}
+
+	/*
+	 * The hash of the key in a slot.
+	 */
+	@Override
+	int getHash(int slot)
+	{
+		return hashes[slot];
+	}
+
+	/*
+	 * The key in a slot, the first string if it is a pair, or null if the
+	 * slot is empty.
+	 */
+	@Override
+	String getKey(int slot)
+	{
+		return keys[slot];
+	}
+
+	/*
+	 * The second string of the pair in a slot.
+	 */
+	@Override
+	String getSecond(int slot)
+	{
+		return seconds[slot];
+	}
+
+	/*
+	 * The value of the key in a slot.
+	 */
+	@Override
+	long getValue(int slot)
+	{
+		return values[slot];
+	}
+
+	/*
+	 * Does a key have the characters of a string, lower cased if case is
+	 * ignored.
+	 */
+	private static boolean matches(String k, CharSequence val, boolean ignoreCase)
+	{
+		int length = val.length();
+		if(k.length() != length)
+			return false;
+
+		for(int i=0; i<length; i++)
+			if(k.charAt(i) != charAt(val, i, ignoreCase))
+				return false;
+
+		return true;
+	}
+
+}
@@ -0,0 +1,36 @@
+package nlp_test;
+
+import java.io.IOException;
+
+/**
+ * This class compiles a named entity file, one entity per line, into a
+ * compiled gazetteer. The compiled gazetteer holds the finished
+ * Aho-Corasick automaton, so AhoCorasickNamedEntityMatcher.open() can map
+ * it straight into memory instead of building the automaton every time.
+ *
+ * Usage: GazetteerCompiler [entity file] [compiled file]
+ *
+ * @author Dave Turner
+ *
+ */
+public class GazetteerCompiler {
+
+	public static void main(String[] args) throws IOException
+	{
+		if(args.length != 2)
+		{
+			System.err.println("Usage: GazetteerCompiler [entity file] [compiled file]");
+			System.exit(1);
+		}
+
+		long start = System.nanoTime();
+		AhoCorasickNamedEntityMatcher matcher = new AhoCorasickNamedEntityMatcher(args[0]);
+		long built = System.nanoTime();
+		matcher.write(args[1]);
+		long written = System.nanoTime();
+
+		System.out.println(String.format("Compiled %d nodes in %.1f ms, wrote %s in %.1f ms",
+				matcher.getNodeCount(), (built - start) / 1e6, args[1], (written - built) / 1e6));
+	}
+
+}
@@ -0,0 +1,190 @@
+package nlp_test;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class writes sentences as JSON Lines, one JSON object per sentence
+ * on a line of its own. A sentence has the offsets of its start and end in
+ * the text and a list of its tokens. A token has the offsets of its start
+ * and end, its value, and only the annotations it has, for example
+ *
+ * {"start":0,"end":24,"tokens":[{"start":0,"end":5,"value":"Ernst",
+ *   "entities":[3],"paraStart":true,"lineStart":true},...]}
+ *
+ * all on one line. The annotations are paraStart, lineStart, sentBreak,
+ * abbreviation, ellipsis, initial and number. Named entities are given as
+ * their ids from the matcher that found them, see
+ * NamedEntityMatcher.getEntityId(), or as their strings when there is no
+ * matcher to ask.
+ *
+ * The JSON is written straight from the tokens, nothing is looked up by
+ * reflection.
+ *
+ * @author Dave Turner
+ *
+ */
+public class JsonLinesAnnotationWriter extends AnnotationWriterBase {
+
+	/*
+	 * The hex digits of escaped control characters.
+	 */
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	/*
+	 * The matcher that gives the ids of the entities, null to write the
+	 * entities themselves.
+	 */
+	private NamedEntityMatcher nerer;
+
+	/**
+	 * Create a writer that writes to a Writer.
+	 *
+	 * @param out The Writer.
+	 * @param nerer The matcher that found the named entities, or null to
+	 * write the entities as strings.
+	 */
+	public JsonLinesAnnotationWriter(Writer out, NamedEntityMatcher nerer)
+	{
+		super(out);
+		this.nerer = nerer;
+	}
+
+	/**
+	 * Create a writer that writes to a file in UTF-8.
+	 *
+	 * @param file The file to create or overwrite.
+	 * @param nerer The matcher that found the named entities, or null to
+	 * write the entities as strings.
+	 * @throws IOException If the file can't be created.
+	 */
+	public JsonLinesAnnotationWriter(String file, NamedEntityMatcher nerer) throws IOException
+	{
+		this(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), nerer);
+	}
+
+	/* (non-Javadoc)
+	 * @see nlp_test.AnnotationWriter#writeSentence(nlp_test.Sentence)
+	 */
+	public void writeSentence(Sentence sent) throws IOException
+	{
+		write("{\"start\":");
+		write(sent.getStart());
+		write(",\"end\":");
+		write(sent.getEnd());
+		write(",\"tokens\":[");
+
+		boolean first = true;
+		for(Token token: sent.getTokens())
+		{
+			if(!first)
+				write(',');
+			first = false;
+
+			writeToken(token);
+		}
+
+		write("]}\n");
+	}
+
+	/*
+	 * Write a token object.
+	 */
+	private void writeToken(Token token) throws IOException
+	{
+		write("{\"start\":");
+		write(token.getPosition());
+		write(",\"end\":");
+		write(token.getPosition() + token.getLength());
+		write(",\"value\":");
+		writeString(token.getValueView());
+
+		if(token instanceof TokenNE && ((TokenNE)token).getIsNamedEntity())
+		{
+			write(",\"entities\":[");
+			boolean first = true;
+			for(String entity: ((TokenNE)token).entities)
+			{
+				if(!first)
+					write(',');
+				first = false;
+
+				if(nerer != null)
+					write(nerer.getEntityId(entity));
+				else
+					writeString(entity);
+			}
+			write(']');
+		}
+
+		writeFlag("paraStart", token.getIsParaStart());
+		writeFlag("lineStart", token.getIsLineStart());
+		writeFlag("sentBreak", token.getIsSentBreak());
+		writeFlag("abbreviation", token.getIsAbbreviation());
+		writeFlag("ellipsis", token.getIsEllipsis());
+		writeFlag("initial", token.getIsInitial());
+		writeFlag("number", token.getIsNumber());
+		write('}');
+	}
+
+	/*
+	 * Write an annotation, if the token has it.
+	 */
+	private void writeFlag(String name, boolean value) throws IOException
+	{
+		if(!value)
+			return;
+
+		write(",\"");
+		write(name);
+		write("\":true");
+	}
+
+	/*
+	 * Write a JSON string. Quotes, backslashes and control characters are
+	 * escaped, everything else is written as it is.
+	 */
+	private void writeString(CharSequence s) throws IOException
+	{
+		write('"');
+
+		int length = s.length();
+		for(int i=0; i<length; i++)
+		{
+			char c = s.charAt(i);
+			switch(c)
+			{
+			case '"':
+				write("\\\"");
+				break;
+			case '\\':
+				write("\\\\");
+				break;
+			case '\n':
+				write("\\n");
+				break;
+			case '\r':
+				write("\\r");
+				break;
+			case '\t':
+				write("\\t");
+				break;
+			default:
+				if(c < ' ')
+				{
+					write("\\u00");
+					write(HEX[c >> 4]);
+					write(HEX[c & 0xf]);
+				}
+				else
+					write(c);
+			}
+		}
+
+		write('"');
+	}
+
+}
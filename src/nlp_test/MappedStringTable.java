@@ -0,0 +1,370 @@
+package nlp_test;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * This class is a StringTable read in place from part of a mapped file.
+ * Nothing is read until it is looked up, so a table of any size is ready
+ * as soon as it is mapped. write() writes the slots of another table as
+ * they are, so every key is in the same slot it was in there. A table is
+ * laid out as a header of 6 ints (number of keys, number of slots, length
+ * of the longest key, flags, number of characters and a reserved 0)
+ * followed by:
+ *
+ *   values   The long value of each slot, if the table has values.
+ *   slots    A record of ints for each slot: the hash of its key, where the
+ *            characters of the key start and its length, -1 if the slot is
+ *            empty, and for a table of pairs where the characters of the
+ *            second string start and its length.
+ *   chars    The characters of all the strings, UTF-16.
+ *
+ * All numbers are big endian. The values come first so they stay 8 byte
+ * aligned if the table is. A slot's record is read with one cache miss,
+ * and its characters with one more if its hash matches.
+ *
+ * Lookups only read the buffers, so a table can be shared by threads.
+ *
+ * @author Dave Turner
+ *
+ */
+final class MappedStringTable extends StringTable {
+
+	/*
+	 * The number of bytes in the header of a table.
+	 */
+	static final int HEADER_SIZE = 24;
+
+	/*
+	 * The flags of a table of pairs and of a table with values.
+	 */
+	private static final int PAIRS = 1;
+	private static final int VALUES = 2;
+
+	/*
+	 * The number of ints in the record of a slot of a table of strings and
+	 * of pairs, and where the hash, the key and the second string are in it.
+	 */
+	private static final int STRING_RECORD = 3;
+	private static final int PAIR_RECORD = 5;
+	private static final int HASH = 0;
+	private static final int KEY_START = 1;
+	private static final int KEY_LENGTH = 2;
+	private static final int SECOND_START = 3;
+	private static final int SECOND_LENGTH = 4;
+
+	/*
+	 * The parts of the table, see above. values is null if the table has
+	 * none.
+	 */
+	private final LongBuffer values;
+	private final IntBuffer slots;
+	private final CharBuffer chars;
+
+	/*
+	 * The number of ints in the record of a slot.
+	 */
+	private final int record;
+
+	/*
+	 * The number of keys, the number of slots less one and the length of the
+	 * longest key.
+	 */
+	private final int size;
+	private final int mask;
+	private final int maxLength;
+
+	/*
+	 * Read a table from the start of a buffer. Anything after the table is
+	 * ignored.
+	 */
+	MappedStringTable(ByteBuffer table) throws IOException
+	{
+		if(table.capacity() < HEADER_SIZE)
+			throw new IOException("String table is truncated.");
+
+		size = table.getInt(0);
+		int capacity = table.getInt(4);
+		maxLength = table.getInt(8);
+		int flags = table.getInt(12);
+		int charCount = table.getInt(16);
+		if(size < 0 || capacity != capacityFor(size) || charCount < 0 ||
+				table.capacity() < byteSize(capacity, (flags & PAIRS) != 0, (flags & VALUES) != 0, charCount))
+			throw new IOException("String table is truncated or corrupt.");
+		mask = capacity - 1;
+
+		int at = HEADER_SIZE;
+		if((flags & VALUES) != 0)
+		{
+			values = slice(table, at, 8 * capacity).asLongBuffer();
+			at += 8 * capacity;
+		}
+		else
+			values = null;
+		record = (flags & PAIRS) != 0 ? PAIR_RECORD : STRING_RECORD;
+		slots = slice(table, at, 4 * record * capacity).asIntBuffer();
+		at += 4 * record * capacity;
+		chars = slice(table, at, 2 * charCount).asCharBuffer();
+	}
+
+	/*
+	 * The number of bytes a table takes.
+	 */
+	private static long byteSize(int capacity, boolean pairs, boolean values, long charCount)
+	{
+		return HEADER_SIZE + (values ? 8L * capacity : 0) + 4L * (pairs ? PAIR_RECORD : STRING_RECORD) * capacity +
+				2 * charCount;
+	}
+
+	/*
+	 * The number of bytes write() writes for a table.
+	 */
+	static long byteSize(StringTable table)
+	{
+		return byteSize(table.getCapacity(), table.hasPairs(), table.hasValues(), charCount(table));
+	}
+
+	/*
+	 * The number of characters of all the strings of a table.
+	 */
+	private static long charCount(StringTable table)
+	{
+		long count = 0;
+		for(int slot=0; slot<table.getCapacity(); slot++)
+			if(table.getKey(slot) != null)
+				count += table.getKey(slot).length() + (table.hasPairs() ? table.getSecond(slot).length() : 0);
+
+		return count;
+	}
+
+	/*
+	 * Write the slots of a table, in the layout above.
+	 */
+	static void write(StringTable table, DataOutputStream out) throws IOException
+	{
+		int capacity = table.getCapacity();
+		long charCount = charCount(table);
+		if(byteSize(capacity, table.hasPairs(), table.hasValues(), charCount) > Integer.MAX_VALUE)
+			throw new IOException("String table is too large to write.");
+
+		out.writeInt(table.size());
+		out.writeInt(capacity);
+		out.writeInt(table.getMaxLength());
+		out.writeInt((table.hasPairs() ? PAIRS : 0) | (table.hasValues() ? VALUES : 0));
+		out.writeInt((int)charCount);
+		out.writeInt(0);
+
+		if(table.hasValues())
+			for(int slot=0; slot<capacity; slot++)
+				out.writeLong(table.getKey(slot) == null ? 0 : table.getValue(slot));
+
+		// The characters go in slot order, each key followed by its second
+		// string if there is one.
+		int start = 0;
+		for(int slot=0; slot<capacity; slot++)
+		{
+			String key = table.getKey(slot);
+			if(key == null)
+			{
+				out.writeInt(0);
+				out.writeInt(start);
+				out.writeInt(-1);
+				if(table.hasPairs())
+				{
+					out.writeInt(start);
+					out.writeInt(-1);
+				}
+				continue;
+			}
+
+			out.writeInt(table.getHash(slot));
+			out.writeInt(start);
+			out.writeInt(key.length());
+			start += key.length();
+			if(table.hasPairs())
+			{
+				out.writeInt(start);
+				out.writeInt(table.getSecond(slot).length());
+				start += table.getSecond(slot).length();
+			}
+		}
+
+		for(int slot=0; slot<capacity; slot++)
+			if(table.getKey(slot) != null)
+			{
+				out.writeChars(table.getKey(slot));
+				if(table.hasPairs())
+					out.writeChars(table.getSecond(slot));
+			}
+	}
+
+	/*
+	 * Get a view of part of a buffer.
+	 */
+	static ByteBuffer slice(ByteBuffer buffer, int offset, int length)
+	{
+		ByteBuffer view = buffer.duplicate();
+		view.position(offset);
+		view.limit(offset + length);
+
+		return view.slice();
+	}
+
+	@Override
+	int find(String key)
+	{
+		return find(key, false);
+	}
+
+	/*
+	 * Most lookups are of strings that aren't there and most of those end at
+	 * an empty slot straight away, so only the first slot is looked at here.
+	 */
+	@Override
+	int find(CharSequence key, boolean ignoreCase)
+	{
+		if(ignoreCase && !CharSlice.lowerCasesByChar(key, 0, key.length()))
+			return find(key.toString().toLowerCase(), false);
+
+		if(record == PAIR_RECORD || key.length() > maxLength)
+			return -1;
+
+		int hash = !ignoreCase && hasStringHash(key) ? key.hashCode() : hash(key, ignoreCase);
+		int slot = mix(hash) & mask;
+		if(slots.get(slot * record + KEY_LENGTH) < 0)
+			return -1;
+
+		return probe(key, hash, slot, ignoreCase);
+	}
+
+	/*
+	 * Find the slot of a string from the first slot it could be in.
+	 */
+	private int probe(CharSequence key, int hash, int slot, boolean ignoreCase)
+	{
+		for(; ; slot=(slot + 1) & mask)
+		{
+			int at = slot * record;
+			int length = slots.get(at + KEY_LENGTH);
+			if(length < 0)
+				return -1;
+			if(slots.get(at + HASH) == hash && matches(slots.get(at + KEY_START), length, key, ignoreCase))
+				return slot;
+		}
+	}
+
+	@Override
+	int findPair(CharSequence first, CharSequence second, boolean ignoreCase)
+	{
+		if(ignoreCase && !(CharSlice.lowerCasesByChar(first, 0, first.length()) &&
+				CharSlice.lowerCasesByChar(second, 0, second.length())))
+			return findPair(first.toString().toLowerCase(), second.toString().toLowerCase(), false);
+
+		if(record != PAIR_RECORD || first.length() > maxLength)
+			return -1;
+
+		int hash = pairHash(hash(first, ignoreCase), hash(second, ignoreCase));
+		for(int slot=mix(hash) & mask; ; slot=(slot + 1) & mask)
+		{
+			int at = slot * PAIR_RECORD;
+			int length = slots.get(at + KEY_LENGTH);
+			if(length < 0)
+				return -1;
+			if(slots.get(at + HASH) == hash && matches(slots.get(at + KEY_START), length, first, ignoreCase) &&
+					matches(slots.get(at + SECOND_START), slots.get(at + SECOND_LENGTH), second, ignoreCase))
+				return slot;
+		}
+	}
+
+	@Override
+	int size()
+	{
+		return size;
+	}
+
+	@Override
+	int getCapacity()
+	{
+		return mask + 1;
+	}
+
+	@Override
+	boolean hasPairs()
+	{
+		return record == PAIR_RECORD;
+	}
+
+	@Override
+	boolean hasValues()
+	{
+		return values != null;
+	}
+
+	@Override
+	int getMaxLength()
+	{
+		return maxLength;
+	}
+
+	@Override
+	int getHash(int slot)
+	{
+		return slots.get(slot * record + HASH);
+	}
+
+	/*
+	 * Each call decodes a new String from the mapped characters.
+	 */
+	@Override
+	String getKey(int slot)
+	{
+		int length = slots.get(slot * record + KEY_LENGTH);
+
+		return length < 0 ? null : getString(slots.get(slot * record + KEY_START), length);
+	}
+
+	@Override
+	String getSecond(int slot)
+	{
+		return getString(slots.get(slot * record + SECOND_START), slots.get(slot * record + SECOND_LENGTH));
+	}
+
+	@Override
+	long getValue(int slot)
+	{
+		return values.get(slot);
+	}
+
+	/*
+	 * A String of some of the mapped characters.
+	 */
+	private String getString(int start, int length)
+	{
+		char[] str = new char[length];
+		for(int i=0; i<length; i++)
+			str[i] = chars.get(start + i);
+
+		return new String(str);
+	}
+
+	/*
+	 * Do some of the mapped characters match a string, lower cased if case
+	 * is ignored.
+	 */
+	private boolean matches(int start, int length, CharSequence val, boolean ignoreCase)
+	{
+		if(val.length() != length)
+			return false;
+
+		for(int i=0; i<length; i++)
+			if(chars.get(start + i) != charAt(val, i, ignoreCase))
+				return false;
+
+		return true;
+	}
+
+}
@@ -0,0 +1,427 @@
+package nlp_test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * This class is the text of a file that is memory mapped instead of being
+ * read onto the heap. The characters are decoded lazily, a block of the file
+ * at a time, as they are asked for. The heap this uses doesn't grow with the
+ * size of the file, and the start of a huge file can be tokenized without
+ * waiting for the rest of it to be read.
+ *
+ * ISO-8859-1 files are looked at in place, each byte is a character. UTF-8
+ * and US-ASCII files are looked at in place too wherever a block of the file
+ * is pure ASCII. Other blocks are decoded into a small cache. Finding which
+ * block a character is in needs the number of characters in every block
+ * before it, so the blocks are counted from the start of the file as far
+ * as the characters that have been asked for. Going back to any character
+ * already counted is a binary search.
+ *
+ * Malformed UTF-8 is replaced with U+FFFD the way new String(bytes, charset)
+ * does, except that a malformed sequence which straddles two blocks may be
+ * replaced differently.
+ *
+ * Indexes are longs so that files of over 2G characters work. The
+ * CharSequence methods, and so toString(), only work for smaller files. Use
+ * charAt(long), substring() and longLength() for anything larger.
+ *
+ * This class is not thread safe, it caches decoded blocks.
+ *
+ * @author Dave Turner
+ *
+ */
+public class MappedText implements CharSequence, Closeable {
+
+	/**
+	 * The number of bytes in each block of the file that is decoded at once.
+	 */
+	public static final int BLOCK_SIZE = 64 * 1024;
+
+	/*
+	 * The file is mapped in segments of 1G bytes. Each segment maps one
+	 * extra block past its end so no block ever straddles two segments.
+	 */
+	private static final int SEGMENT_SHIFT = 30;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+	/*
+	 * The most number of bytes a UTF-8 sequence can have after its first.
+	 */
+	private static final int MAX_CONTINUATION = 3;
+
+	/*
+	 * The number of decoded blocks we keep.
+	 */
+	private static final int CACHED_BLOCKS = 4;
+
+	/*
+	 * The mapped file.
+	 */
+	private FileChannel channel;
+	private MappedByteBuffer[] segments;
+	private long byteLength;
+
+	/*
+	 * Is each byte a character.
+	 */
+	private boolean latin1;
+
+	/*
+	 * Decoder for the blocks that aren't ASCII. Malformed input is replaced.
+	 */
+	private CharsetDecoder decoder;
+
+	/*
+	 * The blocks we have counted so far. Block b is the bytes from
+	 * blockBytes[b] to blockBytes[b+1] and has the characters from
+	 * blockChars[b] to blockChars[b+1]. blockAscii[b] is true if it is pure
+	 * ASCII.
+	 */
+	private long[] blockBytes = new long[16];
+	private long[] blockChars = new long[16];
+	private boolean[] blockAscii = new boolean[16];
+	private int countedBlocks = 0;
+
+	/*
+	 * The decoded blocks, used round robin.
+	 */
+	private int[] cachedBlock = new int[CACHED_BLOCKS];
+	private char[][] cachedChars = new char[CACHED_BLOCKS][];
+	private int nextCacheSlot = 0;
+
+	/*
+	 * The block the last character asked for was in.
+	 */
+	private int lastBlock = -1;
+
+	/**
+	 * Map a file.
+	 *
+	 * @param path The file.
+	 * @param charset The encoding of the file. This must be UTF-8, US-ASCII
+	 * or ISO-8859-1.
+	 * @throws IOException If the file can't be mapped.
+	 */
+	public MappedText(String path, Charset charset) throws IOException
+	{
+		if(charset.equals(StandardCharsets.ISO_8859_1))
+			latin1 = true;
+		else if(!charset.equals(StandardCharsets.UTF_8) && !charset.equals(StandardCharsets.US_ASCII))
+			throw new IllegalArgumentException("Only UTF-8, US-ASCII and ISO-8859-1 files can be mapped: " + charset);
+
+		// US-ASCII is a subset of UTF-8, so both are decoded as UTF-8
+		decoder = StandardCharsets.UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+		channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+		try
+		{
+			byteLength = channel.size();
+			segments = new MappedByteBuffer[(int)((byteLength + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+			for(int s=0; s<segments.length; s++)
+			{
+				long start = (long)s << SEGMENT_SHIFT;
+				long size = Math.min(byteLength - start, SEGMENT_MASK + 1 + BLOCK_SIZE);
+				segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+			}
+		}
+		catch(IOException e)
+		{
+			channel.close();
+			throw e;
+		}
+
+		Arrays.fill(cachedBlock, -1);
+	}
+
+	/**
+	 * Map a UTF-8 file.
+	 *
+	 * @param path The file.
+	 * @throws IOException If the file can't be mapped.
+	 */
+	public MappedText(String path) throws IOException
+	{
+		this(path, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Get the number of characters in the text. For a UTF-8 file this has to
+	 * count every block of the file the first time.
+	 *
+	 * @return The number of characters.
+	 */
+	public long longLength()
+	{
+		if(latin1)
+			return byteLength;
+
+		while(countBlock())
+			;
+
+		return blockChars[countedBlocks];
+	}
+
+	/**
+	 * Get the character at an index.
+	 *
+	 * @param index The index.
+	 * @return The character.
+	 * @throws IndexOutOfBoundsException If the text isn't that long.
+	 */
+	public char charAt(long index)
+	{
+		int c = peek(index);
+		if(c < 0)
+			throw new IndexOutOfBoundsException("Index " + index + " is past the end of the text.");
+
+		return (char)c;
+	}
+
+	/*
+	 * Get the character at an index, or -1 if the text isn't that long.
+	 * This never counts further through the file than it has to.
+	 */
+	int peek(long index)
+	{
+		if(index < 0)
+			throw new IndexOutOfBoundsException("Negative index: " + index);
+
+		if(latin1)
+			return index < byteLength ? byteAt(index) & 0xff : -1;
+
+		int b = findBlock(index);
+		if(b < 0)
+			return -1;
+
+		if(blockAscii[b])
+			return byteAt(blockBytes[b] + (index - blockChars[b]));
+
+		return decodedBlock(b)[(int)(index - blockChars[b])];
+	}
+
+	/**
+	 * Get a copy of some of the text.
+	 *
+	 * @param start The index of the first character.
+	 * @param end The index after the last character.
+	 * @return The characters from start to end.
+	 */
+	public String substring(long start, long end)
+	{
+		if(end < start || end - start > Integer.MAX_VALUE)
+			throw new IndexOutOfBoundsException("Bad range: " + start + " to " + end);
+
+		char[] chars = new char[(int)(end - start)];
+		for(int i=0; i<chars.length; i++)
+			chars[i] = charAt(start + i);
+
+		return new String(chars);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.CharSequence#length()
+	 */
+	public int length()
+	{
+		long length = longLength();
+		if(length > Integer.MAX_VALUE)
+			throw new IllegalStateException("The text has too many characters for a CharSequence: " + length);
+
+		return (int)length;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.CharSequence#charAt(int)
+	 */
+	public char charAt(int index)
+	{
+		return charAt((long)index);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.CharSequence#subSequence(int, int)
+	 */
+	public CharSequence subSequence(int start, int end)
+	{
+		return substring(start, end);
+	}
+
+	@Override
+	public String toString()
+	{
+		return substring(0, length());
+	}
+
+	/**
+	 * Close the file. The mapping stays valid until it is garbage
+	 * collected.
+	 */
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+
+	/*
+	 * Get the byte at an offset of the file.
+	 */
+	private byte byteAt(long offset)
+	{
+		return segments[(int)(offset >>> SEGMENT_SHIFT)].get((int)(offset & SEGMENT_MASK));
+	}
+
+	/*
+	 * Find the block that has the character at an index, counting more
+	 * blocks if we need to. Returns -1 if the text isn't that long.
+	 */
+	private int findBlock(long index)
+	{
+		if(lastBlock >= 0 && index >= blockChars[lastBlock] && index < blockChars[lastBlock+1])
+			return lastBlock;
+
+		while(index >= blockChars[countedBlocks])
+			if(!countBlock())
+				return -1;
+
+		// The last block in which the first character is at or before index
+		int lo = 0;
+		int hi = countedBlocks - 1;
+		while(lo < hi)
+		{
+			int mid = (lo + hi + 1) >>> 1;
+			if(blockChars[mid] <= index)
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+
+		lastBlock = lo;
+		return lo;
+	}
+
+	/*
+	 * Count the characters of the next block. Returns false if there are no
+	 * more blocks.
+	 */
+	private boolean countBlock()
+	{
+		int b = countedBlocks;
+		long start = blockBytes[b];
+		if(start >= byteLength)
+			return false;
+
+		// Blocks end at a character boundary, where there is a byte that
+		// isn't the continuation of a UTF-8 sequence. A run of more
+		// continuation bytes than a sequence can have is malformed so we
+		// don't look past them.
+		long end = Math.min(byteLength, (long)(b + 1) * BLOCK_SIZE);
+		long limit = Math.min(byteLength, end + MAX_CONTINUATION);
+		while(end < limit && (byteAt(end) & 0xc0) == 0x80)
+			end++;
+
+		if(b + 2 > blockBytes.length)
+		{
+			blockBytes = Arrays.copyOf(blockBytes, blockBytes.length * 2);
+			blockChars = Arrays.copyOf(blockChars, blockChars.length * 2);
+			blockAscii = Arrays.copyOf(blockAscii, blockAscii.length * 2);
+		}
+
+		blockBytes[b+1] = end;
+		blockAscii[b] = isAscii(start, end);
+		countedBlocks++;
+
+		if(blockAscii[b])
+			blockChars[b+1] = blockChars[b] + (end - start);
+		else
+		{
+			// Only decoding tells us how many characters there are
+			blockChars[b+1] = blockChars[b] + decode(b, cacheSlot(b));
+		}
+
+		return true;
+	}
+
+	/*
+	 * Check whether a range of bytes is all ASCII, 8 bytes at a time.
+	 */
+	private boolean isAscii(long start, long end)
+	{
+		ByteBuffer segment = segments[(int)(start >>> SEGMENT_SHIFT)];
+		int i = (int)(start & SEGMENT_MASK);
+		int e = i + (int)(end - start);
+
+		for(; i + 8 <= e; i += 8)
+			if((segment.getLong(i) & 0x8080808080808080L) != 0)
+				return false;
+
+		for(; i < e; i++)
+			if(segment.get(i) < 0)
+				return false;
+
+		return true;
+	}
+
+	/*
+	 * Get the decoded characters of a block that isn't ASCII.
+	 */
+	private char[] decodedBlock(int b)
+	{
+		for(int slot=0; slot<CACHED_BLOCKS; slot++)
+			if(cachedBlock[slot] == b)
+				return cachedChars[slot];
+
+		int slot = cacheSlot(b);
+		decode(b, slot);
+		return cachedChars[slot];
+	}
+
+	/*
+	 * Take the next cache slot for a block.
+	 */
+	private int cacheSlot(int b)
+	{
+		int slot = nextCacheSlot;
+		nextCacheSlot = (nextCacheSlot + 1) % CACHED_BLOCKS;
+		cachedBlock[slot] = b;
+
+		return slot;
+	}
+
+	/*
+	 * Decode a block into a cache slot. Returns the number of characters.
+	 * A UTF-8 block never has more characters than bytes.
+	 */
+	private int decode(int b, int slot)
+	{
+		long start = blockBytes[b];
+		int size = (int)(blockBytes[b+1] - start);
+
+		ByteBuffer in = segments[(int)(start >>> SEGMENT_SHIFT)].duplicate();
+		in.position((int)(start & SEGMENT_MASK));
+		in.limit(in.position() + size);
+
+		if(cachedChars[slot] == null || cachedChars[slot].length < size)
+			cachedChars[slot] = new char[BLOCK_SIZE + MAX_CONTINUATION];
+
+		CharBuffer out = CharBuffer.wrap(cachedChars[slot]);
+		decoder.reset();
+		decoder.decode(in, out, true);
+		decoder.flush(out);
+
+		return out.position();
+	}
+
+}
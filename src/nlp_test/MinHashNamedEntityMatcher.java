@@ -0,0 +1,850 @@
+package nlp_test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class implements fuzzy named entity matching. Entities and spans of
+ * tokens are compared by the Jaccard similarity of their three character shingles,
+ * so different whitespace, punctuation and small spelling differences still
+ * match. A span matches an entity when the similarity reaches a threshold.
+ *
+ * Comparing every span to every entity would be far too slow, so entities are
+ * indexed by their MinHash signatures split into bands (locality sensitive
+ * hashing). Only entities that share a band with a span are candidates, and
+ * only candidates get their exact similarity computed. More bands find more
+ * of the matches near the threshold, more rows per band means fewer
+ * candidates to check.
+ *
+ * Even the signatures of spans cost too much to work out for every span, so
+ * spans are filtered first. Most shingles of ordinary text are in no entity
+ * at all, and a span can only be similar enough to an entity when few of
+ * its shingles are. Only spans that pass get a signature.
+ *
+ * Before shingling, text is lower cased and every run of characters that
+ * are not letters or digits becomes a single space.
+ *
+ * @author Dave Turner
+ *
+ */
+public class MinHashNamedEntityMatcher extends NamedEntityMatcher {
+
+	/*
+	 * Defaults for the similarity threshold and the shape of the index.
+	 */
+	public static final double DEFAULT_THRESHOLD = 0.7;
+	public static final int DEFAULT_BANDS = 16;
+	public static final int DEFAULT_ROWS = 4;
+
+	/*
+	 * The smallest similarity a span must have to an entity to match it.
+	 */
+	protected final double threshold;
+
+	/*
+	 * The number of bands and the number of hashes in each band.
+	 */
+	protected final int bands;
+	protected final int rows;
+
+	/*
+	 * The multipliers and offsets of our hash functions, one per row of
+	 * every band.
+	 */
+	protected final int[] hashMultipliers;
+	protected final int[] hashOffsets;
+
+	/*
+	 * For each entity, its distinct shingles sorted. Null for entities with
+	 * no letters or digits, these never match.
+	 */
+	protected final int[][] entityShingles;
+
+	/*
+	 * The number of distinct shingles of each entity, kept apart so they
+	 * can be checked without touching the shingles themselves.
+	 */
+	protected final int[] entityShingleCounts;
+
+	/*
+	 * The band index. For every band of every entity, the top bits of the
+	 * band's hash with the entity in the low bits, sorted. Keeping only part
+	 * of the hash lets some other entities through as candidates, but every
+	 * candidate is checked anyway.
+	 */
+	protected final long[] bandIndex;
+
+	/*
+	 * The number of low bits of a band index entry that hold the entity.
+	 */
+	private static final int ENTITY_BITS = 31;
+
+	/*
+	 * For each value of the top bits of a band key, the first entry of the
+	 * band index with a key that starts with those bits.
+	 */
+	protected final int[] bandDirectory;
+	protected final int directoryBits;
+
+	/*
+	 * The largest number of tokens a span can have.
+	 */
+	protected final int maxSpanTokens;
+
+	/*
+	 * A filter of the shingles of all the entities, a bit for each value of
+	 * the low bits of a shingle. A shingle whose bit is clear is in no
+	 * entity.
+	 */
+	protected final long[] shingleFilter;
+	protected final int filterMask;
+
+	/*
+	 * The largest number of distinct shingles of any entity.
+	 */
+	protected final int maxEntityShingles;
+
+	/**
+	 * Construct a MinHash named entity matcher from file which lists known
+	 * named entities separated by new lines.
+	 *
+	 * @param filePath The path of the file to load.
+	 * @throws IOException
+	 */
+	public MinHashNamedEntityMatcher(String filePath) throws IOException {
+		this(filePath, DEFAULT_THRESHOLD, DEFAULT_BANDS, DEFAULT_ROWS);
+	}
+
+	/**
+	 * Construct a MinHash named entity matcher from file which lists known
+	 * named entities separated by new lines.
+	 *
+	 * @param filePath The path of the file to load.
+	 * @param threshold The smallest similarity that is a match, from 0 to 1.
+	 * @param bands The number of bands in the index.
+	 * @param rows The number of hashes in each band.
+	 * @throws IOException
+	 */
+	public MinHashNamedEntityMatcher(String filePath, double threshold, int bands, int rows) throws IOException {
+		this(readEntities(filePath), threshold, bands, rows);
+	}
+
+	/**
+	 * Construct a MinHash named entity matcher from a list of known named
+	 * entities.
+	 *
+	 * @param entities
+	 */
+	public MinHashNamedEntityMatcher(List<String> entities) {
+		this(entities, DEFAULT_THRESHOLD, DEFAULT_BANDS, DEFAULT_ROWS);
+	}
+
+	/**
+	 * Construct a MinHash named entity matcher from a list of known named
+	 * entities.
+	 *
+	 * @param entities
+	 * @param threshold The smallest similarity that is a match, from 0 to 1.
+	 * @param bands The number of bands in the index.
+	 * @param rows The number of hashes in each band.
+	 */
+	public MinHashNamedEntityMatcher(List<String> entities, double threshold, int bands, int rows) {
+		super(entities);
+
+		if(threshold <= 0 || threshold > 1)
+			throw new IllegalArgumentException("Threshold must be greater than 0 and at most 1.");
+		if(bands < 1 || rows < 1)
+			throw new IllegalArgumentException("There must be at least one band of at least one row.");
+
+		this.threshold = threshold;
+		this.bands = bands;
+		this.rows = rows;
+
+		// A fixed seed so the index is the same every time
+		Random random = new Random(0x5eed);
+		hashMultipliers = new int[bands * rows];
+		hashOffsets = new int[bands * rows];
+		for(int i=0; i<hashMultipliers.length; i++)
+		{
+			hashMultipliers[i] = random.nextInt() | 1;
+			hashOffsets[i] = random.nextInt();
+		}
+
+		// Compute the signature and shingles of each entity and index the
+		// bands of the signatures.
+		int numEntities = this.entities.size();
+		entityShingles = new int[numEntities][];
+		entityShingleCounts = new int[numEntities];
+
+		long[] index = new long[numEntities * bands];
+		int size = 0;
+
+		StringBuilder normalized = new StringBuilder();
+		int[] sig = new int[bands * rows];
+		int maxTokens = 1;
+
+		int totalShingles = 0;
+		int maxShingles = 0;
+
+		for(int e=0; e<numEntities; e++)
+		{
+			String entity = this.entities.get(e);
+
+			normalized.setLength(0);
+			if(!normalize(entity, 0, entity.length(), normalized))
+				continue;
+
+			entityShingles[e] = shingles(normalized);
+			entityShingleCounts[e] = entityShingles[e].length;
+			totalShingles += entityShingles[e].length;
+			maxShingles = Math.max(maxShingles, entityShingles[e].length);
+
+			Arrays.fill(sig, Integer.MAX_VALUE);
+			for(int shingle: entityShingles[e])
+				addToSignature(sig, shingle);
+
+			// A span may need a token for every word of the entity and a
+			// punctuation token on top.
+			int words = 1;
+			for(int i=0; i<normalized.length(); i++)
+				if(normalized.charAt(i) == ' ')
+					words++;
+			maxTokens = Math.max(maxTokens, words + 1);
+
+			for(int b=0; b<bands; b++)
+				index[size++] = (bandKey(sig, b) << ENTITY_BITS) | e;
+		}
+
+		maxSpanTokens = maxTokens;
+		maxEntityShingles = maxShingles;
+
+		bandIndex = Arrays.copyOf(index, size);
+		Arrays.sort(bandIndex);
+
+		// About eight bits per shingle keeps shingles that are in no entity
+		// from getting through the filter much.
+		int filterBits = Integer.highestOneBit(Math.min(Math.max(totalShingles, 128), 1 << 23) * 16 - 1);
+		shingleFilter = new long[filterBits / 64];
+		filterMask = filterBits - 1;
+		for(int[] shingles: entityShingles)
+			if(shingles != null)
+				for(int shingle: shingles)
+					shingleFilter[(shingle & filterMask) >>> 6] |= 1L << shingle;
+
+		// Index the sorted entries by the top bits of their keys so a lookup
+		// only has to look at a few entries.
+		directoryBits = Math.max(1, Math.min(24, 64 - Long.numberOfLeadingZeros(size)));
+		bandDirectory = new int[(1 << directoryBits) + 1];
+		for(long entry: bandIndex)
+			bandDirectory[directorySlot(entry >>> ENTITY_BITS) + 1]++;
+		for(int d=0; d<bandDirectory.length-1; d++)
+			bandDirectory[d+1] += bandDirectory[d];
+	}
+
+	/**
+	 * Get the similarity threshold.
+	 *
+	 * @return The threshold.
+	 */
+	public double getThreshold()
+	{
+		return threshold;
+	}
+
+	/**
+	 * Get the number of bands in the index.
+	 *
+	 * @return The number of bands.
+	 */
+	public int getBands()
+	{
+		return bands;
+	}
+
+	/**
+	 * Get the number of hashes in each band.
+	 *
+	 * @return The number of rows.
+	 */
+	public int getRows()
+	{
+		return rows;
+	}
+
+	/*
+	 * Get the directory slot of a band key.
+	 */
+	private int directorySlot(long key)
+	{
+		return (int)(key >>> (32 - directoryBits));
+	}
+
+	/*
+	 * Normalize some text, adding it to the end of a builder. Letters and
+	 * digits are lower cased and every run of other characters becomes a
+	 * single space. The text is kept apart from anything already in the
+	 * builder. Returns true if any letters or digits were added.
+	 */
+	private static boolean normalize(CharSequence text, int start, int length, StringBuilder out)
+	{
+		boolean added = false;
+		boolean pendingSpace = out.length() > 0;
+
+		for(int i=start; i<start+length; i++)
+		{
+			char c = text.charAt(i);
+			if(!Character.isLetterOrDigit(c))
+			{
+				pendingSpace = out.length() > 0;
+				continue;
+			}
+
+			if(pendingSpace)
+				out.append(' ');
+			pendingSpace = false;
+
+			out.append(Character.toLowerCase(c));
+			added = true;
+		}
+
+		return added;
+	}
+
+	/*
+	 * Might a shingle be one of the shingles of an entity.
+	 */
+	private boolean inFilter(int shingle)
+	{
+		return (shingleFilter[(shingle & filterMask) >>> 6] & (1L << shingle)) != 0;
+	}
+
+	/*
+	 * Hash a shingle.
+	 */
+	private static int shingle(char a, char b, char c)
+	{
+		return (int)mix((a * 31 + b) * 31 + c);
+	}
+
+	/*
+	 * Get the distinct shingles of some normalized text with a space added
+	 * to each end, sorted.
+	 */
+	private static int[] shingles(CharSequence normalized)
+	{
+		int length = normalized.length();
+		int[] shingles = new int[length];
+		for(int i=0; i<length; i++)
+		{
+			char a = i == 0 ? ' ' : normalized.charAt(i-1);
+			char c = i == length-1 ? ' ' : normalized.charAt(i+1);
+			shingles[i] = shingle(a, normalized.charAt(i), c);
+		}
+
+		// Sort and drop repeats
+		Arrays.sort(shingles);
+		int n = 0;
+		for(int i=0; i<length; i++)
+			if(n == 0 || shingles[i] != shingles[n-1])
+				shingles[n++] = shingles[i];
+
+		return Arrays.copyOf(shingles, n);
+	}
+
+	/*
+	 * Lower the hashes of a signature to those of a shingle where smaller.
+	 * Shingles are already well mixed, so each hash only has to shuffle
+	 * them differently. Multiplying by an odd number and adding does that,
+	 * and is cheap enough to do for every hash of every character.
+	 */
+	private void addToSignature(int[] sig, int shingle)
+	{
+		for(int i=0; i<sig.length; i++)
+			sig[i] = Math.min(sig[i], hashMultipliers[i] * shingle + hashOffsets[i]);
+	}
+
+	/*
+	 * Hash one band of a signature, along with the band number so the same
+	 * values in different bands don't collide. Only as many bits are kept
+	 * as fit above the entity in the band index.
+	 */
+	private long bandKey(int[] values, int band)
+	{
+		long h = band;
+		for(int r=band*rows; r<(band+1)*rows; r++)
+			h = h * 0x9e3779b97f4a7c15L + values[r];
+
+		return mix(h) >>> (ENTITY_BITS + 1);
+	}
+
+	/*
+	 * Scramble the bits of a hash.
+	 */
+	private static long mix(long h)
+	{
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+
+		return h;
+	}
+
+	/*
+	 * Compute the Jaccard similarity of two sorted sets of shingles.
+	 */
+	private static double jaccard(int[] a, int[] b)
+	{
+		int i = 0;
+		int j = 0;
+		int common = 0;
+		while(i < a.length && j < b.length)
+		{
+			if(a[i] < b[j])
+				i++;
+			else if(a[i] > b[j])
+				j++;
+			else
+			{
+				common++;
+				i++;
+				j++;
+			}
+		}
+
+		return (double)common / (a.length + b.length - common);
+	}
+
+	/*
+	 * A match of an entity to a span of tokens.
+	 */
+	private static class Match {
+		int entity;
+		int start;
+		int end;
+		double similarity;
+
+		Match(int entity, int start, int end, double similarity)
+		{
+			this.entity = entity;
+			this.start = start;
+			this.end = end;
+			this.similarity = similarity;
+		}
+	}
+
+	@Override
+	public List<TokenNE> annotate(List<Token> tokens, String origText) {
+
+		// Create a new list of TokenNE so we can annotate named entities
+		List<TokenNE> mod_tokens = new ArrayList<TokenNE>(tokens.size());
+
+		// Copy the existing tokens to their new objects
+		for(Token t: tokens)
+			mod_tokens.add(new TokenNE(t));
+
+		List<Match> matches = new ArrayList<Match>();
+		TokenSignatures tokenSigs = new TokenSignatures(tokens);
+		SpanShingles span = new SpanShingles();
+		int[] sig = new int[bands * rows];
+		int[] checked = new int[16];
+
+		// Spans start and end on tokens with letters or digits
+		for(int start=0; start<tokens.size(); start++)
+		{
+			if(!tokenSigs.hasWord(start))
+				continue;
+
+			span.clear();
+			span.add(tokenSigs, start);
+			char last = tokenSigs.lastChar(start);
+
+			// The signature is only worked out for spans that get through
+			// the filter, up to the last token added to it.
+			int sigEnd = -1;
+			char sigLast = last;
+
+			for(int end=start; end<tokens.size() && end-start < maxSpanTokens; end++)
+			{
+				if(end > start)
+				{
+					if(!tokenSigs.hasWord(end))
+						continue;
+
+					// Add the token and the shingle that joins it to the span
+					span.add(shingle(last, ' ', tokenSigs.firstChar(end)));
+					span.add(tokenSigs, end);
+					last = tokenSigs.lastChar(end);
+				}
+
+				// Shingles only ever get added to a span, so once it has too
+				// many that are in no entity, so does every longer span.
+				if(span.cannotMatch())
+					break;
+				if(!span.mayMatch())
+					continue;
+
+				for(int t=sigEnd<0 ? start : sigEnd+1; t<=end; t++)
+				{
+					if(!tokenSigs.hasWord(t))
+						continue;
+
+					int[] tokenSig = tokenSigs.signature(t);
+					if(t == start)
+						System.arraycopy(tokenSig, 0, sig, 0, sig.length);
+					else
+					{
+						for(int i=0; i<sig.length; i++)
+							sig[i] = Math.min(sig[i], tokenSig[i]);
+
+						addToSignature(sig, shingle(sigLast, ' ', tokenSigs.firstChar(t)));
+					}
+					sigLast = tokenSigs.lastChar(t);
+				}
+				sigEnd = end;
+
+				// Look up each band of the span and check the candidates
+				int numChecked = 0;
+				int[] spanShingles = null;
+				for(int b=0; b<bands; b++)
+				{
+					long key = bandKey(sig, b);
+					int slot = directorySlot(key);
+					for(int i=bandDirectory[slot]; i<bandDirectory[slot+1]; i++)
+					{
+						long entryKey = bandIndex[i] >>> ENTITY_BITS;
+						if(entryKey < key)
+							continue;
+						if(entryKey > key)
+							break;
+
+						int e = (int)(bandIndex[i] & ((1L << ENTITY_BITS) - 1));
+
+						// The similarity can be no more than the smaller number of
+						// shingles over the larger.
+						int entityCount = entityShingleCounts[e];
+						if(span.size < threshold * entityCount || entityCount < threshold * span.size)
+							continue;
+
+						// Don't check an entity twice
+						boolean seen = false;
+						for(int c=0; c<numChecked && !seen; c++)
+							seen = checked[c] == e;
+						if(seen)
+							continue;
+
+						if(numChecked == checked.length)
+							checked = Arrays.copyOf(checked, numChecked * 2);
+						checked[numChecked++] = e;
+
+						if(spanShingles == null)
+							spanShingles = span.sorted();
+
+						double similarity = jaccard(spanShingles, entityShingles[e]);
+						if(similarity >= threshold)
+							matches.add(new Match(e, start, end, similarity));
+					}
+				}
+			}
+		}
+
+		// The same entity can match spans that overlap, like a span and the
+		// same span with one more word. Keep the most similar first, then
+		// the earliest and then the shortest.
+		Collections.sort(matches, new Comparator<Match>() {
+			public int compare(Match a, Match b) {
+				if(a.entity != b.entity)
+					return Integer.compare(a.entity, b.entity);
+				if(a.similarity != b.similarity)
+					return Double.compare(b.similarity, a.similarity);
+				if(a.start != b.start)
+					return Integer.compare(a.start, b.start);
+				return Integer.compare(a.end, b.end);
+			}
+		});
+
+		List<Match> kept = new ArrayList<Match>();
+		int groupStart = 0;
+		for(Match m: matches)
+		{
+			if(!kept.isEmpty() && kept.get(kept.size()-1).entity != m.entity)
+				groupStart = kept.size();
+
+			boolean overlaps = false;
+			for(int i=groupStart; i<kept.size() && !overlaps; i++)
+				overlaps = m.start <= kept.get(i).end && kept.get(i).start <= m.end;
+
+			if(!overlaps)
+				kept.add(m);
+		}
+
+		// Add the entities in the same order as the other matchers, by entity
+		// and then by position.
+		Collections.sort(kept, new Comparator<Match>() {
+			public int compare(Match a, Match b) {
+				if(a.entity != b.entity)
+					return Integer.compare(a.entity, b.entity);
+				return Integer.compare(a.start, b.start);
+			}
+		});
+
+		for(Match m: kept)
+		{
+			long matchStart = tokens.get(m.start).getPosition();
+			for(int i=m.start; i<=m.end; i++)
+				mod_tokens.get(i).addEntity(entities.get(m.entity), matchStart);
+		}
+
+		return mod_tokens;
+	}
+
+	/*
+	 * The distinct shingles of a span as it grows, and how many of them get
+	 * through the shingle filter. Repeats are found with a small hash set
+	 * whose slots are marked with the span they belong to, so starting a
+	 * new span doesn't have to empty it.
+	 */
+	private class SpanShingles {
+
+		int[] shingles = new int[64];
+		int size;
+		int known;
+
+		int[] slots = new int[128];
+		int[] slotSpans = new int[128];
+		int spanNumber = 1;
+
+		void clear()
+		{
+			size = 0;
+			known = 0;
+			spanNumber++;
+		}
+
+		/*
+		 * Add a shingle if the span doesn't have it already.
+		 */
+		void add(int shingle)
+		{
+			int mask = slots.length - 1;
+			int slot = shingle & mask;
+			for(; slotSpans[slot] == spanNumber; slot=(slot + 1) & mask)
+				if(slots[slot] == shingle)
+					return;
+
+			slots[slot] = shingle;
+			slotSpans[slot] = spanNumber;
+
+			if(size == shingles.length)
+				shingles = Arrays.copyOf(shingles, size * 2);
+			shingles[size++] = shingle;
+
+			if(inFilter(shingle))
+				known++;
+
+			// Keep the set at most half full
+			if(size * 2 > slots.length)
+				grow();
+		}
+
+		/*
+		 * Double the hash set and put the shingles back in.
+		 */
+		private void grow()
+		{
+			slots = new int[slots.length * 2];
+			slotSpans = new int[slots.length];
+			int mask = slots.length - 1;
+			for(int i=0; i<size; i++)
+			{
+				int slot = shingles[i] & mask;
+				while(slotSpans[slot] == spanNumber)
+					slot = (slot + 1) & mask;
+				slots[slot] = shingles[i];
+				slotSpans[slot] = spanNumber;
+			}
+		}
+
+		/*
+		 * Add the shingles of a token.
+		 */
+		void add(TokenSignatures tokenSigs, int index)
+		{
+			int[] tokenShingles = tokenSigs.shingles(index);
+			int count = tokenSigs.shingleCount(index);
+			for(int i=0; i<count; i++)
+				add(tokenShingles[i]);
+		}
+
+		/*
+		 * Could the span be similar enough to any entity. A shingle that is
+		 * in no entity is in the union of the span with every entity but in
+		 * none of the intersections, and an intersection is no bigger than
+		 * the shingles that got through the filter or the biggest entity.
+		 */
+		boolean mayMatch()
+		{
+			int common = Math.min(known, maxEntityShingles);
+			return (double)common / (common + size - known) >= threshold;
+		}
+
+		/*
+		 * Is the span too far from every entity for it or any longer span
+		 * to match. It is when even the biggest entity wouldn't be similar
+		 * enough, with all its shingles in the span.
+		 */
+		boolean cannotMatch()
+		{
+			return (double)maxEntityShingles / (maxEntityShingles + size - known) < threshold;
+		}
+
+		/*
+		 * The shingles sorted, as jaccard() needs them.
+		 */
+		int[] sorted()
+		{
+			int[] sorted = Arrays.copyOf(shingles, size);
+			Arrays.sort(sorted);
+
+			return sorted;
+		}
+	}
+
+	/*
+	 * The shingles and signatures of the tokens a span can be made of. With
+	 * shingles of three characters, the shingles of a span are the shingles
+	 * of each of its tokens on their own with a space at each end, plus one
+	 * shingle across each gap between tokens. So a token's shingles and
+	 * signature are worked out once and shared by every span it is part of.
+	 * Signatures are only worked out for tokens of spans that get through
+	 * the filter. Only the last few tokens are kept, spans never reach back
+	 * further than that.
+	 */
+	private class TokenSignatures {
+
+		List<Token> tokens;
+
+		/*
+		 * The highest token index we have worked out so far.
+		 */
+		int last = -1;
+
+		/*
+		 * For each token kept, its distinct shingles, whether it has any
+		 * letters or digits, the first and last of them and its signature
+		 * if it has been worked out, by token index modulo the number kept.
+		 */
+		int[][] shingles;
+		int[] shingleCounts;
+		boolean[] hasWord;
+		char[] firstChars;
+		char[] lastChars;
+		int[][] signatures;
+		boolean[] hasSignature;
+
+		StringBuilder normalized = new StringBuilder();
+
+		TokenSignatures(List<Token> tokens)
+		{
+			this.tokens = tokens;
+
+			shingles = new int[maxSpanTokens][16];
+			shingleCounts = new int[maxSpanTokens];
+			hasWord = new boolean[maxSpanTokens];
+			firstChars = new char[maxSpanTokens];
+			lastChars = new char[maxSpanTokens];
+			signatures = new int[maxSpanTokens][bands * rows];
+			hasSignature = new boolean[maxSpanTokens];
+		}
+
+		/*
+		 * Work out the tokens up to an index.
+		 */
+		private int slot(int index)
+		{
+			while(last < index)
+			{
+				last++;
+				int slot = last % maxSpanTokens;
+				Token token = tokens.get(last);
+
+				normalized.setLength(0);
+				hasWord[slot] = normalize(token.source, token.offset, token.length, normalized);
+				hasSignature[slot] = false;
+				if(!hasWord[slot])
+					continue;
+
+				int length = normalized.length();
+				firstChars[slot] = normalized.charAt(0);
+				lastChars[slot] = normalized.charAt(length-1);
+
+				if(shingles[slot].length < length)
+					shingles[slot] = new int[length];
+				int[] tokenShingles = shingles[slot];
+				for(int i=0; i<length; i++)
+				{
+					char a = i == 0 ? ' ' : normalized.charAt(i-1);
+					char c = i == length-1 ? ' ' : normalized.charAt(i+1);
+					tokenShingles[i] = shingle(a, normalized.charAt(i), c);
+				}
+
+				// Sort and drop repeats
+				Arrays.sort(tokenShingles, 0, length);
+				int n = 0;
+				for(int i=0; i<length; i++)
+					if(n == 0 || tokenShingles[i] != tokenShingles[n-1])
+						tokenShingles[n++] = tokenShingles[i];
+				shingleCounts[slot] = n;
+			}
+
+			return index % maxSpanTokens;
+		}
+
+		boolean hasWord(int index)
+		{
+			return hasWord[slot(index)];
+		}
+
+		int[] shingles(int index)
+		{
+			return shingles[slot(index)];
+		}
+
+		int shingleCount(int index)
+		{
+			return shingleCounts[slot(index)];
+		}
+
+		int[] signature(int index)
+		{
+			int slot = slot(index);
+			if(!hasSignature[slot])
+			{
+				int[] sig = signatures[slot];
+				Arrays.fill(sig, Integer.MAX_VALUE);
+				for(int i=0; i<shingleCounts[slot]; i++)
+					addToSignature(sig, shingles[slot][i]);
+				hasSignature[slot] = true;
+			}
+
+			return signatures[slot];
+		}
+
+		char firstChar(int index)
+		{
+			return firstChars[slot(index)];
+		}
+
+		char lastChar(int index)
+		{
+			return lastChars[slot(index)];
+		}
+	}
+
+}
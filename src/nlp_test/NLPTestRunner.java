@@ -1,6 +1,5 @@
 package nlp_test;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
@@ -9,10 +8,6 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
-
 /**
  * 
  * @author Dave Turner
@@ -33,12 +28,12 @@ public class NLPTestRunner {
 			// very large. Lets assume UTF-8.
 			String inputText = readFile(INPUT_FILE1,  StandardCharsets.UTF_8);
 			
-			// Setup a stream tokenizer
-			TokenStream stream = new PunktTokenStream(inputText);
-			
 			// Pass the token stream to our PunktTokenizer
 			SentenceTokenizer sTokenizer = new PunktFirstPassSentenceTokenizer();
 			
+			// Setup a stream tokenizer
+			TokenStream stream = sTokenizer.createTokenStream(inputText);
+			
 			// Get the full list of annotated tokens from the stream using our
 			// sentence tokenizer.
 			List<Token> tokens =  sTokenizer.annotate(stream);
@@ -50,21 +45,19 @@ public class NLPTestRunner {
 			for(Sentence s: sents)
 				System.out.println(s);
 			
-			// Output the list of sentences to XML using JAXB
-			File file = new File(OUTPUT_FILE1);
-			JAXBContext jaxbContext = JAXBContext.newInstance(SentenceList.class);
-			Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
-	 
-			// output pretty printed
-			jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-	 
-			// Write it to the file
-			jaxbMarshaller.marshal(sents, file);
+			// Output the list of sentences to XML as JAXB would
+			SentenceXmlWriter writer = new SentenceXmlWriter(OUTPUT_FILE1);
+			try
+			{
+				writer.writeSentences(sents);
+			}
+			finally
+			{
+				writer.close();
+			}
 				
 		} catch(IOException ex) {
 			System.out.println("Error: Could not read input file: " + INPUT_FILE1);
-		} catch (JAXBException e) {
-			e.printStackTrace();
 		}
 		
 		
@@ -83,18 +76,18 @@ public class NLPTestRunner {
 			// very large. Lets assume UTF-8.
 			String inputText = readFile(INPUT_FILE2,  StandardCharsets.UTF_8);
 			
-			// Setup a stream tokenizer
-			TokenStream stream = new PunktTokenStream(inputText);
-			
 			// Pass the token stream to our PunktTokenizer
 			SentenceTokenizer sTokenizer = new PunktFirstPassSentenceTokenizer();
 			
+			// Setup a stream tokenizer
+			TokenStream stream = sTokenizer.createTokenStream(inputText);
+			
 			// Get the full list of annotated tokens from the stream using our
 			// sentence tokenizer.
 			ArrayList<Token> tokens =  sTokenizer.annotate(stream);
 			
 			// Create a named entity matcher
-			SimpleNamedEntityMatcher smatch = new SimpleNamedEntityMatcher(NER_FILE);
+			NamedEntityMatcher smatch = AhoCorasickNamedEntityMatcher.open(NER_FILE);
 			
 			// Find named entities and annotate our tokens
 			List<TokenNE> tokens_mod = smatch.annotate(tokens, inputText);
@@ -112,22 +105,19 @@ public class NLPTestRunner {
 			for(Sentence s: sents)
 				System.out.println(s);
 			
-			// Output the list of sentences to XML using JAXB
-			File file = new File(OUTPUT_FILE2);
-			JAXBContext jaxbContext = JAXBContext.newInstance(SentenceList.class, TokenNE.class);
-			Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
-	 
-			// output pretty printed
-			jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-	 
-			// Write it to the file
-			jaxbMarshaller.marshal(sents, file);
+			// Output the list of sentences to XML as JAXB would
+			SentenceXmlWriter writer = new SentenceXmlWriter(OUTPUT_FILE2);
+			try
+			{
+				writer.writeSentences(sents);
+			}
+			finally
+			{
+				writer.close();
+			}
 				
 		} catch(IOException ex) {
 			System.out.println("Error: Could not read input file: " + INPUT_FILE1);
-		} 
-		catch (JAXBException e) {
-			e.printStackTrace();
 		}
 	
 		// =====================================================================
@@ -138,9 +128,15 @@ public class NLPTestRunner {
 		String OUTPUT_DIR = "test_out/nlp_data3";
 		int NUM_THREADS = 2;
 		ZipProcessor zp = new ZipProcessor(INPUT_FILE3, OUTPUT_DIR, NUM_THREADS);
+		zp.setDocumentThreads(Runtime.getRuntime().availableProcessors());
 		System.out.print("Processing Zip File ... ");
-		zp.process();
-		System.out.println("Done");
+		try
+		{
+			zp.process();
+			System.out.println("Done");
+		} catch(IOException ex) {
+			System.out.println("Error: Could not process zip file: " + INPUT_FILE3 + ": " + ex.getMessage());
+		}
 		
 	}
 
@@ -7,7 +7,10 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class defines processing common to most named entity extractors
@@ -15,6 +18,15 @@ import java.util.List;
  * named entities for matching. It also has a common interface methods
  * for extracting the matches.
  * 
+ * Named entity matchers are immutable once they are constructed, and
+ * annotate() must not change any state of the matcher. That makes a matcher
+ * thread safe, so one matcher can be built once and then shared by any
+ * number of threads annotating documents at the same time, as long as it is
+ * handed to them safely, for instance by submitting the work to an
+ * executor. Subclasses keep to this by making their fields final and
+ * setting them in their constructors, and by keeping any scratch space
+ * annotate() needs local to the call.
+ * 
  * @author Dave Turner
  *
  */
@@ -23,24 +35,44 @@ public abstract class NamedEntityMatcher {
 	/*
 	 * A list of strings which this matcher considers named entities
 	 */
-	protected List<String> entities = new ArrayList<String>();
+	protected final List<String> entities;
+	
+	/*
+	 * The id of each entity, its index in entities. This is only built the
+	 * first time an id is asked for, it is the one thing about a matcher 
+	 * that changes after it is constructed.
+	 */
+	private volatile Map<String, Integer> entityIds = null;
 	
 	/**
 	 * Create an empty named entity matcher. This matches nothing.
 	 */
 	public NamedEntityMatcher()
 	{
-		
+		this.entities = Collections.emptyList();
 	}
 	
 	/**
-	 * Create a named entity matcher from a list known entity strings
+	 * Create a named entity matcher from a list known entity strings. The
+	 * list is copied, changing it afterwards doesn't change the matcher.
 	 * 
 	 * @param entities This list of known entities.
 	 */
 	public NamedEntityMatcher(List<String> entities)
 	{
-		this.entities = entities;
+		this(entities, true);
+	}
+	
+	/**
+	 * Create a named entity matcher that shares a list of known entities
+	 * rather than copying it. The list must never change.
+	 * 
+	 * @param entities The list of known entities.
+	 * @param copy Whether to copy the list anyway.
+	 */
+	protected NamedEntityMatcher(List<String> entities, boolean copy)
+	{
+		this.entities = copy ? Collections.unmodifiableList(new ArrayList<String>(entities)) : entities;
 	}
 	
 	/**
@@ -52,11 +84,66 @@ public abstract class NamedEntityMatcher {
 	 */
 	public NamedEntityMatcher(String filePath)
 		throws IOException
+	{
+		this(readEntities(filePath), false);
+	}
+	
+	/**
+	 * Read a file of named entities separated by end lines. Assumes UTF-8 
+	 * encoding.
+	 * 
+	 * @param filePath This file to read.
+	 * @return The entities, this list can't be modified.
+	 * @throws IOException
+	 */
+	protected static List<String> readEntities(String filePath)
+		throws IOException
 	{
 		String ents = readFile(filePath, StandardCharsets.UTF_8);
 		
 		// Split our entities by lines and add to entities list.
-		this.entities = Arrays.asList(ents.split("\n"));
+		return Collections.unmodifiableList(Arrays.asList(ents.split("\n")));
+	}
+	
+	/**
+	 * Get the named entities this matcher looks for.
+	 * 
+	 * @return The entities, this list can't be modified.
+	 */
+	public List<String> getEntities()
+	{
+		return entities;
+	}
+	
+	/**
+	 * Get the id of a named entity, its index in getEntities(). An entity 
+	 * that is in the list more than once has the id of the first. This 
+	 * builds a map of all the entities the first time it is called, 
+	 * matchers that can find an entity some other way override it.
+	 * 
+	 * @param entity The entity, as TokenNE holds it.
+	 * @return The id, -1 if this matcher doesn't look for the entity.
+	 */
+	public int getEntityId(String entity)
+	{
+		Map<String, Integer> ids = entityIds;
+		if(ids == null)
+		{
+			synchronized(this)
+			{
+				ids = entityIds;
+				if(ids == null)
+				{
+					ids = new HashMap<String, Integer>(entities.size() * 2);
+					for(int e=entities.size()-1; e>=0; e--)
+						ids.put(entities.get(e), e);
+					entityIds = ids;
+				}
+			}
+		}
+		
+		Integer id = ids.get(entity);
+		return id == null ? -1 : id;
 	}
 	
 	/*
@@ -72,11 +159,99 @@ public abstract class NamedEntityMatcher {
 	/**
 	 * Process a token stream and find any named entities. The list of
 	 * tokens returned for the stream will be annotated as named entities.
+	 * This may be called by many threads at once.
 	 * 
 	 * @param stream The stream to process.
 	 * @param origText The original raw text that the tokens were extracted from.
 	 * @return The list of annotated tokens.
 	 */
 	public abstract List<TokenNE> annotate(List<Token> tokens, String origText);
+	
+	/*
+	 * This function performs a modified binary search on a set of tokens
+	 * looking for tokens whose position fall within an upper and lower 
+	 * bound inclusive.
+	 */
+	List<Integer> binaryRangeSearch(List<Token> tokens, int lower, int upper)
+	{
+		List<Integer> in_range = new ArrayList<Integer>();
+		
+		int min = bsearchMax(tokens, lower);
+		int max = bsearchMin(tokens, upper);
+		
+		for(int i=min;i<=max;i++)
+			in_range.add(i);
 		
+		return in_range;
+	}
+	
+	/*
+	 * Find the max number smaller then a limit
+	 */
+	int bsearchMin(List<Token> tokens, int limit)
+	{
+		int start = 0;
+		int end = tokens.size()-1;
+		int midPt = 0;
+		
+		while(start <= end)
+		{
+			// Find our middle
+			midPt = (start + end) / 2; 
+			
+			if(tokens.get(midPt).getPosition() < limit)
+				start = midPt + 1;
+			else if(tokens.get(midPt).getPosition() > limit)
+				end = midPt - 1;
+			else // They are equal. 
+			{
+				if(midPt == tokens.size()-1)
+					return midPt;
+				
+				while(midPt < tokens.size() && tokens.get(midPt).getPosition() == limit) {midPt++;}
+				return midPt - 1;
+			}
+		}
+		
+		if(tokens.get(midPt).getPosition() < limit)
+			return midPt;
+		else
+			return midPt-1;
+	}
+	
+	/*
+	 * Find the min number greater than a limit
+	 */
+	int bsearchMax(List<Token> tokens, int limit)
+	{
+		int start = 0;
+		int end = tokens.size()-1;
+		int midPt = 0;
+		
+		while(start <= end)
+		{
+			// Find our middle
+			midPt = (start + end) / 2; 
+			
+			if(tokens.get(midPt).getPosition() < limit)
+				start = midPt + 1;
+			else if(tokens.get(midPt).getPosition() > limit)
+				end = midPt - 1;
+			else // They are equal. 
+			{
+				if(midPt == 0)
+					return midPt;
+				
+				while(midPt > 0 && tokens.get(midPt).getPosition() == limit) {midPt--;}
+				
+				return midPt + 1;
+			}
+		}
+		
+		if(tokens.get(midPt).getPosition() > limit)
+			return midPt;
+		else
+			return midPt+1;
+	}
+
 }
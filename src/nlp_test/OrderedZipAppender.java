@@ -0,0 +1,610 @@
+package nlp_test;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * This class writes a zip archive from entries that are compressed
+ * elsewhere. Many threads each fill an Entry, which deflates what is
+ * written to it in memory as it goes, and then hand it to append() with
+ * its sequence number. The entries are written to the archive strictly in
+ * sequence order, so the archive is the same however the threads are
+ * scheduled. An entry that turns up before the ones ahead of it waits in
+ * memory, and the thread that appends the next entry in sequence writes
+ * it and any that were waiting behind it. Only the writing is done one
+ * entry at a time, and it is a copy of bytes that are already compressed,
+ * so the compression isn't a serial bottleneck.
+ *
+ * ZipOutputStream can't be used because it always deflates entries itself.
+ * This writes the local headers, the central directory and, when the
+ * archive has 65535 or more entries or is over 4G bytes, the zip64 end
+ * records itself. A single entry must be under 4G bytes.
+ *
+ * @author Dave Turner
+ *
+ */
+public class OrderedZipAppender implements Closeable {
+
+	/*
+	 * Signatures of the zip records.
+	 */
+	private static final int LOCAL_HEADER = 0x04034b50;
+	private static final int CENTRAL_HEADER = 0x02014b50;
+	private static final int END_OF_CENTRAL = 0x06054b50;
+	private static final int ZIP64_END_OF_CENTRAL = 0x06064b50;
+	private static final int ZIP64_LOCATOR = 0x07064b50;
+
+	/*
+	 * Versions needed to extract, plain and with zip64 records.
+	 */
+	private static final int VERSION = 20;
+	private static final int VERSION_ZIP64 = 45;
+
+	/*
+	 * General purpose flag for names in UTF-8.
+	 */
+	private static final int UTF8_NAMES = 0x0800;
+
+	/*
+	 * Fields that don't fit in a plain record are set to these and put in
+	 * the zip64 records.
+	 */
+	private static final long MAX_32 = 0xffffffffL;
+	private static final int MAX_16 = 0xffff;
+
+	/*
+	 * Marks a sequence number that has no entry.
+	 */
+	private static final Entry SKIPPED = new Entry("", false);
+
+	/*
+	 * Where the archive goes and how many bytes have been written to it.
+	 */
+	private OutputStream out;
+	private long position = 0;
+
+	/*
+	 * The modification time of every entry, in MS-DOS form.
+	 */
+	private int dosTime;
+	private int dosDate;
+
+	/*
+	 * The entries that have been appended but not written, by sequence
+	 * number, and what to run once each is written. Guarded by itself, as
+	 * is nextSeq, the sequence number to write next.
+	 */
+	private Map<Integer, Entry> pending = new HashMap<Integer, Entry>();
+	private Map<Integer, Runnable> callbacks = new HashMap<Integer, Runnable>();
+	private int nextSeq = 0;
+
+	/*
+	 * Held by the thread writing entries.
+	 */
+	private ReentrantLock writeLock = new ReentrantLock();
+
+	/*
+	 * The central directory records of the entries written so far.
+	 */
+	private List<CentralRecord> central = new ArrayList<CentralRecord>();
+
+	/*
+	 * The first error writing the archive. After it nothing more is written.
+	 */
+	private volatile IOException failure = null;
+
+	/**
+	 * Create an archive.
+	 *
+	 * @param file The file to create or overwrite.
+	 * @throws IOException If the file can't be created.
+	 */
+	public OrderedZipAppender(String file) throws IOException
+	{
+		this(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+	}
+
+	/**
+	 * Create an archive that is written to a stream.
+	 *
+	 * @param out The stream.
+	 */
+	public OrderedZipAppender(OutputStream out)
+	{
+		this.out = out;
+
+		Calendar now = Calendar.getInstance();
+		dosTime = (now.get(Calendar.HOUR_OF_DAY) << 11) | (now.get(Calendar.MINUTE) << 5) |
+				(now.get(Calendar.SECOND) >> 1);
+		dosDate = ((now.get(Calendar.YEAR) - 1980) << 9) | ((now.get(Calendar.MONTH) + 1) << 5) |
+				now.get(Calendar.DAY_OF_MONTH);
+	}
+
+	/**
+	 * Append an entry. It is written once every entry with a lower sequence
+	 * number has been appended, which may be straight away on this thread.
+	 * Every sequence number from 0 up must be appended once, with a null
+	 * entry if there is nothing to write for it, or none of the entries
+	 * after it are written till the archive is closed.
+	 *
+	 * @param seq The sequence number of the entry.
+	 * @param entry The entry, null if there is none. It is closed if it
+	 * isn't already.
+	 * @param written Run once the entry has been written or skipped, even
+	 * if writing it failed. Null if nothing needs to be.
+	 * @throws IOException If writing the archive has failed.
+	 */
+	public void append(int seq, Entry entry, Runnable written) throws IOException
+	{
+		if(entry != null)
+			entry.close();
+
+		synchronized(pending)
+		{
+			if(seq < nextSeq || pending.containsKey(seq))
+				throw new IllegalArgumentException("Sequence number appended twice: " + seq);
+
+			pending.put(seq, entry == null ? SKIPPED : entry);
+			if(written != null)
+				callbacks.put(seq, written);
+		}
+
+		drain(false);
+
+		if(failure != null)
+			throw failure;
+	}
+
+	/**
+	 * Write any entries still waiting, skipping the sequence numbers that
+	 * were never appended, then the central directory, and close the
+	 * archive.
+	 */
+	public void close() throws IOException
+	{
+		drain(true);
+
+		try
+		{
+			if(failure == null)
+				writeCentralDirectory();
+		}
+		catch(IOException e)
+		{
+			failure = e;
+		}
+		finally
+		{
+			out.close();
+		}
+
+		if(failure != null)
+			throw failure;
+	}
+
+	/*
+	 * Write the entries that are next in sequence, if no other thread is
+	 * already. A thread that finds the lock taken leaves its entry for the
+	 * thread that has it, which checks for more after it lets go.
+	 */
+	private void drain(boolean all)
+	{
+		while(true)
+		{
+			if(all)
+				writeLock.lock();
+			else if(!writeLock.tryLock())
+				return;
+
+			try
+			{
+				int seq;
+				while((seq = nextReady(all)) >= 0)
+				{
+					Entry entry;
+					Runnable written;
+					synchronized(pending)
+					{
+						entry = pending.remove(seq);
+						written = callbacks.remove(seq);
+					}
+
+					try
+					{
+						if(entry != SKIPPED && failure == null)
+							writeEntry(entry);
+					}
+					catch(IOException e)
+					{
+						failure = e;
+					}
+					finally
+					{
+						if(written != null)
+							written.run();
+					}
+				}
+			}
+			finally
+			{
+				writeLock.unlock();
+			}
+
+			// Another thread may have appended the next entry while we held
+			// the lock and given up on it. This only looks, the entry is taken
+			// once we have the lock again.
+			if(all || !isNextPending())
+				return;
+		}
+	}
+
+	/*
+	 * Get the sequence number to write next and move past it, or -1 if it
+	 * hasn't been appended. If all is true, missing sequence numbers are
+	 * skipped over as long as there are entries after them.
+	 */
+	private int nextReady(boolean all)
+	{
+		synchronized(pending)
+		{
+			if(all && !pending.isEmpty())
+				while(!pending.containsKey(nextSeq))
+					nextSeq++;
+
+			if(!pending.containsKey(nextSeq))
+				return -1;
+
+			return nextSeq++;
+		}
+	}
+
+	/*
+	 * Check whether the sequence number to write next has been appended,
+	 * without moving past it.
+	 */
+	private boolean isNextPending()
+	{
+		synchronized(pending)
+		{
+			return pending.containsKey(nextSeq);
+		}
+	}
+
+	/*
+	 * Write the local header and data of an entry.
+	 */
+	private void writeEntry(Entry entry) throws IOException
+	{
+		if(entry.getSize() >= MAX_32 || entry.getCompressedSize() >= MAX_32)
+			throw new IOException("Entry is too big for the archive: " + entry.getName());
+
+		byte[] name = entry.getName().getBytes(StandardCharsets.UTF_8);
+		CentralRecord record = new CentralRecord(name, entry.getMethod(), entry.getCrc(),
+				entry.getCompressedSize(), entry.getSize(), position);
+
+		ByteBuffer header = ByteBuffer.allocate(30 + name.length).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(LOCAL_HEADER);
+		header.putShort((short)VERSION);
+		header.putShort((short)UTF8_NAMES);
+		header.putShort((short)record.method);
+		header.putShort((short)dosTime);
+		header.putShort((short)dosDate);
+		header.putInt((int)record.crc);
+		header.putInt((int)record.compressedSize);
+		header.putInt((int)record.size);
+		header.putShort((short)name.length);
+		header.putShort((short)0);
+		header.put(name);
+
+		out.write(header.array());
+		entry.writeDataTo(out);
+		position += header.capacity() + record.compressedSize;
+
+		central.add(record);
+	}
+
+	/*
+	 * Write the central directory and the end records.
+	 */
+	private void writeCentralDirectory() throws IOException
+	{
+		long start = position;
+		for(CentralRecord record: central)
+		{
+			boolean zip64 = record.offset >= MAX_32;
+			ByteBuffer header = ByteBuffer.allocate(46 + record.name.length + (zip64 ? 12 : 0))
+					.order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(CENTRAL_HEADER);
+			header.putShort((short)(zip64 ? VERSION_ZIP64 : VERSION));
+			header.putShort((short)(zip64 ? VERSION_ZIP64 : VERSION));
+			header.putShort((short)UTF8_NAMES);
+			header.putShort((short)record.method);
+			header.putShort((short)dosTime);
+			header.putShort((short)dosDate);
+			header.putInt((int)record.crc);
+			header.putInt((int)record.compressedSize);
+			header.putInt((int)record.size);
+			header.putShort((short)record.name.length);
+			header.putShort((short)(zip64 ? 12 : 0));
+			header.putShort((short)0);
+			header.putShort((short)0);
+			header.putShort((short)0);
+			header.putInt(0);
+			header.putInt((int)(zip64 ? MAX_32 : record.offset));
+			header.put(record.name);
+			if(zip64)
+			{
+				// The zip64 extra field with only the offset in it
+				header.putShort((short)1);
+				header.putShort((short)8);
+				header.putLong(record.offset);
+			}
+
+			out.write(header.array());
+			position += header.capacity();
+		}
+
+		long size = position - start;
+		int count = central.size();
+		if(count >= MAX_16 || start >= MAX_32 || size >= MAX_32)
+		{
+			long zip64End = position;
+
+			ByteBuffer end = ByteBuffer.allocate(56 + 20).order(ByteOrder.LITTLE_ENDIAN);
+			end.putInt(ZIP64_END_OF_CENTRAL);
+			end.putLong(44);
+			end.putShort((short)VERSION_ZIP64);
+			end.putShort((short)VERSION_ZIP64);
+			end.putInt(0);
+			end.putInt(0);
+			end.putLong(count);
+			end.putLong(count);
+			end.putLong(size);
+			end.putLong(start);
+
+			end.putInt(ZIP64_LOCATOR);
+			end.putInt(0);
+			end.putLong(zip64End);
+			end.putInt(1);
+
+			out.write(end.array());
+			position += end.capacity();
+		}
+
+		ByteBuffer end = ByteBuffer.allocate(22).order(ByteOrder.LITTLE_ENDIAN);
+		end.putInt(END_OF_CENTRAL);
+		end.putShort((short)0);
+		end.putShort((short)0);
+		end.putShort((short)Math.min(count, MAX_16));
+		end.putShort((short)Math.min(count, MAX_16));
+		end.putInt((int)Math.min(size, MAX_32));
+		end.putInt((int)Math.min(start, MAX_32));
+		end.putShort((short)0);
+
+		out.write(end.array());
+		position += end.capacity();
+	}
+
+	/*
+	 * What the central directory needs to know about an entry.
+	 */
+	private static class CentralRecord {
+
+		final byte[] name;
+		final int method;
+		final long crc;
+		final long compressedSize;
+		final long size;
+		final long offset;
+
+		CentralRecord(byte[] name, int method, long crc, long compressedSize, long size, long offset)
+		{
+			this.name = name;
+			this.method = method;
+			this.crc = crc;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.offset = offset;
+		}
+	}
+
+	/**
+	 * This class is an entry of the archive that is filled by writing to
+	 * it. What is written is deflated, or stored as it is, into memory and
+	 * its CRC is worked out as it goes, so all of the work of an entry is
+	 * done by the thread that writes it. An entry isn't thread safe.
+	 */
+	public static class Entry extends OutputStream {
+
+		/*
+		 * The zip compression methods.
+		 */
+		private static final int STORED = 0;
+		private static final int DEFLATED = 8;
+
+		private final String name;
+		private final CRC32 crc = new CRC32();
+		private long size = 0;
+
+		/*
+		 * The bytes of the entry as they go in the archive.
+		 */
+		private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+		/*
+		 * Deflates into data, null if the entry is stored.
+		 */
+		private Deflater deflater = null;
+		private DeflaterOutputStream deflaterOut = null;
+
+		private boolean closed = false;
+
+		/**
+		 * Create an entry that is deflated.
+		 *
+		 * @param name The name of the entry in the archive.
+		 */
+		public Entry(String name)
+		{
+			this(name, true);
+		}
+
+		/**
+		 * Create an entry.
+		 *
+		 * @param name The name of the entry in the archive.
+		 * @param deflate true to deflate the entry, false to store it as it
+		 * is.
+		 */
+		public Entry(String name, boolean deflate)
+		{
+			this.name = name;
+			if(deflate)
+			{
+				deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+				deflaterOut = new DeflaterOutputStream(data, deflater, 8 * 1024);
+			}
+		}
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			if(closed)
+				throw new IOException("Entry is closed: " + name);
+
+			crc.update(b);
+			size++;
+			if(deflaterOut != null)
+				deflaterOut.write(b);
+			else
+				data.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			if(closed)
+				throw new IOException("Entry is closed: " + name);
+
+			crc.update(b, off, len);
+			size += len;
+			if(deflaterOut != null)
+				deflaterOut.write(b, off, len);
+			else
+				data.write(b, off, len);
+		}
+
+		/**
+		 * Finish compressing the entry. Nothing more can be written to it.
+		 */
+		@Override
+		public void close() throws IOException
+		{
+			if(closed)
+				return;
+
+			closed = true;
+			if(deflaterOut != null)
+			{
+				try
+				{
+					deflaterOut.finish();
+				}
+				finally
+				{
+					deflater.end();
+				}
+			}
+		}
+
+		/**
+		 * Give up on the entry, freeing its deflater and what has been
+		 * written to it. Nothing more can be written to it and it must not
+		 * be appended.
+		 */
+		public void abort()
+		{
+			if(closed)
+				return;
+
+			closed = true;
+			if(deflater != null)
+				deflater.end();
+			data.reset();
+		}
+
+		/**
+		 * Get the name of the entry.
+		 *
+		 * @return The name.
+		 */
+		public String getName()
+		{
+			return name;
+		}
+
+		/**
+		 * Get the number of bytes written to the entry.
+		 *
+		 * @return The size before compression.
+		 */
+		public long getSize()
+		{
+			return size;
+		}
+
+		/**
+		 * Get the number of bytes the entry takes in the archive. This is only
+		 * final once the entry is closed.
+		 *
+		 * @return The size after compression.
+		 */
+		public long getCompressedSize()
+		{
+			return data.size();
+		}
+
+		/**
+		 * Get the CRC-32 of the bytes written to the entry.
+		 *
+		 * @return The CRC.
+		 */
+		public long getCrc()
+		{
+			return crc.getValue();
+		}
+
+		/*
+		 * Get the zip compression method of the entry.
+		 */
+		int getMethod()
+		{
+			return deflater != null ? DEFLATED : STORED;
+		}
+
+		/*
+		 * Write the bytes of the entry as they go in the archive.
+		 */
+		void writeDataTo(OutputStream out) throws IOException
+		{
+			data.writeTo(out);
+		}
+	}
+
+}
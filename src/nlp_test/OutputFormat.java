@@ -0,0 +1,129 @@
+package nlp_test;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The formats sentences can be written out in.
+ * 
+ * @author Dave Turner
+ *
+ */
+public enum OutputFormat {
+
+	/**
+	 * The XML JAXB gives for a SentenceList, see SentenceXmlWriter.
+	 */
+	XML(".xml"),
+	
+	/**
+	 * A JSON object per sentence per line, see JsonLinesAnnotationWriter.
+	 */
+	JSON_LINES(".jsonl"),
+	
+	/**
+	 * Tab separated spans of sentences, tokens and entities, see 
+	 * TsvSpanAnnotationWriter.
+	 */
+	TSV(".tsv"),
+	
+	/**
+	 * Binary columns that are read back by mapping the file, see
+	 * ColumnarAnnotationWriter and ColumnarAnnotationReader.
+	 */
+	COLUMNAR(".cols");
+	
+	/*
+	 * The extension of the files of this format.
+	 */
+	private final String extension;
+	
+	private OutputFormat(String extension)
+	{
+		this.extension = extension;
+	}
+	
+	/**
+	 * Get the extension for the files of this format.
+	 * 
+	 * @return The extension, with its dot.
+	 */
+	public String getExtension()
+	{
+		return extension;
+	}
+	
+	/**
+	 * Check whether this format is binary. Binary formats can't be written
+	 * to a Writer.
+	 * 
+	 * @return true if yes, false if it is text in UTF-8.
+	 */
+	public boolean isBinary()
+	{
+		return this == COLUMNAR;
+	}
+	
+	/**
+	 * Create a writer of this format that writes to a file. Text formats
+	 * are written in UTF-8.
+	 * 
+	 * @param file The file to create or overwrite.
+	 * @param nerer The matcher that found the named entities, null if 
+	 * there is none.
+	 * @return The writer.
+	 * @throws IOException If the file can't be created.
+	 */
+	public AnnotationWriter createWriter(String file, NamedEntityMatcher nerer) throws IOException
+	{
+		return createWriter(new FileOutputStream(file), nerer);
+	}
+	
+	/**
+	 * Create a writer of this format that writes to a stream. Text formats
+	 * are written in UTF-8.
+	 * 
+	 * @param out The stream to write to.
+	 * @param nerer The matcher that found the named entities, null if 
+	 * there is none.
+	 * @return The writer.
+	 * @throws IOException If writing fails.
+	 */
+	public AnnotationWriter createWriter(OutputStream out, NamedEntityMatcher nerer) throws IOException
+	{
+		if(this == COLUMNAR)
+			return new ColumnarAnnotationWriter(out);
+		
+		return createWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), nerer);
+	}
+	
+	/**
+	 * Create a writer of this format. This is only for text formats.
+	 * 
+	 * @param out The Writer to write to.
+	 * @param nerer The matcher that found the named entities, null if 
+	 * there is none.
+	 * @return The writer.
+	 * @throws IOException If writing fails.
+	 */
+	public AnnotationWriterBase createWriter(Writer out, NamedEntityMatcher nerer) throws IOException
+	{
+		if(isBinary())
+			throw new UnsupportedOperationException(this + " is a binary format, it can't be written to a Writer.");
+		
+		switch(this)
+		{
+		case JSON_LINES:
+			return new JsonLinesAnnotationWriter(out, nerer);
+		case TSV:
+			return new TsvSpanAnnotationWriter(out, nerer);
+		default:
+			return new SentenceXmlWriter(out);
+		}
+	}
+	
+}
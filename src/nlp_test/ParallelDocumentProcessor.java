@@ -0,0 +1,326 @@
+package nlp_test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class tokenizes a single document on many threads. The document is
+ * split into chunks at paragraph breaks, the first line after a blank line,
+ * and each chunk is tokenized, annotated and matched against the named
+ * entities on a ForkJoinPool. Tokens never cross lines, so each chunk has
+ * the same tokens it would have in the whole document. Afterwards the
+ * annotations where the chunks meet are fixed up and the token positions
+ * moved to be within the whole document.
+ *
+ * The sentences are then built, again in parallel, from groups of tokens
+ * that end at the last sentence break of each chunk, so a sentence that
+ * runs over a paragraph break is still built in one piece. The resulting
+ * SentenceList is the same as buildSentenceList() gives for the whole
+ * document at once.
+ *
+ * Named entities are matched within each chunk, so an entity that spans a
+ * blank line is not found. The entities of a named entity file are one per
+ * line and can't contain one, but a matcher that allows any whitespace
+ * between words, like TokenTrieNamedEntityMatcher, can miss matches a
+ * sequential run would find.
+ *
+ * @author Dave Turner
+ *
+ */
+public class ParallelDocumentProcessor {
+
+	/**
+	 * The default smallest number of characters in a chunk.
+	 */
+	public static final int DEFAULT_MIN_CHUNK_SIZE = 64 * 1024;
+
+	/*
+	 * The number of chunks to aim for per thread of the pool, so that the
+	 * threads finishing at different times doesn't matter much.
+	 */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	/*
+	 * The sentence tokenizer to use.
+	 */
+	protected PunktAlgoBase tokenizer;
+
+	/*
+	 * Name entity matcher to use, null if none.
+	 */
+	protected NamedEntityMatcher nerer;
+
+	/*
+	 * The pool to run the chunks on.
+	 */
+	protected ForkJoinPool pool;
+
+	/*
+	 * Documents are never split into chunks smaller than this.
+	 */
+	protected int minChunkSize = DEFAULT_MIN_CHUNK_SIZE;
+
+	/**
+	 * Create a processor that runs on a pool.
+	 *
+	 * @param tokenizer The sentence tokenizer to use. It is shared by all
+	 * the chunks.
+	 * @param nerer The named entity matcher to use, null for none.
+	 * @param pool The pool to run on.
+	 */
+	public ParallelDocumentProcessor(PunktAlgoBase tokenizer, NamedEntityMatcher nerer, ForkJoinPool pool)
+	{
+		this.tokenizer = tokenizer;
+		this.nerer = nerer;
+		this.pool = pool;
+	}
+
+	/**
+	 * Set the smallest number of characters in a chunk. Documents smaller
+	 * than twice this are processed in one piece.
+	 *
+	 * @param size The number of characters.
+	 */
+	public void setMinChunkSize(int size)
+	{
+		if(size <= 0)
+			throw new IllegalArgumentException("Chunk size must be positive: " + size);
+
+		minChunkSize = size;
+	}
+
+	/**
+	 * Get the smallest number of characters in a chunk.
+	 *
+	 * @return The number of characters.
+	 */
+	public int getMinChunkSize()
+	{
+		return minChunkSize;
+	}
+
+	/**
+	 * Tokenize a document, find its named entities and break it into
+	 * sentences.
+	 *
+	 * @param text The document.
+	 * @return The sentences of the document.
+	 */
+	public SentenceList process(String text)
+	{
+		int chunkSize = Math.max(minChunkSize, text.length() / (CHUNKS_PER_THREAD * pool.getParallelism()));
+		List<Integer> starts = findChunkStarts(text, chunkSize);
+
+		// Build the tokenizer's lazily made patterns before the threads share it
+		tokenizer.createTokenStream("");
+
+		// Tokenize and match each chunk
+		List<List<Token>> chunks = new ArrayList<List<Token>>(starts.size());
+		for(int c=0; c<starts.size(); c++)
+			chunks.add(null);
+		pool.invoke(new TokenizeTask(text, starts, chunks, 0, starts.size()));
+
+		// Fix up the annotations where the chunks meet and put all the tokens
+		// together.
+		List<Token> tokens = new ArrayList<Token>();
+		List<Integer> chunkEnds = new ArrayList<Integer>(chunks.size());
+		for(List<Token> chunk: chunks)
+		{
+			if(!tokens.isEmpty() && !chunk.isEmpty())
+			{
+				Token beforeLast = tokens.size() > 1 ? tokens.get(tokens.size()-2) : null;
+				tokenizer.first_pass_join(beforeLast, tokens.get(tokens.size()-1), chunk.get(0));
+			}
+
+			tokens.addAll(chunk);
+			chunkEnds.add(tokens.size());
+		}
+
+		// Each group of tokens ends at the last sentence break of a chunk.
+		// Chunks without one are part of the next group.
+		List<Integer> groupEnds = new ArrayList<Integer>();
+		int groupStart = 0;
+		for(int end: chunkEnds)
+		{
+			int lastBreak = end - 1;
+			while(lastBreak >= groupStart && !tokens.get(lastBreak).getIsSentBreak())
+				lastBreak--;
+
+			if(lastBreak >= groupStart)
+			{
+				groupEnds.add(lastBreak);
+				groupStart = lastBreak + 1;
+			}
+		}
+
+		// Without any sentence breaks there is nothing to do in parallel
+		if(groupEnds.isEmpty())
+			return tokenizer.buildSentenceList(text, tokens);
+
+		// Build the sentences of each group of tokens
+		List<SentenceList> groups = new ArrayList<SentenceList>(groupEnds.size());
+		for(int g=0; g<groupEnds.size(); g++)
+			groups.add(null);
+		pool.invoke(new SentenceTask(text, tokens, groupEnds, groups, 0, groupEnds.size()));
+
+		List<Sentence> sents = new ArrayList<Sentence>();
+		for(SentenceList group: groups)
+			sents.addAll(group);
+
+		return new SentenceList(sents);
+	}
+
+	/*
+	 * Find where each chunk starts. Each chunk after the first starts at the
+	 * first line after a blank line that is at least chunkSize characters
+	 * after the start of the chunk before.
+	 */
+	static List<Integer> findChunkStarts(String text, int chunkSize)
+	{
+		List<Integer> starts = new ArrayList<Integer>();
+		starts.add(0);
+
+		long from = chunkSize;
+		while(from < text.length())
+		{
+			int start = nextParagraphStart(text, (int)from);
+			if(start < 0)
+				break;
+
+			starts.add(start);
+			from = (long)start + chunkSize;
+		}
+
+		return starts;
+	}
+
+	/*
+	 * Find the start of the first non blank line that follows a blank line,
+	 * looking from the line after the one that from is in. Blank lines are
+	 * the ones PunktTokenStream skips, those that trim to nothing. Returns
+	 * -1 if there is no such line.
+	 */
+	private static int nextParagraphStart(String text, int from)
+	{
+		int newLine = text.indexOf('\n', from);
+		boolean afterBlank = false;
+
+		while(newLine >= 0)
+		{
+			int lineStart = newLine + 1;
+			newLine = text.indexOf('\n', lineStart);
+			int lineEnd = newLine < 0 ? text.length() : newLine;
+
+			boolean blank = true;
+			for(int i=lineStart; i<lineEnd && blank; i++)
+				blank = text.charAt(i) <= ' ';
+
+			if(!blank && afterBlank)
+				return lineStart;
+
+			afterBlank = blank;
+		}
+
+		return -1;
+	}
+
+	/*
+	 * Tokenize a range of chunks, splitting the range in two till there is
+	 * only one chunk.
+	 */
+	private class TokenizeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private String text;
+		private List<Integer> starts;
+		private List<List<Token>> chunks;
+		private int from;
+		private int to;
+
+		TokenizeTask(String text, List<Integer> starts, List<List<Token>> chunks, int from, int to)
+		{
+			this.text = text;
+			this.starts = starts;
+			this.chunks = chunks;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(to - from > 1)
+			{
+				int mid = (from + to) >>> 1;
+				invokeAll(new TokenizeTask(text, starts, chunks, from, mid),
+						new TokenizeTask(text, starts, chunks, mid, to));
+				return;
+			}
+
+			int start = starts.get(from);
+			int end = from + 1 < starts.size() ? starts.get(from + 1) : text.length();
+			String chunkText = text.substring(start, end);
+
+			List<Token> tokens = tokenizer.annotate(tokenizer.createTokenStream(chunkText));
+
+			// Find named entities and annotate our tokens
+			if(nerer != null)
+				tokens = new ArrayList<Token>(nerer.annotate(tokens, chunkText));
+
+			// Move the tokens into the whole document
+			for(Token token: tokens)
+				token.rebase(text, start);
+
+			chunks.set(from, tokens);
+		}
+	}
+
+	/*
+	 * Build the sentences of a range of token groups, splitting the range
+	 * in two till there is only one group. A group starts after the end of
+	 * the group before.
+	 */
+	private class SentenceTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private String text;
+		private List<Token> tokens;
+		private List<Integer> groupEnds;
+		private List<SentenceList> groups;
+		private int from;
+		private int to;
+
+		SentenceTask(String text, List<Token> tokens, List<Integer> groupEnds, List<SentenceList> groups,
+				int from, int to)
+		{
+			this.text = text;
+			this.tokens = tokens;
+			this.groupEnds = groupEnds;
+			this.groups = groups;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(to - from > 1)
+			{
+				int mid = (from + to) >>> 1;
+				invokeAll(new SentenceTask(text, tokens, groupEnds, groups, from, mid),
+						new SentenceTask(text, tokens, groupEnds, groups, mid, to));
+				return;
+			}
+
+			int first = from == 0 ? 0 : groupEnds.get(from - 1) + 1;
+			int last = groupEnds.get(from);
+
+			groups.set(from, tokenizer.buildSentenceList(text, tokens, first, last + 1));
+		}
+	}
+
+}
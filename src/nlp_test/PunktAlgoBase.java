@@ -1,10 +1,8 @@
 package nlp_test;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * This base class implements methods common to both the Punkt
@@ -26,6 +24,12 @@ public class PunktAlgoBase implements SentenceTokenizer {
 	 */
 	protected PunktParams params;
 	
+	/*
+	 * Should token streams use the table driven scanner instead of the 
+	 * word tokenizer regex.
+	 */
+	protected boolean useDFATokenStream = false;
+	
 	public PunktAlgoBase()
 	{
 		this.langVars = new PunktLanguageVariables();
@@ -51,6 +55,51 @@ public class PunktAlgoBase implements SentenceTokenizer {
 		this.params = params;
 	}
 
+	/**
+	 * Set whether token streams created by this class use the table driven
+	 * scanner PunktDFATokenStream instead of the regex based PunktTokenStream.
+	 * Both produce the same tokens.
+	 * 
+	 * @param val true to use the scanner, false to use the regex.
+	 */
+	public void setUseDFATokenStream(boolean val)
+	{
+		useDFATokenStream = val;
+	}
+	
+	/**
+	 * Do token streams created by this class use the table driven scanner.
+	 * 
+	 * @return true if yes, false if no.
+	 */
+	public boolean getUseDFATokenStream()
+	{
+		return useDFATokenStream;
+	}
+	
+	/* (non-Javadoc)
+	 * @see nlp_test.SentenceTokenizer#createTokenStream(java.lang.String)
+	 */
+	public TokenStream createTokenStream(String text)
+	{
+		if(useDFATokenStream)
+			return new PunktDFATokenStream(text, langVars);
+		else
+			return new PunktTokenStream(text, langVars);
+	}
+	
+	/**
+	 * Create a token stream that scans a mapped file in place. The tokens 
+	 * are the same as createTokenStream(String) gives for the whole text.
+	 * 
+	 * @param text The mapped text.
+	 * @return The stream.
+	 */
+	public TokenStream createTokenStream(MappedText text)
+	{
+		return new PunktReaderTokenStream(text, langVars);
+	}
+	
 	/* (non-Javadoc)
 	 * @see nlp_test.SentenceTokenizer#annotate(nlp_test.PunktTokenStream)
 	 */
@@ -60,6 +109,21 @@ public class PunktAlgoBase implements SentenceTokenizer {
 		return first_pass_annotate(stream);
 	}
 	
+	/* (non-Javadoc)
+	 * @see nlp_test.SentenceTokenizer#annotateBuffer(nlp_test.TokenStream)
+	 */
+	public TokenBuffer annotateBuffer(TokenStream stream)
+	{
+		// The buffer only keeps offsets into the text
+		if(stream.getText() == null)
+			throw new IllegalArgumentException("A token buffer needs a stream that holds its whole text.");
+		
+		TokenBuffer buffer = new TokenBuffer(stream.getText());
+		first_pass_annotate(stream, buffer);
+		
+		return buffer;
+	}
+	
 	/**
 	 * Perform a first pass annotation of a token stream. 
 	 * 
@@ -69,37 +133,72 @@ public class PunktAlgoBase implements SentenceTokenizer {
 	protected ArrayList<Token> first_pass_annotate(TokenStream stream)
 	{
 		ArrayList<Token> tokList = new ArrayList<Token>();
-		List<String> sentence_end_chars = Arrays.asList(langVars.getSentenceEndChars());
+		first_pass_annotate(stream, tokList);
+		
+		return tokList;
+	}
+	
+	/**
+	 * Perform a first pass annotation of a token stream, adding the tokens
+	 * to a list as we go. The list can be a TokenBuffer, each token is only
+	 * added once its annotations are final and the only token we go back to 
+	 * is fetched from the list again.
+	 * 
+	 * Apart from what the stream and the list do, this creates no objects 
+	 * per token when the parameters are frozen, see PunktParams.freeze(). 
+	 * All the characters are looked at in place through windows onto the 
+	 * tokens that are reused for every token.
+	 * 
+	 * @param stream Stream to annotate.
+	 * @param tokList The list to add the annotated tokens to.
+	 */
+	protected void first_pass_annotate(TokenStream stream, List<Token> tokList)
+	{
+		String[] sentence_end_chars = langVars.getSentenceEndChars();
+		
+		// A lower cased window for abbreviation lookups and a window for 
+		// the boundary realign regex.
+		CharWindow lookupKey = new CharWindow(true);
+		CharWindow tokenVal = new CharWindow(false);
+		Matcher boundMatcher = langVars.getSentBoundRealignPattern().matcher(tokenVal);
 			
 		Token token;
 		while ( (token=stream.getToken()) != null )
 		{
-			String tokenVal = token.getValue();
-			String tokenValChopLast = tokenVal.substring(0, tokenVal.length()-1).toLowerCase();
+			int tokenLength = token.getLength();
 			
 			// If the token is a sentence end character and it isn't,
 			// an ellipsis, mark it as sentence break for now.
 			if(!token.getIsEllipsis() && 
-				sentence_end_chars.contains(tokenVal))
+				isOneOf(token, sentence_end_chars))
 				token.setIsSentBreak(true);
-			else if(tokenVal.endsWith(".") && !tokenVal.endsWith(".."))
+			else if(tokenLength > 0 && token.charAt(tokenLength-1) == '.' && 
+					!(tokenLength > 1 && token.charAt(tokenLength-2) == '.'))
 			{
-				// We need to check if hyphenated words end in an abbreviation
-				// too.
-				String [] splitByHyphen = tokenValChopLast.split("-");
-				String afterHyphen = splitByHyphen[splitByHyphen.length-1];
-				
 				// Check for abbreviations, we have a list to check.
-				if(params.isAbbreviation(tokenValChopLast) ||
-				   params.isAbbreviation(afterHyphen))
+				if(params.isAbbreviation(lookupKey.set(token).narrow(0, tokenLength-1)))
 					token.setIsAbbreviation(true);
 				else
-					token.setIsSentBreak(true);
+				{
+					// We need to check if hyphenated words end in an abbreviation
+					// too. Trailing hyphens are ignored.
+					int end = tokenLength-1;
+					while(end > 0 && token.charAt(end-1) == '-')
+						end--;
+					int start = end;
+					while(start > 0 && token.charAt(start-1) != '-')
+						start--;
+					
+					if(params.isAbbreviation(lookupKey.set(token).narrow(start, end)))
+						token.setIsAbbreviation(true);
+					else
+						token.setIsSentBreak(true);
+				}
 			}
 			
 			// If we match a boundary realign token and the token was a sentence break
 			// then lets realign the boundary.
-			Matcher boundMatcher = langVars.getSentBoundRealignPattern().matcher(tokenVal);
+			boundMatcher.reset(tokenVal.set(token));
 			if(boundMatcher.find() && 
 			   tokList.size() > 0 && 
 			   tokList.get(tokList.size()-1).getIsSentBreak() )
@@ -111,95 +210,102 @@ public class PunktAlgoBase implements SentenceTokenizer {
 			
 			tokList.add(token);
 		}
+	}
+	
+	/**
+	 * Finish the first pass annotation where two pieces of a text that were
+	 * annotated on their own meet. The second piece must start at the first
+	 * line after a blank line. Afterwards the two tokens have the same 
+	 * annotations they would have had if the whole text was annotated at 
+	 * once.
+	 * 
+	 * @param beforeLast The token before the last one of the first piece,
+	 * null if it has none. The first pass doesn't look at it.
+	 * @param last The last token of the first piece, null if it has none.
+	 * @param first The first token of the second piece.
+	 */
+	protected void first_pass_join(Token beforeLast, Token last, Token first)
+	{
+		// The blank line before the second piece makes its first token a
+		// paragraph start.
+		first.setIsParaStart(true);
+		first.setIsLineStart(true);
 		
-		return tokList;
+		// The boundary realign is the only annotation that looks back at the 
+		// previous token.
+		CharWindow tokenVal = new CharWindow(false);
+		if(last != null && last.getIsSentBreak() &&
+		   langVars.getSentBoundRealignPattern().matcher(tokenVal.set(first)).find())
+		{
+			last.setIsSentBreak(false);
+			first.setIsSentBreak(true);
+		}
+	}
+	
+	/*
+	 * Check whether a token is equal to one of a list of strings.
+	 */
+	private static boolean isOneOf(Token token, String[] strings)
+	{
+		for(String s: strings)
+			if(token.valueEquals(s))
+				return true;
+		
+		return false;
 	}
 
 	/**
 	 * This is a helper function that returns an original input text broken into 
 	 * sentences. It does the job of collecting tokens into sentence objects and
-	 * preserving the original whitespace of the text. This method is specific to 
-	 * the implementation of our tokenizer because each tokenizer has different
-	 * behaviors with stripping white space from tokens.
+	 * preserving the original whitespace of the text. Each sentence ends at a
+	 * token marked as a sentence break, tokens after the last one aren't part
+	 * of any sentence. 
+	 * 
+	 * Sentences are ranges of the text and of the list of tokens, so this is a
+	 * single pass over the tokens. The whitespace between the tokens is taken 
+	 * from the text at their positions, which must be their positions within
+	 * the text, when the string representation of a sentence is asked for.
+	 * The text can be a MappedText of any length, the sentences keep their
+	 * offsets into it as longs.
 	 * 
 	 * @param tokens The list of tokens corresponding to this text.
 	 * @param text The original text before any tokenization.
 	 * @return
 	 */
-	public SentenceList buildSentenceList(String text, List<Token> tokens) {
-		ArrayList<Sentence> sents = new ArrayList<Sentence>();
+	public SentenceList buildSentenceList(CharSequence text, List<Token> tokens) {
+		return buildSentenceList(text, tokens, 0, tokens.size());
+	}
 	
-		// Lets make a regex for whitespace
-		Pattern ws_regex = Pattern.compile("\\s*");
-		
-		// Keep track of our position in the source text
-		int pos = 0;
+	/**
+	 * Break a range of the tokens of a text into sentences, as 
+	 * buildSentenceList(CharSequence, List) does for all of them. The token 
+	 * ranges of the sentences are indexes into the whole list.
+	 * 
+	 * @param text The original text before any tokenization.
+	 * @param tokens All the tokens of the text.
+	 * @param from The index of the first token of the range.
+	 * @param to The index after the last token of the range.
+	 * @return The sentences of the range.
+	 */
+	public SentenceList buildSentenceList(CharSequence text, List<Token> tokens, int from, int to) {
+		ArrayList<Sentence> sents = new ArrayList<Sentence>();
 		
-		// Current sentence
-		Sentence sent = new Sentence();
-		String sentString = "";
+		// The first token of the current sentence
+		int first = from;
 		
-		for(Token tok: tokens)
+		int i = from;
+		for(Token tok: tokens.subList(from, to))
 		{
-			String tokVal = tok.getValue();
-			
-			// Get whitespace before this token so we can update position
-			Matcher ws_matcher = ws_regex.matcher(text);
-			
-			String ws = "";
-			if(ws_matcher.find(pos))
-				ws = ws_matcher.group();
-			
-			// Update the position by the length of the whitespace
-			pos += ws.length();
-			
-			// Check to see if our token doesn't match the string text.
-			// This can be because of the regex's we used stripping out 
-			// whitespace.
-			if(text.substring(pos, pos+tokVal.length()) != tokVal)
-			{
-				// Create a pattern that matches the preceding whitespace
-				// and our token inclusive.
-				String regex_patt = "\\s*" + Pattern.quote(tokVal);
-				
-				// Make a regex and extract the group and make this our new
-				// token value. 
-				Matcher m = Pattern.compile(regex_patt).matcher(text);
-				
-				if(m.find(pos))
-					tokVal = m.group();
-			}
-			
-			// Better be equal now or we are in trouble
-			assert(text.substring(pos, pos+tokVal.length()+1) != tokVal);
-			
-			// Update the position to move to the end of token
-			pos += tokVal.length();
-						
-			// If this token is not the start of a sentence, add the preceding whitespace
-			// before the token.
-			if(sentString != "")
-				sentString+=ws;
-			sentString+=tok.toString();
-				
-			// Add this token to our sentence
-			sent.addToken(tok);
+			i++;
 			
 			// If we are at a sentence break. Start a new sentence
 			if(tok.getIsSentBreak())
 			{
-				sent.setStringRep(sentString);
-				sents.add(sent);
-				
-				sent = new Sentence();
-				sentString = "";
+				sents.add(new Sentence(text, tokens, first, i));
+				first = i;
 			}
 		}
 		
-		// Discard the last sentence if it is empty
-		if(sents.get(sents.size()-1).toString() == "")
-			sents.remove(sents.size()-1);
-		
 		// Make the sentence list
 		SentenceList ret = new SentenceList(sents);
 		
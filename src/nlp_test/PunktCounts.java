@@ -0,0 +1,145 @@
+package nlp_test;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * This class is the counts a PunktTrainer learns its parameters from, for
+ * some of the training texts. The first pass over the texts only counts the
+ * types and the tokens, the second pass the rest. Counts of different texts
+ * are merged by adding them up.
+ *
+ * PunktExactCounts keeps every count exactly. PunktSketchCounts keeps them
+ * in a fixed amount of memory, exactly only for the candidates that need
+ * it while they fit. Exact counts are saved with a PunktTrainingState,
+ * sketched ones can't be.
+ *
+ * @author Dave Turner
+ *
+ */
+abstract class PunktCounts implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/*
+	 * The number of tokens, of those that end in a period and of sentence
+	 * breaks.
+	 */
+	long tokens = 0;
+	long periodTokens = 0;
+	long sentBreaks = 0;
+
+	/*
+	 * Make empty counts of the same kind, to count more texts and merge them
+	 * into these. Counts for the second pass are made from the counts of the
+	 * first.
+	 */
+	abstract PunktCounts newCounts();
+
+	/*
+	 * Count a type.
+	 */
+	abstract void addType(String typ);
+
+	/*
+	 * The number of times a type has been seen. This is never less than the
+	 * true count.
+	 */
+	abstract long getTypeCount(String typ);
+
+	/*
+	 * Count a type again in the second pass. Counts that estimate the types
+	 * count the candidate abbreviations of the first pass, with and without
+	 * their periods, exactly this way. Exact counts ignore it.
+	 */
+	abstract void recountType(String typ);
+
+	/*
+	 * Take the exact counts of types made by recountType() in the second
+	 * pass, which these are the counts of the first pass of. Returns true if
+	 * there were any, so the abbreviations should be found again.
+	 */
+	abstract boolean addRecounts(PunktCounts second);
+
+	/*
+	 * Note a token that follows a token that ends in a period. Its type is
+	 * one whose orthographic context can decide a sentence break.
+	 */
+	abstract void addPeriodFollower(Token tok);
+
+	/*
+	 * The types that end in a period, the candidate abbreviations.
+	 */
+	abstract Collection<String> getPeriodFinalTypes();
+
+	/*
+	 * Add an orthographic context flag to a type.
+	 */
+	abstract void addOrtho(String typ, long flag);
+
+	/*
+	 * Add the orthographic contexts counted to some parameters.
+	 */
+	abstract void addOrthoContextsTo(PunktParams params);
+
+	/*
+	 * Count a type that follows a sentence break.
+	 */
+	abstract void addSentStarter(String typ);
+
+	/*
+	 * The number of times each type follows a sentence break.
+	 */
+	abstract Map<String, Long> getSentStarters();
+
+	/*
+	 * Count a candidate collocation.
+	 */
+	abstract void addCollocation(Tuple pair);
+
+	/*
+	 * The number of times each candidate collocation is seen.
+	 */
+	abstract Map<Tuple, Long> getCollocations();
+
+	/*
+	 * Note a type that is a rare abbreviation.
+	 */
+	abstract void addRareAbbrev(String typ);
+
+	/*
+	 * The rare abbreviations.
+	 */
+	abstract Collection<String> getRareAbbrevs();
+
+	/*
+	 * Note a pair of a type that is a rare abbreviation if the type after it
+	 * has the right orthographic context.
+	 */
+	abstract void addRareAbbrevCandidate(Tuple pair);
+
+	/*
+	 * The candidate rare abbreviations.
+	 */
+	abstract Collection<Tuple> getRareAbbrevCandidates();
+
+	/*
+	 * Add other counts of the same kind to these.
+	 */
+	void merge(PunktCounts other)
+	{
+		tokens += other.tokens;
+		periodTokens += other.periodTokens;
+		sentBreaks += other.sentBreaks;
+
+		mergeCounts(other);
+	}
+
+	/*
+	 * Add the counts other than the totals of other counts of the same kind
+	 * to these.
+	 */
+	protected abstract void mergeCounts(PunktCounts other);
+
+}
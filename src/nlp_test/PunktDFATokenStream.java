@@ -0,0 +1,378 @@
+package nlp_test;
+
+/**
+ * This class is a drop in replacement for PunktTokenStream that does not
+ * use regular expressions. Instead, the character classes defined in
+ * PunktLanguageVariables (non-word characters, characters that can't start
+ * words and the multi-character punctuation) are compiled into a lookup
+ * table and the text is scanned by a small state machine. It produces exactly
+ * the same tokens, positions and line\paragraph annotations as the word
+ * tokenizer regex built by PunktLanguageVariables.getWordTokenizePattern().
+ *
+ * The state machine has two states. In the start state we skip whitespace
+ * and decide, from the class of the current character, whether we are
+ * looking at multi-character punctuation, a single punctuation character or
+ * the start of a word. In the word state we consume characters until we hit
+ * one whose class ends a word. Only hyphens, periods and commas need to look
+ * past the current character to make that decision.
+ *
+ * @author Dave Turner
+ *
+ */
+public class PunktDFATokenStream implements TokenStream {
+
+	/*
+	 * Character class flags. A character can belong to several classes.
+	 */
+	static final byte WHITESPACE = 1;
+	static final byte NON_WORD = 1 << 1;
+	static final byte NON_WORD_START = 1 << 2;
+	static final byte HYPHEN = 1 << 3;
+	static final byte PERIOD = 1 << 4;
+	static final byte COMMA = 1 << 5;
+	static final byte LINE_TERMINATOR = 1 << 6;
+
+	/*
+	 * Characters which always continue a word when we are in the word state.
+	 * This is the fast path of the scanner.
+	 */
+	static final byte WORD_BREAKS = 
+			WHITESPACE | NON_WORD | HYPHEN | PERIOD | COMMA | LINE_TERMINATOR;
+
+	/*
+	 * This text we are processing
+	 */
+	private String text;
+
+	/*
+	 * The class flags for each ASCII character. Anything outside of ASCII
+	 * is a plain word character.
+	 */
+	private byte[] charClasses;
+
+	/*
+	 * Where are we scanning within the text?
+	 */
+	int currPos = 0;
+
+	/*
+	 * The index of the end of the line we are scanning. This is either
+	 * an endline character or the end of the text.
+	 */
+	int currLineEnd = 0;
+
+	/*
+	 * Language specific variables for word tokenization and more.
+	 */
+	private PunktLanguageVariables langVars;
+
+	/*
+	 * At all time we keep track of the previous and current token in the
+	 * stream.
+	 */
+	Token prev = null;
+	Token curr = null;
+
+	/*
+	 * Are we currently on a paragraph start state. This means we encountered
+	 * a blank line.
+	 */
+	private boolean isParaStart = false;
+
+	/*
+	 * Are we currently on a line start state.
+	 */
+	private boolean isLineStart = false;
+
+	public PunktDFATokenStream(String text, PunktLanguageVariables langVars)
+	{
+		this.langVars = langVars;
+		this.text = text;
+
+		generalInit();
+	}
+
+	public PunktDFATokenStream(String text)
+	{
+		// Use the default english language variables
+		this(text, new PunktLanguageVariables());
+	}
+
+	private void generalInit()
+	{
+		charClasses = compileCharClasses(langVars);
+
+		currPos = 0;
+		currLineEnd = lineEnd(0);
+	}
+
+	/**
+	 * Build the character class table for the scanner from a set of
+	 * language variables.
+	 *
+	 * @param langVars The language variables to use.
+	 * @return The class flags for each ASCII character.
+	 */
+	static byte[] compileCharClasses(PunktLanguageVariables langVars)
+	{
+		byte[] classes = new byte[128];
+
+		// Whitespace as defined by \s in the word tokenizer regex.
+		for(char c: new char[] {' ', '\t', '\n', '\u000B', '\f', '\r'})
+			classes[c] |= WHITESPACE;
+		classes['\r'] |= LINE_TERMINATOR;
+
+		for(String c: langVars.getNonWordChars())
+			classes[c.charAt(0)] |= NON_WORD;
+
+		for(String c: langVars.getNonWordStartChars())
+			classes[c.charAt(0)] |= NON_WORD_START;
+
+		// These can start multi-character punctuation or, for the comma,
+		// end a word depending on what follows them.
+		classes['-'] |= HYPHEN;
+		classes['.'] |= PERIOD;
+		classes[','] |= COMMA;
+
+		return classes;
+	}
+
+	/*
+	 * Get the class flags for a character. The only non-ASCII characters 
+	 * we care about are the unicode line terminators.
+	 */
+	private byte charClass(char c)
+	{
+		if(c < 128)
+			return charClasses[c];
+		
+		if(c == '\u0085' || c == '\u2028' || c == '\u2029')
+			return LINE_TERMINATOR;
+		
+		return 0;
+	}
+
+	/*
+	 * Find the end of the line that starts at an index.
+	 */
+	private int lineEnd(int start)
+	{
+		int end = text.indexOf('\n', start);
+		return end < 0 ? text.length() : end;
+	}
+
+	/*
+	 * Check whether a line is blank, that is made up of nothing but
+	 * whitespace and control characters.
+	 */
+	private boolean isBlankLine(int start, int end)
+	{
+		for(int i=start; i<end; i++)
+			if(text.charAt(i) > ' ')
+				return false;
+
+		return true;
+	}
+
+	/*
+	 * Check whether an index is at the end of the current line. Like
+	 * the $ of a regex this also matches right before a line terminator
+	 * which ends the line.
+	 */
+	private boolean isEnd(int i)
+	{
+		if(i >= currLineEnd)
+			return true;
+
+		return i == currLineEnd-1 && 
+			   (charClass(text.charAt(i)) & LINE_TERMINATOR) != 0;
+	}
+
+	/*
+	 * Get the length of the multi-character punctuation at an index. This
+	 * is a run of two or more hyphens, a run of two or more periods or
+	 * periods separated by single whitespace characters ". . .". Returns 0
+	 * if there is none.
+	 */
+	private int multiCharLength(int i)
+	{
+		if(i+1 >= currLineEnd)
+			return 0;
+
+		char c = text.charAt(i);
+
+		if((c == '-' || c == '.') && text.charAt(i+1) == c)
+		{
+			int j = i+2;
+			while(j < currLineEnd && text.charAt(j) == c)
+				j++;
+
+			return j-i;
+		}
+
+		if(c != '.')
+			return 0;
+
+		// Count the period-whitespace pairs
+		int pairs = 0;
+		int j = i;
+		while(j+1 < currLineEnd && text.charAt(j) == '.' &&
+			  (charClass(text.charAt(j+1)) & WHITESPACE) != 0)
+		{
+			pairs++;
+			j += 2;
+		}
+
+		// We need at least two pairs followed by a period. If the pairs
+		// aren't followed by a period, the last pair's period ends it.
+		if(pairs >= 2 && j < currLineEnd && text.charAt(j) == '.')
+			return 2*pairs + 1;
+		else if(pairs >= 3)
+			return 2*pairs - 1;
+		else
+			return 0;
+	}
+
+	/*
+	 * Check whether a word ends before the character at an index.
+	 */
+	private boolean isWordEnd(int i)
+	{
+		if(isEnd(i))
+			return true;
+
+		byte cls = charClass(text.charAt(i));
+
+		if((cls & (WHITESPACE | NON_WORD)) != 0)
+			return true;
+
+		if((cls & (HYPHEN | PERIOD)) != 0 && multiCharLength(i) > 0)
+			return true;
+
+		// A comma only ends a word if the comma is itself at the end of
+		// a word.
+		if((cls & COMMA) != 0)
+		{
+			if(isEnd(i+1))
+				return true;
+
+			byte nextCls = charClass(text.charAt(i+1));
+			return (nextCls & (WHITESPACE | NON_WORD)) != 0 ||
+				   ((nextCls & (HYPHEN | PERIOD)) != 0 && multiCharLength(i+1) > 0);
+		}
+
+		return false;
+	}
+
+	/*
+	 * Scan a token that starts on a non-whitespace character at an index.
+	 * Returns the index of the end of the token.
+	 */
+	private int scanToken(int start)
+	{
+		byte cls = charClass(text.charAt(start));
+
+		// Multi-character punctuation takes precedence over everything else.
+		if((cls & (HYPHEN | PERIOD)) != 0)
+		{
+			int len = multiCharLength(start);
+			if(len > 0)
+				return start + len;
+		}
+
+		// Characters that can't start words are tokens by themselves.
+		if((cls & NON_WORD_START) != 0)
+			return start + 1;
+
+		// We are in a word, consume characters until the word ends.
+		int i = start + 1;
+		while(true)
+		{
+			// Fast path, characters that can never end a word.
+			while(i < currLineEnd && (charClass(text.charAt(i)) & WORD_BREAKS) == 0)
+				i++;
+
+			if(isWordEnd(i))
+				return i;
+
+			i++;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see nlp_test.TokenStream#getToken()
+	 */
+	public Token getToken()
+	{
+		// Skip any whitespace before the next token on this line.
+		while(currPos < currLineEnd && (charClass(text.charAt(currPos)) & WHITESPACE) != 0)
+			currPos++;
+
+		// If we have no tokens left on the current line, then move to the next
+		while(currPos >= currLineEnd)
+		{
+			// If we have reached the end of the text. We are done.
+			if(currLineEnd >= text.length())
+			{
+				prev = curr;
+				curr = null;
+				return curr;
+			}
+
+			// Move to the next line
+			currPos = currLineEnd + 1;
+			currLineEnd = lineEnd(currPos);
+			isLineStart = true;
+
+			// Skip blank lines. But keep track of when we do because the next token
+			// will be annotated with a paragraph start tag
+			while(isBlankLine(currPos, currLineEnd))
+			{
+				if(currLineEnd >= text.length())
+				{
+					prev = curr;
+					curr = null;
+					return curr;
+				}
+
+				currPos = currLineEnd + 1;
+				currLineEnd = lineEnd(currPos);
+				isParaStart = true;
+			}
+
+			while(currPos < currLineEnd && (charClass(text.charAt(currPos)) & WHITESPACE) != 0)
+				currPos++;
+		}
+
+		int start = currPos;
+		currPos = scanToken(start);
+
+		// Make the current guy, the new previous guy
+		prev = curr;
+
+		// Create a new token that is a view of the scanned text
+		curr = new Token(text, start, currPos - start);
+		curr.setIsParaStart(isParaStart);
+		curr.setIsLineStart(isLineStart);
+		isLineStart = false;
+		isParaStart = false;
+
+		return curr;
+	}
+
+	/* (non-Javadoc)
+	 * @see nlp_test.TokenStream#getPreviousToken()
+	 */
+	public Token getPreviousToken()
+	{
+		return prev;
+	}
+
+	/* (non-Javadoc)
+	 * @see nlp_test.TokenStream#getText()
+	 */
+	public String getText() {
+		return text;
+	}
+
+}
@@ -0,0 +1,206 @@
+package nlp_test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is the counts of a PunktTrainer kept exactly, in hash maps of
+ * every type, candidate and orthographic context seen. Merging them is a
+ * sum or a union, so the parameters learned from them don't depend on the
+ * order the texts are counted in. They are the counts a PunktTrainingState
+ * keeps.
+ *
+ * @author Dave Turner
+ *
+ */
+class PunktExactCounts extends PunktCounts {
+
+	private static final long serialVersionUID = 1L;
+
+	/*
+	 * The number of times each type is seen.
+	 */
+	private HashMap<String, long[]> types = new HashMap<String, long[]>();
+
+	/*
+	 * The orthographic context flags of each type.
+	 */
+	private HashMap<String, long[]> ortho = new HashMap<String, long[]>();
+
+	/*
+	 * The number of times each type follows a sentence break.
+	 */
+	private HashMap<String, long[]> sentStarters = new HashMap<String, long[]>();
+
+	/*
+	 * The number of times each candidate collocation is seen.
+	 */
+	private HashMap<Tuple, long[]> collocations = new HashMap<Tuple, long[]>();
+
+	/*
+	 * Types that are rare abbreviations, and pairs of a type that is if the
+	 * type after it has the right orthographic context.
+	 */
+	private HashSet<String> rareAbbrevs = new HashSet<String>();
+	private HashSet<Tuple> rareAbbrevCandidates = new HashSet<Tuple>();
+
+	@Override
+	PunktCounts newCounts()
+	{
+		return new PunktExactCounts();
+	}
+
+	@Override
+	void addType(String typ)
+	{
+		add(types, typ, 1);
+	}
+
+	@Override
+	long getTypeCount(String typ)
+	{
+		long[] count = types.get(typ);
+		return count == null ? 0 : count[0];
+	}
+
+	@Override
+	void recountType(String typ)
+	{
+		// The types are already counted exactly
+	}
+
+	@Override
+	boolean addRecounts(PunktCounts second)
+	{
+		return false;
+	}
+
+	@Override
+	void addPeriodFollower(Token tok)
+	{
+		// Every type's orthographic context is kept
+	}
+
+	@Override
+	Collection<String> getPeriodFinalTypes()
+	{
+		List<String> candidates = new ArrayList<String>();
+		for(String typ: types.keySet())
+			if(typ.endsWith("."))
+				candidates.add(typ);
+
+		return candidates;
+	}
+
+	@Override
+	void addOrtho(String typ, long flag)
+	{
+		long[] flags = ortho.get(typ);
+		if(flags == null)
+			ortho.put(typ, new long[] {flag});
+		else
+			flags[0] |= flag;
+	}
+
+	@Override
+	void addOrthoContextsTo(PunktParams params)
+	{
+		for(Map.Entry<String, long[]> e: ortho.entrySet())
+			params.addOrthoContext(e.getKey(), e.getValue()[0]);
+	}
+
+	@Override
+	void addSentStarter(String typ)
+	{
+		add(sentStarters, typ, 1);
+	}
+
+	@Override
+	Map<String, Long> getSentStarters()
+	{
+		return toMap(sentStarters);
+	}
+
+	@Override
+	void addCollocation(Tuple pair)
+	{
+		add(collocations, pair, 1);
+	}
+
+	@Override
+	Map<Tuple, Long> getCollocations()
+	{
+		return toMap(collocations);
+	}
+
+	@Override
+	void addRareAbbrev(String typ)
+	{
+		rareAbbrevs.add(typ);
+	}
+
+	@Override
+	Collection<String> getRareAbbrevs()
+	{
+		return rareAbbrevs;
+	}
+
+	@Override
+	void addRareAbbrevCandidate(Tuple pair)
+	{
+		rareAbbrevCandidates.add(pair);
+	}
+
+	@Override
+	Collection<Tuple> getRareAbbrevCandidates()
+	{
+		return rareAbbrevCandidates;
+	}
+
+	@Override
+	protected void mergeCounts(PunktCounts counts)
+	{
+		PunktExactCounts other = (PunktExactCounts)counts;
+
+		for(Map.Entry<String, long[]> e: other.types.entrySet())
+			add(types, e.getKey(), e.getValue()[0]);
+		for(Map.Entry<String, long[]> e: other.ortho.entrySet())
+			addOrtho(e.getKey(), e.getValue()[0]);
+		for(Map.Entry<String, long[]> e: other.sentStarters.entrySet())
+			add(sentStarters, e.getKey(), e.getValue()[0]);
+		for(Map.Entry<Tuple, long[]> e: other.collocations.entrySet())
+			add(collocations, e.getKey(), e.getValue()[0]);
+
+		rareAbbrevs.addAll(other.rareAbbrevs);
+		rareAbbrevCandidates.addAll(other.rareAbbrevCandidates);
+	}
+
+	/*
+	 * Add to the count of a key.
+	 */
+	private static <K> void add(HashMap<K, long[]> counts, K key, long n)
+	{
+		long[] count = counts.get(key);
+		if(count == null)
+			counts.put(key, new long[] {n});
+		else
+			count[0] += n;
+	}
+
+	/*
+	 * Copy counts into a map of their values.
+	 */
+	private static <K> Map<K, Long> toMap(HashMap<K, long[]> counts)
+	{
+		HashMap<K, Long> map = new HashMap<K, Long>(counts.size() * 2);
+		for(Map.Entry<K, long[]> e: counts.entrySet())
+			map.put(e.getKey(), e.getValue()[0]);
+
+		return map;
+	}
+
+}
@@ -31,6 +31,9 @@ public class PunktFirstPassSentenceTokenizer extends PunktAlgoBase {
 		
 		// Setup the abbreviations
 		params.getAbbreviations().addAll(Arrays.asList(abbreviations));
+		
+		// Frozen parameters are looked up without copying the tokens
+		params = params.freeze();
 	}
 	
 }
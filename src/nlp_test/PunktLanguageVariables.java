@@ -79,6 +79,18 @@ public class PunktLanguageVariables	 {
 	 */
 	private static String internal_punctuation = ",:;";
 	
+	/**
+	 * Check if a character is sentence internal punctuation, which is
+	 * evidence that a period token before it is not a sentence break.
+	 * 
+	 * @param c The character to check.
+	 * @return true if yes, false if no.
+	 */
+	public boolean isInternalPunctuation(char c)
+	{
+		return internal_punctuation.indexOf(c) >= 0;
+	}
+	
 	private String[] nonWordStartChars = 
 		{"(", "\"", "`", "{", 
 		 ":", ";", "&", "#", 
@@ -1,8 +1,10 @@
 package nlp_test;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * This simple class stores parameters for the Punkt sentence boundary detection
@@ -42,7 +44,7 @@ public class PunktParams {
 	 * Get the set of common collocations
 	 * @return The set.
 	 */
-	public HashSet<Tuple> getCollocations()
+	public Set<Tuple> getCollocations()
 	{
 		return collocs;
 	}
@@ -51,7 +53,7 @@ public class PunktParams {
 	 * Get the set of common abbreviations.
 	 * @return The set.
 	 */
-	public HashSet<String> getAbbreviations()
+	public Set<String> getAbbreviations()
 	{
 		return abbrevs;
 	}
@@ -60,7 +62,7 @@ public class PunktParams {
 	 * Get the set of sentence starter tokens.
 	 * @return The set.
 	 */
-	public HashSet<String> getSentenceStarters()
+	public Set<String> getSentenceStarters()
 	{
 		return sent_starters;
 	}
@@ -97,15 +99,28 @@ public class PunktParams {
 		ortho_context = new HashMap<String, Long>();
 	}
 	
+	/*
+	 * Get a lower cased String of some characters to look up our sets of
+	 * lower case strings. Our sets are keyed by String, so anything else is
+	 * copied; FrozenPunktParams looks up characters in place.
+	 */
+	private static String lowerCaseKey(CharSequence val)
+	{
+		if(val instanceof CharWindow && ((CharWindow)val).isLowerCase())
+			return val.toString();
+		
+		return val.toString().toLowerCase();
+	}
+	
 	/**
 	 * Check to see if a string matches our abbreviations list. Ignore case.
 	 * Assumes that trailing periods have been removed from token.
 	 * @param val The string to test. No trailing period.
 	 * @return true if it is and abbreviation, false if not.
 	 */
-	public boolean isAbbreviation(String val)
+	public boolean isAbbreviation(CharSequence val)
 	{
-		return(abbrevs.contains(val.toLowerCase()));
+		return(abbrevs.contains(lowerCaseKey(val)));
 	}
 	
 	/**
@@ -114,9 +129,9 @@ public class PunktParams {
 	 * @param val String to check.
 	 * @return True if yes, false if no.
 	 */
-	public boolean isSentenceStarter(String val)
+	public boolean isSentenceStarter(CharSequence val)
 	{
-		return(sent_starters.contains(val.toLowerCase()));
+		return(sent_starters.contains(lowerCaseKey(val)));
 	}
 	
 	/**
@@ -125,11 +140,24 @@ public class PunktParams {
 	 * @param val Tuple to check.
 	 * @return True if yes, false if no.
 	 */
-	public boolean isCollocation(String val)
+	public boolean isCollocation(Tuple val)
 	{
 		return(collocs.contains(val));
 	}
 	
+	/**
+	 * Is a pair of strings a common collocation, the same as isCollocation()
+	 * of a Tuple of them.
+	 * 
+	 * @param first The first string, the type ending in a period.
+	 * @param second The string that follows it.
+	 * @return True if yes, false if no.
+	 */
+	public boolean isCollocation(CharSequence first, CharSequence second)
+	{
+		return(collocs.contains(new Tuple(first.toString(), second.toString())));
+	}
+	
 	/**
 	 * Get the current orthographic context flags for a given
 	 * string.
@@ -146,6 +174,22 @@ public class PunktParams {
 			return flags;
 	}
 	
+	/**
+	 * Get the current orthographic context flags for some characters, the
+	 * same as getOrthoContext() of a String of them.
+	 * @param val The characters to check.
+	 * @return This flags expressed as a long value.
+	 */
+	public long getOrthoContext(CharSequence val)
+	{
+		Long flags = ortho_context.get(val.toString());
+		
+		if(flags == null)
+			return 0;
+		else
+			return flags;
+	}
+	
 	/**
 	 * Add an orthographic context flag for a specific word.
 	 * @param val The word to change.
@@ -163,7 +207,47 @@ public class PunktParams {
 		
 		ortho_context.put(val, flags);
 	}
-	
+
+	/**
+	 * Freeze a copy of these parameters for annotating texts. The copy can't
+	 * be changed, is safe to share between threads and looks things up
+	 * without making any objects. Changes to these parameters afterwards
+	 * don't change it.
+	 *
+	 * @return The frozen parameters.
+	 */
+	public FrozenPunktParams freeze()
+	{
+		return new FrozenPunktParams(this);
+	}
+
+	/**
+	 * Write these parameters to a file that load() can map. The file is in
+	 * a versioned binary format, see PunktParamsFile.
+	 *
+	 * @param filePath The path of the file to write.
+	 * @throws IOException If the file can't be written.
+	 */
+	public void write(String filePath) throws IOException
+	{
+		PunktParamsFile.write(this, filePath);
+	}
+
+	/**
+	 * Load parameters written by write(). The file is mapped into memory and
+	 * looked up in place, not read, so this takes the same time for any size
+	 * of file.
+	 *
+	 * @param filePath The path of the file.
+	 * @return The parameters, frozen.
+	 * @throws IOException If the file can't be read or isn't a parameters
+	 * file of a version we understand.
+	 */
+	public static FrozenPunktParams load(String filePath) throws IOException
+	{
+		return PunktParamsFile.load(filePath);
+	}
+
 	
 	public PunktParams()
 	{
@@ -0,0 +1,148 @@
+package nlp_test;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class writes parameters of the Punkt algorithm to a file and maps
+ * them back. The file holds the tables of FrozenPunktParams, so loading it
+ * only maps it and reads its header and the headers of the tables, and the
+ * tables are looked up in the file in place. Processes on the same machine
+ * share one copy of it in the page cache.
+ *
+ * The file is laid out as a header of 8 ints (magic number, format
+ * version, where the abbreviations, collocations, sentence starters and
+ * orthographic contexts start, the size of the file and a reserved 0)
+ * followed by the four tables, each laid out as MappedStringTable says and
+ * starting on a multiple of 8 bytes. All numbers are big endian.
+ *
+ * @author Dave Turner
+ *
+ */
+final class PunktParamsFile {
+
+	/*
+	 * The magic number that starts a parameters file and the version of the
+	 * format we read and write.
+	 */
+	static final int FILE_MAGIC = 0x50554e4b;
+	static final int FILE_VERSION = 1;
+
+	/*
+	 * The number of bytes in the header of a parameters file.
+	 */
+	private static final int HEADER_SIZE = 32;
+
+	/*
+	 * The number of tables in a parameters file.
+	 */
+	private static final int TABLES = 4;
+
+	private PunktParamsFile()
+	{
+	}
+
+	/*
+	 * Write some parameters to a file, frozen first if they aren't.
+	 */
+	static void write(PunktParams params, String filePath) throws IOException
+	{
+		FrozenPunktParams frozen = params.freeze();
+		StringTable[] tables = {frozen.abbrevTable, frozen.collocTable, frozen.starterTable, frozen.orthoTable};
+
+		long[] offsets = new long[TABLES + 1];
+		offsets[0] = HEADER_SIZE;
+		for(int t=0; t<TABLES; t++)
+			offsets[t+1] = align(offsets[t] + MappedStringTable.byteSize(tables[t]));
+		if(offsets[TABLES] > Integer.MAX_VALUE)
+			throw new IOException("Parameters are too large to write to " + filePath);
+
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(filePath), 1 << 16));
+		try
+		{
+			out.writeInt(FILE_MAGIC);
+			out.writeInt(FILE_VERSION);
+			for(long offset: offsets)
+				out.writeInt((int)offset);
+			out.writeInt(0);
+
+			for(int t=0; t<TABLES; t++)
+			{
+				MappedStringTable.write(tables[t], out);
+				while(out.size() < offsets[t+1])
+					out.writeByte(0);
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/*
+	 * Map the parameters in a file written by write().
+	 */
+	static FrozenPunktParams load(String filePath) throws IOException
+	{
+		MappedByteBuffer file;
+		FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+		try
+		{
+			if(channel.size() > Integer.MAX_VALUE)
+				throw new IOException("Parameters file " + filePath + " is too large to map.");
+
+			file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		finally
+		{
+			channel.close();
+		}
+
+		if(file.capacity() < HEADER_SIZE || file.getInt(0) != FILE_MAGIC)
+			throw new IOException(filePath + " is not a Punkt parameters file.");
+		if(file.getInt(4) != FILE_VERSION)
+			throw new IOException("Parameters file " + filePath + " is version " + file.getInt(4) +
+					", only version " + FILE_VERSION + " is supported.");
+		if(file.getInt(8) != HEADER_SIZE || file.getInt(8 + 4 * TABLES) != file.capacity())
+			throw new IOException("Parameters file " + filePath + " is truncated or corrupt.");
+
+		StringTable[] tables = new StringTable[TABLES];
+		for(int t=0; t<TABLES; t++)
+		{
+			int start = file.getInt(8 + 4 * t);
+			int end = file.getInt(12 + 4 * t);
+			if(end < start || end - start < MappedStringTable.HEADER_SIZE)
+				throw new IOException("Parameters file " + filePath + " is truncated or corrupt.");
+
+			try
+			{
+				tables[t] = new MappedStringTable(MappedStringTable.slice(file, start, end - start));
+			}
+			catch(IOException e)
+			{
+				throw new IOException("Parameters file " + filePath + " is corrupt: " + e.getMessage(), e);
+			}
+		}
+		if(!tables[1].hasPairs() || !tables[3].hasValues() || tables[0].hasPairs() || tables[2].hasPairs() ||
+				tables[3].hasPairs())
+			throw new IOException("Parameters file " + filePath + " is corrupt.");
+
+		return new FrozenPunktParams(tables[0], tables[1], tables[2], tables[3]);
+	}
+
+	/*
+	 * Round up to a multiple of 8.
+	 */
+	private static long align(long offset)
+	{
+		return (offset + 7) & ~7L;
+	}
+
+}
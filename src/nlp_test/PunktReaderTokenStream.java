@@ -0,0 +1,499 @@
+package nlp_test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * This class tokenizes text read from a Reader or a channel, so the text
+ * never has to be in memory all at once. It uses the same state machine as
+ * PunktDFATokenStream and produces exactly the same tokens, positions and
+ * line\paragraph annotations, but it scans a buffer of a fixed number of
+ * characters that is refilled as it goes. Only the characters from the start
+ * of the token being scanned onwards are kept when the buffer is refilled,
+ * so memory use doesn't grow with the size of the input. The buffer only
+ * grows if a single token, or a run of whitespace at the start of a line,
+ * doesn't fit in it.
+ *
+ * Tokens from this stream have their own copy of their characters. The
+ * positions of the tokens are their offsets within the whole input, which
+ * the stream counts as it reads. getText() returns null because the stream
+ * never has the whole text.
+ *
+ * It can also scan a MappedText in place, in which case there is no buffer
+ * at all and the positions of the tokens can be past 2G characters.
+ *
+ * An IOException from the Reader is thrown from getToken() as an
+ * UncheckedIOException.
+ *
+ * @author Dave Turner
+ *
+ */
+public class PunktReaderTokenStream implements TokenStream, Closeable {
+
+	/**
+	 * The default number of characters read at a time.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/*
+	 * What peek() returns past the end of the input.
+	 */
+	private static final int EOF = -1;
+
+	/*
+	 * The text we are reading.
+	 */
+	private Reader reader;
+
+	/*
+	 * The mapped text we scan in place, null if we read from a Reader.
+	 */
+	private MappedText mapped;
+
+	/*
+	 * The characters we have read but not yet finished with. buffer[0] is
+	 * the character at offset bufferStart of the input.
+	 */
+	private char[] buffer;
+	private long bufferStart = 0;
+	private int bufferLength = 0;
+
+	/*
+	 * Have we read everything there is.
+	 */
+	private boolean atEOF = false;
+
+	/*
+	 * The class flags for each ASCII character. Anything outside of ASCII
+	 * is a plain word character.
+	 */
+	private byte[] charClasses;
+
+	/*
+	 * Where are we scanning within the input? Nothing before this is ever
+	 * looked at again.
+	 */
+	long currPos = 0;
+
+	/*
+	 * Language specific variables for word tokenization and more.
+	 */
+	private PunktLanguageVariables langVars;
+
+	/*
+	 * At all time we keep track of the previous, current, and next token in
+	 * the stream.
+	 */
+	Token prev = null;
+	Token curr = null;
+	Token next = null;
+
+	/*
+	 * Are we currently on a paragraph start state. This means we encountered
+	 * a blank line.
+	 */
+	private boolean isParaStart = false;
+
+	/*
+	 * Are we currently on a line start state.
+	 */
+	private boolean isLineStart = false;
+
+	public PunktReaderTokenStream(Reader reader, PunktLanguageVariables langVars, int bufferSize)
+	{
+		if(bufferSize <= 0)
+			throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+
+		this.reader = reader;
+		this.langVars = langVars;
+		this.buffer = new char[bufferSize];
+		this.charClasses = PunktDFATokenStream.compileCharClasses(langVars);
+	}
+
+	public PunktReaderTokenStream(Reader reader, PunktLanguageVariables langVars)
+	{
+		this(reader, langVars, DEFAULT_BUFFER_SIZE);
+	}
+
+	public PunktReaderTokenStream(Reader reader)
+	{
+		// Use the default english language variables
+		this(reader, new PunktLanguageVariables());
+	}
+
+	/**
+	 * Create a stream that decodes the bytes of a channel. Malformed input
+	 * is replaced the same way new String(bytes, charset) does.
+	 *
+	 * @param channel The channel to read.
+	 * @param charset The encoding of the text.
+	 * @param langVars The language variables to use.
+	 */
+	public PunktReaderTokenStream(ReadableByteChannel channel, Charset charset, PunktLanguageVariables langVars)
+	{
+		this(Channels.newReader(channel, charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE), -1), langVars);
+	}
+
+	/**
+	 * Create a stream that scans a mapped file in place.
+	 *
+	 * @param text The text to scan.
+	 * @param langVars The language variables to use.
+	 */
+	public PunktReaderTokenStream(MappedText text, PunktLanguageVariables langVars)
+	{
+		this.mapped = text;
+		this.langVars = langVars;
+		this.charClasses = PunktDFATokenStream.compileCharClasses(langVars);
+	}
+
+	public PunktReaderTokenStream(MappedText text)
+	{
+		// Use the default english language variables
+		this(text, new PunktLanguageVariables());
+	}
+
+	/*
+	 * Get the character at an offset of the input, or EOF if the input
+	 * isn't that long. The offset must not be before currPos.
+	 */
+	private int peek(long i)
+	{
+		if(mapped != null)
+			return mapped.peek(i);
+
+		if(i - bufferStart >= bufferLength && !fill(i))
+			return EOF;
+
+		return buffer[(int)(i - bufferStart)];
+	}
+
+	/*
+	 * Read until the buffer holds the character at an offset. Everything
+	 * before currPos is thrown away to make room. Returns false if the
+	 * input ends first.
+	 */
+	private boolean fill(long i)
+	{
+		try
+		{
+			while(i - bufferStart >= bufferLength)
+			{
+				if(atEOF)
+					return false;
+
+				if(bufferLength == buffer.length)
+				{
+					// Move what we still need to the front, and grow the buffer
+					// if that leaves it more than half full.
+					int keep = (int)(currPos - bufferStart);
+					System.arraycopy(buffer, keep, buffer, 0, bufferLength - keep);
+					bufferLength -= keep;
+					bufferStart += keep;
+
+					if(bufferLength > buffer.length / 2)
+						buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				}
+
+				int read = reader.read(buffer, bufferLength, buffer.length - bufferLength);
+				if(read < 0)
+					atEOF = true;
+				else
+					bufferLength += read;
+			}
+
+			return true;
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/*
+	 * Get the class flags for a character. The only non-ASCII characters
+	 * we care about are the unicode line terminators.
+	 */
+	private byte charClass(int c)
+	{
+		if(c < 128)
+			return charClasses[c];
+
+		if(c == '\u0085' || c == '\u2028' || c == '\u2029')
+			return PunktDFATokenStream.LINE_TERMINATOR;
+
+		return 0;
+	}
+
+	/*
+	 * Check whether an offset is before the end of the current line, that
+	 * is there is a character there and it isn't an endline.
+	 */
+	private boolean inLine(long i)
+	{
+		int c = peek(i);
+		return c != EOF && c != '\n';
+	}
+
+	/*
+	 * Check whether an offset is at the end of the current line. Like
+	 * the $ of a regex this also matches right before a line terminator
+	 * which ends the line.
+	 */
+	private boolean isEnd(long i)
+	{
+		if(!inLine(i))
+			return true;
+
+		return (charClass(peek(i)) & PunktDFATokenStream.LINE_TERMINATOR) != 0 && !inLine(i+1);
+	}
+
+	/*
+	 * Get the length of the multi-character punctuation at an offset. This
+	 * is a run of two or more hyphens, a run of two or more periods or
+	 * periods separated by single whitespace characters ". . .". Returns 0
+	 * if there is none.
+	 */
+	private int multiCharLength(long i)
+	{
+		if(!inLine(i+1))
+			return 0;
+
+		int c = peek(i);
+
+		if((c == '-' || c == '.') && peek(i+1) == c)
+		{
+			long j = i+2;
+			while(inLine(j) && peek(j) == c)
+				j++;
+
+			return (int)(j-i);
+		}
+
+		if(c != '.')
+			return 0;
+
+		// Count the period-whitespace pairs
+		int pairs = 0;
+		long j = i;
+		while(inLine(j+1) && peek(j) == '.' &&
+			  (charClass(peek(j+1)) & PunktDFATokenStream.WHITESPACE) != 0)
+		{
+			pairs++;
+			j += 2;
+		}
+
+		// We need at least two pairs followed by a period. If the pairs
+		// aren't followed by a period, the last pair's period ends it.
+		if(pairs >= 2 && inLine(j) && peek(j) == '.')
+			return 2*pairs + 1;
+		else if(pairs >= 3)
+			return 2*pairs - 1;
+		else
+			return 0;
+	}
+
+	/*
+	 * Check whether a word ends before the character at an offset.
+	 */
+	private boolean isWordEnd(long i)
+	{
+		if(isEnd(i))
+			return true;
+
+		byte cls = charClass(peek(i));
+
+		if((cls & (PunktDFATokenStream.WHITESPACE | PunktDFATokenStream.NON_WORD)) != 0)
+			return true;
+
+		if((cls & (PunktDFATokenStream.HYPHEN | PunktDFATokenStream.PERIOD)) != 0 && multiCharLength(i) > 0)
+			return true;
+
+		// A comma only ends a word if the comma is itself at the end of
+		// a word.
+		if((cls & PunktDFATokenStream.COMMA) != 0)
+		{
+			if(isEnd(i+1))
+				return true;
+
+			byte nextCls = charClass(peek(i+1));
+			return (nextCls & (PunktDFATokenStream.WHITESPACE | PunktDFATokenStream.NON_WORD)) != 0 ||
+				   ((nextCls & (PunktDFATokenStream.HYPHEN | PunktDFATokenStream.PERIOD)) != 0 &&
+				    multiCharLength(i+1) > 0);
+		}
+
+		return false;
+	}
+
+	/*
+	 * Scan a token that starts on a non-whitespace character at an offset.
+	 * Returns the offset of the end of the token.
+	 */
+	private long scanToken(long start)
+	{
+		byte cls = charClass(peek(start));
+
+		// Multi-character punctuation takes precedence over everything else.
+		if((cls & (PunktDFATokenStream.HYPHEN | PunktDFATokenStream.PERIOD)) != 0)
+		{
+			int len = multiCharLength(start);
+			if(len > 0)
+				return start + len;
+		}
+
+		// Characters that can't start words are tokens by themselves.
+		if((cls & PunktDFATokenStream.NON_WORD_START) != 0)
+			return start + 1;
+
+		// We are in a word, consume characters until the word ends.
+		long i = start + 1;
+		while(true)
+		{
+			// Fast path, characters that can never end a word. Endlines are
+			// whitespace so they stop this too.
+			int c;
+			while((c = peek(i)) != EOF && (charClass(c) & PunktDFATokenStream.WORD_BREAKS) == 0)
+				i++;
+
+			if(isWordEnd(i))
+				return i;
+
+			i++;
+		}
+	}
+
+	/*
+	 * Skip any whitespace before the next token on this line.
+	 */
+	private void skipWhitespace()
+	{
+		while(inLine(currPos) && (charClass(peek(currPos)) & PunktDFATokenStream.WHITESPACE) != 0)
+			currPos++;
+	}
+
+	/*
+	 * Find the end of the line at currPos if it is blank, that is made up
+	 * of nothing but whitespace and control characters. Returns -1 if it
+	 * isn't blank.
+	 */
+	private long blankLineEnd()
+	{
+		long i = currPos;
+		while(inLine(i) && peek(i) <= ' ')
+			i++;
+
+		return inLine(i) ? -1 : i;
+	}
+
+	/* (non-Javadoc)
+	 * @see nlp_test.TokenStream#getToken()
+	 */
+	public Token getToken()
+	{
+		skipWhitespace();
+
+		// If we have no tokens left on the current line, then move to the next
+		while(!inLine(currPos))
+		{
+			// If we have reached the end of the text. We are done.
+			if(peek(currPos) == EOF)
+			{
+				prev = curr;
+				curr = null;
+				return curr;
+			}
+
+			// Move to the next line
+			currPos++;
+			isLineStart = true;
+
+			// Skip blank lines. But keep track of when we do because the next token
+			// will be annotated with a paragraph start tag
+			long blankEnd;
+			while((blankEnd = blankLineEnd()) >= 0)
+			{
+				if(peek(blankEnd) == EOF)
+				{
+					prev = curr;
+					curr = null;
+					return curr;
+				}
+
+				currPos = blankEnd + 1;
+				isParaStart = true;
+			}
+
+			skipWhitespace();
+		}
+
+		long start = currPos;
+		long end = scanToken(start);
+
+		// Make the current guy, the new previous guy
+		prev = curr;
+
+		// Create a new token with its own copy of the scanned text
+		if(mapped != null)
+			curr = new Token(mapped.substring(start, end));
+		else
+			curr = new Token(new String(buffer, (int)(start - bufferStart), (int)(end - start)));
+		curr.setPosition(start);
+		curr.setIsParaStart(isParaStart);
+		curr.setIsLineStart(isLineStart);
+		isLineStart = false;
+		isParaStart = false;
+
+		currPos = end;
+
+		return curr;
+	}
+
+	/* (non-Javadoc)
+	 * @see nlp_test.TokenStream#getPreviousToken()
+	 */
+	public Token getPreviousToken()
+	{
+		return prev;
+	}
+
+	/**
+	 * This stream never has the whole text.
+	 *
+	 * @return null.
+	 */
+	public String getText() {
+		return null;
+	}
+
+	/**
+	 * Get the offset within the input of the next character to be scanned.
+	 * This is also the number of characters the stream is finished with.
+	 *
+	 * @return The offset.
+	 */
+	public long getOffset()
+	{
+		return currPos;
+	}
+
+	/**
+	 * Close the Reader or the mapped text.
+	 */
+	public void close() throws IOException
+	{
+		if(mapped != null)
+			mapped.close();
+		else
+			reader.close();
+	}
+
+}
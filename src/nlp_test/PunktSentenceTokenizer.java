@@ -1,19 +1,428 @@
 package nlp_test;
 
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+
 /**
- * This class implements an unsupervised sentence boundary detection 
+ * This class implements an unsupervised sentence boundary detection
  * algorithm. It is based on the following paper:
- * 
+ *
  *  Kiss, Tibor and Strunk, Jan (2006): Unsupervised Multilingual Sentence
  *  Boundary Detection.  Computational Linguistics 32: 485-525.
- * 
+ *
  * This class is heavily modeled after the implementation of Punkt in
- * the Python library nltk. 
- * 
+ * the Python library nltk.
+ *
+ * Tokens are annotated in two passes. The first, from PunktAlgoBase, marks
+ * sentence breaks and abbreviations one token at a time. The second looks
+ * at each token that ends in a period together with the token after it,
+ * and uses the collocations, sentence starters and orthographic contexts
+ * of the parameters to decide again:
+ *
+ *  A collocation, like "S. Bach", is never a sentence break.
+ *  An abbreviation or ellipsis is also a sentence break if the orthographic
+ *    heuristic says the next token starts a sentence, or if the next token
+ *    is upper case and a frequent sentence starter.
+ *  An initial or number is not a sentence break, but an abbreviation, if
+ *    the orthographic heuristic says the next token doesn't start a
+ *    sentence, or for an initial, if it can't tell and the next token is
+ *    upper case and never seen lower case.
+ *
+ * Both passes run together over the stream. The first pass hands its tokens
+ * to a ring of the last three, and a token gets its second pass and is
+ * added to the list of tokens as soon as the first pass is done with the
+ * token after it, so the whole list of tokens is never looked at and the
+ * list can be anything that tokens are added to.
+ *
+ * The parameters are frozen, see PunktParams.freeze(), so a tokenizer can
+ * be shared by threads.
+ *
  * @author Dave Turner
  *
  */
-public class PunktSentenceTokenizer {
+public class PunktSentenceTokenizer extends PunktAlgoBase {
+
+	/*
+	 * The results of the orthographic heuristic: the token starts a
+	 * sentence, it doesn't or we can't tell.
+	 */
+	private static final int SENT_STARTER = 1;
+	private static final int NOT_SENT_STARTER = 2;
+	private static final int UNKNOWN = 3;
+
+	/*
+	 * Punctuation that never starts a sentence. As in nltk, a token that is
+	 * any part of this string is taken to be such punctuation.
+	 */
+	private static final String NON_STARTER_PUNCT = ";:,.!?";
+
+	/**
+	 * Create a tokenizer with empty parameters. Only the heuristics for
+	 * initials and numbers have anything to go on.
+	 */
+	public PunktSentenceTokenizer()
+	{
+		this(new PunktLanguageVariables(), new PunktParams());
+	}
+
+	/**
+	 * Create a tokenizer with a frozen copy of some parameters.
+	 *
+	 * @param params Parameters learned by PunktTrainer.
+	 */
+	public PunktSentenceTokenizer(PunktParams params)
+	{
+		this(new PunktLanguageVariables(), params);
+	}
+
+	/**
+	 * Create a tokenizer with a frozen copy of some parameters.
+	 *
+	 * @param langVars Language specific variables.
+	 * @param params Parameters learned by PunktTrainer.
+	 */
+	public PunktSentenceTokenizer(PunktLanguageVariables langVars, PunktParams params)
+	{
+		super(langVars, params.freeze());
+	}
+
+	/* (non-Javadoc)
+	 * @see nlp_test.PunktAlgoBase#annotate(nlp_test.TokenStream)
+	 */
+	@Override
+	public ArrayList<Token> annotate(TokenStream stream)
+	{
+		ArrayList<Token> tokList = new ArrayList<Token>();
+		annotate(stream, tokList);
+
+		return tokList;
+	}
+
+	/* (non-Javadoc)
+	 * @see nlp_test.PunktAlgoBase#annotateBuffer(nlp_test.TokenStream)
+	 */
+	@Override
+	public TokenBuffer annotateBuffer(TokenStream stream)
+	{
+		// The buffer only keeps offsets into the text
+		if(stream.getText() == null)
+			throw new IllegalArgumentException("A token buffer needs a stream that holds its whole text.");
+
+		TokenBuffer buffer = new TokenBuffer(stream.getText());
+		annotate(stream, buffer);
+
+		return buffer;
+	}
+
+	/**
+	 * Annotate a token stream with both passes, adding each token to a list
+	 * once its annotations are final. Nothing is ever got from the list, so
+	 * it can be a TokenBuffer or a list that writes the tokens out rather
+	 * than keeping them.
+	 *
+	 * @param stream Stream to annotate.
+	 * @param tokList The list to add the annotated tokens to.
+	 */
+	public void annotate(TokenStream stream, List<Token> tokList)
+	{
+		SecondPassList ring = new SecondPassList(tokList);
+		first_pass_annotate(stream, ring);
+		ring.finish();
+	}
+
+	/**
+	 * Finish the annotation where two pieces of a text that were annotated
+	 * on their own meet, the first pass as PunktAlgoBase does and then the
+	 * second pass of the last token of the first piece. If the first pass
+	 * moves the sentence break of that token to the first token of the
+	 * second piece, the type the token before it saw in its second pass
+	 * changes, so that token gets its second pass again.
+	 *
+	 * @param beforeLast The token before the last one of the first piece,
+	 * null if it has none.
+	 * @param last The last token of the first piece, null if it has none.
+	 * @param first The first token of the second piece.
+	 */
+	@Override
+	protected void first_pass_join(Token beforeLast, Token last, Token first)
+	{
+		boolean wasSentBreak = last != null && last.getIsSentBreak();
+		super.first_pass_join(beforeLast, last, first);
+
+		if(last == null)
+			return;
+
+		SecondPassList ring = new SecondPassList(null);
+		if(beforeLast != null && wasSentBreak && !last.getIsSentBreak())
+			ring.second_pass_annotate(beforeLast, last);
+
+		ring.second_pass_annotate(last, first);
+	}
+
+	/*
+	 * The list the first pass adds its tokens to. It keeps the last three
+	 * tokens: prev, whose first pass is done and which gets its second pass
+	 * with curr, whose first pass is also done, and next, which the first
+	 * pass may still change when it looks at the token after it. Then prev
+	 * is added to the list of annotated tokens.
+	 *
+	 * The windows and matcher for the second pass are made once for the
+	 * whole stream, so it creates no objects per token except the type of
+	 * a token with a number.
+	 */
+	private class SecondPassList extends AbstractList<Token> {
+
+		/*
+		 * The list of annotated tokens.
+		 */
+		private List<Token> tokList;
+
+		/*
+		 * The ring of tokens, see above, null where there are none yet.
+		 */
+		private Token prev = null;
+		private Token curr = null;
+		private Token next = null;
+
+		/*
+		 * The number of tokens the first pass has added.
+		 */
+		private int size = 0;
+
+		/*
+		 * Lower cased windows for the types of the two tokens looked at, and
+		 * a window and matcher for the boundary realign regex.
+		 */
+		private CharWindow typeKey = new CharWindow(true);
+		private CharWindow nextTypeKey = new CharWindow(true);
+		private CharWindow tokenVal = new CharWindow(false);
+		private Matcher boundMatcher = langVars.getSentBoundRealignPattern().matcher(tokenVal);
+
+		SecondPassList(List<Token> tokList)
+		{
+			this.tokList = tokList;
+		}
+
+		@Override
+		public boolean add(Token token)
+		{
+			advance(token);
+			size++;
+
+			return true;
+		}
+
+		/*
+		 * Only the last token added can be got, which is the only one the
+		 * first pass gets.
+		 */
+		@Override
+		public Token get(int index)
+		{
+			if(index == size-1 && next != null)
+				return next;
+
+			throw new IndexOutOfBoundsException("Token " + index + " of " + size + " is no longer kept");
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+
+		/*
+		 * Move the ring on by a token, null at the end of the stream, and
+		 * finish the token that falls out of it.
+		 */
+		private void advance(Token token)
+		{
+			prev = curr;
+			curr = next;
+			next = token;
+
+			if(prev != null)
+			{
+				second_pass_annotate(prev, curr);
+				tokList.add(prev);
+			}
+		}
+
+		/*
+		 * Finish the tokens left in the ring at the end of the stream.
+		 */
+		void finish()
+		{
+			advance(null);
+			advance(null);
+		}
+
+		/*
+		 * Perform the second pass annotation of a token, given the token
+		 * after it or null if it is the last.
+		 */
+		void second_pass_annotate(Token tok1, Token tok2)
+		{
+			// We only care about words ending in periods that are followed
+			// by something.
+			int length = tok1.getLength();
+			if(tok2 == null || length == 0 || tok1.charAt(length-1) != '.')
+				return;
+
+			CharSequence typ = typeNoPeriod(tok1);
+			CharSequence nextTyp = typeNoSentPeriod(tok2);
+			boolean isInitial = tok1.getIsInitial();
+
+			// [4.1.2. Collocation Heuristic] If there's a collocation between
+			// the word before and after the period, then label the token as
+			// an abbreviation and NOT a sentence break.
+			if(params.isCollocation(typ, nextTyp))
+			{
+				tok1.setIsSentBreak(false);
+				tok1.setIsAbbreviation(true);
+				return;
+			}
+
+			// [4.2. Token-Based Reclassification of Abbreviations] If the
+			// token is an abbreviation or an ellipsis, decide whether it is
+			// also a sentence break.
+			if((tok1.getIsAbbreviation() || tok1.getIsEllipsis()) && !isInitial)
+			{
+				// [4.1.1. Orthographic Heuristic]
+				if(orthoHeuristic(tok2, nextTyp) == SENT_STARTER)
+				{
+					setSentBreak(tok1, tok2);
+					return;
+				}
+
+				// [4.1.3. Frequent Sentence Starter Heuristic]
+				if(tok2.getIsFirstUpper() && params.isSentenceStarter(nextTyp))
+				{
+					setSentBreak(tok1, tok2);
+					return;
+				}
+			}
+
+			// [4.3. Token-Based Detection of Initials and Ordinals] Initials
+			// and numbers that are sentence breaks may be abbreviations.
+			if(isInitial || (tok1.getIsNumber() && Token.NUMBER_TAG.contentEquals(typ)))
+			{
+				int isSentStarter = orthoHeuristic(tok2, nextTyp);
+				if(isSentStarter == NOT_SENT_STARTER)
+				{
+					tok1.setIsSentBreak(false);
+					tok1.setIsAbbreviation(true);
+					return;
+				}
+
+				// If we can't tell but the next word is always upper case,
+				// an initial is an abbreviation, like "J. Bach".
+				if(isSentStarter == UNKNOWN && isInitial && tok2.getIsFirstUpper() &&
+				   (params.getOrthoContext(nextTyp) & OrthoGraphFlag.LC) == 0)
+				{
+					tok1.setIsSentBreak(false);
+					tok1.setIsAbbreviation(true);
+				}
+			}
+		}
+
+		/*
+		 * Decide whether a token starts a sentence from the orthographic
+		 * contexts its type has been seen in.
+		 */
+		private int orthoHeuristic(Token token, CharSequence type)
+		{
+			// Sentences don't start with punctuation marks
+			if(isNonStarterPunct(token))
+				return NOT_SENT_STARTER;
+
+			long ortho = params.getOrthoContext(type);
+
+			// If the word is capitalized, occurs at least once with a lower
+			// case first letter, and never occurs with an upper case first
+			// letter sentence-internally, then it's a sentence starter.
+			if(token.getIsFirstUpper() && (ortho & OrthoGraphFlag.LC) != 0 &&
+			   (ortho & OrthoGraphFlag.MIDDLE_UC) == 0)
+				return SENT_STARTER;
+
+			// If the word is lower case, and either we've seen it used with
+			// upper case, or we've never seen it used sentence-initially with
+			// lower case, then it's not a sentence starter.
+			if(token.getIsFirstLower() &&
+			   ((ortho & OrthoGraphFlag.UC) != 0 || (ortho & OrthoGraphFlag.BEGINNING_LC) == 0))
+				return NOT_SENT_STARTER;
+
+			return UNKNOWN;
+		}
+
+		/*
+		 * Is a token any part of the punctuation that never starts a
+		 * sentence.
+		 */
+		private boolean isNonStarterPunct(Token token)
+		{
+			int length = token.getLength();
+			int first = NON_STARTER_PUNCT.indexOf(token.charAt(0));
+			if(first < 0 || first + length > NON_STARTER_PUNCT.length())
+				return false;
+
+			for(int i=1; i<length; i++)
+				if(token.charAt(i) != NON_STARTER_PUNCT.charAt(first + i))
+					return false;
+
+			return true;
+		}
+
+		/*
+		 * Make a token a sentence break, realigning the break past the next
+		 * token as the first pass does.
+		 */
+		private void setSentBreak(Token tok1, Token tok2)
+		{
+			boundMatcher.reset(tokenVal.set(tok2));
+			if(boundMatcher.find())
+				tok2.setIsSentBreak(true);
+			else
+				tok1.setIsSentBreak(true);
+		}
+
+		/*
+		 * The type of a token without its final period. Types of tokens
+		 * without numbers are their lower cased characters, so a window
+		 * onto them does.
+		 */
+		private CharSequence typeNoPeriod(Token token)
+		{
+			if(token.getIsNumber())
+				return token.getTokenTypeNoPeriod();
+
+			typeKey.set(token);
+			int length = token.getLength();
+			if(length > 1 && token.charAt(length-1) == '.')
+				typeKey.narrow(0, length-1);
+
+			return typeKey;
+		}
+
+		/*
+		 * The type of a token, without its final period if it is a sentence
+		 * break.
+		 */
+		private CharSequence typeNoSentPeriod(Token token)
+		{
+			if(token.getIsNumber())
+				return token.getIsSentBreak() ? token.getTokenTypeNoPeriod() : token.getTokenType();
+
+			nextTypeKey.set(token);
+			int length = token.getLength();
+			if(token.getIsSentBreak() && length > 1 && token.charAt(length-1) == '.')
+				nextTypeKey.narrow(0, length-1);
+
+			return nextTypeKey;
+		}
+
+	}
 
-	
 }
@@ -0,0 +1,347 @@
+package nlp_test;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * This class is the counts of a PunktTrainer kept in a fixed amount of
+ * memory, so a trainer can count corpora with far more types than fit in
+ * exact maps.
+ *
+ * The frequency of every type is kept in a CountMinSketch, which never
+ * under counts. Only some types and pairs are needed by name, and each of
+ * those kinds of candidate is kept in its own SpaceSaving summary, which
+ * counts them exactly while they fit and otherwise keeps the most frequent:
+ *
+ *   the types that end in a period, the candidate abbreviations,
+ *   the types that follow a type ending in a period, whose orthographic
+ *     contexts are the ones that can decide a sentence break,
+ *   the types that follow sentence breaks,
+ *   the candidate collocations,
+ *   the rare abbreviations and the candidate rare abbreviations.
+ *
+ * The orthographic contexts are only kept for the types that follow a type
+ * ending in a period in the first pass, so the second pass keeps at most
+ * that many.
+ *
+ * Whether a candidate is an abbreviation depends on how often its type is
+ * seen without a period, and one count too many can be enough to rule it
+ * out. So the second pass counts the candidates of the first pass, with
+ * and without their periods, again exactly, and the trainer finds the
+ * abbreviations again from those counts once it is done.
+ *
+ * The memory given is split between these, about 40% to the sketch and the
+ * rest to the summaries at an estimated ENTRY_BYTES a key. The sketch of
+ * the second pass is never made, and its summaries only fill up for big
+ * corpora.
+ *
+ * @author Dave Turner
+ *
+ */
+class PunktSketchCounts extends PunktCounts {
+
+	private static final long serialVersionUID = 1L;
+
+	/*
+	 * The number of rows of the type sketch.
+	 */
+	static final int DEPTH = 4;
+
+	/*
+	 * The estimated memory of a key of a summary: the key, its counter and
+	 * its hash map entry.
+	 */
+	static final int ENTRY_BYTES = 160;
+
+	/*
+	 * The least number of keys of a summary.
+	 */
+	private static final int MIN_CAPACITY = 16;
+
+	/*
+	 * The memory these counts are to fit in.
+	 */
+	private final long bytes;
+
+	/*
+	 * The frequency of every type, made when the first type is counted.
+	 */
+	private CountMinSketch types = null;
+
+	/*
+	 * The types that end in a period and the types that follow them.
+	 */
+	private SpaceSaving<String> periodFinal;
+	private SpaceSaving<String> followers;
+
+	/*
+	 * The types whose orthographic contexts are kept, the followers of the
+	 * first pass, and their contexts.
+	 */
+	private final SpaceSaving<String> orthoTypes;
+	private HashMap<String, long[]> ortho = new HashMap<String, long[]>();
+
+	/*
+	 * The types counted again in the second pass, the candidate
+	 * abbreviations of the first with and without their periods, and their
+	 * counts. The first pass makes the set of types when the second pass
+	 * counts are first made.
+	 */
+	private HashSet<String> candidates = null;
+	private HashSet<String> recountTypes;
+	private HashMap<String, long[]> recounts = new HashMap<String, long[]>();
+
+	/*
+	 * The types that follow sentence breaks and the candidate collocations.
+	 */
+	private SpaceSaving<String> sentStarters;
+	private SpaceSaving<Tuple> collocations;
+
+	/*
+	 * The rare abbreviations and the candidate rare abbreviations.
+	 */
+	private SpaceSaving<String> rareAbbrevs;
+	private SpaceSaving<Tuple> rareAbbrevCandidates;
+
+	/*
+	 * Create empty counts for the first pass that fit in some memory.
+	 */
+	PunktSketchCounts(long bytes)
+	{
+		this(bytes, null, null);
+	}
+
+	/*
+	 * Create empty counts that fit in some memory, keeping the orthographic
+	 * contexts of some types and counting some types again.
+	 */
+	private PunktSketchCounts(long bytes, SpaceSaving<String> orthoTypes, HashSet<String> recountTypes)
+	{
+		this.bytes = bytes;
+		this.orthoTypes = orthoTypes;
+		this.recountTypes = recountTypes;
+
+		periodFinal = new SpaceSaving<String>(capacity(0.2));
+		followers = new SpaceSaving<String>(capacity(0.1));
+		sentStarters = new SpaceSaving<String>(capacity(0.05));
+		collocations = new SpaceSaving<Tuple>(capacity(0.1));
+		rareAbbrevs = new SpaceSaving<String>(capacity(0.025));
+		rareAbbrevCandidates = new SpaceSaving<Tuple>(capacity(0.025));
+	}
+
+	/*
+	 * The second pass keeps the orthographic contexts of the types that
+	 * follow a type ending in a period, and counts the candidate
+	 * abbreviations again. Counts made for the second pass make more of the
+	 * same. The threads of the second pass share the first pass counts.
+	 */
+	@Override
+	synchronized PunktCounts newCounts()
+	{
+		if(orthoTypes != null)
+			return new PunktSketchCounts(bytes, orthoTypes, recountTypes);
+
+		if(candidates == null)
+		{
+			candidates = new HashSet<String>();
+			for(String typ: periodFinal.getCounts().keySet())
+			{
+				candidates.add(typ);
+				candidates.add(typ.substring(0, typ.length()-1));
+			}
+		}
+
+		return new PunktSketchCounts(bytes, followers, candidates);
+	}
+
+	@Override
+	void addType(String typ)
+	{
+		if(types == null)
+			types = CountMinSketch.forBytes((long)(bytes * 0.4), DEPTH);
+
+		types.add(typ);
+		if(typ.endsWith("."))
+			periodFinal.add(typ);
+	}
+
+	/*
+	 * The exact count if the type was counted again, otherwise the smaller of
+	 * the sketch's estimate and the count of the type's summary, as both are
+	 * upper bounds.
+	 */
+	@Override
+	long getTypeCount(String typ)
+	{
+		long[] recount = recounts.get(typ);
+		if(recount != null)
+			return recount[0];
+		if(recountTypes != null && recountTypes.contains(typ))
+			return 0;
+
+		long count = types == null ? 0 : types.estimate(typ);
+		if(periodFinal.contains(typ))
+			count = Math.min(count, periodFinal.getCount(typ));
+
+		return count;
+	}
+
+	@Override
+	void recountType(String typ)
+	{
+		if(recountTypes == null || !recountTypes.contains(typ))
+			return;
+
+		long[] count = recounts.get(typ);
+		if(count == null)
+			recounts.put(typ, new long[] {1});
+		else
+			count[0]++;
+	}
+
+	/*
+	 * The types counted again are the ones the second pass counts were made
+	 * for, so they are known to have been counted again even if they weren't
+	 * seen.
+	 */
+	@Override
+	boolean addRecounts(PunktCounts second)
+	{
+		PunktSketchCounts other = (PunktSketchCounts)second;
+		if(other.recountTypes == null)
+			return false;
+
+		recounts = other.recounts;
+		recountTypes = other.recountTypes;
+		return true;
+	}
+
+	/*
+	 * Whether the token is a sentence break isn't known in the first pass, so
+	 * its type is kept with and without its period.
+	 */
+	@Override
+	void addPeriodFollower(Token tok)
+	{
+		followers.add(tok.getTokenType());
+		if(tok.getLength() > 1 && tok.charAt(tok.getLength()-1) == '.')
+			followers.add(tok.getTokenTypeNoPeriod());
+	}
+
+	@Override
+	Collection<String> getPeriodFinalTypes()
+	{
+		return periodFinal.getCounts().keySet();
+	}
+
+	@Override
+	void addOrtho(String typ, long flag)
+	{
+		if(orthoTypes == null || !orthoTypes.contains(typ))
+			return;
+
+		long[] flags = ortho.get(typ);
+		if(flags == null)
+			ortho.put(typ, new long[] {flag});
+		else
+			flags[0] |= flag;
+	}
+
+	@Override
+	void addOrthoContextsTo(PunktParams params)
+	{
+		for(Map.Entry<String, long[]> e: ortho.entrySet())
+			params.addOrthoContext(e.getKey(), e.getValue()[0]);
+	}
+
+	@Override
+	void addSentStarter(String typ)
+	{
+		sentStarters.add(typ);
+	}
+
+	@Override
+	Map<String, Long> getSentStarters()
+	{
+		return sentStarters.getGuaranteedCounts();
+	}
+
+	@Override
+	void addCollocation(Tuple pair)
+	{
+		collocations.add(pair);
+	}
+
+	@Override
+	Map<Tuple, Long> getCollocations()
+	{
+		return collocations.getGuaranteedCounts();
+	}
+
+	@Override
+	void addRareAbbrev(String typ)
+	{
+		rareAbbrevs.add(typ);
+	}
+
+	@Override
+	Collection<String> getRareAbbrevs()
+	{
+		return rareAbbrevs.getCounts().keySet();
+	}
+
+	@Override
+	void addRareAbbrevCandidate(Tuple pair)
+	{
+		rareAbbrevCandidates.add(pair);
+	}
+
+	@Override
+	Collection<Tuple> getRareAbbrevCandidates()
+	{
+		return rareAbbrevCandidates.getCounts().keySet();
+	}
+
+	@Override
+	protected void mergeCounts(PunktCounts counts)
+	{
+		PunktSketchCounts other = (PunktSketchCounts)counts;
+
+		if(other.types != null)
+		{
+			if(types == null)
+				types = CountMinSketch.forBytes((long)(bytes * 0.4), DEPTH);
+			types.merge(other.types);
+		}
+
+		periodFinal.merge(other.periodFinal);
+		followers.merge(other.followers);
+
+		for(Map.Entry<String, long[]> e: other.ortho.entrySet())
+			addOrtho(e.getKey(), e.getValue()[0]);
+		for(Map.Entry<String, long[]> e: other.recounts.entrySet())
+		{
+			long[] count = recounts.get(e.getKey());
+			if(count == null)
+				recounts.put(e.getKey(), new long[] {e.getValue()[0]});
+			else
+				count[0] += e.getValue()[0];
+		}
+
+		sentStarters.merge(other.sentStarters);
+		collocations.merge(other.collocations);
+		rareAbbrevs.merge(other.rareAbbrevs);
+		rareAbbrevCandidates.merge(other.rareAbbrevCandidates);
+	}
+
+	/*
+	 * The number of keys of a summary given a share of the memory.
+	 */
+	private int capacity(double share)
+	{
+		return (int)Math.min(Math.max(bytes * share / ENTRY_BYTES, MIN_CAPACITY), Integer.MAX_VALUE);
+	}
+
+}
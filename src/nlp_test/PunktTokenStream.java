@@ -33,14 +33,9 @@ public class PunktTokenStream implements TokenStream  {
 	int currPos = 0;
 	
 	/*
-	 * Where are we within the current line we are processing?
+	 * Where in the original string does the current line start?
 	 */
-	int currPosInline = 0;
-	
-	/*
-	 * Where was the previous match within the current line?
-	 */
-	int prevPosInline = 0;
+	int currLineStart = 0;
 	
 	/*
 	 * The matcher for word tokens built by langVars
@@ -65,16 +60,16 @@ public class PunktTokenStream implements TokenStream  {
 		// Break our text into lines and process each individually.
 		lines = text.split("\n");
 		
+		// Text made up of nothing but endlines splits into no lines at all.
 		if(lines.length == 0)
-			langVars.getWordTokenizePattern().matcher(text);
+			lines = new String[] {""};
 			
 		// Setup the matcher for the first line
 		wordMatcher = langVars.getWordTokenizePattern().matcher(lines[0]);
 		
 		currLineNum = 0;
 		currPos = 0;
-		currPosInline = 0;
-		prevPosInline = 0;
+		currLineStart = 0;
 	}
 	
 	public PunktTokenStream(String text, PunktLanguageVariables langVars)
@@ -119,15 +114,12 @@ public class PunktTokenStream implements TokenStream  {
 		// If we have no matches left on the current line, then move to the next
 		while(!matchFound)
 		{
-			// Move to the next line
+			// Move to the next line, skipping the endline we consumed when 
+			// splitting the lines.
+			currLineStart += lines[currLineNum].length()+1;
 			currLineNum++;
 			isLineStart = true;
 			
-			// Add two to the position because we consumed an endline when splitting the lines
-			currPos+=2;
-			currPosInline=0;
-			prevPosInline=0;
-			
 			// If we have reached the end of the lines list. We are done.
 			if(currLineNum == lines.length)
 			{
@@ -140,7 +132,7 @@ public class PunktTokenStream implements TokenStream  {
 			// will be annotated with a paragraph start tag
 			while(lines[currLineNum].trim().length() == 0)
 			{
-				currPos+=lines[currLineNum].length()+1;
+				currLineStart += lines[currLineNum].length()+1;
 				currLineNum++;
 				isParaStart = true;
 				
@@ -157,34 +149,28 @@ public class PunktTokenStream implements TokenStream  {
 			wordMatcher = langVars.getWordTokenizePattern().matcher(lines[currLineNum]);
 			
 			// Check if we have a match
-			prevPosInline = currPosInline;
 			matchFound = wordMatcher.find();
-			currPosInline = wordMatcher.start();
 		}
 
 		// If the above loop did not lead to a return then we know we
 		// have a match. Move the current position to offset of the match
-		prevPosInline = currPosInline;
-		currPosInline = wordMatcher.start();
-		currPos += (currPosInline - prevPosInline);
+		currPos = currLineStart + wordMatcher.start();
 		
-		// Grab the match and its start index.
-		String currTok = wordMatcher.group();
+		// Grab the length of the match.
+		int currTokLength = wordMatcher.end() - wordMatcher.start();
 		
 		// Make the current guy, the new previous guy
 		prev = curr;
 		
-		// Create a new token from the current token object string
-		curr = new Token(currTok);
+		// Create a new token that is a view of the matched text
+		curr = new Token(text, currPos, currTokLength);
 		curr.setIsParaStart(isParaStart);
 		curr.setIsLineStart(isLineStart);
 		isLineStart = false;
 		isParaStart = false;
-		curr.setPosition(currPos);
 	
 		// Make sure we got the correct token position
-		String checkText = text.substring(currPos, currPos+currTok.length());
-		if(!checkText.equals(currTok))
+		if(!text.regionMatches(currPos, lines[currLineNum], wordMatcher.start(), currTokLength))
 		{
 			System.err.println("Tokenization error at index " + currPos);
 		}
@@ -1,22 +1,743 @@
 package nlp_test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
 /**
  * <p> This class is used to train a Punkt sentence tokenizer. That is,
  * its most important purpose is use unsupervised training to learn
- * a lists of common abbreviations, collocations, sentence starters, 
- * as well as other values to aid in classification of sentence 
- * boundaries. See the paper: 
- * 
+ * a lists of common abbreviations, collocations, sentence starters,
+ * as well as other values to aid in classification of sentence
+ * boundaries. See the paper:
+ *
  * Kiss, Tibor and Strunk, Jan (2006): Unsupervised Multilingual Sentence
  *   Boundary Detection.  Computational Linguistics 32: 485-525.
- * 
+ *
  * <p> The principal purpose of this class is to produce a PunktParams
  * class from a set of training text. It is heavily based off the Python
  * code from the nltk library.
- * 
+ *
+ * <p> The training texts are counted in two passes, both of which are split
+ * over a pool of threads a document at a time. The first pass counts the
+ * types, from which the abbreviations are found. The second annotates each
+ * document with those abbreviations and counts the orthographic contexts,
+ * sentence breaks, likely sentence starters and collocations. Each task
+ * counts its own documents and the counts are merged up the same tree of
+ * tasks whatever the number of threads. The counts are exact and merging
+ * them is a sum or a union, so the parameters learned don't depend on the
+ * number of threads or on the order the documents are counted in.
+ *
+ * <p> The exact counts can be kept in a PunktTrainingState, which can be
+ * trained on more texts later, merged with states trained elsewhere and
+ * saved, see train(state, texts).
+ *
+ * <p> Exact counts keep every type seen, which doesn't fit in memory for
+ * big enough corpora. Given a memory budget the trainer streams instead:
+ * the documents are split into a fixed number of partitions, each counted
+ * in order into counts that fit in its share of the budget, see
+ * PunktSketchCounts. The type frequencies are then estimates from a
+ * count-min sketch and only the candidates the parameters are learned from
+ * are counted by name, exactly while they fit. The parameters learned
+ * depend on the budget and the number of partitions but still not on the
+ * number of threads. See PunktTrainerDriftReport for how far they are from
+ * the exact ones.
+ *
  * @author Dave Turner
  *
  */
 public class PunktTrainer extends PunktAlgoBase {
-	// TODO: Implement this if we have time :)
+
+	/**
+	 * The score a candidate needs to be taken as an abbreviation.
+	 */
+	public static final double ABBREV = 0.3;
+
+	/**
+	 * A type seen this many times, with and without a period, is never a
+	 * rare abbreviation.
+	 */
+	public static final int ABBREV_BACKOFF = 5;
+
+	/**
+	 * The log likelihood a pair of types needs to be a collocation.
+	 */
+	public static final double COLLOCATION = 7.88;
+
+	/**
+	 * The log likelihood a type needs to be a sentence starter.
+	 */
+	public static final double SENT_STARTER = 30;
+
+	/**
+	 * A pair of types must be seen more times than this to be a collocation.
+	 */
+	public static final int MIN_COLLOC_FREQ = 1;
+
+	/*
+	 * The orthographic contexts a token can be in.
+	 */
+	private static final int INTERNAL = 0;
+	private static final int INITIAL = 1;
+	private static final int UNKNOWN = 2;
+
+	/*
+	 * The number of threads to count with.
+	 */
+	protected int numThreads = 1;
+
+	/*
+	 * Are the training texts tagged, word/tag, like the Brown corpus.
+	 */
+	protected boolean taggedCorpus = false;
+
+	/*
+	 * The memory the counts are to fit in, 0 to count exactly, and the
+	 * number of partitions the documents are split into if they do.
+	 */
+	protected long memoryBudget = 0;
+	protected int partitions = 1;
+
+	/**
+	 * Create a trainer. The texts are scanned with the table driven
+	 * scanner, which gives the same tokens as the regex but is faster.
+	 */
+	public PunktTrainer()
+	{
+		super();
+		useDFATokenStream = true;
+	}
+
+	public PunktTrainer(PunktLanguageVariables langVars)
+	{
+		super(langVars, new PunktParams());
+		useDFATokenStream = true;
+	}
+
+	/**
+	 * Create a trainer that adds to some parameters, for example ones with
+	 * abbreviations that are known up front.
+	 *
+	 * @param params The parameters to add to.
+	 */
+	public PunktTrainer(PunktParams params)
+	{
+		super(params);
+		useDFATokenStream = true;
+	}
+
+	/**
+	 * Set the number of threads to count the training texts with. The
+	 * parameters learned are the same whatever it is.
+	 *
+	 * @param n The number of threads.
+	 */
+	public void setNumThreads(int n)
+	{
+		if(n <= 0)
+			throw new IllegalArgumentException("Number of threads must be positive: " + n);
+
+		numThreads = n;
+	}
+
+	/**
+	 * Get the number of threads the training texts are counted with.
+	 *
+	 * @return The number of threads.
+	 */
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+
+	/**
+	 * Set whether the training texts are tagged, with each word followed by
+	 * a slash and its tag as in the Brown corpus. The tags are stripped off
+	 * before training.
+	 *
+	 * @param val true if yes, false if the texts are plain.
+	 */
+	public void setTaggedCorpus(boolean val)
+	{
+		taggedCorpus = val;
+	}
+
+	/**
+	 * Are the training texts tagged.
+	 *
+	 * @return true if yes, false if no.
+	 */
+	public boolean getTaggedCorpus()
+	{
+		return taggedCorpus;
+	}
+
+	/**
+	 * Set the memory the counts must fit in. If it is 0, the default, the
+	 * counts are exact. Otherwise the types are counted approximately in
+	 * about this many bytes, see PunktSketchCounts, shared between the
+	 * partitions and the counts of the first pass that the second pass
+	 * uses.
+	 *
+	 * @param bytes The budget in bytes, or 0 for exact counts.
+	 */
+	public void setMemoryBudget(long bytes)
+	{
+		if(bytes < 0)
+			throw new IllegalArgumentException("Memory budget can't be negative: " + bytes);
+
+		memoryBudget = bytes;
+	}
+
+	/**
+	 * Get the memory the counts must fit in.
+	 *
+	 * @return The budget in bytes, 0 if the counts are exact.
+	 */
+	public long getMemoryBudget()
+	{
+		return memoryBudget;
+	}
+
+	/**
+	 * Set the number of partitions the documents are split into when there
+	 * is a memory budget. The partitions are counted in parallel, each with
+	 * an equal share of the budget, so more partitions count faster on more
+	 * threads but each counts less accurately.
+	 *
+	 * @param n The number of partitions.
+	 */
+	public void setPartitions(int n)
+	{
+		if(n <= 0)
+			throw new IllegalArgumentException("Number of partitions must be positive: " + n);
+
+		partitions = n;
+	}
+
+	/**
+	 * Get the number of partitions the documents are split into when there
+	 * is a memory budget.
+	 *
+	 * @return The number of partitions.
+	 */
+	public int getPartitions()
+	{
+		return partitions;
+	}
+
+	/**
+	 * Get the parameters that have been learned.
+	 *
+	 * @return The parameters.
+	 */
+	public PunktParams getParams()
+	{
+		return params;
+	}
+
+	/**
+	 * Train on every file in a zip file. The files are read in UTF-8, each
+	 * by the thread that counts it, and are read once per pass so only the
+	 * files being counted are in memory.
+	 *
+	 * @param zipFileName The zip file.
+	 * @return The parameters learned, see train().
+	 * @throws IOException If the zip file can't be read.
+	 */
+	public PunktParams trainZip(String zipFileName) throws IOException
+	{
+		return trainZip(zipFileName, ".*");
+	}
+
+	/**
+	 * Train on the files in a zip file whose names match a regex. For
+	 * data/brown.zip the corpus files are "brown/c[a-r]\\d\\d", the rest of
+	 * the files describe the corpus.
+	 *
+	 * @param zipFileName The zip file.
+	 * @param entryNames The regex the names of the files must match.
+	 * @return The parameters learned, see train().
+	 * @throws IOException If the zip file can't be read.
+	 */
+	public PunktParams trainZip(String zipFileName, String entryNames) throws IOException
+	{
+		trainZip(null, zipFileName, entryNames);
+		return params;
+	}
+
+	/**
+	 * Add the files in a zip file whose names match a regex to a training
+	 * state, see train(state, texts).
+	 *
+	 * @param state The state.
+	 * @param zipFileName The zip file.
+	 * @param entryNames The regex the names of the files must match.
+	 * @throws IOException If the zip file can't be read.
+	 */
+	public void trainZip(PunktTrainingState state, String zipFileName, String entryNames) throws IOException
+	{
+		Pattern names = Pattern.compile(entryNames);
+		final ZipFile zip = new ZipFile(zipFileName);
+		try
+		{
+			final List<ZipEntry> entries = new ArrayList<ZipEntry>();
+			Enumeration<? extends ZipEntry> e = zip.entries();
+			while(e.hasMoreElements())
+			{
+				ZipEntry entry = e.nextElement();
+
+				// Ignore directories and those weird MACOS copy files
+				if(!entry.isDirectory() && !entry.getName().startsWith("__MACOSX") &&
+				   names.matcher(entry.getName()).matches())
+					entries.add(entry);
+			}
+
+			List<String> texts = new AbstractList<String>() {
+				@Override
+				public String get(int index)
+				{
+					try
+					{
+						return readEntry(zip, entries.get(index));
+					}
+					catch(IOException e)
+					{
+						throw new UncheckedIOException(e);
+					}
+				}
+
+				@Override
+				public int size()
+				{
+					return entries.size();
+				}
+			};
+
+			try
+			{
+				if(state == null)
+					train(texts);
+				else
+					train(state, texts);
+			}
+			catch(UncheckedIOException ex)
+			{
+				throw ex.getCause();
+			}
+		}
+		finally
+		{
+			zip.close();
+		}
+	}
+
+	/**
+	 * Train on some texts. The abbreviations and orthographic contexts
+	 * learned are added to the parameters, so abbreviations that are known
+	 * up front can be given in the parameters the trainer is made with. The
+	 * sentence starters and collocations are replaced.
+	 *
+	 * @param texts The training texts, each a document. Each is got from
+	 * the list once per pass by the thread that counts it.
+	 * @return The parameters.
+	 */
+	public PunktParams train(List<String> texts)
+	{
+		HashSet<String> knownAbbrevs = new HashSet<String>(params.getAbbreviations());
+
+		if(memoryBudget == 0)
+		{
+			PunktTrainingState state = new PunktTrainingState(knownAbbrevs);
+			train(state, texts);
+			PunktTrainingState.learnParams(state.getTypes(), state.getCounts(), knownAbbrevs, params);
+
+			return params;
+		}
+
+		int parts = Math.max(Math.min(partitions, texts.size()), 1);
+		ForkJoinPool pool = new ForkJoinPool(numThreads);
+		try
+		{
+			// Find the frequency of each type, then the abbreviations
+			PunktCounts types = pool.invoke(new CountTask(texts, null, parts, 0, parts));
+			PunktTrainingState.findAbbreviations(types, knownAbbrevs, params);
+
+			// Annotate with the abbreviations and count the rest. The
+			// candidate abbreviations are counted again exactly, so they are
+			// found again from those counts.
+			PunktCounts counts = pool.invoke(new CountTask(texts, types, parts, 0, parts));
+			types.addRecounts(counts);
+
+			PunktTrainingState.learnParams(types, counts, knownAbbrevs, params);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+
+		return params;
+	}
+
+	/**
+	 * Make an empty training state with the abbreviations of the parameters
+	 * known up front.
+	 *
+	 * @return The state.
+	 */
+	public PunktTrainingState newState()
+	{
+		return new PunktTrainingState(params.getAbbreviations());
+	}
+
+	/**
+	 * Add some texts to a training state, so the parameters can be learned
+	 * from them and all the texts it has been trained on before. The types of
+	 * the texts are counted and the abbreviations found from all the types
+	 * counted so far, then the texts are annotated with those and the rest
+	 * is counted. The texts are counted exactly, whatever the memory budget.
+	 * The parameters learned are the state's finalizeParams(), the trainer's
+	 * own parameters only get the abbreviations the texts were annotated
+	 * with.
+	 *
+	 * @param state The state.
+	 * @param texts The training texts, each a document, see train(texts).
+	 */
+	public void train(PunktTrainingState state, List<String> texts)
+	{
+		int parts = Math.max(texts.size(), 1);
+		ForkJoinPool pool = new ForkJoinPool(numThreads);
+		try
+		{
+			// Find the frequency of each type, then the abbreviations
+			state.addTypes(pool.invoke(new CountTask(texts, null, parts, 0, parts, true)));
+			PunktTrainingState.findAbbreviations(state.getTypes(), state.getKnownAbbreviations(), params);
+
+			// Annotate with the abbreviations and count the rest
+			state.addCounts(pool.invoke(new CountTask(texts, state.getTypes(), parts, 0, parts, true)),
+					texts.size());
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Strip the tags off a tagged text. Each word of a tagged text is
+	 * followed by a slash and its tag, which is everything after the last
+	 * slash. The whitespace is kept as it is.
+	 *
+	 * @param text The tagged text.
+	 * @return The text without tags.
+	 */
+	public static String untag(String text)
+	{
+		StringBuilder sb = new StringBuilder(text.length());
+
+		int length = text.length();
+		int i = 0;
+		while(i < length)
+		{
+			if(Character.isWhitespace(text.charAt(i)))
+			{
+				sb.append(text.charAt(i++));
+				continue;
+			}
+
+			int start = i;
+			int slash = -1;
+			while(i < length && !Character.isWhitespace(text.charAt(i)))
+			{
+				if(text.charAt(i) == '/')
+					slash = i;
+				i++;
+			}
+
+			sb.append(text, start, slash > start ? slash : i);
+		}
+
+		return sb.toString();
+	}
+
+	/*
+	 * Make empty counts for the first pass, exact or to fit in a share of
+	 * the memory budget. The budget is shared by the counts of each
+	 * partition and the counts of the first pass the second pass uses.
+	 */
+	private PunktCounts newCounts(int parts, boolean exact)
+	{
+		if(exact || memoryBudget == 0)
+			return new PunktExactCounts();
+
+		return new PunktSketchCounts(memoryBudget / (parts + 1));
+	}
+
+	/*
+	 * Count the types of a text.
+	 */
+	private void countTypes(String text, PunktCounts counts)
+	{
+		TokenStream stream = createTokenStream(text);
+
+		Token tok;
+		boolean afterPeriod = false;
+		while((tok = stream.getToken()) != null)
+		{
+			counts.addType(tok.getTokenType());
+			counts.tokens++;
+			if(afterPeriod)
+				counts.addPeriodFollower(tok);
+
+			afterPeriod = isPeriodFinal(tok);
+			if(afterPeriod)
+				counts.periodTokens++;
+		}
+	}
+
+	/*
+	 * Annotate a text with the abbreviations found so far, then count its
+	 * orthographic contexts, sentence breaks, sentence starters and
+	 * collocations, and find its rare abbreviations.
+	 */
+	private void countAnnotated(String text, PunktCounts types, PunktCounts counts)
+	{
+		ArrayList<Token> tokens = first_pass_annotate(createTokenStream(text));
+
+		// Check what contexts each word type can appear in, given the case
+		// of its first letter.
+		int context = INTERNAL;
+		for(Token tok: tokens)
+		{
+			counts.recountType(tok.getTokenType());
+
+			// If we encounter a paragraph break, then it's a good sign that
+			// it's a sentence break. But err on the side of caution (by not
+			// positing a sentence break) if we just saw an abbreviation.
+			if(tok.getIsParaStart() && context != UNKNOWN)
+				context = INITIAL;
+
+			// If we're at the beginning of a line, then we can't decide
+			// between internal and initial.
+			if(tok.getIsLineStart() && context == INTERNAL)
+				context = UNKNOWN;
+
+			long flag = orthoFlag(context, tok);
+			if(flag != 0)
+				counts.addOrtho(typeNoSentPeriod(tok), flag);
+
+			// Decide whether the next word is at a sentence boundary.
+			if(tok.getIsSentBreak())
+			{
+				counts.sentBreaks++;
+				context = (tok.getIsNumber() || tok.getIsInitial()) ? UNKNOWN : INITIAL;
+			}
+			else if(tok.getIsEllipsis() || tok.getIsAbbreviation())
+				context = UNKNOWN;
+			else
+				context = INTERNAL;
+		}
+
+		// The remaining heuristics relate to pairs of tokens where the first
+		// ends in a period.
+		for(int i=0; i+1<tokens.size(); i++)
+		{
+			Token tok1 = tokens.get(i);
+			Token tok2 = tokens.get(i+1);
+			if(!isPeriodFinal(tok1))
+				continue;
+
+			// Is the first token a rare abbreviation?
+			countRareAbbrevType(tok1, tok2, types, counts);
+
+			// Does second token have a high likelihood of starting a sentence?
+			if(tok1.getIsSentBreak() && !(tok1.getIsNumber() || tok1.getIsInitial()) && tok2.isAlpha)
+				counts.addSentStarter(tok2.getTokenType());
+
+			// Is this bigram a potential collocation?
+			if(tok1.getIsSentBreak() && (tok1.getIsNumber() || tok1.getIsInitial()) &&
+			   isNonPunct(tok1) && isNonPunct(tok2))
+				counts.addCollocation(new Tuple(typeNoPeriod(tok1), typeNoSentPeriod(tok2)));
+		}
+	}
+
+	/*
+	 * A sentence break that ends in a period but is seen too rarely to have
+	 * been found to be an abbreviation still is one if the next token starts
+	 * with internal punctuation, or starts with a lower case letter and the
+	 * type of the next token is upper case at the start of sentences but
+	 * never in the middle. The orthographic contexts are only known once all
+	 * the texts are counted, so those are kept as candidates.
+	 */
+	private void countRareAbbrevType(Token tok1, Token tok2, PunktCounts types, PunktCounts counts)
+	{
+		if(tok1.getIsAbbreviation() || !tok1.getIsSentBreak())
+			return;
+
+		String typ = typeNoSentPeriod(tok1);
+		if(!PunktTrainingState.isRareType(types, typ, params.getAbbreviations()))
+			return;
+
+		if(langVars.isInternalPunctuation(tok2.charAt(0)))
+			counts.addRareAbbrev(typ);
+		else if(tok2.getIsFirstLower())
+			counts.addRareAbbrevCandidate(new Tuple(typ, typeNoSentPeriod(tok2)));
+	}
+
+	/*
+	 * The orthographic context flag of a token in a context, 0 if its first
+	 * character has no case.
+	 */
+	private static long orthoFlag(int context, Token tok)
+	{
+		if(tok.getIsFirstUpper())
+			return context == INITIAL ? OrthoGraphFlag.BEGINNING_UC :
+				   context == INTERNAL ? OrthoGraphFlag.MIDDLE_UC : OrthoGraphFlag.UNKNOWN_UC;
+
+		if(tok.getIsFirstLower())
+			return context == INITIAL ? OrthoGraphFlag.BEGINNING_LC :
+				   context == INTERNAL ? OrthoGraphFlag.MIDDLE_LC : OrthoGraphFlag.UNKNOWN_LC;
+
+		return 0;
+	}
+
+	/*
+	 * Does a token end in a period.
+	 */
+	private static boolean isPeriodFinal(Token tok)
+	{
+		return tok.getLength() > 0 && tok.charAt(tok.getLength()-1) == '.';
+	}
+
+	/*
+	 * The type of a token without its final period.
+	 */
+	private static String typeNoPeriod(Token tok)
+	{
+		return tok.getTokenTypeNoPeriod();
+	}
+
+	/*
+	 * The type of a token, without its final period if it is a sentence
+	 * break.
+	 */
+	private static String typeNoSentPeriod(Token tok)
+	{
+		return tok.getIsSentBreak() ? tok.getTokenTypeNoPeriod() : tok.getTokenType();
+	}
+
+	/*
+	 * Does a token have a letter in it. Numbers do, as nltk tests this on
+	 * the type, which has the number tag in it.
+	 */
+	private static boolean isNonPunct(Token tok)
+	{
+		return tok.isNonPunct || tok.getIsNumber();
+	}
+
+	/*
+	 * Read all of an entry of a zip file in UTF-8.
+	 */
+	private static String readEntry(ZipFile zip, ZipEntry entry) throws IOException
+	{
+		InputStream in = zip.getInputStream(entry);
+		try
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max((int)entry.getSize(), 32));
+			byte[] buffer = new byte[8192];
+			int n;
+			while((n = in.read(buffer)) > 0)
+				bytes.write(buffer, 0, n);
+
+			return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/*
+	 * Counts a range of the partitions of the texts, splitting it in half
+	 * till it is a single partition, which is counted in order. The halves
+	 * are merged in order so the tree of merges only depends on the number
+	 * of partitions. If there are no type counts yet this is the first pass.
+	 */
+	private class CountTask extends RecursiveTask<PunktCounts> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<String> texts;
+		private final PunktCounts types;
+		private final int parts;
+		private final int from;
+		private final int to;
+		private final boolean exact;
+
+		CountTask(List<String> texts, PunktCounts types, int parts, int from, int to)
+		{
+			this(texts, types, parts, from, to, false);
+		}
+
+		CountTask(List<String> texts, PunktCounts types, int parts, int from, int to, boolean exact)
+		{
+			this.texts = texts;
+			this.types = types;
+			this.parts = parts;
+			this.from = from;
+			this.to = to;
+			this.exact = exact;
+		}
+
+		@Override
+		protected PunktCounts compute()
+		{
+			if(to - from <= 1)
+			{
+				PunktCounts counts = types == null ? newCounts(parts, exact) : types.newCounts();
+				for(int i=firstText(from); i<firstText(to); i++)
+				{
+					String text = texts.get(i);
+					if(taggedCorpus)
+						text = untag(text);
+
+					if(types == null)
+						countTypes(text, counts);
+					else
+						countAnnotated(text, types, counts);
+				}
+				return counts;
+			}
+
+			int mid = (from + to) >>> 1;
+			CountTask right = new CountTask(texts, types, parts, mid, to, exact);
+			right.fork();
+			PunktCounts counts = new CountTask(texts, types, parts, from, mid, exact).compute();
+			counts.merge(right.join());
+
+			return counts;
+		}
+
+		/*
+		 * The index of the first text of a partition.
+		 */
+		private int firstText(int part)
+		{
+			return (int)((long)part * texts.size() / parts);
+		}
+	}
+
 }
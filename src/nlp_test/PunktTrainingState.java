@@ -0,0 +1,454 @@
+package nlp_test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p> This class is what a PunktTrainer has counted of the texts it has been
+ * trained on, from which the parameters are learned: the number of times
+ * each type is seen, which includes the types that end in a period, the
+ * orthographic contexts of each type, the sentence breaks and the types
+ * after them, the candidate collocations and the rare abbreviations. It
+ * also keeps the abbreviations known before training.
+ *
+ * <p> A state can be trained on more texts at any time with
+ * PunktTrainer.train(state, texts), and states trained on different texts,
+ * say on different machines, can be merged. finalizeParams() learns the
+ * parameters from all the texts counted, without reading any of them again.
+ * The counts are exact, so training on some texts then on some more counts
+ * the same types as training on all of them at once. The texts of the
+ * second pass are annotated with the abbreviations known when they are
+ * counted, so the rest of the counts can differ a little.
+ *
+ * <p> A state is Serializable, and can be saved to and loaded from a file.
+ * It can't be shared by threads that change it.
+ *
+ * @author Dave Turner
+ *
+ */
+public class PunktTrainingState implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/*
+	 * The counts of the first pass over the texts, the types, and of the
+	 * second, the rest.
+	 */
+	private PunktExactCounts types = new PunktExactCounts();
+	private PunktExactCounts counts = new PunktExactCounts();
+
+	/*
+	 * The abbreviations known before training.
+	 */
+	private HashSet<String> knownAbbrevs = new HashSet<String>();
+
+	/*
+	 * The number of texts counted.
+	 */
+	private long documents = 0;
+
+	/**
+	 * Create an empty state.
+	 */
+	public PunktTrainingState()
+	{
+	}
+
+	/**
+	 * Create an empty state with some abbreviations known up front.
+	 *
+	 * @param knownAbbrevs The abbreviations, lower case and without their
+	 * final period.
+	 */
+	public PunktTrainingState(Collection<String> knownAbbrevs)
+	{
+		this.knownAbbrevs.addAll(knownAbbrevs);
+	}
+
+	/**
+	 * Add the counts of another state to this one. The other state is left
+	 * as it is.
+	 *
+	 * @param other The other state.
+	 */
+	public void merge(PunktTrainingState other)
+	{
+		if(other == this)
+			throw new IllegalArgumentException("Can't merge a training state with itself.");
+
+		types.merge(other.types);
+		counts.merge(other.counts);
+		knownAbbrevs.addAll(other.knownAbbrevs);
+		documents += other.documents;
+	}
+
+	/**
+	 * Learn the parameters from the counts. The state is left as it is, so
+	 * it can be trained on more texts and finalised again.
+	 *
+	 * @return New parameters.
+	 */
+	public PunktParams finalizeParams()
+	{
+		PunktParams params = new PunktParams();
+		learnParams(types, counts, knownAbbrevs, params);
+
+		return params;
+	}
+
+	/**
+	 * Get the number of texts counted.
+	 *
+	 * @return The number of texts.
+	 */
+	public long getDocumentCount()
+	{
+		return documents;
+	}
+
+	/**
+	 * Get the number of tokens counted.
+	 *
+	 * @return The number of tokens.
+	 */
+	public long getTokenCount()
+	{
+		return types.tokens;
+	}
+
+	/**
+	 * Get the abbreviations known before training.
+	 *
+	 * @return The abbreviations.
+	 */
+	public Set<String> getKnownAbbreviations()
+	{
+		return knownAbbrevs;
+	}
+
+	/**
+	 * Save the state to a file.
+	 *
+	 * @param fileName The file to create or overwrite.
+	 * @throws IOException If the file can't be written.
+	 */
+	public void save(String fileName) throws IOException
+	{
+		ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)));
+		try
+		{
+			out.writeObject(this);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * Load a state saved by save().
+	 *
+	 * @param fileName The file.
+	 * @return The state.
+	 * @throws IOException If the file can't be read or isn't a saved state.
+	 */
+	public static PunktTrainingState load(String fileName) throws IOException
+	{
+		ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(fileName)));
+		try
+		{
+			Object state = in.readObject();
+			if(!(state instanceof PunktTrainingState))
+				throw new InvalidObjectException("Not a Punkt training state: " + fileName);
+
+			return (PunktTrainingState)state;
+		}
+		catch(ClassNotFoundException e)
+		{
+			throw new IOException("Not a Punkt training state: " + fileName, e);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/*
+	 * The counts of the first pass.
+	 */
+	PunktCounts getTypes()
+	{
+		return types;
+	}
+
+	/*
+	 * The counts of the second pass.
+	 */
+	PunktCounts getCounts()
+	{
+		return counts;
+	}
+
+	/*
+	 * Add the first pass counts of some more texts.
+	 */
+	void addTypes(PunktCounts batch)
+	{
+		types.merge(batch);
+	}
+
+	/*
+	 * Add the second pass counts of the texts.
+	 */
+	void addCounts(PunktCounts batch, int texts)
+	{
+		counts.merge(batch);
+		documents += texts;
+	}
+
+	/*
+	 * Learn all the parameters from the counts of both passes. The
+	 * abbreviations are replaced by the known ones and the ones learned,
+	 * the orthographic contexts learned are added and the sentence starters
+	 * and collocations are replaced.
+	 */
+	static void learnParams(PunktCounts types, PunktCounts counts, Set<String> knownAbbrevs, PunktParams params)
+	{
+		findAbbreviations(types, knownAbbrevs, params);
+		counts.addOrthoContextsTo(params);
+
+		findRareAbbrevTypes(types, counts, params);
+		findSentStarters(types, counts, params);
+		findCollocations(types, counts, params);
+	}
+
+	/*
+	 * Set the abbreviations of some parameters to the known ones and those
+	 * learned from the types, which is all the second pass needs.
+	 */
+	static void findAbbreviations(PunktCounts types, Set<String> knownAbbrevs, PunktParams params)
+	{
+		params.clearAbbreviations();
+		params.getAbbreviations().addAll(knownAbbrevs);
+		reclassifyAbbrevTypes(types, params.getAbbreviations());
+	}
+
+	/*
+	 * Could a type that ends a sentence be a rare abbreviation: it isn't
+	 * already one and it isn't seen often, with or without its last
+	 * character.
+	 */
+	static boolean isRareType(PunktCounts types, String typ, Set<String> abbrevs)
+	{
+		if(typ.isEmpty() || abbrevs.contains(typ))
+			return false;
+
+		long count = types.getTypeCount(typ) + types.getTypeCount(typ.substring(0, typ.length()-1));
+		return count < PunktTrainer.ABBREV_BACKOFF;
+	}
+
+	/*
+	 * Find the types that end in a period often enough to be abbreviations,
+	 * and the abbreviations seen without a period that aren't.
+	 */
+	private static void reclassifyAbbrevTypes(PunktCounts types, Set<String> abbrevs)
+	{
+		for(String typ: types.getPeriodFinalTypes())
+		{
+			// Rule out words that are clearly not abbreviations.
+			if(!isNonPunct(typ) || abbrevs.contains(typ))
+				continue;
+
+			String candidate = typ.substring(0, typ.length()-1);
+			if(abbrevScore(candidate, types) >= PunktTrainer.ABBREV)
+				abbrevs.add(candidate);
+		}
+
+		for(String typ: new ArrayList<String>(abbrevs))
+		{
+			if(typ.endsWith(".") || types.getTypeCount(typ) == 0 || !isNonPunct(typ) ||
+			   typ.equals(Token.NUMBER_TAG))
+				continue;
+
+			if(abbrevScore(typ, types) < PunktTrainer.ABBREV)
+				abbrevs.remove(typ);
+		}
+	}
+
+	/*
+	 * The score of a candidate abbreviation, without its final period.
+	 */
+	private static double abbrevScore(String typ, PunktCounts types)
+	{
+		// Count how many periods & nonperiods are in the candidate.
+		int numPeriods = 1;
+		for(int i=0; i<typ.length(); i++)
+			if(typ.charAt(i) == '.')
+				numPeriods++;
+		int numNonPeriods = typ.length() - numPeriods + 1;
+
+		// A log likelihood ratio that indicates whether the candidate and
+		// the period occur as a single unit (high value) or as two
+		// independent units (low value).
+		long countWithPeriod = types.getTypeCount(typ + ".");
+		long countWithoutPeriod = types.getTypeCount(typ);
+		double ll = dunningLogLikelihood(countWithPeriod + countWithoutPeriod, types.periodTokens,
+				countWithPeriod, types.tokens);
+
+		// Scale it for the length, the number of periods and for being
+		// seen without a period.
+		double fLength = Math.exp(-numNonPeriods);
+		double fPeriods = numPeriods;
+		double fPenalty = Math.pow(numNonPeriods, -countWithoutPeriod);
+
+		return ll * fLength * fPeriods * fPenalty;
+	}
+
+	/*
+	 * Add the rare abbreviations, now the orthographic contexts are known.
+	 * The candidates are checked again against all the types, as more may
+	 * have been counted since they were found.
+	 */
+	private static void findRareAbbrevTypes(PunktCounts types, PunktCounts counts, PunktParams params)
+	{
+		Set<String> abbrevs = params.getAbbreviations();
+		ArrayList<String> rare = new ArrayList<String>();
+
+		for(String typ: counts.getRareAbbrevs())
+			if(isRareType(types, typ, abbrevs))
+				rare.add(typ);
+
+		for(Tuple candidate: counts.getRareAbbrevCandidates())
+		{
+			if(!isRareType(types, candidate.x, abbrevs))
+				continue;
+
+			long ortho = params.getOrthoContext(candidate.y);
+			if((ortho & OrthoGraphFlag.BEGINNING_UC) != 0 && (ortho & OrthoGraphFlag.MIDDLE_UC) == 0)
+				rare.add(candidate.x);
+		}
+
+		abbrevs.addAll(rare);
+	}
+
+	/*
+	 * Find the types that follow sentence breaks much more often than
+	 * chance.
+	 */
+	private static void findSentStarters(PunktCounts types, PunktCounts counts, PunktParams params)
+	{
+		params.clearSentenceStarters();
+		if(counts.sentBreaks == 0)
+			return;
+
+		for(Map.Entry<String, Long> e: counts.getSentStarters().entrySet())
+		{
+			String typ = e.getKey();
+			long atBreakCount = e.getValue();
+			long typCount = types.getTypeCount(typ) + types.getTypeCount(typ + ".");
+			if(typCount < atBreakCount)
+				continue;
+
+			double ll = colLogLikelihood(counts.sentBreaks, typCount, atBreakCount, types.tokens);
+			if(ll >= PunktTrainer.SENT_STARTER &&
+			   (double)types.tokens / counts.sentBreaks > (double)typCount / atBreakCount)
+				params.getSentenceStarters().add(typ);
+		}
+	}
+
+	/*
+	 * Find the pairs of types, the first ending in a period, that are seen
+	 * together much more often than chance.
+	 */
+	private static void findCollocations(PunktCounts types, PunktCounts counts, PunktParams params)
+	{
+		params.clearCollocations();
+
+		for(Map.Entry<Tuple, Long> e: counts.getCollocations().entrySet())
+		{
+			Tuple pair = e.getKey();
+			if(params.getSentenceStarters().contains(pair.y))
+				continue;
+
+			long colCount = e.getValue();
+			long typ1Count = types.getTypeCount(pair.x) + types.getTypeCount(pair.x + ".");
+			long typ2Count = types.getTypeCount(pair.y) + types.getTypeCount(pair.y + ".");
+			if(typ1Count > 1 && typ2Count > 1 &&
+			   PunktTrainer.MIN_COLLOC_FREQ < colCount && colCount <= Math.min(typ1Count, typ2Count))
+			{
+				double ll = colLogLikelihood(typ1Count, typ2Count, colCount, types.tokens);
+				if(ll >= PunktTrainer.COLLOCATION && (double)types.tokens / typ1Count > (double)typ2Count / colCount)
+					params.getCollocations().add(pair);
+			}
+		}
+	}
+
+	/*
+	 * The log likelihood ratio of Dunning (1993) that a candidate followed by
+	 * a period is an abbreviation, for a period probability of 0.99 in
+	 * abbreviations.
+	 */
+	private static double dunningLogLikelihood(long countA, long countB, long countAB, long n)
+	{
+		double p1 = (double)countB / n;
+		double p2 = 0.99;
+
+		double nullHypo = countAB * Math.log(p1) + (countA - countAB) * Math.log(1.0 - p1);
+		double altHypo = countAB * Math.log(p2) + (countA - countAB) * Math.log(1.0 - p2);
+
+		return -2.0 * (nullHypo - altHypo);
+	}
+
+	/*
+	 * The log likelihood ratio of Dunning (1993) that two types are seen
+	 * together more than chance. The terms that take the log of 0 are left
+	 * out, as nltk does.
+	 */
+	private static double colLogLikelihood(long countA, long countB, long countAB, long n)
+	{
+		double p = (double)countB / n;
+		double p1 = (double)countAB / countA;
+		double p2 = n == countA ? 1 : (double)(countB - countAB) / (n - countA);
+
+		double summand1 = logTerm(countAB, p, countA - countAB);
+		double summand2 = logTerm(countB - countAB, p, n - countA - countB + countAB);
+		double summand3 = (countA == countAB || p1 <= 0 || p1 >= 1) ? 0 :
+			countAB * Math.log(p1) + (countA - countAB) * Math.log(1.0 - p1);
+		double summand4 = (countB == countAB || p2 <= 0 || p2 >= 1) ? 0 :
+			(countB - countAB) * Math.log(p2) + (n - countA - countB + countAB) * Math.log(1.0 - p2);
+
+		return -2.0 * (summand1 + summand2 - summand3 - summand4);
+	}
+
+	/*
+	 * k log(p) + m log(1 - p), or 0 if either log is undefined.
+	 */
+	private static double logTerm(long k, double p, long m)
+	{
+		if(p <= 0 || p >= 1)
+			return 0;
+
+		return k * Math.log(p) + m * Math.log(1.0 - p);
+	}
+
+	/*
+	 * Does a type have a letter in it.
+	 */
+	private static boolean isNonPunct(String typ)
+	{
+		return (Token.classify(typ, 0, typ.length()) & TokenBuffer.NON_PUNCT) != 0;
+	}
+
+}
@@ -5,11 +5,19 @@ import java.util.List;
 
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
 
 /**
  * This is a very simple class that encapsulates a list of tokens into a 
  * sentence. 
  * 
+ * A sentence of a text is the range of offsets within the text from the
+ * start of its first token to the end of its last, and the range of its
+ * tokens within the list of all the tokens of the text. Its tokens are a 
+ * view of that list, which must not change afterwards. The string 
+ * representation, the annotated tokens with the original whitespace 
+ * between them, is only built when it is asked for.
+ * 
  * @author Dave Turner
  *
  */
@@ -26,6 +34,25 @@ public class Sentence {
 	 */
 	protected String stringRep = null;
 	
+	/*
+	 * The text this sentence is from, null if the sentence was built a 
+	 * token at a time.
+	 */
+	protected CharSequence source = null;
+	
+	/*
+	 * The offsets of the start and the end of this sentence within source.
+	 */
+	protected long start;
+	protected long end;
+	
+	/*
+	 * The indexes of the first token of this sentence and of the token 
+	 * after its last within the list of all the tokens of source.
+	 */
+	protected int firstToken;
+	protected int endToken;
+	
 	/**
 	 * Create an empty sentence.
 	 */
@@ -35,12 +62,40 @@ public class Sentence {
 	}
 	
 	/**
-	 * Add a token to this sentence.
+	 * Create a sentence of a text from a range of its tokens. The positions
+	 * of the tokens must be their positions within the text.
+	 * 
+	 * @param source The text.
+	 * @param allTokens All the tokens of the text.
+	 * @param firstToken The index of the sentence's first token.
+	 * @param endToken The index after the sentence's last token.
+	 */
+	public Sentence(CharSequence source, List<Token> allTokens, int firstToken, int endToken)
+	{
+		if(firstToken >= endToken)
+			throw new IllegalArgumentException("A sentence needs at least one token.");
+		
+		this.source = source;
+		this.firstToken = firstToken;
+		this.endToken = endToken;
+		this.tokens = allTokens.subList(firstToken, endToken);
+		
+		Token last = tokens.get(tokens.size()-1);
+		this.start = tokens.get(0).getPosition();
+		this.end = last.getPosition() + last.getLength();
+	}
+	
+	/**
+	 * Add a token to this sentence. Sentences of a text are a view of the 
+	 * tokens of the text so they can't be added to.
 	 * 
 	 * @param token
 	 */
 	public void addToken(Token token)
 	{
+		if(source != null)
+			throw new UnsupportedOperationException("Tokens can't be added to a sentence of a text.");
+		
 		tokens.add(token);
 	}
 
@@ -64,17 +119,116 @@ public class Sentence {
 		stringRep = sentString;
 	}
 	
+	/**
+	 * Get the offset of the start of this sentence within its text.
+	 * 
+	 * @return The offset of the first character of the first token.
+	 */
+	@XmlTransient
+	public long getStart()
+	{
+		return start;
+	}
+	
+	/**
+	 * Get the offset of the end of this sentence within its text.
+	 * 
+	 * @return The offset after the last character of the last token.
+	 */
+	@XmlTransient
+	public long getEnd()
+	{
+		return end;
+	}
+	
+	/**
+	 * Get the index of the first token of this sentence within all the 
+	 * tokens of its text.
+	 * 
+	 * @return The index.
+	 */
+	@XmlTransient
+	public int getFirstToken()
+	{
+		return firstToken;
+	}
+	
+	/**
+	 * Get the index after the last token of this sentence within all the 
+	 * tokens of its text.
+	 * 
+	 * @return The index.
+	 */
+	@XmlTransient
+	public int getEndToken()
+	{
+		return endToken;
+	}
+	
+	/**
+	 * Append the string representation of this sentence to a buffer. Unlike
+	 * toString() this doesn't keep a copy of it in the sentence.
+	 * 
+	 * @param sb The buffer to append to.
+	 */
+	public void appendTo(StringBuilder sb)
+	{
+		if(stringRep != null || source == null)
+		{
+			sb.append(toString());
+			return;
+		}
+		
+		// The annotated tokens with the original text between them
+		long prevEnd = start;
+		for(Token tk: tokens)
+		{
+			long pos = tk.getPosition();
+			if(pos > prevEnd)
+				appendSource(sb, prevEnd, pos);
+			sb.append(tk.toString());
+			prevEnd = pos + tk.getLength();
+		}
+	}
+	
+	/*
+	 * Append a range of the text this sentence is from. A mapped text can
+	 * be longer than an int can index, any other text can't be.
+	 */
+	private void appendSource(StringBuilder sb, long from, long to)
+	{
+		if(source instanceof MappedText)
+		{
+			MappedText text = (MappedText)source;
+			for(long i=from; i<to; i++)
+				sb.append(text.charAt(i));
+		}
+		else
+		{
+			sb.append(source, (int)from, (int)to);
+		}
+	}
+	
 	public String toString()
 	{
 		if(stringRep != null)
 			return stringRep;
 		
+		if(source != null)
+		{
+			StringBuilder sb = new StringBuilder((int)Math.min(end - start + 4L * tokens.size(), Integer.MAX_VALUE - 8));
+			appendTo(sb);
+			
+			stringRep = sb.toString();
+			return stringRep;
+		}
+		
 		// If a string representation hasn't been set then make one. This is
 		// bad because original whitespace will be all wrong.
-		String tmp = "";
+		StringBuilder tmp = new StringBuilder();
 		for(Token tk: tokens)
-			tmp += tk.getValue() + " ";
+			tmp.append(tk.getValue()).append(' ');
 		
-		return tmp;
+		return tmp.toString();
 	}
 }
@@ -81,10 +81,11 @@ public class SentenceList extends AbstractList<Sentence> {
    
     public String toString()
     {
-    	stringRep = "";
+    	StringBuilder sb = new StringBuilder();
     	for(Sentence s: list)
-    		stringRep += s + "\n";
+    		sb.append(s).append('\n');
     	
+    	stringRep = sb.toString();
     	return stringRep;
     }
 }
@@ -5,6 +5,15 @@ import java.util.List;
 
 public interface SentenceTokenizer {
 
+	/**
+	 * Create a token stream over a piece of text that uses the language
+	 * variables of this sentence tokenizer.
+	 * 
+	 * @param text The text to tokenize.
+	 * @return The token stream.
+	 */
+	public abstract TokenStream createTokenStream(String text);
+
 	/**
 	 * Produce an annotated list of tokens from a PunktTokenStream. 
 	 * This will detect sentence boundaries and mark those tokens
@@ -14,15 +23,27 @@ public interface SentenceTokenizer {
 	 * @return The list of all tokens in the stream.
 	 */
 	public abstract ArrayList<Token> annotate(TokenStream stream);
+	
+	/**
+	 * Produce an annotated buffer of tokens from a token stream. This
+	 * is the same as annotate() but the tokens are stored column by 
+	 * column which takes far less memory. The stream must hold its whole
+	 * text, see TokenStream.getText().
+	 * 
+	 * @param stream The token stream to annotate.
+	 * @return The buffer of all tokens in the stream.
+	 */
+	public abstract TokenBuffer annotateBuffer(TokenStream stream);
 
 	/**
-	 * Construct a sentence list object from and original text string and
-	 * the list of tokens.
+	 * Construct a sentence list object from and original text and the list
+	 * of tokens. The positions of the tokens must be their positions within
+	 * the text. The text can be a MappedText of any length.
 	 * 
 	 * @param text The original text the tokens are derived from.
 	 * @param tokens The tokens list.
 	 * @return
 	 */
-	public abstract SentenceList buildSentenceList(String text, List<Token> tokens);
+	public abstract SentenceList buildSentenceList(CharSequence text, List<Token> tokens);
 	
 }
\ No newline at end of file
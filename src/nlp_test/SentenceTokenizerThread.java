@@ -1,12 +1,12 @@
 package nlp_test;
 
-import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
-
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
 
 public class SentenceTokenizerThread implements Runnable 
 {
@@ -20,6 +20,11 @@ public class SentenceTokenizerThread implements Runnable
 	 */
 	protected String output_file;
 	
+	/*
+	 * Output stream, used instead of the file if it isn't null.
+	 */
+	protected OutputStream output_stream = null;
+	
 	/*
 	 * This is the sentence tokenizer to use.
 	 */
@@ -30,6 +35,28 @@ public class SentenceTokenizerThread implements Runnable
 	 */
 	protected NamedEntityMatcher nerer = null;
 	
+	/*
+	 * Limits how many threads tokenize and match at once, null if there is
+	 * no limit.
+	 */
+	protected Semaphore cpuStage = null;
+	
+	/*
+	 * Pool to split the text over, null to process it on this thread.
+	 */
+	protected ForkJoinPool pool = null;
+	
+	/*
+	 * The format to write the sentences in.
+	 */
+	protected OutputFormat outputFormat = OutputFormat.XML;
+	
+	/*
+	 * The error that stopped run() before all the sentences were written,
+	 * null if it hasn't.
+	 */
+	protected IOException failure = null;
+	
 	/**
 	 * Create a worker thread that processing a string into sentence
 	 * tokens and outputs to XML.
@@ -47,7 +74,24 @@ public class SentenceTokenizerThread implements Runnable
 	}
 	
 	/**
-	 * Setup a named entity matcher to use. This is optional.
+	 * Create a worker thread that processing a string into sentence
+	 * tokens and outputs to a stream. The stream is closed when
+	 * the output is finished.
+	 * 
+	 * @param text The text to process
+	 * @param out The stream to output to.
+	 */
+	public SentenceTokenizerThread(String text, OutputStream out, 
+		SentenceTokenizer tokenizer)
+	{
+		this.inputText = text;
+		this.output_stream = out;
+		this.tokenizer = tokenizer;
+	}
+	
+	/**
+	 * Setup a named entity matcher to use. This is optional. Matchers are
+	 * thread safe, so the same one can be given to every worker.
 	 * 
 	 * @param n The matcher to use.
 	 */
@@ -56,8 +100,56 @@ public class SentenceTokenizerThread implements Runnable
 		nerer = n;
 	}
 	
+	/**
+	 * Setup a semaphore that the CPU bound steps, tokenizing and named entity
+	 * matching, have to hold a permit of. Writing the output is done after
+	 * the permit is given back. This is optional.
+	 * 
+	 * @param s The semaphore to share with the other workers.
+	 */
+	public void setCpuStage(Semaphore s)
+	{
+		cpuStage = s;
+	}
+	
+	/**
+	 * Setup a pool to process the text on. The text is split into chunks at
+	 * paragraph breaks that are processed in parallel, which is worth it for
+	 * very large texts. This is optional and only works with Punkt sentence
+	 * tokenizers.
+	 * 
+	 * @param p The pool to use.
+	 */
+	public void setForkJoinPool(ForkJoinPool p)
+	{
+		pool = p;
+	}
+	
+	/**
+	 * Set the format to write the sentences in. This is XML unless it is 
+	 * set.
+	 * 
+	 * @param format The format.
+	 */
+	public void setOutputFormat(OutputFormat format)
+	{
+		outputFormat = format;
+	}
+	
+	/**
+	 * Get the error that stopped run() before all the sentences were
+	 * written. The output is incomplete if there is one.
+	 * 
+	 * @return The error, null if run() finished or hasn't been run.
+	 */
+	public IOException getFailure()
+	{
+		return failure;
+	}
+	
 	/*
-	 * This function does all of the work.
+	 * This function does all of the work. An error is kept for 
+	 * getFailure() rather than thrown.
 	 * 
 	 * (non-Javadoc)
 	 * @see java.lang.Runnable#run()
@@ -69,46 +161,78 @@ public class SentenceTokenizerThread implements Runnable
 		// very large. Lets assume UTF-8.
 		try
 		{
-			// Setup a stream tokenizer
-			TokenStream stream = new PunktTokenStream(inputText);
-			
-			// Pass the token stream to our PunktTokenizer
-			SentenceTokenizer sTokenizer = new PunktFirstPassSentenceTokenizer();
-			
-			// Get the full list of annotated tokens from the stream using our
-			// sentence tokenizer.
-			ArrayList<Token> tokens =  sTokenizer.annotate(stream);
-			
-			// If we need to do named entity matching
-			if(nerer != null)
+			SentenceList sents;
+			if(cpuStage != null)
+				cpuStage.acquire();
+			try
 			{
-				// Find named entities and annotate our tokens
-				List<TokenNE> tokens_mod = nerer.annotate(tokens, inputText);
-	
-				// Lets copy our TokenNE's to our original list of tokens so we can output 
-				// them with the base class stuff for Token.
-				tokens.clear();
-				for(TokenNE tk: tokens_mod)
-					tokens.add((Token)tk);
+				sents = buildSentences();
+			}
+			finally
+			{
+				if(cpuStage != null)
+					cpuStage.release();
 			}
 			
-			// Build a sentence list from the tokens and text
-			SentenceList sents = sTokenizer.buildSentenceList(inputText, tokens);
-			
-			// Output the list of sentences to XML using JAXB
-			File file = new File(output_file);
-			JAXBContext jaxbContext = JAXBContext.newInstance(SentenceList.class, TokenNE.class);
-			Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
-	 
-			// output pretty printed
-			jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-	 
-			// Write it to the file
-			jaxbMarshaller.marshal(sents, file);
-		} catch (JAXBException e) {
-			e.printStackTrace();
-		} 
+			// Output the list of sentences
+			AnnotationWriter writer;
+			if(output_stream != null)
+				writer = outputFormat.createWriter(output_stream, nerer);
+			else
+				writer = outputFormat.createWriter(output_file, nerer);
+			try
+			{
+				for(Sentence sent: sents)
+					writer.writeSentence(sent);
+			}
+			finally
+			{
+				writer.close();
+			}
+		} catch (IOException e) {
+			failure = e;
+		} catch (InterruptedException e) {
+			failure = new InterruptedIOException("Interrupted before the sentences were written");
+			Thread.currentThread().interrupt();
+		}
+		
+	}
+	
+	/*
+	 * Tokenize the text, find the named entities and build the sentences.
+	 */
+	private SentenceList buildSentences()
+	{
+		if(pool != null && tokenizer instanceof PunktAlgoBase)
+			return new ParallelDocumentProcessor((PunktAlgoBase)tokenizer, nerer, pool).process(inputText);
+		
+		// Pass the token stream to our PunktTokenizer
+		SentenceTokenizer sTokenizer = tokenizer;
+		
+		// Setup a stream tokenizer
+		TokenStream stream = sTokenizer.createTokenStream(inputText);
+		
+		// Get the full list of annotated tokens from the stream using our
+		// sentence tokenizer.
+		ArrayList<Token> tokens =  sTokenizer.annotate(stream);
+		
+		// If we need to do named entity matching
+		if(nerer != null)
+		{
+			// Find named entities and annotate our tokens
+			List<TokenNE> tokens_mod = nerer.annotate(tokens, inputText);
+	
+			// Lets copy our TokenNE's to our original list of tokens so we can output 
+			// them with the base class stuff for Token.
+			tokens.clear();
+			for(TokenNE tk: tokens_mod)
+				tokens.add((Token)tk);
+		}
+		
+		// Build a sentence list from the tokens and text
+		SentenceList sents = sTokenizer.buildSentenceList(inputText, tokens);
 		
+		return sents;
 	}
 
 }
@@ -0,0 +1,211 @@
+package nlp_test;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class writes sentences to XML as they are finished, in the same form
+ * JAXB gives when it marshals a SentenceList pretty printed. There is no
+ * JAXBContext to make and nothing is built in memory first. Each sentence is
+ * written as soon as it is given to the writer, and the stringAnnotated
+ * element at the end is written a sentence at a time when the writer is
+ * closed. The writer only keeps a reference to each sentence for that.
+ *
+ * Tokens that are TokenNEs get the xsi:type and isNamedEntity attributes
+ * and an entities element per entity, as they do when TokenNE is in the
+ * JAXBContext. Text is escaped the way JAXB escapes it.
+ *
+ * This is the XML output format, see OutputFormat.
+ *
+ * @author Dave Turner
+ *
+ */
+public class SentenceXmlWriter extends AnnotationWriterBase {
+
+	/*
+	 * The attributes that mark a TokenNE, which a token element must declare
+	 * the namespace of itself.
+	 */
+	private static final String TOKEN_NE_TYPE =
+			" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:type=\"tokenNE\"";
+
+	/*
+	 * The sentences written so far, for the stringAnnotated element.
+	 */
+	private List<Sentence> sentences = new ArrayList<Sentence>();
+
+	/*
+	 * Have we written the start of the document yet.
+	 */
+	private boolean started = false;
+
+	/*
+	 * Reused to build the string of each sentence.
+	 */
+	private StringBuilder sentString = new StringBuilder();
+
+	/**
+	 * Create a writer that writes to a Writer.
+	 *
+	 * @param out The Writer. It should be writing UTF-8, which the XML
+	 * declaration says it is.
+	 */
+	public SentenceXmlWriter(Writer out)
+	{
+		super(out);
+	}
+
+	/**
+	 * Create a writer that writes to a file in UTF-8.
+	 *
+	 * @param file The file to create or overwrite.
+	 * @throws IOException If the file can't be created.
+	 */
+	public SentenceXmlWriter(String file) throws IOException
+	{
+		this(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Write a sentence and all its tokens.
+	 *
+	 * @param sent The sentence.
+	 * @throws IOException If writing fails.
+	 */
+	public void writeSentence(Sentence sent) throws IOException
+	{
+		start();
+
+		write("    <sentence>\n");
+		for(Token token: sent.getTokens())
+			writeToken(token);
+		write("    </sentence>\n");
+
+		sentences.add(sent);
+	}
+
+	/**
+	 * Write the stringAnnotated element of all the sentences and finish the
+	 * document.
+	 */
+	@Override
+	protected void finish() throws IOException
+	{
+		start();
+
+		write("    <stringAnnotated>");
+		for(Sentence sent: sentences)
+		{
+			sentString.setLength(0);
+			sent.appendTo(sentString);
+			sentString.append('\n');
+			writeEscaped(sentString);
+		}
+		write("</stringAnnotated>\n");
+		write("</sentenceList>\n");
+
+		sentences.clear();
+	}
+
+	/*
+	 * Write the start of the document if we haven't yet.
+	 */
+	private void start() throws IOException
+	{
+		if(started)
+			return;
+
+		write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+		write("<sentenceList>\n");
+		started = true;
+	}
+
+	/*
+	 * Write a token element. The attributes are in the order JAXB puts
+	 * them, those of the subclass first and then by name.
+	 */
+	private void writeToken(Token token) throws IOException
+	{
+		TokenNE tokenNE = token instanceof TokenNE ? (TokenNE)token : null;
+
+		write("        <token");
+		if(tokenNE != null)
+		{
+			write(TOKEN_NE_TYPE);
+			writeAttribute("isNamedEntity", tokenNE.getIsNamedEntity());
+		}
+		writeAttribute("isAbbreviation", token.getIsAbbreviation());
+		writeAttribute("isEllipsis", token.getIsEllipsis());
+		writeAttribute("isInitial", token.getIsInitial());
+		writeAttribute("isLineStart", token.getIsLineStart());
+		writeAttribute("isNumber", token.getIsNumber());
+		writeAttribute("isParaStart", token.getIsParaStart());
+		writeAttribute("isSentBreak", token.getIsSentBreak());
+		write(">\n");
+
+		write("            <position>");
+		write(token.getPosition());
+		write("</position>\n");
+
+		write("            <value>");
+		writeEscaped(token.getValueView());
+		write("</value>\n");
+
+		if(tokenNE != null)
+		{
+			for(String entity: tokenNE.entities)
+			{
+				write("            <entities>");
+				writeEscaped(entity);
+				write("</entities>\n");
+			}
+		}
+
+		write("        </token>\n");
+	}
+
+	/*
+	 * Write a boolean attribute.
+	 */
+	private void writeAttribute(String name, boolean value) throws IOException
+	{
+		write(' ');
+		write(name);
+		write(value ? "=\"true\"" : "=\"false\"");
+	}
+
+	/*
+	 * Write text, escaping the characters that JAXB escapes in text.
+	 */
+	private void writeEscaped(CharSequence s) throws IOException
+	{
+		int length = s.length();
+		for(int i=0; i<length; i++)
+		{
+			char c = s.charAt(i);
+			switch(c)
+			{
+			case '&':
+				write("&amp;");
+				break;
+			case '<':
+				write("&lt;");
+				break;
+			case '>':
+				write("&gt;");
+				break;
+			case '\r':
+				write("&#xD;");
+				break;
+			default:
+				write(c);
+			}
+		}
+	}
+
+}
@@ -19,7 +19,7 @@ public class SimpleNamedEntityMatcher extends NamedEntityMatcher {
 	 * A set of regular expressions, one for each named entity in our
 	 * database.
 	 */
-	List<Pattern> regexs = new ArrayList<Pattern>();
+	final List<Pattern> regexs = new ArrayList<Pattern>();
 	
 	/**
 	 * Construct a simple named entity matcher from file which lists known named
@@ -86,8 +86,6 @@ public class SimpleNamedEntityMatcher extends NamedEntityMatcher {
 			// Get all the matches for this entity in our original text
 			while(m.find())
 			{
-				String match = m.group();
-				
 				// Now lets find out which tokens we need to annotate. 
 				// Get the start and end indices for this entity. These
 				// indicies are within the original string.
@@ -102,7 +100,7 @@ public class SimpleNamedEntityMatcher extends NamedEntityMatcher {
 				
 				// Annotate this tokens with the named entity
 				for(Integer index: tokis)
-					mod_tokens.get(index).addEntity(entity);
+					mod_tokens.get(index).addEntity(entity, start);
 			}
 			
 			
@@ -111,93 +109,5 @@ public class SimpleNamedEntityMatcher extends NamedEntityMatcher {
 		
 		return mod_tokens;
 	}
-	
-	/*
-	 * This function performs a modified binary search on a set of tokens
-	 * looking for tokens whose position fall within an upper and lower 
-	 * bound inclusive.
-	 */
-	List<Integer> binaryRangeSearch(List<Token> tokens, int lower, int upper)
-	{
-		List<Integer> in_range = new ArrayList<Integer>();
-		
-		int min = bsearchMax(tokens, lower);
-		int max = bsearchMin(tokens, upper);
-		
-		for(int i=min;i<=max;i++)
-			in_range.add(i);
-		
-		return in_range;
-	}
-	
-	/*
-	 * Find the max number smaller then a limit
-	 */
-	int bsearchMin(List<Token> tokens, int limit)
-	{
-		int start = 0;
-		int end = tokens.size()-1;
-		int midPt = 0;
-		
-		while(start <= end)
-		{
-			// Find our middle
-			midPt = (start + end) / 2; 
-			
-			if(tokens.get(midPt).getPosition() < limit)
-				start = midPt + 1;
-			else if(tokens.get(midPt).getPosition() > limit)
-				end = midPt - 1;
-			else // They are equal. 
-			{
-				if(midPt == tokens.size()-1)
-					return midPt;
-				
-				while(midPt < tokens.size() && tokens.get(midPt).getPosition() == limit) {midPt++;}
-				return midPt - 1;
-			}
-		}
-		
-		if(tokens.get(midPt).getPosition() < limit)
-			return midPt;
-		else
-			return midPt-1;
-	}
-	
-	/*
-	 * Find the min number greater than a limit
-	 */
-	int bsearchMax(List<Token> tokens, int limit)
-	{
-		int start = 0;
-		int end = tokens.size()-1;
-		int midPt = 0;
-		
-		while(start <= end)
-		{
-			// Find our middle
-			midPt = (start + end) / 2; 
-			
-			if(tokens.get(midPt).getPosition() < limit)
-				start = midPt + 1;
-			else if(tokens.get(midPt).getPosition() > limit)
-				end = midPt - 1;
-			else // They are equal. 
-			{
-				if(midPt == 0)
-					return midPt;
-				
-				while(midPt > 0 && tokens.get(midPt).getPosition() == limit) {midPt--;}
-				
-				return midPt + 1;
-			}
-		}
-		
-		if(tokens.get(midPt).getPosition() > limit)
-			return midPt;
-		else
-			return midPt+1;
-	}
-	
 		
 }
@@ -0,0 +1,388 @@
+package nlp_test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class finds the most frequent keys of a stream in a fixed number of
+ * counters, the Space-Saving algorithm of Metwally, Agrawal and El Abbadi
+ * (2005). Each key seen is given a counter while there are counters free.
+ * After that a key without one takes over the counter with the lowest
+ * count, keeping the count and noting it as the error of the new key's
+ * count. So every count is an upper bound, over the true count by at most
+ * its error, and every key seen more often than the lowest count has a
+ * counter. Until the counters run out the counts are exact.
+ *
+ * The counters are kept in buckets of equal counts in order of count, the
+ * stream summary of the paper, so adding one to a count or finding the
+ * lowest takes constant time.
+ *
+ * Summaries are merged as in Agarwal et al. (2012), Mergeable Summaries.
+ * The counts of each key are added up, a key without a counter in one
+ * summary taking that summary's lowest count if it is full, and the keys
+ * with the highest counts are kept. Ties are broken on the keys so the
+ * result only depends on what is merged.
+ *
+ * A summary can't be shared by threads that add to it.
+ *
+ * @author Dave Turner
+ *
+ */
+public class SpaceSaving<K extends Comparable<? super K>> {
+
+	/*
+	 * The number of counters.
+	 */
+	private final int capacity;
+
+	/*
+	 * The counter of each key.
+	 */
+	private HashMap<K, Counter<K>> counters = new HashMap<K, Counter<K>>();
+
+	/*
+	 * The bucket with the lowest count, null if there are no counters. The
+	 * buckets are linked in order of count from it.
+	 */
+	private Bucket<K> min = null;
+
+	/**
+	 * Create an empty summary.
+	 *
+	 * @param capacity The number of counters.
+	 */
+	public SpaceSaving(int capacity)
+	{
+		if(capacity <= 0)
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Count a key once.
+	 *
+	 * @param key The key.
+	 */
+	public void add(K key)
+	{
+		add(key, 1);
+	}
+
+	/**
+	 * Count a key some number of times.
+	 *
+	 * @param key The key.
+	 * @param n The number of times, not negative.
+	 */
+	public void add(K key, long n)
+	{
+		if(n < 0)
+			throw new IllegalArgumentException("Can't take away from a count: " + n);
+		if(n == 0)
+			return;
+
+		Counter<K> c = counters.get(key);
+		if(c != null)
+		{
+			increment(c, n);
+			return;
+		}
+
+		if(counters.size() < capacity)
+		{
+			c = new Counter<K>(key, 0);
+			counters.put(key, c);
+			place(c, n, null);
+			return;
+		}
+
+		// Take over the oldest counter with the lowest count
+		c = min.first;
+		counters.remove(c.key);
+		c.key = key;
+		c.error = min.count;
+		counters.put(key, c);
+		increment(c, n);
+	}
+
+	/**
+	 * Does a key have a counter.
+	 *
+	 * @param key The key.
+	 * @return true if yes, false if no.
+	 */
+	public boolean contains(K key)
+	{
+		return counters.containsKey(key);
+	}
+
+	/**
+	 * Get the count of a key. If the key has a counter this is never less
+	 * than the number of times it has been seen, and is over it by at most
+	 * its error.
+	 *
+	 * @param key The key.
+	 * @return The count, 0 if the key has no counter.
+	 */
+	public long getCount(K key)
+	{
+		Counter<K> c = counters.get(key);
+		return c == null ? 0 : c.bucket.count;
+	}
+
+	/**
+	 * Get the most a key's count can be over the number of times it has been
+	 * seen.
+	 *
+	 * @param key The key.
+	 * @return The error, 0 if the key has no counter.
+	 */
+	public long getError(K key)
+	{
+		Counter<K> c = counters.get(key);
+		return c == null ? 0 : c.error;
+	}
+
+	/**
+	 * Get the lowest count if all the counters are used. No key without a
+	 * counter has been seen more times than this.
+	 *
+	 * @return The lowest count, or 0 if there are counters free.
+	 */
+	public long getMinCount()
+	{
+		return counters.size() < capacity || min == null ? 0 : min.count;
+	}
+
+	/**
+	 * Get the number of counters used.
+	 *
+	 * @return The number of keys with counters.
+	 */
+	public int size()
+	{
+		return counters.size();
+	}
+
+	/**
+	 * Get the number of counters.
+	 *
+	 * @return The capacity.
+	 */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * Get the count of each key with a counter.
+	 *
+	 * @return A new map of the counts.
+	 */
+	public Map<K, Long> getCounts()
+	{
+		HashMap<K, Long> counts = new HashMap<K, Long>(counters.size() * 2);
+		for(Bucket<K> b=min; b!=null; b=b.next)
+			for(Counter<K> c=b.first; c!=null; c=c.next)
+				counts.put(c.key, b.count);
+
+		return counts;
+	}
+
+	/**
+	 * Get the guaranteed count of each key with a counter, its count less its
+	 * error. This is never more than the number of times the key has been
+	 * seen.
+	 *
+	 * @return A new map of the guaranteed counts.
+	 */
+	public Map<K, Long> getGuaranteedCounts()
+	{
+		HashMap<K, Long> counts = new HashMap<K, Long>(counters.size() * 2);
+		for(Bucket<K> b=min; b!=null; b=b.next)
+			for(Counter<K> c=b.first; c!=null; c=c.next)
+				counts.put(c.key, b.count - c.error);
+
+		return counts;
+	}
+
+	/**
+	 * Add the counts of another summary to this one, keeping the keys with
+	 * the highest counts that fit in this one's counters.
+	 *
+	 * @param other The other summary.
+	 */
+	public void merge(SpaceSaving<K> other)
+	{
+		long thisMin = getMinCount();
+		long otherMin = other.getMinCount();
+
+		HashMap<K, long[]> merged = new HashMap<K, long[]>((counters.size() + other.counters.size()) * 2);
+		for(Counter<K> c: counters.values())
+		{
+			Counter<K> o = other.counters.get(c.key);
+			merged.put(c.key, new long[] {c.bucket.count + (o == null ? otherMin : o.bucket.count),
+					c.error + (o == null ? otherMin : o.error)});
+		}
+		for(Counter<K> o: other.counters.values())
+		{
+			if(!merged.containsKey(o.key))
+				merged.put(o.key, new long[] {o.bucket.count + thisMin, o.error + thisMin});
+		}
+
+		// Keep the highest counts, lowest keys first on ties
+		final HashMap<K, long[]> m = merged;
+		List<K> keys = new ArrayList<K>(merged.keySet());
+		Collections.sort(keys, new Comparator<K>() {
+			public int compare(K a, K b)
+			{
+				int cmp = Long.compare(m.get(b)[0], m.get(a)[0]);
+				return cmp != 0 ? cmp : a.compareTo(b);
+			}
+		});
+		if(keys.size() > capacity)
+			keys = keys.subList(0, capacity);
+
+		// Put them back lowest count first, so each goes at the end
+		counters = new HashMap<K, Counter<K>>(keys.size() * 2);
+		min = null;
+		Bucket<K> last = null;
+		for(int i=keys.size()-1; i>=0; i--)
+		{
+			K key = keys.get(i);
+			long[] count = merged.get(key);
+			Counter<K> c = new Counter<K>(key, count[1]);
+			counters.put(key, c);
+			place(c, count[0], last);
+			last = c.bucket;
+		}
+	}
+
+	/*
+	 * Add to the count of a counter, moving it to the bucket of its new
+	 * count.
+	 */
+	private void increment(Counter<K> c, long n)
+	{
+		Bucket<K> from = c.bucket;
+		unlink(c);
+		place(c, from.count + n, from);
+
+		if(from.first == null)
+			removeBucket(from);
+	}
+
+	/*
+	 * Put a counter at the end of the bucket of a count, making the bucket
+	 * if there isn't one. The search for the bucket starts at a bucket with
+	 * a count that isn't higher, or at the lowest if that is null.
+	 */
+	private void place(Counter<K> c, long count, Bucket<K> start)
+	{
+		Bucket<K> b = start;
+		if(b == null && min != null && min.count <= count)
+			b = min;
+		if(b != null)
+		{
+			while(b.next != null && b.next.count <= count)
+				b = b.next;
+		}
+
+		if(b == null || b.count != count)
+		{
+			Bucket<K> nb = new Bucket<K>(count);
+			nb.prev = b;
+			nb.next = b == null ? min : b.next;
+			if(nb.next != null)
+				nb.next.prev = nb;
+			if(b == null)
+				min = nb;
+			else
+				b.next = nb;
+			b = nb;
+		}
+
+		c.bucket = b;
+		c.prev = b.last;
+		c.next = null;
+		if(b.last == null)
+			b.first = c;
+		else
+			b.last.next = c;
+		b.last = c;
+	}
+
+	/*
+	 * Take a counter out of its bucket.
+	 */
+	private void unlink(Counter<K> c)
+	{
+		Bucket<K> b = c.bucket;
+		if(c.prev == null)
+			b.first = c.next;
+		else
+			c.prev.next = c.next;
+		if(c.next == null)
+			b.last = c.prev;
+		else
+			c.next.prev = c.prev;
+
+		c.prev = null;
+		c.next = null;
+		c.bucket = null;
+	}
+
+	/*
+	 * Take an empty bucket out of the list of buckets.
+	 */
+	private void removeBucket(Bucket<K> b)
+	{
+		if(b.prev == null)
+			min = b.next;
+		else
+			b.prev.next = b.next;
+		if(b.next != null)
+			b.next.prev = b.prev;
+	}
+
+	/*
+	 * The counter of a key, linked with the others of its bucket.
+	 */
+	private static class Counter<K> {
+
+		K key;
+		long error;
+		Bucket<K> bucket;
+		Counter<K> prev;
+		Counter<K> next;
+
+		Counter(K key, long error)
+		{
+			this.key = key;
+			this.error = error;
+		}
+	}
+
+	/*
+	 * The counters with a count, oldest first.
+	 */
+	private static class Bucket<K> {
+
+		final long count;
+		Counter<K> first;
+		Counter<K> last;
+		Bucket<K> prev;
+		Bucket<K> next;
+
+		Bucket(long count)
+		{
+			this.count = count;
+		}
+	}
+
+}
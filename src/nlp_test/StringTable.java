@@ -0,0 +1,152 @@
+package nlp_test;
+
+/**
+ * This class is an immutable set of strings, or of pairs of strings,
+ * optionally with a long for each, that can be looked up with any
+ * CharSequence without building a String or anything else. It is an open
+ * addressing hash table with linear probing, at most half full, with a
+ * power of two number of slots.
+ *
+ * FrozenStringTable keeps its slots in arrays. MappedStringTable reads
+ * them from a mapped file, where PunktParamsFile writes the slots of a
+ * FrozenStringTable as they are, so both put every key in the same slot
+ * and give the same answers.
+ *
+ * Lookups can ignore case. Then the characters looked up are lower cased
+ * as String.toLowerCase() does, one at a time where CharSlice can, and
+ * compared with the keys as they are, so a key with an upper case letter
+ * is only found by an exact lookup.
+ *
+ * @author Dave Turner
+ *
+ */
+abstract class StringTable {
+
+	/*
+	 * The slot of a String, or -1 if it isn't in the table.
+	 */
+	abstract int find(String key);
+
+	/*
+	 * The slot of a string, or -1 if it isn't in the table.
+	 */
+	abstract int find(CharSequence key, boolean ignoreCase);
+
+	/*
+	 * The slot of a pair of strings, or -1 if it isn't in the table.
+	 */
+	abstract int findPair(CharSequence first, CharSequence second, boolean ignoreCase);
+
+	/*
+	 * The number of keys.
+	 */
+	abstract int size();
+
+	/*
+	 * The number of slots.
+	 */
+	abstract int getCapacity();
+
+	/*
+	 * Is this a table of pairs.
+	 */
+	abstract boolean hasPairs();
+
+	/*
+	 * Does this table have a value for each key.
+	 */
+	abstract boolean hasValues();
+
+	/*
+	 * The length of the longest key, the longest first string of a pair.
+	 */
+	abstract int getMaxLength();
+
+	/*
+	 * The hash of the key in a slot, see hash() and pairHash().
+	 */
+	abstract int getHash(int slot);
+
+	/*
+	 * The key in a slot, the first string if it is a pair, or null if the
+	 * slot is empty.
+	 */
+	abstract String getKey(int slot);
+
+	/*
+	 * The second string of the pair in a slot.
+	 */
+	abstract String getSecond(int slot);
+
+	/*
+	 * The value of the key in a slot.
+	 */
+	abstract long getValue(int slot);
+
+	/*
+	 * The number of slots for a number of keys, so the table is at most half
+	 * full.
+	 */
+	static int capacityFor(int size)
+	{
+		return Integer.highestOneBit(Math.max(size, 1) * 2 - 1) * 2;
+	}
+
+	/*
+	 * Is a string one whose hashCode() is computed as String's is.
+	 */
+	static boolean hasStringHash(CharSequence val)
+	{
+		return val instanceof String || val instanceof CharWindow || val instanceof CharSlice;
+	}
+
+	/*
+	 * The hash of a string, lower cased if case is ignored, computed the
+	 * same way as String.hashCode().
+	 */
+	static int hash(CharSequence val, boolean ignoreCase)
+	{
+		if(!ignoreCase && val instanceof String)
+			return val.hashCode();
+
+		int length = val.length();
+		int hash = 0;
+		for(int i=0; i<length; i++)
+			hash = 31 * hash + charAt(val, i, ignoreCase);
+
+		return hash;
+	}
+
+	/*
+	 * A character of a string, lower cased if case is ignored. Lookups only
+	 * get here ignoring case once CharSlice.lowerCasesByChar() said so.
+	 */
+	static char charAt(CharSequence val, int index, boolean ignoreCase)
+	{
+		return ignoreCase ? CharSlice.lowerCaseCharAt(val, 0, val.length(), index) : val.charAt(index);
+	}
+
+	/*
+	 * The hash of a pair of strings from the hashes of the strings.
+	 */
+	static int pairHash(int first, int second)
+	{
+		return 31 * first + second;
+	}
+
+	/*
+	 * Spread the bits of a hash so the low ones pick the slot, the finaliser
+	 * of MurmurHash3.
+	 */
+	static int mix(int h)
+	{
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+
+		return h;
+	}
+
+}
@@ -1,7 +1,5 @@
 package nlp_test;
 
-import java.util.regex.Pattern;
-
 
 /*
  * I use this for XML serialization. I hope that is ok. 
@@ -23,21 +21,39 @@ import javax.xml.bind.annotation.XmlSeeAlso;
 public class Token {
 
 	/*
-	 * The raw value of the token. 
+	 * The text this token was extracted from. The token does not copy its
+	 * characters out of this text until they are needed as a String.
+	 */
+	protected CharSequence source;
+	
+	/*
+	 * The index of the start of this token within source.
+	 */
+	protected int offset;
+	
+	/*
+	 * The number of characters in this token.
+	 */
+	protected int length;
+	
+	/*
+	 * The raw value of the token as a String. This is only built when 
+	 * someone asks for it.
 	 */
 	protected String token;
 	
 	/*
 	 * This index of the start of this token within the original text it 
-	 * was extracted from.
+	 * was extracted from. This is a long so tokens of texts over 2G 
+	 * characters, like a MappedText, have their true position.
 	 */
-	protected int pos;
+	protected long pos;
 	
 	/**
 	 * Set the position that this token was found at within the string.
-	 * @param pos The integer index of the token's start.
+	 * @param pos The index of the token's start.
 	 */
-	public void setPosition(int pos)
+	public void setPosition(long pos)
 	{
 		this.pos = pos;
 	}
@@ -45,13 +61,25 @@ public class Token {
 	/**
 	 * Get the position within the original text that this token begins.
 	 * 
-	 * @return The integer index of the position.
+	 * @return The index of the position.
 	 */
-	public int getPosition()
+	public long getPosition()
 	{
 		return(this.pos);
 	}
 	
+	/*
+	 * Move this token into a larger text that the text it was extracted
+	 * from starts at shift within. This is for pieces of a document that
+	 * are tokenized on their own.
+	 */
+	void rebase(CharSequence source, int shift)
+	{
+		this.source = source;
+		this.offset += shift;
+		this.pos += shift;
+	}
+	
 	
 	protected boolean isParaStart = false;
 	protected boolean isLineStart = false;
@@ -165,7 +193,7 @@ public class Token {
 	@XmlAttribute
 	public void setIsInitial(boolean val)
 	{
-		isInitial = true;
+		isInitial = val;
 	}
 	
 	/**
@@ -186,7 +214,7 @@ public class Token {
 	@XmlAttribute
 	public void setIsEllipsis(boolean val)
 	{
-		isEllipsis = true;
+		isEllipsis = val;
 	}
 	
 	/**
@@ -207,7 +235,7 @@ public class Token {
 	@XmlAttribute
 	public void setIsNumber(boolean val)
 	{
-		isNumber = true;
+		isNumber = val;
 	}
 	
 	/**
@@ -217,12 +245,12 @@ public class Token {
 	 */
 	public boolean getIsFirstUpper()
 	{
-		return Character.isUpperCase(token.charAt(0));
+		return Character.isUpperCase(charAt(0));
 	}
 	
 	public boolean getIsFirstLower()
 	{
-		return Character.isLowerCase(token.charAt(0));
+		return Character.isLowerCase(charAt(0));
 	}
 	
 	/*
@@ -231,28 +259,142 @@ public class Token {
 	protected final static String NUMBER_TAG = "##number##";
 	
 	/*
-	 * Here is a simple regex for matching numbers
+	 * Tokens are classified with a single pass over their characters rather
+	 * than with regular expressions, so classifying a token creates no objects.
+	 * The classes are equivalent to these regular expressions:
+	 * 
+	 *  number:   ^-?[.,]?\d[0-9.,]*\.?  A prefix of the token.
+	 *  ellipsis: \.\.+                  No spaces between periods allowed!
+	 *  initial:  [^\W\d]\.              Initials of the form of "D."
+	 *  alpha:    [^\W\d]+
+	 *  nonpunct: [^\W\d]               Somewhere in the token.
+	 *  
+	 * We use [^\W\d] for a more general approximation for [A-Za-z], with 
+	 * Unicode support for the character classes. That is any Unicode word 
+	 * character that is not a digit.
 	 */
-	protected Pattern regex_number = Pattern.compile("^-?[.,]?\\d[0-9.,]*\\.?");
 	
-	/*
-	 * This regex will match elipsis. No spaces between periods allowed!
+	/**
+	 * Get the length of the number at the start of some characters. The 
+	 * number may have a leading minus sign and a leading period or comma
+	 * and then must have a digit, after which it can contain digits, 
+	 * periods and commas.
+	 * 
+	 * @param source The text containing the characters.
+	 * @param start The index of the first character.
+	 * @param length The number of characters.
+	 * @return The length of the number, 0 if there is no number.
 	 */
-	protected Pattern regex_ellipsis = Pattern.compile("\\.\\.+");
+	static int numberPrefixLength(CharSequence source, int start, int length)
+	{
+		int end = start + length;
+		int i = start;
+		
+		if(i < end && source.charAt(i) == '-')
+			i++;
+		
+		if(i < end && (source.charAt(i) == '.' || source.charAt(i) == ','))
+			i++;
+		
+		if(i >= end || !isDigit(source.charAt(i)))
+			return 0;
+		
+		i++;
+		while(i < end && (isDigit(source.charAt(i)) || source.charAt(i) == '.' || source.charAt(i) == ','))
+			i++;
+		
+		return i - start;
+	}
 	
 	/*
-	 * This regex matches initials of the form of "D." 
-	 * We use [^\\W\\d] for a more general approximation for [A-Za-z]
-	 * Also turn on Unicode support for all default character classes
+	 * Is a character an ASCII digit.
 	 */
-	protected Pattern regex_initials = Pattern.compile("[^\\W\\d]\\.", Pattern.UNICODE_CHARACTER_CLASS);
+	private static boolean isDigit(char c)
+	{
+		return c >= '0' && c <= '9';
+	}
 	
 	/*
-	 * This regex matches alpha characters.
-	 * We use [^\\W\\d] for a more general approximation for [A-Za-z]
-	 * Also turn on Unicode support for all default character classes
+	 * Is a code point a Unicode word character that is not a digit. This is
+	 * [^\W\d] with Unicode character classes.
+	 */
+	private static boolean isWordNonDigit(int cp)
+	{
+		int type = Character.getType(cp);
+		
+		if(type == Character.DECIMAL_DIGIT_NUMBER)
+			return false;
+		
+		return Character.isAlphabetic(cp) ||
+			   type == Character.NON_SPACING_MARK ||
+			   type == Character.ENCLOSING_MARK ||
+			   type == Character.COMBINING_SPACING_MARK ||
+			   type == Character.CONNECTOR_PUNCTUATION ||
+			   cp == '\u200C' || cp == '\u200D';
+	}
+	
+	/**
+	 * Classify some characters as a number, ellipsis, initial, alpha and\or
+	 * non-punctuation in a single pass.
+	 * 
+	 * @param source The text containing the characters.
+	 * @param start The index of the first character.
+	 * @param length The number of characters.
+	 * @return The classes as TokenBuffer flags.
 	 */
-	protected Pattern regex_alpha = Pattern.compile("[^\\W\\d]+", Pattern.UNICODE_CHARACTER_CLASS);
+	static long classify(CharSequence source, int start, int length)
+	{
+		long flags = 0;
+		
+		if(numberPrefixLength(source, start, length) > 0)
+			flags |= TokenBuffer.NUMBER;
+		
+		if(length == 0)
+			return flags;
+		
+		int end = start + length;
+		boolean allPeriods = true;
+		boolean allAlpha = true;
+		boolean anyAlpha = false;
+		boolean firstAlpha = false;
+		int codePoints = 0;
+		
+		for(int i=start; i<end; codePoints++)
+		{
+			char c = source.charAt(i);
+			int cp = c;
+			i++;
+			
+			// Characters outside the basic plane are a pair of chars
+			if(Character.isHighSurrogate(c) && i < end && Character.isLowSurrogate(source.charAt(i)))
+			{
+				cp = Character.toCodePoint(c, source.charAt(i));
+				i++;
+			}
+			
+			allPeriods &= (cp == '.');
+			
+			boolean alpha = isWordNonDigit(cp);
+			allAlpha &= alpha;
+			anyAlpha |= alpha;
+			if(codePoints == 0)
+				firstAlpha = alpha;
+		}
+		
+		if(allPeriods && length > 1)
+			flags |= TokenBuffer.ELLIPSIS;
+		
+		if(allAlpha)
+			flags |= TokenBuffer.ALPHA;
+		
+		if(anyAlpha)
+			flags |= TokenBuffer.NON_PUNCT;
+		
+		if(codePoints == 2 && firstAlpha && source.charAt(end-1) == '.')
+			flags |= TokenBuffer.INITIAL;
+		
+		return flags;
+	}
 	
 	/*
 	 * A lower case normalized value of this token.
@@ -268,17 +410,36 @@ public class Token {
 	public String getTokenType()
 	{
 		if(type == null)
-		{
-			// Normalize to lowercase
-			type = token.toLowerCase();
-			
-			// Replace numbers with place holder.
-			type = regex_number.matcher(type).replaceAll(NUMBER_TAG);
-		} 
+			type = makeTokenType(getValueView());
 		
 		return type;
 	}
 	
+	/*
+	 * Build the lowercase normalized type for the characters of a token.
+	 */
+	static String makeTokenType(CharSequence value)
+	{
+		// Replace numbers with place holder.
+		int numberLength = numberPrefixLength(value, 0, value.length());
+		
+		StringBuilder type = new StringBuilder(value.length() + NUMBER_TAG.length());
+		if(numberLength > 0)
+			type.append(NUMBER_TAG);
+		
+		// Normalize to lowercase, one character at a time unless that would
+		// differ from String.toLowerCase()
+		int restLength = value.length() - numberLength;
+		String lowered = CharSlice.lowerCaseCopy(value, numberLength, restLength);
+		if(lowered != null)
+			type.append(lowered);
+		else
+			for(int i=0; i<restLength; i++)
+				type.append(CharSlice.lowerCaseCharAt(value, numberLength, restLength, i));
+		
+		return type.toString();
+	}
+	
 	/**
 	 * Return the lower case normalize token type with the trailing period
 	 * removed if it is there.
@@ -287,6 +448,8 @@ public class Token {
 	 */
 	public String getTokenTypeNoPeriod()
 	{
+		String type = getTokenType();
+		
 		if(type.length() > 1 && type.endsWith("."))
 			return type.substring(0, type.length()-1);
 		else
@@ -308,33 +471,57 @@ public class Token {
 	 */
 	public Token(String token)
 	{
+		this(token, 0, token.length());
 		this.token = token;
-		this.type = getTokenType();
+	}
+	
+	/**
+	 * Create a token that is a view of a range of characters within some
+	 * text. No characters are copied. The position of the token is set to
+	 * the start of the range.
+	 * 
+	 * @param source The text the token was extracted from.
+	 * @param start The index of the token's first character.
+	 * @param length The number of characters in the token.
+	 */
+	public Token(CharSequence source, int start, int length)
+	{
+		this.source = source;
+		this.offset = start;
+		this.length = length;
+		this.pos = start;
+		
+		long flags = classify(source, start, length);
+		isEllipsis = (flags & TokenBuffer.ELLIPSIS) != 0;
+		isInitial = (flags & TokenBuffer.INITIAL) != 0;
+		isAlpha = (flags & TokenBuffer.ALPHA) != 0;
+		isNonPunct = (flags & TokenBuffer.NON_PUNCT) != 0;
 		
-		isEllipsis = regex_ellipsis.matcher(token).matches();
-		isInitial = regex_initials.matcher(token).matches();
-		isAlpha = regex_alpha.matcher(token).matches();
-		isNumber = type.startsWith(NUMBER_TAG);
+		// The type of numbers begins with the number tag.
+		isNumber = (flags & TokenBuffer.NUMBER) != 0;
 			
 		isParaStart = false;
 		isLineStart = false;
 		isSentBreak = false;
-		isNonPunct = false;	
 	}
 	
 	protected Token(Token t)
 	{
+		this.source = t.source;
+		this.offset = t.offset;
+		this.length = t.length;
 		this.token = t.token;
-		this.type = getTokenType();
-		this.isEllipsis = t.isEllipsis;
-		this.isInitial = t.isInitial;
+		this.type = t.type;
+		this.isAbbreviation = t.getIsAbbreviation();
+		this.isEllipsis = t.getIsEllipsis();
+		this.isInitial = t.getIsInitial();
 		this.isAlpha = t.isAlpha;
-		this.isNumber = t.isNumber;
-		this.isParaStart = t.isParaStart;
-		this.isLineStart = t.isLineStart;
-		this.isSentBreak = t.isSentBreak;
+		this.isNumber = t.getIsNumber();
+		this.isParaStart = t.getIsParaStart();
+		this.isLineStart = t.getIsLineStart();
+		this.isSentBreak = t.getIsSentBreak();
 		this.isNonPunct = t.isNonPunct;
-		this.pos = t.pos;
+		this.pos = t.getPosition();
 	}
 	
 	/**
@@ -347,7 +534,7 @@ public class Token {
 	 */
 	public String toString()
 	{
-		String ret = token;
+		String ret = getValue();
 		
 		if(getIsEllipsis())
 			ret = ret + "<E>";
@@ -360,13 +547,67 @@ public class Token {
 	}
 
 	/**
-	 * Return the raw token value.
+	 * Return the raw token value. The String is built from the source text 
+	 * the first time this is called. 
 	 * 
 	 * @return The token string.
 	 */
 	@XmlElement
 	public String getValue() {
+		if(token == null && source != null)
+			token = source.subSequence(offset, offset+length).toString();
+		
 		return token;
 	}
 	
+	/**
+	 * Get the raw token value as a view of the source text. Unlike
+	 * getValue() this does not copy any characters.
+	 * 
+	 * @return The token characters.
+	 */
+	public CharSlice getValueView() {
+		return new CharSlice(source, offset, length);
+	}
+	
+	/**
+	 * Get the number of characters in the token.
+	 * 
+	 * @return The length of the token.
+	 */
+	public int getLength() {
+		return length;
+	}
+	
+	/**
+	 * Check whether the token is made up of the same characters as a string
+	 * without copying the token.
+	 * 
+	 * @param s The string to compare with.
+	 * @return true if they are equal, false if not.
+	 */
+	public boolean valueEquals(CharSequence s) {
+		if(s.length() != length)
+			return false;
+		
+		for(int i=0; i<length; i++)
+			if(source.charAt(offset + i) != s.charAt(i))
+				return false;
+		
+		return true;
+	}
+	
+	/**
+	 * Get a character of the token without copying the token.
+	 * 
+	 * @param index The index of the character within the token.
+	 * @return The character.
+	 */
+	public char charAt(int index) {
+		if(index < 0 || index >= length)
+			throw new IndexOutOfBoundsException("Index " + index + " is outside of token of length " + length);
+		
+		return source.charAt(offset + index);
+	}
+	
 }
@@ -0,0 +1,382 @@
+package nlp_test;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * This class stores the tokens of a piece of text column by column instead
+ * of as a list of Token objects. For each token we keep the index of its
+ * start within the source text, its length, its annotations packed into a
+ * long and the id of its lowercase normalized type. That is about 20 bytes
+ * per token, the characters themselves are never copied out of the source.
+ *
+ * The buffer can be used anywhere a list of tokens is expected. The tokens
+ * returned by get() are BufferedToken views that read and write the columns
+ * of this buffer.
+ *
+ * @author Dave Turner
+ *
+ */
+public class TokenBuffer extends AbstractList<Token> {
+
+	/*
+	 * Annotation flags. These are the bits of the flags column.
+	 */
+	public static final long PARA_START = 1L;
+	public static final long LINE_START = 1L << 1;
+	public static final long SENT_BREAK = 1L << 2;
+	public static final long ABBREVIATION = 1L << 3;
+	public static final long INITIAL = 1L << 4;
+	public static final long ELLIPSIS = 1L << 5;
+	public static final long ALPHA = 1L << 6;
+	public static final long NON_PUNCT = 1L << 7;
+	public static final long NUMBER = 1L << 8;
+
+	/*
+	 * The number of tokens we have room for when no capacity is given.
+	 */
+	private static final int DEFAULT_CAPACITY = 256;
+
+	/*
+	 * The text the tokens were extracted from.
+	 */
+	protected CharSequence source;
+
+	/*
+	 * The columns. Each is indexed by token number.
+	 */
+	protected int[] starts;
+	protected int[] lengths;
+	protected long[] flags;
+	protected int[] typeIds;
+
+	/*
+	 * The number of tokens in the buffer.
+	 */
+	protected int size = 0;
+
+	/*
+	 * The distinct token types seen in this buffer, indexed by type id, and
+	 * maps back from type to id. Types of numbers are keyed by whatever 
+	 * follows the number tag. The maps are keyed by slices so they can be
+	 * looked up through a window.
+	 */
+	protected List<String> types = new ArrayList<String>();
+	protected HashMap<CharSlice, Integer> typeIdMap = new HashMap<CharSlice, Integer>();
+	protected HashMap<CharSlice, Integer> numberTypeIdMap = new HashMap<CharSlice, Integer>();
+	
+	/*
+	 * A reusable lower cased window for type lookups.
+	 */
+	private CharWindow typeKey = new CharWindow(true);
+
+	/**
+	 * Create an empty buffer for the tokens of some text.
+	 *
+	 * @param source The text the tokens will be extracted from.
+	 */
+	public TokenBuffer(CharSequence source)
+	{
+		this(source, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create an empty buffer for the tokens of some text.
+	 *
+	 * @param source The text the tokens will be extracted from.
+	 * @param capacity The number of tokens to make room for up front.
+	 */
+	public TokenBuffer(CharSequence source, int capacity)
+	{
+		this.source = source;
+
+		capacity = Math.max(capacity, 1);
+		starts = new int[capacity];
+		lengths = new int[capacity];
+		flags = new long[capacity];
+		typeIds = new int[capacity];
+	}
+
+	/**
+	 * Pack the annotations of a token into flags.
+	 *
+	 * @param t The token.
+	 * @return The flags.
+	 */
+	public static long packFlags(Token t)
+	{
+		long f = 0;
+
+		if(t.getIsParaStart()) f |= PARA_START;
+		if(t.getIsLineStart()) f |= LINE_START;
+		if(t.getIsSentBreak()) f |= SENT_BREAK;
+		if(t.getIsAbbreviation()) f |= ABBREVIATION;
+		if(t.getIsInitial()) f |= INITIAL;
+		if(t.getIsEllipsis()) f |= ELLIPSIS;
+		if(t.isAlpha) f |= ALPHA;
+		if(t.isNonPunct) f |= NON_PUNCT;
+		if(t.getIsNumber()) f |= NUMBER;
+
+		return f;
+	}
+
+	/*
+	 * Make sure there is room for one more token.
+	 */
+	private void ensureCapacity()
+	{
+		if(size < starts.length)
+			return;
+
+		int capacity = starts.length * 2;
+		starts = Arrays.copyOf(starts, capacity);
+		lengths = Arrays.copyOf(lengths, capacity);
+		flags = Arrays.copyOf(flags, capacity);
+		typeIds = Arrays.copyOf(typeIds, capacity);
+	}
+
+	/*
+	 * Get the id of the type of the token at some range of the source, adding
+	 * the type if we haven't seen it yet. Types are the lower cased characters,
+	 * with any number at the start replaced by the number tag, so we can look 
+	 * them up through a window without building a String.
+	 */
+	private int internType(int start, int length)
+	{
+		int numberLength = Token.numberPrefixLength(source, start, length);
+		HashMap<CharSlice, Integer> ids = numberLength > 0 ? numberTypeIdMap : typeIdMap;
+
+		typeKey.set(source, start + numberLength, length - numberLength);
+
+		Integer id = ids.get(typeKey);
+		if(id == null)
+		{
+			String key = typeKey.toString();
+			id = types.size();
+			types.add(numberLength > 0 ? Token.NUMBER_TAG + key : key);
+			ids.put(new CharSlice(key, 0, key.length()), id);
+		}
+
+		return id;
+	}
+
+	/**
+	 * Add a token to the end of the buffer.
+	 *
+	 * @param start The index of the token's first character in the source.
+	 * @param length The number of characters in the token.
+	 * @param tokenFlags The annotation flags of the token.
+	 * @return The index of the new token.
+	 */
+	public int add(int start, int length, long tokenFlags)
+	{
+		if(start < 0 || length < 0 || start + length > source.length())
+			throw new IndexOutOfBoundsException("Token [" + start + ", " + (start+length) +
+					") is outside of text of length " + source.length());
+
+		ensureCapacity();
+
+		starts[size] = start;
+		lengths[size] = length;
+		flags[size] = tokenFlags;
+		typeIds[size] = internType(start, length);
+
+		return size++;
+	}
+
+	/**
+	 * Add a token to the end of the buffer. The token must be a view of the
+	 * same text as this buffer.
+	 *
+	 * @param t The token to add.
+	 * @return true always.
+	 */
+	@Override
+	public boolean add(Token t)
+	{
+		if(t.source != source)
+			throw new IllegalArgumentException("Token was not extracted from the text of this buffer.");
+
+		add(t.offset, t.length, packFlags(t));
+		return true;
+	}
+
+	/**
+	 * Get a view of a token in the buffer.
+	 *
+	 * @param index The index of the token.
+	 * @return The token view.
+	 */
+	@Override
+	public BufferedToken get(int index)
+	{
+		checkIndex(index);
+		return new BufferedToken(this, index);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Remove all tokens from the buffer. The type ids are kept.
+	 */
+	@Override
+	public void clear()
+	{
+		size = 0;
+	}
+
+	/**
+	 * Shrink the columns so they are just large enough for the tokens in
+	 * the buffer.
+	 */
+	public void trimToSize()
+	{
+		int capacity = Math.max(size, 1);
+		starts = Arrays.copyOf(starts, capacity);
+		lengths = Arrays.copyOf(lengths, capacity);
+		flags = Arrays.copyOf(flags, capacity);
+		typeIds = Arrays.copyOf(typeIds, capacity);
+	}
+
+	/*
+	 * Check an index is within the buffer.
+	 */
+	private void checkIndex(int index)
+	{
+		if(index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index " + index + " is outside of buffer of size " + size);
+	}
+
+	/**
+	 * Get the text the tokens were extracted from.
+	 *
+	 * @return The source text.
+	 */
+	public CharSequence getSource()
+	{
+		return source;
+	}
+
+	/**
+	 * Get the index of a token's first character within the source text.
+	 *
+	 * @param index The index of the token.
+	 * @return The start of the token.
+	 */
+	public int getStart(int index)
+	{
+		checkIndex(index);
+		return starts[index];
+	}
+
+	/**
+	 * Get the number of characters in a token.
+	 *
+	 * @param index The index of the token.
+	 * @return The length of the token.
+	 */
+	public int getLength(int index)
+	{
+		checkIndex(index);
+		return lengths[index];
+	}
+
+	/**
+	 * Get the index just past a token's last character within the source text.
+	 *
+	 * @param index The index of the token.
+	 * @return The end of the token.
+	 */
+	public int getEnd(int index)
+	{
+		checkIndex(index);
+		return starts[index] + lengths[index];
+	}
+
+	/**
+	 * Get all the annotation flags of a token.
+	 *
+	 * @param index The index of the token.
+	 * @return The flags.
+	 */
+	public long getFlags(int index)
+	{
+		checkIndex(index);
+		return flags[index];
+	}
+
+	/**
+	 * Check whether a token has an annotation.
+	 *
+	 * @param index The index of the token.
+	 * @param flag The annotation flag to check.
+	 * @return true if yes, false if no.
+	 */
+	public boolean hasFlag(int index, long flag)
+	{
+		checkIndex(index);
+		return (flags[index] & flag) != 0;
+	}
+
+	/**
+	 * Set or clear an annotation of a token.
+	 *
+	 * @param index The index of the token.
+	 * @param flag The annotation flag to change.
+	 * @param val true to set, false to clear.
+	 */
+	public void setFlag(int index, long flag, boolean val)
+	{
+		checkIndex(index);
+
+		if(val)
+			flags[index] |= flag;
+		else
+			flags[index] &= ~flag;
+	}
+
+	/**
+	 * Get the id of a token's lowercase normalized type. Tokens with the same
+	 * type have the same id.
+	 *
+	 * @param index The index of the token.
+	 * @return The type id.
+	 */
+	public int getTypeId(int index)
+	{
+		checkIndex(index);
+		return typeIds[index];
+	}
+
+	/**
+	 * Get a lowercase normalized type from its id.
+	 *
+	 * @param typeId The id of the type.
+	 * @return The type.
+	 */
+	public String getType(int typeId)
+	{
+		return types.get(typeId);
+	}
+
+	/**
+	 * Get the number of distinct types in this buffer.
+	 *
+	 * @return The number of types.
+	 */
+	public int getTypeCount()
+	{
+		return types.size();
+	}
+
+}
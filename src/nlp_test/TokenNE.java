@@ -27,6 +27,13 @@ public class TokenNE extends Token {
 	@XmlElement(name="entities")
 	protected List<String> entities = new ArrayList<String>();
 	
+	/*
+	 * For each of entities, the offset in the text where the match that 
+	 * gave this token the entity starts, -1 if it isn't known. Two matches
+	 * of the same entity next to each other can only be told apart by this.
+	 */
+	protected List<Long> matchStarts = new ArrayList<Long>();
+	
 	/*
 	 * Position within the named entity. It is either
 	 * marked as beginning, middle, or end.
@@ -61,14 +68,40 @@ public class TokenNE extends Token {
 	}
 	
 	/**
-	 * Add a tag to this token for a specific named entity.
+	 * Add a tag to this token for a specific named entity, from a match 
+	 * whose start isn't known.
 	 * 
 	 * @param entity The String representation of the entity.
 	 */
 	public void addEntity(String entity)
+	{
+		addEntity(entity, -1);
+	}
+	
+	/**
+	 * Add a tag to this token for a specific named entity.
+	 * 
+	 * @param entity The String representation of the entity.
+	 * @param matchStart The offset in the text where the match of the 
+	 * entity starts, -1 if it isn't known.
+	 */
+	public void addEntity(String entity, long matchStart)
 	{
 		isNamedEntity = true;
 		entities.add(entity);
+		matchStarts.add(matchStart);
+	}
+	
+	/**
+	 * Get where the match that gave this token one of its entities starts.
+	 * 
+	 * @param index The index of the entity.
+	 * @return The offset in the text where the match starts, -1 if it isn't
+	 * known.
+	 */
+	public long getMatchStart(int index)
+	{
+		return index < matchStarts.size() ? matchStarts.get(index) : -1;
 	}
 	
 	/**
@@ -78,6 +111,19 @@ public class TokenNE extends Token {
 	{
 		isNamedEntity = false;
 		entities.clear();
+		matchStarts.clear();
+	}
+	
+	/*
+	 * Move this token and the starts of its matches into a larger text.
+	 */
+	@Override
+	void rebase(CharSequence source, int shift)
+	{
+		super.rebase(source, shift);
+		for(int i=0; i<matchStarts.size(); i++)
+			if(matchStarts.get(i) >= 0)
+				matchStarts.set(i, matchStarts.get(i) + shift);
 	}
 	
 	/**
@@ -3,9 +3,13 @@ package nlp_test;
 public interface TokenStream {
 
 	/**
-	 * Get the raw untokenized text that this stream is working with.
+	 * Get the raw untokenized text that this stream is working with. Streams
+	 * that read their text as they go, like PunktReaderTokenStream, never
+	 * have the whole text and return null. Tokens keep a reference to their
+	 * characters either way, so callers that only need the tokens should
+	 * not rely on this.
 	 * 
-	 * @return The raw text as a stream.
+	 * @return The raw text, null if the stream doesn't hold it.
 	 */
 	public abstract String getText();
 	
@@ -0,0 +1,251 @@
+package nlp_test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * This class implements named entity matching on whole tokens. Each entity
+ * is split into tokens with the same rules used to tokenize the text, and the
+ * lower cased token sequences are stored in a trie. Annotating walks the list
+ * of tokens already produced for the text and never looks at the original
+ * text again.
+ *
+ * Since matches are made of whole tokens, an entity never matches part of a
+ * word, "Serbia" does not match "Serbian". The last token of a match may
+ * carry a trailing period that the entity doesn't have, so an entity at the
+ * end of a sentence still matches. Tokens are compared by their lower cased
+ * text rather than their type, so entities with numbers in them only match
+ * the same numbers.
+ *
+ * @author Dave Turner
+ *
+ */
+public class TokenTrieNamedEntityMatcher extends NamedEntityMatcher {
+
+	/*
+	 * A node of the trie.
+	 */
+	private static class TrieNode {
+
+		/*
+		 * The nodes for each lower cased token that can follow this one, null
+		 * if there are none. Keyed by slices so a window can look them up.
+		 */
+		HashMap<CharSlice, TrieNode> children = null;
+
+		/*
+		 * The indices of the entities that end at this node, null if there
+		 * are none.
+		 */
+		List<Integer> entityIndices = null;
+	}
+
+	/*
+	 * The rules used to tokenize the entities.
+	 */
+	protected final PunktLanguageVariables langVars;
+
+	/*
+	 * The root of our trie.
+	 */
+	private final TrieNode root = new TrieNode();
+
+	/*
+	 * The number of tokens in each entity.
+	 */
+	protected final int[] entityTokenCounts;
+
+	/**
+	 * Construct a token trie named entity matcher from file which lists known
+	 * named entities separated by new lines.
+	 *
+	 * @param filePath The path of the file to load.
+	 * @throws IOException
+	 */
+	public TokenTrieNamedEntityMatcher(String filePath) throws IOException {
+		this(filePath, new PunktLanguageVariables());
+	}
+
+	/**
+	 * Construct a token trie named entity matcher from file which lists known
+	 * named entities separated by new lines.
+	 *
+	 * @param filePath The path of the file to load.
+	 * @param langVars The rules the text will be tokenized with.
+	 * @throws IOException
+	 */
+	public TokenTrieNamedEntityMatcher(String filePath, PunktLanguageVariables langVars) throws IOException {
+		super(filePath);
+		this.langVars = langVars;
+		this.entityTokenCounts = buildTrie();
+	}
+
+	/**
+	 * Construct a token trie named entity matcher from a list of known named
+	 * entities.
+	 *
+	 * @param entities
+	 */
+	public TokenTrieNamedEntityMatcher(List<String> entities) {
+		this(entities, new PunktLanguageVariables());
+	}
+
+	/**
+	 * Construct a token trie named entity matcher from a list of known named
+	 * entities.
+	 *
+	 * @param entities
+	 * @param langVars The rules the text will be tokenized with.
+	 */
+	public TokenTrieNamedEntityMatcher(List<String> entities, PunktLanguageVariables langVars) {
+		super(entities);
+		this.langVars = langVars;
+		this.entityTokenCounts = buildTrie();
+	}
+
+	/*
+	 * Tokenize each entity and add its lower cased tokens to the trie.
+	 * Returns the number of tokens in each entity.
+	 */
+	private int[] buildTrie()
+	{
+		int[] entityTokenCounts = new int[entities.size()];
+		CharWindow key = new CharWindow(true);
+
+		for(int e=0; e<entities.size(); e++)
+		{
+			TokenStream stream = new PunktTokenStream(entities.get(e), langVars);
+
+			TrieNode node = root;
+			int count = 0;
+			Token token;
+			while((token = stream.getToken()) != null)
+			{
+				// Lower case the same way tokens are looked up
+				key.set(token);
+
+				if(node.children == null)
+					node.children = new HashMap<CharSlice, TrieNode>();
+
+				TrieNode child = node.children.get(key);
+				if(child == null)
+				{
+					child = new TrieNode();
+					String type = key.toString();
+					node.children.put(new CharSlice(type, 0, type.length()), child);
+				}
+
+				node = child;
+				count++;
+			}
+
+			entityTokenCounts[e] = count;
+
+			// Entities with no tokens can never match
+			if(count == 0)
+				continue;
+
+			if(node.entityIndices == null)
+				node.entityIndices = new ArrayList<Integer>(1);
+			node.entityIndices.add(e);
+		}
+
+		return entityTokenCounts;
+	}
+
+	@Override
+	public List<TokenNE> annotate(List<Token> tokens, String origText) {
+
+		// Create a new list of TokenNE so we can annotate named entities
+		List<TokenNE> mod_tokens = new ArrayList<TokenNE>(tokens.size());
+
+		// Copy the existing tokens to their new objects
+		for(Token t: tokens)
+			mod_tokens.add(new TokenNE(t));
+
+		// Collect the matches starting at each token. Each match is packed
+		// as the entity in the high half and the index of its first token in
+		// the low half.
+		long[] matches = new long[16];
+		int numMatches = 0;
+
+		CharWindow key = new CharWindow(true);
+
+		for(int start=0; start<tokens.size(); start++)
+		{
+			TrieNode node = root;
+			for(int i=start; i<tokens.size() && node.children != null; i++)
+			{
+				Token token = tokens.get(i);
+				int length = token.getLength();
+
+				// A token with a period on the end can finish a match of an
+				// entity without the period.
+				if(length > 1 && token.charAt(length-1) == '.')
+				{
+					TrieNode last = node.children.get(key.set(token).narrow(0, length-1));
+					if(last != null && last.entityIndices != null)
+					{
+						for(int e: last.entityIndices)
+						{
+							if(numMatches == matches.length)
+								matches = Arrays.copyOf(matches, numMatches * 2);
+
+							matches[numMatches++] = ((long)e << 32) | start;
+						}
+					}
+				}
+
+				node = node.children.get(key.set(token));
+				if(node == null)
+					break;
+
+				if(node.entityIndices != null)
+				{
+					for(int e: node.entityIndices)
+					{
+						if(numMatches == matches.length)
+							matches = Arrays.copyOf(matches, numMatches * 2);
+
+						matches[numMatches++] = ((long)e << 32) | start;
+					}
+				}
+			}
+		}
+
+		// Add the entities in the same order as the other matchers, by entity
+		// and then by position, skipping matches that overlap the last match
+		// of the same entity.
+		Arrays.sort(matches, 0, numMatches);
+
+		int lastEntity = -1;
+		int lastEnd = 0;
+		for(int m=0; m<numMatches; m++)
+		{
+			int e = (int)(matches[m] >>> 32);
+			int start = (int)matches[m];
+
+			if(e != lastEntity)
+			{
+				lastEntity = e;
+				lastEnd = 0;
+			}
+
+			if(start < lastEnd)
+				continue;
+
+			lastEnd = start + entityTokenCounts[e];
+
+			String entity = entities.get(e);
+			long matchStart = tokens.get(start).getPosition();
+			for(int i=start; i<lastEnd; i++)
+				mod_tokens.get(i).addEntity(entity, matchStart);
+		}
+
+		return mod_tokens;
+	}
+
+}
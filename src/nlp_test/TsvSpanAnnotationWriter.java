@@ -0,0 +1,243 @@
+package nlp_test;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class writes sentences as rows of tab separated spans of the text.
+ * The first row is a header, and each row after it is
+ *
+ * kind	start	end	label	tags
+ *
+ * where start and end are the offsets of the span in the text. There are
+ * three kinds of span:
+ *
+ * S is a sentence, its label is its number in the document, from 0.
+ * T is a token, its label is its value and its tags are the letters of the
+ *   annotations it has, P for paragraph start, L for line start, S for
+ *   sentence break, A for abbreviation, E for ellipsis, I for initial and
+ *   N for number.
+ * E is a named entity, from the start of its first token to the end of its
+ *   last. Its label is its id from the matcher that found it, see
+ *   NamedEntityMatcher.getEntityId(), or the entity itself when there is no
+ *   matcher to ask.
+ *
+ * An entity span is written once the token after it doesn't have it from
+ * the same match, so it comes after its tokens and may come after the
+ * sentence it ends in. The same entity matched twice in a row is two
+ * spans, unless the matcher didn't say where its matches start. Tabs, line ends and backslashes
+ * in labels are escaped as \t, \n, \r and \\.
+ *
+ * @author Dave Turner
+ *
+ */
+public class TsvSpanAnnotationWriter extends AnnotationWriterBase {
+
+	/**
+	 * The header row.
+	 */
+	public static final String HEADER = "kind\tstart\tend\tlabel\ttags\n";
+
+	/*
+	 * The matcher that gives the ids of the entities, null to write the
+	 * entities themselves.
+	 */
+	private NamedEntityMatcher nerer;
+
+	/*
+	 * The number of the next sentence.
+	 */
+	private long sentenceNumber = 0;
+
+	/*
+	 * The entities of the last token, the starts of their spans and where
+	 * the matches of them start, see TokenNE.getMatchStart().
+	 */
+	private List<String> openEntities = new ArrayList<String>();
+	private List<Long> openStarts = new ArrayList<Long>();
+	private List<Long> openMatches = new ArrayList<Long>();
+
+	/*
+	 * The end of the last token.
+	 */
+	private long lastEnd = 0;
+
+	/**
+	 * Create a writer that writes to a Writer.
+	 *
+	 * @param out The Writer.
+	 * @param nerer The matcher that found the named entities, or null to
+	 * write the entities as strings.
+	 * @throws IOException If the header can't be written.
+	 */
+	public TsvSpanAnnotationWriter(Writer out, NamedEntityMatcher nerer) throws IOException
+	{
+		super(out);
+		this.nerer = nerer;
+
+		write(HEADER);
+	}
+
+	/**
+	 * Create a writer that writes to a file in UTF-8.
+	 *
+	 * @param file The file to create or overwrite.
+	 * @param nerer The matcher that found the named entities, or null to
+	 * write the entities as strings.
+	 * @throws IOException If the file can't be created.
+	 */
+	public TsvSpanAnnotationWriter(String file, NamedEntityMatcher nerer) throws IOException
+	{
+		this(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), nerer);
+	}
+
+	/* (non-Javadoc)
+	 * @see nlp_test.AnnotationWriter#writeSentence(nlp_test.Sentence)
+	 */
+	public void writeSentence(Sentence sent) throws IOException
+	{
+		write("S\t");
+		write(sent.getStart());
+		write('\t');
+		write(sent.getEnd());
+		write('\t');
+		write(sentenceNumber++);
+		write("\t\n");
+
+		for(Token token: sent.getTokens())
+		{
+			long start = token.getPosition();
+			long end = start + token.getLength();
+
+			updateEntities(token, start);
+
+			write("T\t");
+			write(start);
+			write('\t');
+			write(end);
+			write('\t');
+			writeEscaped(token.getValueView());
+			write('\t');
+			writeTag('P', token.getIsParaStart());
+			writeTag('L', token.getIsLineStart());
+			writeTag('S', token.getIsSentBreak());
+			writeTag('A', token.getIsAbbreviation());
+			writeTag('E', token.getIsEllipsis());
+			writeTag('I', token.getIsInitial());
+			writeTag('N', token.getIsNumber());
+			write('\n');
+
+			lastEnd = end;
+		}
+	}
+
+	/**
+	 * Write the spans of the entities the last token is in.
+	 */
+	@Override
+	protected void finish() throws IOException
+	{
+		for(int e=0; e<openEntities.size(); e++)
+			writeEntity(openEntities.get(e), openStarts.get(e), lastEnd);
+
+		openEntities.clear();
+		openStarts.clear();
+		openMatches.clear();
+	}
+
+	/*
+	 * Write the spans of the open entities a token isn't in from the same
+	 * match, and open spans for the entities it is in that aren't open.
+	 */
+	private void updateEntities(Token token, long start) throws IOException
+	{
+		TokenNE tokenNE = token instanceof TokenNE ? (TokenNE)token : null;
+
+		for(int e=openEntities.size()-1; e>=0; e--)
+		{
+			int index = tokenNE == null ? -1 : tokenNE.entities.indexOf(openEntities.get(e));
+			if(index < 0 || tokenNE.getMatchStart(index) != openMatches.get(e))
+			{
+				writeEntity(openEntities.get(e), openStarts.get(e), lastEnd);
+				openEntities.remove(e);
+				openStarts.remove(e);
+				openMatches.remove(e);
+			}
+		}
+
+		if(tokenNE == null)
+			return;
+
+		for(int i=0; i<tokenNE.entities.size(); i++)
+		{
+			String entity = tokenNE.entities.get(i);
+			if(!openEntities.contains(entity))
+			{
+				openEntities.add(entity);
+				openStarts.add(start);
+				openMatches.add(tokenNE.getMatchStart(i));
+			}
+		}
+	}
+
+	/*
+	 * Write an entity span.
+	 */
+	private void writeEntity(String entity, long start, long end) throws IOException
+	{
+		write("E\t");
+		write(start);
+		write('\t');
+		write(end);
+		write('\t');
+		if(nerer != null)
+			write(nerer.getEntityId(entity));
+		else
+			writeEscaped(entity);
+		write("\t\n");
+	}
+
+	/*
+	 * Write the letter of an annotation, if the token has it.
+	 */
+	private void writeTag(char tag, boolean value) throws IOException
+	{
+		if(value)
+			write(tag);
+	}
+
+	/*
+	 * Write a label, escaping what would break the row.
+	 */
+	private void writeEscaped(CharSequence s) throws IOException
+	{
+		int length = s.length();
+		for(int i=0; i<length; i++)
+		{
+			char c = s.charAt(i);
+			switch(c)
+			{
+			case '\t':
+				write("\\t");
+				break;
+			case '\n':
+				write("\\n");
+				break;
+			case '\r':
+				write("\\r");
+				break;
+			case '\\':
+				write("\\\\");
+				break;
+			default:
+				write(c);
+			}
+		}
+	}
+
+}
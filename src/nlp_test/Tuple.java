@@ -1,5 +1,6 @@
 package nlp_test;
 
+import java.io.Serializable;
 import java.util.Objects;
 
 /**
@@ -8,7 +9,9 @@ import java.util.Objects;
  * @author Dave Turner
  *
  */
-public class Tuple {
+public class Tuple implements Comparable<Tuple>, Serializable {
+
+	private static final long serialVersionUID = 1L;
 	
 	/*
 	 * Make the fields immutable, this will make things easier
@@ -55,7 +58,7 @@ public class Tuple {
         boolean result = false;
         if (other instanceof Tuple) {
             Tuple that = (Tuple) other;
-            result = (this.x == that.getX() && this.getY() == that.getY());
+            result = (this.x.equals(that.getX()) && this.y.equals(that.getY()));
         }
         return result;
     }
@@ -66,5 +69,13 @@ public class Tuple {
     @Override public int hashCode() {
         return Objects.hash(x, y);
     }
+
+	/**
+	 * Order tuples by their first string, then their second.
+	 */
+	public int compareTo(Tuple other) {
+		int cmp = x.compareTo(other.x);
+		return cmp != 0 ? cmp : y.compareTo(other.y);
+	}
 	
 }
@@ -1,20 +1,26 @@
 package nlp_test;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.nio.file.Files;
-import java.util.ArrayList;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.util.Enumeration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 /**
  * This class sets up and executes a thread pool to sentence
@@ -22,11 +28,73 @@ import java.util.zip.ZipOutputStream;
  * all text files are within the root directory of the zip file
  * and it processes all files.
  * 
+ * The zip file is streamed through the workers. The main thread only reads
+ * the zip directory and queues the entries on a short bounded queue. Each
+ * worker opens its own handle on the zip file and inflates the entries it
+ * takes, so inflation runs in parallel too. Before an entry is queued its
+ * uncompressed size is taken out of a memory budget, and it is given back
+ * once the worker has written the entry out. When the budget is used up
+ * the main thread waits, so no more than the budget's worth of text is
+ * ever in memory at once however big the zip file is.
+ * 
+ * See ExecutionMode for the ways the entries can be spread over threads.
+ * 
+ * The output of each entry is written to a file of its own under the output
+ * directory, or, if an output archive is set, all of it goes in one zip
+ * file. In that case each worker deflates the output of its entries itself
+ * and OrderedZipAppender writes the entries to the archive in the order
+ * they are in the input zip file. An entry's size isn't given back to the
+ * budget till it has been written to the archive, so the output waiting on
+ * a slow entry ahead of it is limited by the budget too.
+ * 
+ * Each entry is processed on one thread unless document threads are set.
+ * Then entries big enough to be worth it are split at paragraph breaks
+ * and processed on a ForkJoinPool shared by all the entries, see
+ * ParallelDocumentProcessor.
+ * 
  * @author Dave Turner
  *
  */
 public class ZipProcessor {
 
+	/**
+	 * The ways the entries can be run.
+	 */
+	public enum ExecutionMode {
+		
+		/**
+		 * numThreads worker threads each take entries off a queue and run
+		 * them from start to end.
+		 */
+		FIXED_POOL,
+		
+		/**
+		 * Every entry gets a thread of its own, a virtual thread if the JVM
+		 * has them. Only numThreads of them run the tokenizing and matching
+		 * at once, the rest of the time they are reading or writing. This
+		 * keeps the cores busy when reading the input or writing the output
+		 * blocks.
+		 */
+		THREAD_PER_ENTRY
+	}
+
+	/**
+	 * The default memory budget, in bytes of uncompressed text.
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+	
+	/*
+	 * Queued after the last entry, once for each worker, to tell the
+	 * workers to stop.
+	 */
+	private static final QueuedEntry END_OF_ENTRIES = new QueuedEntry(new ZipEntry("END_OF_ENTRIES"), -1);
+	
+	/*
+	 * How often the main thread checks whether a worker has failed while it
+	 * waits for room in the budget or on the queue.
+	 */
+	private static final long FAILURE_CHECK_MILLIS = 100;
+	
 	/*
 	 * File of named entities to match. 
 	 */
@@ -47,104 +115,703 @@ public class ZipProcessor {
 	 */
 	protected int numThreads;
 	
+	/*
+	 * The most uncompressed text, in bytes, that may be queued or being
+	 * processed at once.
+	 */
+	protected long memoryBudget = DEFAULT_MEMORY_BUDGET;
+	
+	/*
+	 * How the entries are run.
+	 */
+	protected ExecutionMode executionMode = ExecutionMode.FIXED_POOL;
+	
+	/*
+	 * The format to write the sentences of each entry in.
+	 */
+	protected OutputFormat outputFormat = OutputFormat.XML;
+	
+	/*
+	 * The zip file to write all of the output to, null to write a file per
+	 * entry to the output directory.
+	 */
+	protected String outputArchive = null;
+	
+	/*
+	 * The number of threads each entry may be split over, 0 to process
+	 * every entry on the thread that takes it.
+	 */
+	protected int documentThreads = 0;
+	
+	/*
+	 * The pool large entries are split over while process() runs, null if
+	 * they aren't split.
+	 */
+	private ForkJoinPool documentPool = null;
+	
 	public ZipProcessor(String zipFileName, String outputDir, int numThreads)
 	{
 		this.zipFileName = zipFileName;
 		this.outputDir = outputDir;
 		this.numThreads = numThreads;
 	}
+	
+	/**
+	 * Set the memory budget. An entry bigger than the whole budget is still
+	 * processed, but only while nothing else is.
+	 * 
+	 * @param bytes The most uncompressed text, in bytes, that may be queued
+	 * or being processed at once.
+	 */
+	public void setMemoryBudget(long bytes)
+	{
+		if(bytes <= 0)
+			throw new IllegalArgumentException("Memory budget must be positive: " + bytes);
+		
+		memoryBudget = bytes;
+	}
+	
+	/**
+	 * Get the memory budget.
+	 * 
+	 * @return The most uncompressed text, in bytes, that may be queued or
+	 * being processed at once.
+	 */
+	public long getMemoryBudget()
+	{
+		return memoryBudget;
+	}
 
 	/**
-	 * Execute the processing of the zip file
+	 * Set how the entries are run.
+	 * 
+	 * @param mode The execution mode.
+	 */
+	public void setExecutionMode(ExecutionMode mode)
+	{
+		executionMode = mode;
+	}
+	
+	/**
+	 * Get how the entries are run.
+	 * 
+	 * @return The execution mode.
 	 */
-	public void process()
+	public ExecutionMode getExecutionMode()
 	{
+		return executionMode;
+	}
+	
+	/**
+	 * Set the number of threads each entry may be split over. The entries
+	 * share one pool of this many threads, on top of the worker threads.
+	 * Only entries of a few hundred kilobytes or more are split.
+	 * 
+	 * @param threads The number of threads, 0 to process every entry on
+	 * the thread that takes it.
+	 */
+	public void setDocumentThreads(int threads)
+	{
+		if(threads < 0)
+			throw new IllegalArgumentException("Document threads can't be negative: " + threads);
+		
+		documentThreads = threads;
+	}
+	
+	/**
+	 * Get the number of threads each entry may be split over.
+	 * 
+	 * @return The number of threads, 0 if entries aren't split.
+	 */
+	public int getDocumentThreads()
+	{
+		return documentThreads;
+	}
+	
+	/**
+	 * Set the format to write the sentences of each entry in. Each entry is
+	 * written to a file named after it with the extension of the format.
+	 * 
+	 * @param format The format.
+	 */
+	public void setOutputFormat(OutputFormat format)
+	{
+		outputFormat = format;
+	}
+	
+	/**
+	 * Get the format the sentences of each entry are written in.
+	 * 
+	 * @return The format.
+	 */
+	public OutputFormat getOutputFormat()
+	{
+		return outputFormat;
+	}
+	
+	/**
+	 * Set a zip file to write the output of all the entries to instead of
+	 * a file each in the output directory. The entries of the archive are
+	 * named the way the files would be and are in the same order as in the
+	 * input zip file.
+	 * 
+	 * @param file The zip file to create or overwrite, null to write a file
+	 * per entry.
+	 */
+	public void setOutputArchive(String file)
+	{
+		outputArchive = file;
+	}
+	
+	/**
+	 * Get the zip file the output is written to.
+	 * 
+	 * @return The zip file, null if a file is written per entry.
+	 */
+	public String getOutputArchive()
+	{
+		return outputArchive;
+	}
+
+	/**
+	 * Execute the processing of the zip file. The workers have all stopped
+	 * by the time this returns, even if it fails.
+	 * 
+	 * @throws IOException If the zip file can't be read, a worker fails or
+	 * the output archive can't be written.
+	 */
+	public void process() throws IOException
+	{
+		ZipFile zip = openZipFile();
+		OrderedZipAppender archive = null;
+		ExecutorService executor = null;
 		try
 		{
-			ZipFile zip = new ZipFile(zipFileName);		
-			Enumeration<? extends ZipEntry> entries = zip.entries();
+			// Create the output directory or archive.
+			File outDir = null;
+			if(outputArchive != null)
+			{
+				archive = new OrderedZipAppender(outputArchive);
+			}
+			else
+			{
+				outDir = new File(outputDir);
+				outDir.mkdir();
+			}
 			
-			// Create the output directory if needed.
-			File outDir = new File(outputDir);
-			outDir.mkdir();
+			// Create the named entity matcher once for the whole job. Matchers
+			// are immutable so all of the workers can share it.
+			NamedEntityMatcher smatch = AhoCorasickNamedEntityMatcher.open(NER_FILE);
 			
-			// Create our thread pool executor
-			ExecutorService executor = Executors.newFixedThreadPool(numThreads);
-		        
-			while(entries.hasMoreElements()){
-				 ZipEntry entry = entries.nextElement();
-				 
-				 if(entry.isDirectory())
-					 continue;
-				 
-				 // Ignore those weird MACOS copy files
-				 if(entry.getName().startsWith("__MACOSX"))
-					 continue;
-			 
-				 // Get the stream
-				 InputStream stream = zip.getInputStream(entry);
-				 
-				 // Turn the stream into a string
-				 String inputText = getStringFromInputStream(stream);
-	
-				 SentenceTokenizer tokenizer = new PunktFirstPassSentenceTokenizer();
-						 	
-				 // Create a named entity matcher
-				 SimpleNamedEntityMatcher smatch = new SimpleNamedEntityMatcher(NER_FILE);
-	 
-				 File outFile = new File(outDir, entry.getName() + ".xml");
-				 outFile.getParentFile().mkdirs();
-				 
-				 // Run our thread
-				 SentenceTokenizerThread worker = 
-						 new SentenceTokenizerThread(inputText, outFile.getPath(), tokenizer);
-				 
-				 worker.setNamedEntityMatcher(smatch);
-
-			     executor.execute((Runnable)worker);
+			MemoryBudget budget = new MemoryBudget(memoryBudget);
+			
+			if(documentThreads > 0)
+				documentPool = new ForkJoinPool(documentThreads);
+			
+			if(executionMode == ExecutionMode.THREAD_PER_ENTRY)
+			{
+				executor = newThreadPerTaskExecutor();
+				submitThreadPerEntry(executor, zip, budget, outDir, archive, smatch);
 			}
-		
+			else
+			{
+				executor = Executors.newFixedThreadPool(numThreads);
+				submitFixedPool(executor, zip, budget, outDir, archive, smatch);
+			}
+			
 			// Shutdown the executor and block till all threads
 			// terminate.
 			executor.shutdown();
-	        while (!executor.isTerminated()) {}
-	        System.out.println("Complete.");
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Processing " + zipFileName + " was interrupted.");
+		}
+		finally
+		{
+			try
+			{
+				// Stop the workers if we didn't get to the end, and wait for
+				// them so none of them appends to the archive after it is closed
+				if(executor != null)
+					stop(executor);
+			}
+			finally
+			{
+				if(documentPool != null)
+				{
+					documentPool.shutdown();
+					documentPool = null;
+				}
+				
+				try
+				{
+					zip.close();
+				}
+				finally
+				{
+					// Write the central directory. This also reports any error
+					// writing the entries.
+					if(archive != null)
+						archive.close();
+				}
+			}
+		}
+		
+		System.out.println("Complete.");
+	}
+	
+	/*
+	 * Stop the threads of an executor and wait till they have all finished,
+	 * even if we are interrupted while we wait.
+	 */
+	private static void stop(ExecutorService executor)
+	{
+		executor.shutdownNow();
+		
+		boolean interrupted = false;
+		while(!executor.isTerminated())
+		{
+			try
+			{
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			}
+			catch(InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+		
+		if(interrupted)
+			Thread.currentThread().interrupt();
+	}
+	
+	/*
+	 * Open a handle on the input zip file.
+	 */
+	protected ZipFile openZipFile() throws IOException
+	{
+		return new ZipFile(zipFileName);
+	}
+	
+	/*
+	 * Start numThreads workers and queue the entries for them. The queue
+	 * only needs to be long enough to keep them busy, the budget is what
+	 * limits the memory. If a worker dies, queueing stops and its failure is
+	 * thrown once the workers have finished, as the workers left might not
+	 * take everything queued.
+	 */
+	private void submitFixedPool(ExecutorService executor, ZipFile zip, MemoryBudget budget,
+			File outDir, OrderedZipAppender archive, NamedEntityMatcher smatch)
+			throws IOException, InterruptedException
+	{
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		BlockingQueue<QueuedEntry> queue = new ArrayBlockingQueue<QueuedEntry>(2 * numThreads);
+		for(int i=0; i<numThreads; i++)
+			executor.execute(new Worker(queue, budget, outDir, archive, smatch, failure));
+		
+		int seq = 0;
+		Enumeration<? extends ZipEntry> entries = zip.entries();
+		while(entries.hasMoreElements())
+		{
+			ZipEntry entry = entries.nextElement();
+			if(!isText(entry))
+				continue;
+			
+			// Wait till there is room for the entry, then queue it
+			while(!budget.acquire(entry.getSize(), FAILURE_CHECK_MILLIS))
+				checkFailure(failure);
+			QueuedEntry queued = new QueuedEntry(entry, seq++);
+			while(!queue.offer(queued, FAILURE_CHECK_MILLIS, TimeUnit.MILLISECONDS))
+				checkFailure(failure);
+		}
+		
+		for(int i=0; i<numThreads; i++)
+			while(!queue.offer(END_OF_ENTRIES, FAILURE_CHECK_MILLIS, TimeUnit.MILLISECONDS))
+				checkFailure(failure);
+		
+		// A worker can still fail after everything is queued
+		executor.shutdown();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		checkFailure(failure);
+	}
+	
+	/*
+	 * Throw the failure of a worker, if one has failed.
+	 */
+	private static void checkFailure(AtomicReference<Throwable> failure) throws IOException
+	{
+		Throwable t = failure.get();
+		if(t != null)
+			throw new IOException("A worker failed: " + t, t);
+	}
+	
+	/*
+	 * Start a thread for each entry. The threads all read from our zip file,
+	 * which is safe to share, and take turns at the CPU stage. If a thread
+	 * dies, starting threads stops and its failure is thrown once the rest
+	 * have finished.
+	 */
+	private void submitThreadPerEntry(ExecutorService executor, final ZipFile zip, final MemoryBudget budget,
+			final File outDir, final OrderedZipAppender archive, final NamedEntityMatcher smatch)
+			throws IOException, InterruptedException
+	{
+		final Semaphore cpuStage = new Semaphore(numThreads);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		
+		int seq = 0;
+		Enumeration<? extends ZipEntry> entries = zip.entries();
+		while(entries.hasMoreElements())
+		{
+			ZipEntry entry = entries.nextElement();
+			if(!isText(entry))
+				continue;
 			
-		} catch (IOException e) {
-            e.printStackTrace();
-        }
+			// Wait till there is room for the entry, then start it
+			while(!budget.acquire(entry.getSize(), FAILURE_CHECK_MILLIS))
+				checkFailure(failure);
+			final QueuedEntry queued = new QueuedEntry(entry, seq++);
+			executor.execute(new Runnable() {
+				public void run()
+				{
+					try
+					{
+						runEntry(zip, queued, budget, outDir, archive, smatch, cpuStage);
+					}
+					catch(Throwable t)
+					{
+						failure.compareAndSet(null, t);
+					}
+				}
+			});
+		}
+		
+		// A thread can still fail after everything is started
+		executor.shutdown();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		checkFailure(failure);
 	}
+	
+	/*
+	 * Make an executor that runs every task on a thread of its own. On a
+	 * JVM with virtual threads these are virtual threads, otherwise they are
+	 * platform threads, which are reused when they finish.
+	 */
+	private static ExecutorService newThreadPerTaskExecutor()
+	{
+		try
+		{
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService)factory.invoke(null);
+		}
+		catch(NoSuchMethodException e)
+		{
+			return Executors.newCachedThreadPool();
+		}
+		catch(IllegalAccessException e)
+		{
+			return Executors.newCachedThreadPool();
+		}
+		catch(InvocationTargetException e)
+		{
+			// Virtual threads are a preview feature that isn't enabled
+			return Executors.newCachedThreadPool();
+		}
+	}
+	
+	/**
+	 * Check whether THREAD_PER_ENTRY runs on virtual threads on this JVM.
+	 * 
+	 * @return true if yes, false if it uses platform threads.
+	 */
+	public static boolean hasVirtualThreads()
+	{
+		ExecutorService executor = newThreadPerTaskExecutor();
+		boolean virtual = !(executor instanceof ThreadPoolExecutor);
+		executor.shutdown();
 		
-	// Little function to convert and input stream to a string.
-	// Source:
-	// http://www.mkyong.com/java/how-to-convert-inputstream-to-string-in-java/
-	private static String getStringFromInputStream(InputStream is) {
- 
-		BufferedReader br = null;
-		StringBuilder sb = new StringBuilder();
- 
-		String line;
-		try {
- 
-			br = new BufferedReader(new InputStreamReader(is));
-			while ((line = br.readLine()) != null) {
-				sb.append(line);
+		return virtual;
+	}
+	
+	/*
+	 * Check an entry is one of the text files we process.
+	 */
+	private static boolean isText(ZipEntry entry)
+	{
+		// Ignore directories and those weird MACOS copy files
+		return !entry.isDirectory() && !entry.getName().startsWith("__MACOSX");
+	}
+	
+	/*
+	 * Process an entry and give its size back to the budget once its output
+	 * is written. With an archive the output is appended to it, or the
+	 * entry is skipped if it failed, so the entries after it aren't held up.
+	 */
+	private void runEntry(ZipFile zip, QueuedEntry queued, final MemoryBudget budget, File outDir,
+			OrderedZipAppender archive, NamedEntityMatcher smatch, Semaphore cpuStage)
+	{
+		final long size = queued.entry.getSize();
+		Runnable release = new Runnable() {
+			public void run()
+			{
+				budget.release(size);
 			}
- 
-		} catch (IOException e) {
+		};
+		
+		OrderedZipAppender.Entry out = null;
+		try
+		{
+			if(archive != null)
+				out = new OrderedZipAppender.Entry(queued.entry.getName() + outputFormat.getExtension());
+			
+			processEntry(zip, queued.entry, outDir, out, smatch, cpuStage);
+		}
+		catch(IOException e)
+		{
 			e.printStackTrace();
-		} finally {
-			if (br != null) {
-				try {
-					br.close();
-				} catch (IOException e) {
-					e.printStackTrace();
+			out = discard(out);
+		}
+		catch(RuntimeException e)
+		{
+			// Don't let one bad entry stop the worker
+			e.printStackTrace();
+			out = discard(out);
+		}
+		finally
+		{
+			if(archive == null)
+			{
+				release.run();
+			}
+			else
+			{
+				try
+				{
+					archive.append(queued.seq, out, release);
+				}
+				catch(IOException e)
+				{
+					// Reported when the archive is closed
 				}
 			}
 		}
+	}
+	
+	/*
+	 * Give up on an archive entry, if there is one, so its deflater is
+	 * freed. Returns null, the entry to append in its place.
+	 */
+	private static OrderedZipAppender.Entry discard(OrderedZipAppender.Entry out)
+	{
+		if(out != null)
+			out.abort();
+		
+		return null;
+	}
+	
+	/*
+	 * Inflate an entry and write out its sentences, to a file in the output
+	 * directory or to an archive entry if there is one. If there is a CPU
+	 * stage semaphore the tokenizing and matching wait for it.
+	 */
+	private void processEntry(ZipFile zip, ZipEntry entry, File outDir, OrderedZipAppender.Entry out,
+			NamedEntityMatcher smatch, Semaphore cpuStage) throws IOException
+	{
+		// Get the stream
+		InputStream stream = zip.getInputStream(zip.getEntry(entry.getName()));
+		
+		// Turn the stream into a string
+		String inputText = getStringFromInputStream(stream);
+
+		SentenceTokenizer tokenizer = new PunktFirstPassSentenceTokenizer();
+
+		// Run it on this thread
+		SentenceTokenizerThread worker;
+		if(out != null)
+		{
+			worker = new SentenceTokenizerThread(inputText, out, tokenizer);
+		}
+		else
+		{
+			File outFile = new File(outDir, entry.getName() + outputFormat.getExtension());
+			outFile.getParentFile().mkdirs();
+			worker = new SentenceTokenizerThread(inputText, outFile.getPath(), tokenizer);
+		}
+		
+		worker.setNamedEntityMatcher(smatch);
+		worker.setCpuStage(cpuStage);
+		worker.setForkJoinPool(documentPool);
+		worker.setOutputFormat(outputFormat);
+		worker.run();
+		
+		// Don't let a partly written entry pass for a whole one
+		if(worker.getFailure() != null)
+			throw new IOException("Writing the sentences of " + entry.getName() + " failed: " +
+					worker.getFailure().getMessage(), worker.getFailure());
+	}
+	
+	/*
+	 * A worker takes entries off the queue until it gets END_OF_ENTRIES. It
+	 * inflates each entry from its own handle on the zip file and runs it.
+	 * If it dies it records why in failure, unless another worker already
+	 * has, so the main thread stops waiting on it.
+	 */
+	private class Worker implements Runnable {
+		
+		private BlockingQueue<QueuedEntry> queue;
+		private MemoryBudget budget;
+		private File outDir;
+		private OrderedZipAppender archive;
+		private NamedEntityMatcher smatch;
+		private AtomicReference<Throwable> failure;
+		
+		Worker(BlockingQueue<QueuedEntry> queue, MemoryBudget budget, File outDir,
+				OrderedZipAppender archive, NamedEntityMatcher smatch, AtomicReference<Throwable> failure)
+		{
+			this.queue = queue;
+			this.budget = budget;
+			this.outDir = outDir;
+			this.archive = archive;
+			this.smatch = smatch;
+			this.failure = failure;
+		}
+		
+		public void run()
+		{
+			try
+			{
+				ZipFile zip = openZipFile();
+				try
+				{
+					QueuedEntry queued;
+					while((queued = queue.take()) != END_OF_ENTRIES)
+						runEntry(zip, queued, budget, outDir, archive, smatch, null);
+				}
+				finally
+				{
+					zip.close();
+				}
+			}
+			catch(InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			catch(Throwable t)
+			{
+				failure.compareAndSet(null, t);
+			}
+		}
+	}
+	
+	/*
+	 * An entry with its place in the order of the entries processed.
+	 */
+	private static class QueuedEntry {
+		
+		final ZipEntry entry;
+		final int seq;
+		
+		QueuedEntry(ZipEntry entry, int seq)
+		{
+			this.entry = entry;
+			this.seq = seq;
+		}
+	}
+	
+	/*
+	 * This class counts the bytes of uncompressed text that are queued or
+	 * being processed. A charge bigger than the whole budget is cut down to
+	 * the budget so it can still go through once everything else is done.
+	 * Entries of unknown size are charged the whole budget.
+	 */
+	static class MemoryBudget {
+		
+		private final long limit;
+		private long used = 0;
+		
+		MemoryBudget(long limit)
+		{
+			this.limit = limit;
+		}
+		
+		/*
+		 * The amount an entry of the given size is charged.
+		 */
+		private long charge(long size)
+		{
+			return size < 0 || size > limit ? limit : size;
+		}
+		
+		/*
+		 * Wait till the budget has room, then take the size out of it.
+		 */
+		synchronized void acquire(long size) throws InterruptedException
+		{
+			long charge = charge(size);
+			while(used + charge > limit)
+				wait();
+			
+			used += charge;
+		}
+		
+		/*
+		 * Wait at most some milliseconds for the budget to have room, then
+		 * take the size out of it if it has.
+		 */
+		synchronized boolean acquire(long size, long timeoutMillis) throws InterruptedException
+		{
+			long charge = charge(size);
+			long deadline = System.currentTimeMillis() + timeoutMillis;
+			while(used + charge > limit)
+			{
+				long wait = deadline - System.currentTimeMillis();
+				if(wait <= 0)
+					return false;
+				wait(wait);
+			}
+			
+			used += charge;
+			return true;
+		}
+		
+		/*
+		 * Give back a size taken by acquire().
+		 */
+		synchronized void release(long size)
+		{
+			used -= charge(size);
+			notifyAll();
+		}
+		
+		/*
+		 * The number of bytes taken out of the budget.
+		 */
+		synchronized long getUsed()
+		{
+			return used;
+		}
+	}
+		
+	/*
+	 * Read all of a stream into a string, as UTF-8, and close it. The line
+	 * breaks are kept since paragraph breaks matter to the tokenizer.
+	 */
+	private static String getStringFromInputStream(InputStream is) throws IOException {
  
-		return sb.toString();
+		Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8);
+		StringBuilder sb = new StringBuilder();
+		try {
+			char[] buffer = new char[8192];
+			int n;
+			while ((n = reader.read(buffer)) > 0)
+				sb.append(buffer, 0, n);
+		} finally {
+			reader.close();
+		}
  
+		return sb.toString();
 	}
 	
 }
@@ -0,0 +1,231 @@
+package nlp_test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AhoCorasickNamedEntityMatcherTest {
+
+	/*
+	 * Check that two matchers annotate some text the same way.
+	 */
+	private void assertSameAnnotations(NamedEntityMatcher expected, NamedEntityMatcher actual, String text)
+	{
+		List<Token> tokens = new ArrayList<Token>();
+		TokenStream stream = new PunktTokenStream(text);
+		Token t;
+		while((t = stream.getToken()) != null)
+			tokens.add(t);
+
+		List<TokenNE> expectedTokens = expected.annotate(tokens, text);
+		List<TokenNE> actualTokens = actual.annotate(tokens, text);
+
+		assertEquals("Token count differs!", expectedTokens.size(), actualTokens.size());
+		for(int i=0; i<expectedTokens.size(); i++)
+		{
+			assertEquals("Token differs in [" + text + "]",
+					expectedTokens.get(i).toString(), actualTokens.get(i).toString());
+			assertEquals("Entities differ for token " + i + " in [" + text + "]",
+					expectedTokens.get(i).entities, actualTokens.get(i).entities);
+		}
+	}
+
+	@Test
+	public void matchesSimpleMatcherTest() throws IOException {
+		String text = new String(Files.readAllBytes(Paths.get("data/nlp_data.txt")), StandardCharsets.UTF_8);
+
+		NamedEntityMatcher simple = new SimpleNamedEntityMatcher("data/NER.txt");
+		NamedEntityMatcher aho = new AhoCorasickNamedEntityMatcher("data/NER.txt");
+
+		assertSameAnnotations(simple, aho, text);
+	}
+
+	@Test
+	public void overlappingEntitiesTest() {
+		List<String> entities = Arrays.asList("aa", "aaa", "New York", "york", "NEW", "\u00c9cole", "aa", "", "b a");
+		NamedEntityMatcher simple = new SimpleNamedEntityMatcher(entities);
+		NamedEntityMatcher aho = new AhoCorasickNamedEntityMatcher(entities);
+
+		assertSameAnnotations(simple, aho, "aaaa aaaaa. new YORK newyork, \u00e9COLE b a b a.");
+	}
+
+	@Test
+	public void randomEntitiesTest() {
+		String alphabet = "aAbB .-\u00e9\u00c9\u03c3\u03a3\u017f\ud801\udc00\ud801\udc28";
+		Random random = new Random(7);
+
+		for(int round=0; round<200; round++)
+		{
+			List<String> entities = new ArrayList<String>();
+			for(int i=0; i<10; i++)
+				entities.add(randomString(random, alphabet, 1 + random.nextInt(4)));
+
+			NamedEntityMatcher simple = new SimpleNamedEntityMatcher(entities);
+			NamedEntityMatcher aho = new AhoCorasickNamedEntityMatcher(entities);
+
+			for(int i=0; i<10; i++)
+				assertSameAnnotations(simple, aho, "x" + randomString(random, alphabet, 40));
+		}
+	}
+
+	@Test
+	public void compiledGazetteerTest() throws IOException {
+		String text = new String(Files.readAllBytes(Paths.get("data/nlp_data.txt")), StandardCharsets.UTF_8);
+		AhoCorasickNamedEntityMatcher built = new AhoCorasickNamedEntityMatcher("data/NER.txt");
+
+		File compiled = File.createTempFile("NER", ".gaz");
+		try
+		{
+			built.write(compiled.getPath());
+
+			assertTrue("Not recognised as compiled!", AhoCorasickNamedEntityMatcher.isCompiled(compiled.getPath()));
+			assertFalse("Text recognised as compiled!", AhoCorasickNamedEntityMatcher.isCompiled("data/NER.txt"));
+
+			AhoCorasickNamedEntityMatcher loaded = AhoCorasickNamedEntityMatcher.open(compiled.getPath());
+			assertEquals("Node count differs!", built.getNodeCount(), loaded.getNodeCount());
+
+			assertSameAnnotations(built, loaded, text);
+			assertSameAnnotations(new SimpleNamedEntityMatcher("data/NER.txt"), loaded, text);
+		}
+		finally
+		{
+			compiled.delete();
+		}
+	}
+
+	@Test
+	public void compiledWidthsTest() throws IOException {
+		Random random = new Random(11);
+
+		// Few nodes, more than 255 nodes, characters outside the basic plane
+		// and more than 65535 nodes all need wider columns.
+		List<List<String>> entitySets = new ArrayList<List<String>>();
+		entitySets.add(Arrays.asList("ab", "b", "abc"));
+		entitySets.add(randomStrings(random, "abcdefghij", 3000, 8));
+		entitySets.add(Arrays.asList("\ud801\udc00x", "x\ud801\udc28", "xy"));
+		entitySets.add(randomStrings(random, "abcdefghijklmnopqrstuvwxyz", 12000, 10));
+
+		for(List<String> entities: entitySets)
+		{
+			AhoCorasickNamedEntityMatcher built = new AhoCorasickNamedEntityMatcher(entities);
+
+			File compiled = File.createTempFile("NER", ".gaz");
+			try
+			{
+				built.write(compiled.getPath());
+				AhoCorasickNamedEntityMatcher loaded = AhoCorasickNamedEntityMatcher.load(compiled.getPath());
+				assertEquals("Node count differs!", built.getNodeCount(), loaded.getNodeCount());
+
+				// Some of the entities with random text between them
+				StringBuilder text = new StringBuilder();
+				for(int i=0; i<200; i++)
+					text.append(entities.get(random.nextInt(entities.size()))).append(' ')
+						.append(randomString(random, "ab\ud801\udc00xy ", 5));
+				assertSameAnnotations(built, loaded, text.toString());
+
+				// Writing a loaded matcher gives the same file
+				File again = File.createTempFile("NER", ".gaz");
+				try
+				{
+					loaded.write(again.getPath());
+					assertArrayEquals("Rewritten file differs!", Files.readAllBytes(compiled.toPath()),
+							Files.readAllBytes(again.toPath()));
+				}
+				finally
+				{
+					again.delete();
+				}
+			}
+			finally
+			{
+				compiled.delete();
+			}
+		}
+	}
+
+	/*
+	 * Make some random strings of a length.
+	 */
+	private List<String> randomStrings(Random random, String alphabet, int count, int length)
+	{
+		List<String> strings = new ArrayList<String>();
+		for(int i=0; i<count; i++)
+			strings.add(randomString(random, alphabet, length));
+
+		return strings;
+	}
+
+	/*
+	 * Check a matcher gives each entity the index of its first copy, and
+	 * no id to strings it doesn't look for.
+	 */
+	private void assertEntityIds(NamedEntityMatcher nerer, List<String> entities)
+	{
+		for(String entity: entities)
+			if(!entity.isEmpty())
+				assertEquals("Wrong id for " + entity + "!", entities.indexOf(entity), nerer.getEntityId(entity));
+
+		for(String other: Arrays.asList("", "NEW YORK", "New", "aaa", "\u00c9cole ", "istanbul", "Nobody"))
+			assertEquals("Id for " + other + "!", -1, nerer.getEntityId(other));
+	}
+
+	@Test
+	public void entityIdTest() throws IOException {
+		List<String> entities = Arrays.asList("aa", "New York", "new york", "\u0130stanbul", "\u00c9cole", "aa", "", "\ud801\udc00\u03c3");
+		AhoCorasickNamedEntityMatcher built = new AhoCorasickNamedEntityMatcher(entities);
+		assertEntityIds(built, entities);
+
+		File compiled = File.createTempFile("NER", ".gaz");
+		try
+		{
+			built.write(compiled.getPath());
+			assertEntityIds(AhoCorasickNamedEntityMatcher.load(compiled.getPath()), entities);
+		}
+		finally
+		{
+			compiled.delete();
+		}
+	}
+
+	@Test
+	public void loadRejectsTextTest() {
+		try
+		{
+			AhoCorasickNamedEntityMatcher.load("data/NER.txt");
+			fail("Loaded a text file!");
+		}
+		catch(IOException e)
+		{
+		}
+	}
+
+	/*
+	 * Make a random string from the characters of an alphabet. Surrogate
+	 * pairs are kept together.
+	 */
+	private String randomString(Random random, String alphabet, int length)
+	{
+		StringBuilder sb = new StringBuilder();
+		for(int i=0; i<length; i++)
+		{
+			int at = random.nextInt(alphabet.length());
+			if(Character.isLowSurrogate(alphabet.charAt(at)))
+				at--;
+
+			sb.appendCodePoint(alphabet.codePointAt(at));
+		}
+
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,158 @@
+package nlp_test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class AnnotationWriterTest {
+
+	/*
+	 * The sample text.
+	 */
+	private String text;
+
+	/*
+	 * Build the sentences of the sample text with its named entities.
+	 */
+	private SentenceList buildSentences(NamedEntityMatcher nerer) throws IOException
+	{
+		text = new String(Files.readAllBytes(Paths.get("data/nlp_data.txt")), StandardCharsets.UTF_8);
+		SentenceTokenizer tokenizer = new PunktFirstPassSentenceTokenizer();
+		ArrayList<Token> tokens = tokenizer.annotate(tokenizer.createTokenStream(text));
+		List<TokenNE> tokens_mod = nerer.annotate(tokens, text);
+		tokens.clear();
+		tokens.addAll(tokens_mod);
+
+		return tokenizer.buildSentenceList(text, tokens);
+	}
+
+	/*
+	 * Write sentences to a string.
+	 */
+	private String write(AnnotationWriterBase writer, StringWriter out, List<Sentence> sents) throws IOException
+	{
+		writer.writeSentences(sents);
+		writer.close();
+
+		return out.toString();
+	}
+
+	@Test
+	public void jsonLinesTest() throws IOException {
+		NamedEntityMatcher nerer = new AhoCorasickNamedEntityMatcher("data/NER.txt");
+		SentenceList sents = buildSentences(nerer);
+
+		StringWriter out = new StringWriter();
+		String json = write(new JsonLinesAnnotationWriter(out, nerer), out, sents);
+		String[] lines = json.split("\n");
+
+		assertEquals("Not a line per sentence!", sents.size(), lines.length);
+		assertTrue("Wrong first sentence!", lines[0].startsWith("{\"start\":0,\"end\":" + sents.get(0).getEnd() +
+				",\"tokens\":[{\"start\":0,\"end\":3,\"value\":\"The\"},"));
+
+		int ernst = text.indexOf("Ernst");
+		assertTrue("Wrong entity token!", lines[0].contains("{\"start\":" + ernst + ",\"end\":" + (ernst + 5) +
+				",\"value\":\"Ernst\",\"entities\":[" + nerer.getEntityId("Ernst Haeckel") + "]}"));
+		assertTrue("Quote not escaped!", lines[0].contains("\"value\":\"\\\"\""));
+		assertTrue("Wrong sentence break!", lines[0].endsWith(",\"sentBreak\":true}]}"));
+	}
+
+	@Test
+	public void tsvTest() throws IOException {
+		NamedEntityMatcher nerer = new AhoCorasickNamedEntityMatcher("data/NER.txt");
+		SentenceList sents = buildSentences(nerer);
+
+		StringWriter out = new StringWriter();
+		String tsv = write(new TsvSpanAnnotationWriter(out, nerer), out, sents);
+
+		assertTrue("No header!", tsv.startsWith(TsvSpanAnnotationWriter.HEADER));
+		assertTrue("Wrong first sentence!", tsv.contains("\nS\t0\t" + sents.get(0).getEnd() + "\t0\t\n"));
+		assertTrue("Wrong token!", tsv.contains("\nT\t0\t3\tThe\t\n"));
+
+		// A two token entity is one span
+		int franz = text.indexOf("Franz Ferdinand");
+		assertTrue("Wrong entity span!", tsv.contains("\nE\t" + franz + "\t" + (franz + "Franz Ferdinand".length()) +
+				"\t" + nerer.getEntityId("Franz Ferdinand") + "\t\n"));
+
+		int rows = 0;
+		for(String line: tsv.split("\n"))
+			if(line.startsWith("S\t"))
+				rows++;
+		assertEquals("Not a row per sentence!", sents.size(), rows);
+	}
+
+	@Test
+	public void tsvAdjacentEntitiesTest() throws IOException {
+		String text = "Bach Bach played. Then J. S. Bach wrote.";
+		List<String> entities = Arrays.asList("Bach");
+		NamedEntityMatcher[] matchers = {
+			new AhoCorasickNamedEntityMatcher(entities),
+			new TokenTrieNamedEntityMatcher(entities),
+			new SimpleNamedEntityMatcher(entities),
+			new MinHashNamedEntityMatcher(entities)
+		};
+
+		for(NamedEntityMatcher nerer: matchers)
+		{
+			SentenceTokenizer tokenizer = new PunktFirstPassSentenceTokenizer();
+			ArrayList<Token> tokens = tokenizer.annotate(tokenizer.createTokenStream(text));
+			List<TokenNE> tokens_mod = nerer.annotate(tokens, text);
+			tokens.clear();
+			tokens.addAll(tokens_mod);
+
+			StringWriter out = new StringWriter();
+			String tsv = write(new TsvSpanAnnotationWriter(out, null), out, tokenizer.buildSentenceList(text, tokens));
+
+			// Each match is a span of its own, even next to another
+			String name = nerer.getClass().getSimpleName();
+			assertTrue(name + " merged adjacent matches!", tsv.contains("\nE\t0\t4\tBach\t\n"));
+			assertTrue(name + " lost the second match!", tsv.contains("\nE\t5\t9\tBach\t\n"));
+			int last = text.lastIndexOf("Bach");
+			assertTrue(name + " lost the last match!", tsv.contains("\nE\t" + last + "\t" + (last + 4) + "\tBach\t\n"));
+		}
+	}
+
+	@Test
+	public void entityIdTest() throws IOException {
+		NamedEntityMatcher nerer = new AhoCorasickNamedEntityMatcher("data/NER.txt");
+
+		for(int e=0; e<nerer.getEntities().size(); e++)
+			assertEquals("Wrong id!", nerer.getEntities().indexOf(nerer.getEntities().get(e)),
+					nerer.getEntityId(nerer.getEntities().get(e)));
+		assertEquals("Id for an unknown entity!", -1, nerer.getEntityId("Nobody"));
+	}
+
+	@Test
+	public void numberTest() throws IOException {
+		StringWriter out = new StringWriter();
+		AnnotationWriterBase writer = new AnnotationWriterBase(out) {
+			public void writeSentence(Sentence sent)
+			{
+			}
+		};
+
+		// Enough numbers to fill the buffer a few times
+		long[] numbers = {0, 7, -7, 10, -10, 1234567890, Long.MAX_VALUE, Long.MIN_VALUE};
+		StringBuilder expected = new StringBuilder();
+		for(int i=0; i<10000; i++)
+		{
+			long n = numbers[i % numbers.length] + (i < numbers.length ? 0 : i % 3);
+			writer.write(n);
+			writer.write(' ');
+			expected.append(n).append(' ');
+		}
+		writer.close();
+
+		assertEquals("Numbers written wrong!", expected.toString(), out.toString());
+	}
+
+}
@@ -0,0 +1,56 @@
+package nlp_test;
+
+import java.io.IOException;
+
+/*
+ * Training on some of the Brown corpus in data/brown.zip, shared by the
+ * tests of the Punkt parameters and training state.
+ */
+final class BrownCorpusFixture {
+
+	/*
+	 * The zip file of the corpus, which is tagged.
+	 */
+	static final String ZIP = "data/brown.zip";
+
+	/*
+	 * Some of the files of the corpus, and two halves of them.
+	 */
+	static final String FILES = "brown/c[a-c]\\d\\d";
+	static final String FIRST_FILES = "brown/c[ab]\\d\\d";
+	static final String SECOND_FILES = "brown/cc\\d\\d";
+
+	private BrownCorpusFixture()
+	{
+	}
+
+	/*
+	 * Make a trainer for the tagged corpus.
+	 */
+	static PunktTrainer newTrainer()
+	{
+		PunktTrainer trainer = new PunktTrainer();
+		trainer.setTaggedCorpus(true);
+		return trainer;
+	}
+
+	/*
+	 * Train parameters on FILES.
+	 */
+	static PunktParams train() throws IOException
+	{
+		return newTrainer().trainZip(ZIP, FILES);
+	}
+
+	/*
+	 * Train a new state on some files of the corpus.
+	 */
+	static PunktTrainingState trainState(String files) throws IOException
+	{
+		PunktTrainer trainer = newTrainer();
+		PunktTrainingState state = trainer.newState();
+		trainer.trainZip(state, ZIP, files);
+		return state;
+	}
+
+}
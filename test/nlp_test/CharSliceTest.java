@@ -0,0 +1,40 @@
+package nlp_test;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+
+import org.junit.Test;
+
+public class CharSliceTest {
+
+	@Test
+	public void equalsTest() {
+
+		String text = "Mr. Smith and then.";
+		CharSlice slice = new CharSlice(text, 4, 5);
+		CharWindow window = new CharWindow(false).set(text, 4, 5);
+		CharWindow lower = new CharWindow(true).set(text, 4, 5);
+
+		// Slices and windows are equal to each other both ways round
+		assertTrue("Slice doesn't equal window!", slice.equals(window));
+		assertTrue("Window doesn't equal slice!", window.equals(slice));
+		assertTrue("Slice doesn't equal slice!", slice.equals(new CharSlice("Smith", 0, 5)));
+		assertFalse("Lower case window equals slice!", lower.equals(slice));
+		assertTrue("Lower case window doesn't equal lower case slice!", lower.equals(slice.toLowerCase()));
+		assertEquals("Wrong hash!", slice.hashCode(), window.hashCode());
+		assertEquals("Wrong hash!", "Smith".hashCode(), slice.hashCode());
+
+		// but never to a String, which is never equal to them either
+		assertFalse("Slice equals String!", slice.equals("Smith"));
+		assertFalse("Window equals String!", window.equals("Smith"));
+		assertFalse("String equals slice!", "Smith".equals(slice));
+
+		// A window looks up a map keyed by slices
+		HashMap<CharSlice, Integer> map = new HashMap<CharSlice, Integer>();
+		map.put(new CharSlice("smith", 0, 5), 1);
+		assertEquals("Wrong lookup!", Integer.valueOf(1), map.get(lower));
+		assertNull("Wrong lookup!", map.get(window));
+	}
+
+}
@@ -0,0 +1,170 @@
+package nlp_test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ColumnarAnnotationTest {
+
+	/*
+	 * Build the sentences of some text with its named entities.
+	 */
+	private SentenceList buildSentences(String text, NamedEntityMatcher nerer)
+	{
+		SentenceTokenizer tokenizer = new PunktFirstPassSentenceTokenizer();
+		ArrayList<Token> tokens = tokenizer.annotate(tokenizer.createTokenStream(text));
+		List<TokenNE> tokens_mod = nerer.annotate(tokens, text);
+		tokens.clear();
+		tokens.addAll(tokens_mod);
+
+		return tokenizer.buildSentenceList(text, tokens);
+	}
+
+	/*
+	 * Write sentences as XML, which has every annotation of every token.
+	 */
+	private String toXml(List<Sentence> sents) throws IOException
+	{
+		StringWriter out = new StringWriter();
+		SentenceXmlWriter writer = new SentenceXmlWriter(out);
+		writer.writeSentences(sents);
+		writer.close();
+
+		return out.toString();
+	}
+
+	@Test
+	public void roundTripTest() throws IOException {
+		NamedEntityMatcher nerer = new AhoCorasickNamedEntityMatcher("data/NER.txt");
+		String text = new String(Files.readAllBytes(Paths.get("data/nlp_data.txt")), StandardCharsets.UTF_8);
+		String other = "Mr. Smith went to Washington. He met John Smith there.  Then he left.";
+
+		SentenceList first = buildSentences(text, nerer);
+		SentenceList second = buildSentences(other, nerer);
+
+		File file = File.createTempFile("annotations", ".cols");
+		try
+		{
+			// A named document, an empty one and one started by a new text
+			ColumnarAnnotationWriter writer = new ColumnarAnnotationWriter(file.getPath());
+			writer.startDocument("nlp_data.txt");
+			for(Sentence sent: first)
+				writer.writeSentence(sent);
+			writer.startDocument("empty");
+			writer.startDocument(null);
+			for(Sentence sent: second)
+				writer.writeSentence(sent);
+			for(Sentence sent: first)
+				writer.writeSentence(sent);
+			writer.close();
+
+			ColumnarAnnotationReader reader = new ColumnarAnnotationReader(file.getPath());
+			try
+			{
+				assertEquals("Wrong number of documents!", 4, reader.getDocumentCount());
+				assertEquals("Wrong name!", "nlp_data.txt", reader.getDocumentName(0));
+				assertEquals("Wrong name!", "empty", reader.getDocumentName(1));
+				assertEquals("Wrong name!", "", reader.getDocumentName(2));
+				assertEquals("Empty document has sentences!", 0, reader.getSentenceCount(1));
+
+				// Straight to a sentence of the last document
+				int m = first.size() / 2;
+				Sentence sent = reader.getSentence(3, m);
+				assertEquals("Sentence differs!", first.get(m).toString(), sent.toString());
+				assertEquals("Start differs!", first.get(m).getStart(), sent.getStart());
+				assertEquals("End differs!", first.get(m).getEnd(), sent.getEnd());
+
+				// Every annotation of every token is the same
+				assertEquals("Document differs!", toXml(first), toXml(reader.getSentences(0)));
+				assertEquals("Document differs!", toXml(second), toXml(reader.getSentences(2)));
+				assertEquals("Document differs!", toXml(first), toXml(reader.getSentences(3)));
+				assertEquals("Text differs!", other.substring(0, (int)second.get(second.size()-1).getEnd()),
+						reader.getText(2).toString());
+
+				try
+				{
+					reader.getSentence(2, second.size());
+					fail("Got a sentence past the end!");
+				}
+				catch(IndexOutOfBoundsException e)
+				{
+				}
+			}
+			finally
+			{
+				reader.close();
+			}
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void entityIdsTest() throws IOException {
+		NamedEntityMatcher nerer = new AhoCorasickNamedEntityMatcher("data/NER.txt");
+		String text = new String(Files.readAllBytes(Paths.get("data/nlp_data.txt")), StandardCharsets.UTF_8);
+		SentenceList sents = buildSentences(text, nerer);
+
+		File file = File.createTempFile("annotations", ".cols");
+		try
+		{
+			AnnotationWriter writer = OutputFormat.COLUMNAR.createWriter(file.getPath(), nerer);
+			for(Sentence sent: sents)
+				writer.writeSentence(sent);
+			writer.close();
+
+			ColumnarAnnotationReader reader = new ColumnarAnnotationReader(file.getPath());
+			try
+			{
+				int entities = 0;
+				for(Sentence sent: reader.getSentences(0))
+				{
+					for(Token tk: sent.getTokens())
+					{
+						ColumnarToken token = (ColumnarToken)tk;
+						for(int i=0; i<token.entities.size(); i++)
+						{
+							assertEquals("Entity id differs!", token.entities.get(i),
+									reader.getEntity(token.getEntityId(i)));
+							entities++;
+						}
+					}
+				}
+				assertTrue("No entities!", entities > 0);
+				assertTrue("Too many distinct entities!", reader.getEntityCount() <= entities);
+			}
+			finally
+			{
+				reader.close();
+			}
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void notColumnarTest() throws IOException {
+		try
+		{
+			new ColumnarAnnotationReader("data/nlp_data.txt");
+			fail("Read a text file!");
+		}
+		catch(IOException e)
+		{
+		}
+	}
+
+}
@@ -0,0 +1,65 @@
+package nlp_test;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CountMinSketchTest {
+
+	@Test
+	public void neverUnderTest() {
+		CountMinSketch sketch = new CountMinSketch(4, 256);
+		HashMap<String, Integer> counts = new HashMap<String, Integer>();
+		Random random = new Random(1);
+		for(int i=0; i<20000; i++)
+		{
+			// Zipf-like: low numbers are much more frequent
+			String key = "w" + (int)Math.pow(1000, random.nextDouble());
+			sketch.add(key);
+			Integer c = counts.get(key);
+			counts.put(key, c == null ? 1 : c + 1);
+		}
+
+		for(Map.Entry<String, Integer> e: counts.entrySet())
+			assertTrue("Count under estimated: " + e.getKey(), sketch.estimate(e.getKey()) >= e.getValue());
+		assertEquals("Frequent key badly estimated!", (double)counts.get("w1"), sketch.estimate("w1"),
+				counts.get("w1") * 0.05);
+		assertEquals("Total wrong!", 20000, sketch.getTotal());
+	}
+
+	@Test
+	public void mergeTest() {
+		CountMinSketch a = new CountMinSketch(3, 64);
+		CountMinSketch b = new CountMinSketch(3, 64);
+		a.add("period.", 5);
+		b.add("period.", 7);
+		b.add("other");
+		a.merge(b);
+
+		assertTrue("Merged count under estimated!", a.estimate("period.") >= 12);
+		assertTrue("Merged count under estimated!", a.estimate("other") >= 1);
+		assertEquals("Merged total wrong!", 13, a.getTotal());
+
+		try
+		{
+			a.merge(new CountMinSketch(3, 128));
+			fail("Sketches of different sizes merged!");
+		}
+		catch(IllegalArgumentException e)
+		{
+		}
+	}
+
+	@Test
+	public void forBytesTest() {
+		CountMinSketch sketch = CountMinSketch.forBytes(100000, 4);
+		assertEquals("Wrong width!", 4096, sketch.getWidth());
+		assertTrue("Sketch too big!", sketch.getBytes() <= 100000);
+		assertEquals("Unseen key counted!", 0, CountMinSketch.forBytes(1 << 20, 4).estimate("unseen"));
+	}
+
+}
@@ -0,0 +1,164 @@
+package nlp_test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class FrozenPunktParamsTest {
+
+	@Test
+	public void lookupTest() throws IOException {
+		PunktParams params = BrownCorpusFixture.train();
+		FrozenPunktParams frozen = params.freeze();
+
+		assertEquals("Abbreviations differ!", params.getAbbreviations(), frozen.getAbbreviations());
+		assertEquals("Sentence starters differ!", params.getSentenceStarters(), frozen.getSentenceStarters());
+		assertEquals("Collocations differ!", params.getCollocations(), frozen.getCollocations());
+
+		CharWindow lookupKey = new CharWindow(true);
+		for(String abbrev: params.getAbbreviations())
+		{
+			String upper = abbrev.toUpperCase();
+			assertTrue("Abbreviation not found: " + abbrev, frozen.isAbbreviation(abbrev));
+			assertEquals("Abbreviation case differs: " + upper, params.isAbbreviation(upper),
+					frozen.isAbbreviation(upper));
+			assertTrue("Abbreviation not found in window: " + abbrev,
+					frozen.isAbbreviation(lookupKey.set(upper + ".", 0, upper.length())));
+			assertFalse("Longer abbreviation found: " + abbrev, frozen.isAbbreviation(abbrev + "q"));
+		}
+		for(String starter: params.getSentenceStarters())
+		{
+			assertTrue("Sentence starter not found: " + starter, frozen.isSentenceStarter(starter));
+			assertTrue("Sentence starter case differs: " + starter,
+					frozen.isSentenceStarter(new StringBuilder(starter.toUpperCase())));
+		}
+		for(Tuple colloc: params.getCollocations())
+		{
+			assertTrue("Collocation not found: " + colloc.x + " " + colloc.y, frozen.isCollocation(colloc));
+			assertTrue("Collocation not found: " + colloc.x + " " + colloc.y,
+					frozen.isCollocation(colloc.x, colloc.y));
+			assertFalse("Collocation reversed: " + colloc.x + " " + colloc.y,
+					frozen.isCollocation(colloc.y + colloc.x, ""));
+		}
+		for(Map.Entry<String, Long> e: params.ortho_context.entrySet())
+			assertEquals("Orthographic context differs: " + e.getKey(), (long)e.getValue(),
+					frozen.getOrthoContext(e.getKey()));
+
+		assertFalse("Word found as an abbreviation!", frozen.isAbbreviation("jury"));
+		assertFalse("Empty string found as an abbreviation!", frozen.isAbbreviation(""));
+		assertEquals("Unseen type has a context!", 0, frozen.getOrthoContext("zzyzx"));
+		assertEquals("Context lookup ignored case!", params.getOrthoContext("The"), frozen.getOrthoContext("The"));
+	}
+
+	@Test
+	public void lowerCaseLookupTest() {
+		PunktParams params = new PunktParams();
+		params.getAbbreviations().add("\u0130st".toLowerCase());
+		params.getAbbreviations().add("\u03a3\u039f\u03a3".toLowerCase());
+		FrozenPunktParams frozen = params.freeze();
+
+		// Lower casing that isn't one character at a time is done as
+		// String.toLowerCase() does it.
+		String[] words = {"\u0130ST", "\u0130st", "\u03a3\u039f\u03a3", "\u03c3\u03bf\u03c3"};
+		CharWindow lookupKey = new CharWindow(true);
+		for(String word: words)
+		{
+			assertEquals("Abbreviation differs: " + word, params.isAbbreviation(word), frozen.isAbbreviation(word));
+			assertEquals("Abbreviation in window differs: " + word, params.isAbbreviation(word),
+					frozen.isAbbreviation(lookupKey.set(word + ".", 0, word.length())));
+		}
+		assertTrue("Abbreviation not found!", frozen.isAbbreviation("\u0130ST"));
+		assertTrue("Abbreviation not found!", frozen.isAbbreviation("\u03a3\u039f\u03a3"));
+		assertFalse("Final sigma ignored!", frozen.isAbbreviation("\u03c3\u03bf\u03c3"));
+	}
+
+	@Test
+	public void annotateTest() throws IOException {
+		PunktParams params = BrownCorpusFixture.train();
+		String text = "Mr. Smith went to Washington, D.C. on Jan. 5 with Dr. Jones. They met Gen. Lee at " +
+				"3 p.m. and left.\n\nThe U.S. Army said so. Then it rained.";
+
+		ArrayList<Token> expected = new PunktAlgoBase(params).annotate(new PunktAlgoBase(params).createTokenStream(text));
+		PunktAlgoBase frozen = new PunktAlgoBase(params.freeze());
+		ArrayList<Token> tokens = frozen.annotate(frozen.createTokenStream(text));
+
+		assertEquals("Tokens differ!", expected.size(), tokens.size());
+		for(int i=0; i<tokens.size(); i++)
+		{
+			assertEquals("Sentence break differs: " + tokens.get(i), expected.get(i).getIsSentBreak(),
+					tokens.get(i).getIsSentBreak());
+			assertEquals("Abbreviation differs: " + tokens.get(i), expected.get(i).getIsAbbreviation(),
+					tokens.get(i).getIsAbbreviation());
+		}
+	}
+
+	@Test
+	public void immutableTest() {
+		PunktParams params = new PunktParams();
+		params.getAbbreviations().add("etc");
+		params.getSentenceStarters().add("however");
+		params.getCollocations().add(new Tuple("s.", "bach"));
+		params.addOrthoContext("the", OrthoGraphFlag.BEGINNING_LC);
+		FrozenPunktParams frozen = params.freeze();
+
+		assertSame("Frozen again!", frozen, frozen.freeze());
+
+		params.clearAbbreviations();
+		params.addOrthoContext("the", OrthoGraphFlag.MIDDLE_UC);
+		assertTrue("Frozen copy changed!", frozen.isAbbreviation("etc"));
+		assertEquals("Frozen copy changed!", OrthoGraphFlag.BEGINNING_LC, frozen.getOrthoContext("the"));
+
+		try
+		{
+			frozen.getSentenceStarters().clear();
+			fail("Frozen sentence starters cleared!");
+		}
+		catch(UnsupportedOperationException e)
+		{
+		}
+		try
+		{
+			frozen.getAbbreviations().add("mr");
+			fail("Frozen abbreviations changed!");
+		}
+		catch(UnsupportedOperationException e)
+		{
+		}
+		assertTrue("Sentence starter lost!", frozen.isSentenceStarter("however"));
+		assertTrue("Collocation missing from set!", frozen.getCollocations().contains(new Tuple("s.", "bach")));
+		assertFalse("Abbreviation found in another case!", frozen.getAbbreviations().contains("ETC"));
+
+		try
+		{
+			frozen.clearAbbreviations();
+			fail("Frozen abbreviations cleared!");
+		}
+		catch(UnsupportedOperationException e)
+		{
+		}
+		try
+		{
+			frozen.addOrthoContext("the", OrthoGraphFlag.MIDDLE_UC);
+			fail("Frozen orthographic context changed!");
+		}
+		catch(UnsupportedOperationException e)
+		{
+		}
+	}
+
+	@Test
+	public void emptyTest() {
+		FrozenPunktParams frozen = new PunktParams().freeze();
+
+		assertFalse("Abbreviation found!", frozen.isAbbreviation("mr"));
+		assertFalse("Sentence starter found!", frozen.isSentenceStarter("the"));
+		assertFalse("Collocation found!", frozen.isCollocation("s.", "bach"));
+		assertEquals("Orthographic context found!", 0, frozen.getOrthoContext("the"));
+		assertTrue("Abbreviations not empty!", frozen.getAbbreviations().isEmpty());
+	}
+
+}
@@ -0,0 +1,170 @@
+package nlp_test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MappedTextTest {
+
+	/*
+	 * Write some text to a file, map it and check the mapping reads the same
+	 * characters as decoding all of the file into a String does.
+	 */
+	private void assertSameAsString(byte[] bytes, Charset charset) throws IOException
+	{
+		String expected = new String(bytes, charset);
+
+		File file = File.createTempFile("mapped", ".txt");
+		try
+		{
+			Files.write(file.toPath(), bytes);
+
+			MappedText text = new MappedText(file.getPath(), charset);
+			try
+			{
+				// Forwards the way a tokenizer reads
+				for(int i=0; i<expected.length(); i++)
+					assertEquals("Character " + i + " differs!", expected.charAt(i), text.charAt((long)i));
+				assertEquals("Length differs!", expected.length(), text.longLength());
+
+				// Then all over the place
+				Random rand = new Random(42);
+				for(int n=0; n<1000 && expected.length() > 0; n++)
+				{
+					int start = rand.nextInt(expected.length());
+					int end = Math.min(expected.length(), start + rand.nextInt(100));
+					assertEquals("Substring differs!", expected.substring(start, end), text.substring(start, end));
+				}
+
+				assertEquals("Text differs!", expected, text.toString());
+
+				try
+				{
+					text.charAt((long)expected.length());
+					fail("Read past the end!");
+				}
+				catch(IndexOutOfBoundsException e)
+				{
+				}
+			}
+			finally
+			{
+				text.close();
+			}
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void utf8BlocksTest() throws IOException {
+		// Pure ASCII blocks, then blocks with multi-byte characters and
+		// surrogate pairs that land on every offset of the block edges.
+		StringBuilder sb = new StringBuilder();
+		while(sb.length() < 2 * MappedText.BLOCK_SIZE)
+			sb.append("Plain ASCII text. ");
+		for(int i=0; sb.length() < 6 * MappedText.BLOCK_SIZE; i++)
+			sb.append("caf\u00e9 \u20ac" + i + " \ud83d\ude00 ");
+		while(sb.length() < 8 * MappedText.BLOCK_SIZE)
+			sb.append("More ASCII. ");
+
+		assertSameAsString(sb.toString().getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void latin1Test() throws IOException {
+		byte[] bytes = new byte[3 * MappedText.BLOCK_SIZE + 17];
+		new Random(7).nextBytes(bytes);
+
+		assertSameAsString(bytes, StandardCharsets.ISO_8859_1);
+	}
+
+	@Test
+	public void emptyTest() throws IOException {
+		assertSameAsString(new byte[0], StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void tokensTest() throws IOException {
+		String corpus = new String(Files.readAllBytes(new File("data/nlp_data.txt").toPath()), StandardCharsets.UTF_8);
+		PunktAlgoBase tokenizer = new PunktFirstPassSentenceTokenizer();
+
+		MappedText text = new MappedText("data/nlp_data.txt");
+		try
+		{
+			TokenStream expected = tokenizer.createTokenStream(corpus);
+			TokenStream actual = tokenizer.createTokenStream(text);
+
+			Token e;
+			while((e = expected.getToken()) != null)
+			{
+				Token a = actual.getToken();
+				assertNotNull("Too few tokens!", a);
+				assertEquals("Token differs!", e.getValue(), a.getValue());
+				assertEquals("Position differs!", e.getPosition(), a.getPosition());
+				assertEquals("Paragraph start differs!", e.getIsParaStart(), a.getIsParaStart());
+			}
+
+			assertNull("Too many tokens!", actual.getToken());
+		}
+		finally
+		{
+			text.close();
+		}
+	}
+
+	@Test
+	public void sentencesTest() throws IOException {
+		// Sentences over block edges, with text between the tokens that has
+		// to be decoded
+		String corpus = new String(Files.readAllBytes(new File("data/nlp_data.txt").toPath()), StandardCharsets.UTF_8);
+		StringBuilder sb = new StringBuilder();
+		while(sb.length() < 3 * MappedText.BLOCK_SIZE)
+			sb.append(corpus).append(" \u00a0Caf\u00e9 in Z\u00fcrich.\n\n");
+		String expected = sb.toString();
+		PunktAlgoBase tokenizer = new PunktFirstPassSentenceTokenizer();
+
+		File file = File.createTempFile("mapped", ".txt");
+		try
+		{
+			Files.write(file.toPath(), expected.getBytes(StandardCharsets.UTF_8));
+
+			MappedText text = new MappedText(file.getPath());
+			try
+			{
+				SentenceList expectedSents = tokenizer.buildSentenceList(expected,
+						tokenizer.annotate(tokenizer.createTokenStream(expected)));
+				SentenceList actualSents = tokenizer.buildSentenceList(text,
+						tokenizer.annotate(tokenizer.createTokenStream(text)));
+
+				assertEquals("Sentence count differs!", expectedSents.size(), actualSents.size());
+				for(int i=0; i<expectedSents.size(); i++)
+				{
+					Sentence e = expectedSents.get(i);
+					Sentence a = actualSents.get(i);
+					assertEquals("Start differs!", e.getStart(), a.getStart());
+					assertEquals("End differs!", e.getEnd(), a.getEnd());
+					assertEquals("Sentence differs!", e.toString(), a.toString());
+				}
+			}
+			finally
+			{
+				text.close();
+			}
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+}
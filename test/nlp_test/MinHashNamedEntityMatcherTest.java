@@ -0,0 +1,84 @@
+package nlp_test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MinHashNamedEntityMatcherTest {
+
+	private List<TokenNE> annotate(NamedEntityMatcher matcher, String text)
+	{
+		List<Token> tokens = new ArrayList<Token>();
+		TokenStream stream = new PunktTokenStream(text);
+		Token t;
+		while((t = stream.getToken()) != null)
+			tokens.add(t);
+
+		return matcher.annotate(tokens, text);
+	}
+
+	/*
+	 * Get the values of the tokens marked with an entity.
+	 */
+	private List<String> tokensOf(List<TokenNE> tokens, String entity)
+	{
+		List<String> values = new ArrayList<String>();
+		for(TokenNE t: tokens)
+			if(t.entities.contains(entity))
+				values.add(t.getValue());
+
+		return values;
+	}
+
+	@Test
+	public void variantsTest() {
+		List<String> entities = Arrays.asList("Franz Ferdinand", "Austria-Hungary", "Gavrilo Princip", "Serbia");
+		String text = "Archduke Franz\n  Ferdinand visited. Austria Hungary sent Gavrillo Princip to Serbian courts.";
+		List<TokenNE> tokens = annotate(new MinHashNamedEntityMatcher(entities), text);
+
+		// Whitespace, punctuation and spelling variants
+		assertEquals("Whitespace variant missed!",
+				Arrays.asList("Franz", "Ferdinand"), tokensOf(tokens, "Franz Ferdinand"));
+		assertEquals("Punctuation variant missed!",
+				Arrays.asList("Austria", "Hungary"), tokensOf(tokens, "Austria-Hungary"));
+		assertEquals("Spelling variant missed!",
+				Arrays.asList("Gavrillo", "Princip"), tokensOf(tokens, "Gavrilo Princip"));
+
+		// Not similar enough at the default threshold
+		assertEquals("Matched a different word!", new ArrayList<String>(), tokensOf(tokens, "Serbia"));
+	}
+
+	@Test
+	public void thresholdTest() {
+		List<String> entities = Arrays.asList("Serbia");
+		String text = "Serbian courts.";
+
+		List<TokenNE> strict = annotate(new MinHashNamedEntityMatcher(entities, 0.9, 16, 4), text);
+		List<TokenNE> loose = annotate(new MinHashNamedEntityMatcher(entities, 0.5, 32, 2), text);
+
+		assertEquals("Strict threshold matched!", new ArrayList<String>(), tokensOf(strict, "Serbia"));
+		assertEquals("Loose threshold missed!", Arrays.asList("Serbian"), tokensOf(loose, "Serbia"));
+	}
+
+	@Test
+	public void findsExactMatchesTest() throws IOException {
+		String text = new String(Files.readAllBytes(Paths.get("data/nlp_data.txt")), StandardCharsets.UTF_8);
+
+		List<TokenNE> exact = annotate(new TokenTrieNamedEntityMatcher("data/NER.txt"), text);
+		List<TokenNE> fuzzy = annotate(new MinHashNamedEntityMatcher("data/NER.txt"), text);
+
+		// Every whole token match is also a fuzzy match
+		for(int i=0; i<exact.size(); i++)
+			for(String entity: exact.get(i).entities)
+				assertTrue("Missed " + entity + " at token " + i, fuzzy.get(i).entities.contains(entity));
+	}
+
+}
@@ -0,0 +1,166 @@
+package nlp_test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class NamedEntityMatcherConcurrencyTest {
+
+	/*
+	 * The number of threads that share each matcher and how many times each
+	 * one annotates every document.
+	 */
+	private static final int NUM_THREADS = 8;
+	private static final int NUM_ROUNDS = 5;
+
+	/*
+	 * The tokens of a document.
+	 */
+	private List<Token> tokenize(String text)
+	{
+		List<Token> tokens = new ArrayList<Token>();
+		TokenStream stream = new PunktTokenStream(text);
+		Token t;
+		while((t = stream.getToken()) != null)
+			tokens.add(t);
+
+		return tokens;
+	}
+
+	/*
+	 * Describe the annotations of a document so they can be compared.
+	 */
+	private List<String> describe(List<TokenNE> tokens)
+	{
+		List<String> description = new ArrayList<String>(tokens.size());
+		for(TokenNE t: tokens)
+			description.add(t.toString() + " " + t.entities);
+
+		return description;
+	}
+
+	/*
+	 * Annotate the documents with one matcher from many threads at once and
+	 * check every thread gets the same annotations as a single thread does.
+	 */
+	private void assertThreadSafe(final NamedEntityMatcher matcher, final List<String> documents)
+		throws InterruptedException
+	{
+		final List<List<Token>> tokens = new ArrayList<List<Token>>();
+		final List<List<String>> expected = new ArrayList<List<String>>();
+		for(String document: documents)
+		{
+			tokens.add(tokenize(document));
+			expected.add(describe(matcher.annotate(tokens.get(tokens.size()-1), document)));
+		}
+
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicReference<String> failure = new AtomicReference<String>();
+		Thread[] threads = new Thread[NUM_THREADS];
+		for(int t=0; t<NUM_THREADS; t++)
+		{
+			// Each thread starts at a different document so they are all
+			// working on different text at the same time.
+			final int offset = t;
+			threads[t] = new Thread(new Runnable() {
+				public void run()
+				{
+					try
+					{
+						start.await();
+						for(int r=0; r<NUM_ROUNDS * documents.size(); r++)
+						{
+							int d = (offset + r) % documents.size();
+							List<String> actual = describe(matcher.annotate(tokens.get(d), documents.get(d)));
+							if(!actual.equals(expected.get(d)))
+								failure.compareAndSet(null, matcher.getClass().getSimpleName() +
+										" annotated document " + d + " differently on another thread");
+						}
+					}
+					catch(Throwable e)
+					{
+						failure.compareAndSet(null, matcher.getClass().getSimpleName() + " threw " + e);
+					}
+				}
+			});
+			threads[t].start();
+		}
+
+		start.countDown();
+		for(Thread thread: threads)
+			thread.join();
+
+		assertNull(failure.get(), failure.get());
+	}
+
+	/*
+	 * Use the whole test text and each of its paragraphs as documents.
+	 */
+	private List<String> documents() throws IOException
+	{
+		String text = new String(Files.readAllBytes(Paths.get("data/nlp_data.txt")), StandardCharsets.UTF_8);
+
+		List<String> documents = new ArrayList<String>();
+		documents.add(text);
+		for(String paragraph: text.split("\n\\s*\n"))
+			if(!paragraph.trim().isEmpty())
+				documents.add(paragraph);
+
+		return documents;
+	}
+
+	@Test
+	public void sharedMatchersTest() throws IOException, InterruptedException {
+		List<String> documents = documents();
+
+		assertThreadSafe(new SimpleNamedEntityMatcher("data/NER.txt"), documents);
+		assertThreadSafe(new AhoCorasickNamedEntityMatcher("data/NER.txt"), documents);
+		assertThreadSafe(new TokenTrieNamedEntityMatcher("data/NER.txt"), documents);
+		assertThreadSafe(new MinHashNamedEntityMatcher("data/NER.txt"), documents);
+
+		// A matcher mapped from a compiled gazetteer shares the mapped file
+		File compiled = File.createTempFile("NER", ".gaz");
+		try
+		{
+			new AhoCorasickNamedEntityMatcher("data/NER.txt").write(compiled.getPath());
+			assertThreadSafe(AhoCorasickNamedEntityMatcher.open(compiled.getPath()), documents);
+		}
+		finally
+		{
+			compiled.delete();
+		}
+	}
+
+	@Test
+	public void entitiesAreImmutableTest() {
+		List<String> entities = new ArrayList<String>(Arrays.asList("Serbia", "Sarajevo"));
+		NamedEntityMatcher matcher = new AhoCorasickNamedEntityMatcher(entities);
+
+		// Changing the list we built the matcher from doesn't change the matcher
+		entities.set(0, "Austria");
+		entities.add("Hungary");
+		assertEquals("Matcher entities changed!", Arrays.asList("Serbia", "Sarajevo"), matcher.getEntities());
+
+		// And the matcher's own list can't be changed
+		try
+		{
+			matcher.getEntities().add("Hungary");
+			fail("Matcher entities can be changed!");
+		}
+		catch(UnsupportedOperationException e)
+		{
+		}
+	}
+
+}
@@ -0,0 +1,223 @@
+package nlp_test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Test;
+
+public class OrderedZipAppenderTest {
+
+	/*
+	 * The content of the entry with a sequence number.
+	 */
+	private static String content(int seq)
+	{
+		StringBuilder sb = new StringBuilder();
+		for(int i=0; i<seq % 50; i++)
+			sb.append("Entry ").append(seq).append(" line ").append(i).append(" caf\u00e9\n");
+		return sb.toString();
+	}
+
+	/*
+	 * Read all of an entry of a zip file as UTF-8.
+	 */
+	private static String readEntry(ZipFile zip, ZipEntry entry) throws IOException
+	{
+		InputStream in = zip.getInputStream(entry);
+		try
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int n;
+			while((n = in.read(buffer)) > 0)
+				bytes.write(buffer, 0, n);
+			return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	@Test
+	public void outOfOrderTest() throws IOException, InterruptedException {
+		final int count = 200;
+		File file = File.createTempFile("appender", ".zip");
+		try
+		{
+			final OrderedZipAppender appender = new OrderedZipAppender(file.getPath());
+			final AtomicInteger written = new AtomicInteger();
+
+			// Threads append the entries in a shuffled order, every seventh
+			// one is skipped and every third one is stored.
+			final List<Integer> order = new ArrayList<Integer>();
+			for(int i=0; i<count; i++)
+				order.add(i);
+			Collections.shuffle(order, new Random(3));
+			final AtomicInteger next = new AtomicInteger();
+
+			Thread[] threads = new Thread[4];
+			for(int t=0; t<threads.length; t++)
+			{
+				threads[t] = new Thread(new Runnable() {
+					public void run()
+					{
+						int i;
+						while((i = next.getAndIncrement()) < count)
+						{
+							int seq = order.get(i);
+							try
+							{
+								OrderedZipAppender.Entry entry = null;
+								if(seq % 7 != 0)
+								{
+									entry = new OrderedZipAppender.Entry("entries/e" + seq + ".txt", seq % 3 != 0);
+									entry.write(content(seq).getBytes(StandardCharsets.UTF_8));
+								}
+								appender.append(seq, entry, new Runnable() {
+									public void run()
+									{
+										written.incrementAndGet();
+									}
+								});
+							}
+							catch(IOException e)
+							{
+								throw new RuntimeException(e);
+							}
+						}
+					}
+				});
+				threads[t].start();
+			}
+			for(Thread thread: threads)
+				thread.join();
+
+			assertEquals("Not every entry was written!", count, written.get());
+			appender.close();
+
+			ZipFile zip = new ZipFile(file);
+			try
+			{
+				Enumeration<? extends ZipEntry> entries = zip.entries();
+				for(int seq=0; seq<count; seq++)
+				{
+					if(seq % 7 == 0)
+						continue;
+
+					ZipEntry entry = entries.nextElement();
+					assertEquals("Entry out of order!", "entries/e" + seq + ".txt", entry.getName());
+					assertEquals("Wrong method!", seq % 3 != 0 ? ZipEntry.DEFLATED : ZipEntry.STORED, entry.getMethod());
+					assertEquals("Entry differs!", content(seq), readEntry(zip, entry));
+				}
+				assertFalse("Extra entries!", entries.hasMoreElements());
+			}
+			finally
+			{
+				zip.close();
+			}
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void zip64Test() throws IOException {
+		// More entries than the plain end record can count
+		int count = 70000;
+		File file = File.createTempFile("appender", ".zip");
+		try
+		{
+			OrderedZipAppender appender = new OrderedZipAppender(file.getPath());
+			for(int seq=0; seq<count; seq++)
+			{
+				OrderedZipAppender.Entry entry = new OrderedZipAppender.Entry("e" + seq, false);
+				entry.write(Integer.toString(seq).getBytes(StandardCharsets.UTF_8));
+				appender.append(seq, entry, null);
+			}
+			appender.close();
+
+			ZipFile zip = new ZipFile(file);
+			try
+			{
+				assertEquals("Wrong number of entries!", count, zip.size());
+				assertEquals("Last entry differs!", Integer.toString(count - 1),
+						readEntry(zip, zip.getEntry("e" + (count - 1))));
+			}
+			finally
+			{
+				zip.close();
+			}
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void missingSequenceTest() throws IOException {
+		// Entries after a sequence number that never came are written on close
+		File file = File.createTempFile("appender", ".zip");
+		try
+		{
+			OrderedZipAppender appender = new OrderedZipAppender(file.getPath());
+			OrderedZipAppender.Entry entry = new OrderedZipAppender.Entry("late");
+			entry.write("late".getBytes(StandardCharsets.UTF_8));
+			appender.append(1, entry, null);
+			appender.close();
+
+			ZipFile zip = new ZipFile(file);
+			try
+			{
+				assertEquals("Wrong number of entries!", 1, zip.size());
+				assertEquals("Entry differs!", "late", readEntry(zip, zip.getEntry("late")));
+			}
+			finally
+			{
+				zip.close();
+			}
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void abortTest() throws IOException {
+		OrderedZipAppender.Entry entry = new OrderedZipAppender.Entry("aborted");
+		entry.write("partly written".getBytes(StandardCharsets.UTF_8));
+		entry.abort();
+
+		assertEquals("Aborted entry kept its data!", 0, entry.getCompressedSize());
+		try
+		{
+			entry.write('x');
+			fail("Wrote to an aborted entry!");
+		}
+		catch(IOException e)
+		{
+		}
+
+		// Giving up twice or closing afterwards does nothing
+		entry.abort();
+		entry.close();
+	}
+
+}
@@ -0,0 +1,150 @@
+package nlp_test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class ParallelDocumentProcessorTest {
+
+	/*
+	 * Process a text on one thread the way SentenceTokenizerThread does.
+	 */
+	private SentenceList processSequential(PunktAlgoBase tokenizer, NamedEntityMatcher nerer, String text)
+	{
+		ArrayList<Token> tokens = tokenizer.annotate(tokenizer.createTokenStream(text));
+		if(nerer != null)
+		{
+			List<TokenNE> tokens_mod = nerer.annotate(tokens, text);
+			tokens.clear();
+			tokens.addAll(tokens_mod);
+		}
+
+		return tokenizer.buildSentenceList(text, tokens);
+	}
+
+	/*
+	 * Check two sentence lists have the same sentences made of the same
+	 * tokens with the same annotations.
+	 */
+	private void assertSameSentences(SentenceList expected, SentenceList actual)
+	{
+		assertEquals("Sentence count differs!", expected.size(), actual.size());
+		for(int s=0; s<expected.size(); s++)
+		{
+			Sentence e = expected.get(s);
+			Sentence a = actual.get(s);
+			assertEquals("Sentence " + s + " differs!", e.toString(), a.toString());
+			assertEquals("Token count differs in sentence " + s, e.getTokens().size(), a.getTokens().size());
+
+			for(int t=0; t<e.getTokens().size(); t++)
+				assertEquals("Token " + t + " of sentence " + s + " differs!",
+						describe(e.getTokens().get(t)), describe(a.getTokens().get(t)));
+		}
+	}
+
+	/*
+	 * Describe a token and all of its annotations.
+	 */
+	private String describe(Token t)
+	{
+		String d = t.toString() + " @" + t.getPosition() + " " + t.getIsParaStart() + t.getIsLineStart() +
+				t.getIsSentBreak() + t.getIsAbbreviation() + t.getIsEllipsis();
+		if(t instanceof TokenNE)
+			d += " " + ((TokenNE)t).entities;
+
+		return d;
+	}
+
+	/*
+	 * Check the parallel processor gives the same sentences as processing
+	 * on one thread for a range of chunk sizes.
+	 */
+	private void assertSameAsSequential(NamedEntityMatcher nerer, String text)
+	{
+		assertSameAsSequential(new PunktFirstPassSentenceTokenizer(), nerer, text);
+	}
+
+	/*
+	 * Check the parallel processor gives the same sentences as processing
+	 * on one thread with a tokenizer.
+	 */
+	private void assertSameAsSequential(PunktAlgoBase tokenizer, NamedEntityMatcher nerer, String text)
+	{
+		SentenceList expected = processSequential(tokenizer, nerer, text);
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try
+		{
+			for(int chunkSize: new int[] {1, 10, 1000, 100000})
+			{
+				ParallelDocumentProcessor processor = new ParallelDocumentProcessor(tokenizer, nerer, pool);
+				processor.setMinChunkSize(chunkSize);
+				assertSameSentences(expected, processor.process(text));
+			}
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void paragraphEdgesTest() throws IOException {
+		// A sentence that runs over a paragraph break, a boundary realign at
+		// the start of a paragraph, leading blank lines and a trailing
+		// sentence with no break.
+		String text = "\n  \nThe first paragraph has no end\n\nbut the second one does.\n\n" +
+				"He said \"stop.\n \n\" Then he left. Mr. Smith stayed\n\n\n(and waited.)\n\nThe end";
+
+		assertSameAsSequential(null, text);
+		assertSameAsSequential(new AhoCorasickNamedEntityMatcher("data/NER.txt"), text);
+	}
+
+	@Test
+	public void secondPassEdgesTest() throws IOException {
+		// "bach" is seen in lower case, so the initial before "Bach." is only
+		// an abbreviation once the break moves past the quote that starts the
+		// next paragraph.
+		PunktParams params = new PunktParams();
+		params.addOrthoContext("bach", OrthoGraphFlag.MIDDLE_LC);
+		String text = "He said \"I met J. Bach.\n\n\" Then he left. The end.";
+
+		assertSameAsSequential(new PunktSentenceTokenizer(params), null, text);
+		assertSameAsSequential(new PunktSentenceTokenizer(params.freeze()), null, text);
+	}
+
+	@Test
+	public void corpusTest() throws IOException {
+		String text = new String(Files.readAllBytes(Paths.get("data/nlp_data.txt")), StandardCharsets.UTF_8);
+
+		// Make a larger document out of lots of copies
+		StringBuilder sb = new StringBuilder();
+		for(int i=0; i<50; i++)
+			sb.append(text).append("\n\n");
+
+		assertSameAsSequential(new AhoCorasickNamedEntityMatcher("data/NER.txt"), sb.toString());
+	}
+
+	@Test
+	public void chunkStartsTest() {
+		String text = "one\n\ntwo\n \nthree\nfour\n\n\nfive";
+		List<Integer> starts = ParallelDocumentProcessor.findChunkStarts(text, 1);
+
+		// Every paragraph start, but never a line that follows a non blank line
+		List<Integer> expected = new ArrayList<Integer>();
+		expected.add(0);
+		expected.add(text.indexOf("two"));
+		expected.add(text.indexOf("three"));
+		expected.add(text.indexOf("five"));
+		assertEquals("Wrong chunk starts!", expected, starts);
+	}
+
+}
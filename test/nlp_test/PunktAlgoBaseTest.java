@@ -2,8 +2,10 @@ package nlp_test;
 
 import static org.junit.Assert.*;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -35,4 +37,105 @@ public class PunktAlgoBaseTest {
 		assertEquals("Token[17] is not abbreviation", "Mr.<A>", tokens.get(17).toString());
 	}
 
+	
+	/*
+	 * A stream that hands out tokens that were made up front.
+	 */
+	private static class ListTokenStream implements TokenStream {
+		
+		private String text;
+		private List<Token> tokens;
+		private int index = 0;
+		
+		ListTokenStream(String text, List<Token> tokens)
+		{
+			this.text = text;
+			this.tokens = tokens;
+		}
+		
+		public String getText() { return text; }
+		
+		public Token getToken() { return index < tokens.size() ? tokens.get(index++) : null; }
+		
+		public Token getPreviousToken() { return index > 1 ? tokens.get(index-2) : null; }
+	}
+	
+	/*
+	 * Count the bytes the first pass allocates annotating copies of some tokens.
+	 */
+	private long firstPassAllocation(com.sun.management.ThreadMXBean bean, PunktAlgoBase base, 
+			String text, List<Token> source, int copies)
+	{
+		List<Token> tokens = new ArrayList<Token>(source.size() * copies);
+		for(int i=0; i<copies; i++)
+			for(Token t: source)
+				tokens.add(new Token(t));
+		
+		ArrayList<Token> out = new ArrayList<Token>(tokens.size());
+		TokenStream stream = new ListTokenStream(text, tokens);
+		
+		long threadId = Thread.currentThread().getId();
+		long before = bean.getThreadAllocatedBytes(threadId);
+		base.first_pass_annotate(stream, out);
+		return bean.getThreadAllocatedBytes(threadId) - before;
+	}
+	
+	@Test
+	public void firstPassAllocationTest() {
+		if(!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean))
+			return;
+		
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		if(!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled())
+			return;
+		
+		PunktParams params = new PunktParams();
+		String[] abbrvs = {"mr", "mrs", "u.s"};
+		params.getAbbreviations().addAll(Arrays.asList(abbrvs));
+		PunktAlgoBase base = new PunktAlgoBase(params.freeze());
+		
+		String testString = "This is a sentence. Also one! Another one? End then ... \n\n" +
+				"New paragraph.\nNew line. Mr. Smith (\"quoted.\") ex-U.S. co. -1,234.5 D. Mrs.";
+		List<Token> tokens = base.first_pass_annotate(new PunktTokenStream(testString));
+		
+		// Warm up, then check that annotating many more tokens costs no more 
+		// than a fixed amount.
+		for(int i=0; i<20; i++)
+			firstPassAllocation(bean, base, testString, tokens, 10);
+		
+		long small = firstPassAllocation(bean, base, testString, tokens, 10);
+		long large = firstPassAllocation(bean, base, testString, tokens, 1000);
+		
+		long perToken = (large - small) / (tokens.size() * 990);
+		assertEquals("First pass allocates per token! " + small + " " + large, 0, perToken);
+	}
+
+	@Test
+	public void buildSentenceListTest() {
+		PunktAlgoBase base = new PunktAlgoBase();
+		String testString = "  First  one.\tSecond\n\n(one.) Not a sentence";
+		
+		List<Token> tokens = base.first_pass_annotate(new PunktTokenStream(testString));
+		SentenceList sents = base.buildSentenceList(testString, tokens);
+		
+		// The original whitespace is kept and the trailing tokens without a 
+		// sentence break are dropped.
+		assertEquals("Wrong sentence count!", 2, sents.size());
+		assertEquals("Wrong first sentence!", "First  one.<S>", sents.get(0).toString());
+		assertEquals("Wrong second sentence!", "Second\n\n(one.)<S>", sents.get(1).toString());
+		assertEquals("Wrong list!", "First  one.<S>\nSecond\n\n(one.)<S>\n", sents.toString());
+		
+		// Sentences are ranges of the text and the tokens
+		Sentence second = sents.get(1);
+		assertEquals("Wrong start!", testString.indexOf("Second"), second.getStart());
+		assertEquals("Wrong end!", testString.indexOf(" Not"), second.getEnd());
+		assertEquals("Wrong first token!", 2, second.getFirstToken());
+		assertEquals("Wrong end token!", 6, second.getEndToken());
+		assertEquals("Wrong tokens!", tokens.subList(2, 6), second.getTokens());
+		
+		// No sentence breaks, no sentences
+		tokens = base.first_pass_annotate(new PunktTokenStream("no breaks here"));
+		assertEquals("Sentences without breaks!", 0, base.buildSentenceList("no breaks here", tokens).size());
+	}
+
 }
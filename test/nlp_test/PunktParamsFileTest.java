@@ -0,0 +1,150 @@
+package nlp_test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class PunktParamsFileTest {
+
+	/*
+	 * Check two sets of parameters annotate a text the same way.
+	 */
+	private static void assertSameAnnotations(PunktParams expectedParams, PunktParams params, String text)
+	{
+		PunktAlgoBase expectedAlgo = new PunktAlgoBase(expectedParams);
+		ArrayList<Token> expected = expectedAlgo.annotate(expectedAlgo.createTokenStream(text));
+		PunktAlgoBase algo = new PunktAlgoBase(params);
+		ArrayList<Token> tokens = algo.annotate(algo.createTokenStream(text));
+
+		assertEquals("Tokens differ!", expected.size(), tokens.size());
+		for(int i=0; i<tokens.size(); i++)
+		{
+			assertEquals("Sentence break differs: " + tokens.get(i), expected.get(i).getIsSentBreak(),
+					tokens.get(i).getIsSentBreak());
+			assertEquals("Abbreviation differs: " + tokens.get(i), expected.get(i).getIsAbbreviation(),
+					tokens.get(i).getIsAbbreviation());
+			assertEquals("Ellipsis differs: " + tokens.get(i), expected.get(i).getIsEllipsis(),
+					tokens.get(i).getIsEllipsis());
+		}
+	}
+
+	@Test
+	public void roundTripTest() throws IOException {
+		PunktParams params = BrownCorpusFixture.train();
+		String text = new String(Files.readAllBytes(Paths.get("data/nlp_data.txt")), StandardCharsets.UTF_8);
+
+		File file = File.createTempFile("punkt", ".params");
+		File again = File.createTempFile("punkt", ".params");
+		try
+		{
+			params.write(file.getPath());
+			FrozenPunktParams loaded = PunktParams.load(file.getPath());
+
+			assertSameAnnotations(params, loaded, text);
+			assertSameAnnotations(params, loaded, "Mr. Smith went to Washington, D.C. on Jan. 5 with Dr. Jones. " +
+					"They met Gen. Lee at 3 p.m. and left.\n\nThe U.S. Army said so... Then it rained.");
+
+			assertEquals("Abbreviations differ!", params.getAbbreviations(), loaded.getAbbreviations());
+			assertEquals("Sentence starters differ!", params.getSentenceStarters(), loaded.getSentenceStarters());
+			assertEquals("Collocations differ!", params.getCollocations(), loaded.getCollocations());
+			for(Map.Entry<String, Long> e: params.ortho_context.entrySet())
+				assertEquals("Orthographic context differs: " + e.getKey(), (long)e.getValue(),
+						loaded.getOrthoContext(e.getKey()));
+
+			CharWindow lookupKey = new CharWindow(true);
+			for(String abbrev: params.getAbbreviations())
+			{
+				String upper = abbrev.toUpperCase();
+				assertEquals("Abbreviation case differs: " + upper, params.isAbbreviation(upper),
+						loaded.isAbbreviation(upper));
+				assertTrue("Abbreviation not found in window: " + abbrev,
+						loaded.isAbbreviation(lookupKey.set(upper + ".", 0, upper.length())));
+			}
+			for(String starter: params.getSentenceStarters())
+				assertTrue("Sentence starter case differs: " + starter,
+						loaded.isSentenceStarter(new StringBuilder(starter.toUpperCase())));
+			for(Tuple colloc: params.getCollocations())
+				assertTrue("Collocation not found: " + colloc.x + " " + colloc.y,
+						loaded.isCollocation(colloc.x, colloc.y));
+			assertFalse("Word found as an abbreviation!", loaded.isAbbreviation("jury"));
+			assertEquals("Unseen type has a context!", 0, loaded.getOrthoContext("zzyzx"));
+
+			// Loaded parameters write the same file again.
+			loaded.write(again.getPath());
+			assertTrue("Written again differently!", Arrays.equals(Files.readAllBytes(file.toPath()),
+					Files.readAllBytes(again.toPath())));
+		}
+		finally
+		{
+			file.delete();
+			again.delete();
+		}
+	}
+
+	@Test
+	public void emptyTest() throws IOException {
+		File file = File.createTempFile("punkt", ".params");
+		try
+		{
+			new PunktParams().write(file.getPath());
+			FrozenPunktParams loaded = PunktParams.load(file.getPath());
+
+			assertFalse("Abbreviation found!", loaded.isAbbreviation("mr"));
+			assertFalse("Collocation found!", loaded.isCollocation("s.", "bach"));
+			assertEquals("Orthographic context found!", 0, loaded.getOrthoContext("the"));
+			assertTrue("Sentence starters not empty!", loaded.getSentenceStarters().isEmpty());
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void notParamsTest() throws IOException {
+		try
+		{
+			PunktParams.load("data/nlp_data.txt");
+			fail("Loaded a text file!");
+		}
+		catch(IOException e)
+		{
+		}
+
+		File file = File.createTempFile("punkt", ".params");
+		try
+		{
+			BrownCorpusFixture.train().write(file.getPath());
+			RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+			try
+			{
+				truncated.setLength(truncated.length() / 2);
+			}
+			finally
+			{
+				truncated.close();
+			}
+
+			PunktParams.load(file.getPath());
+			fail("Loaded a truncated file!");
+		}
+		catch(IOException e)
+		{
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+}
@@ -0,0 +1,252 @@
+package nlp_test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipFile;
+
+import org.junit.Test;
+
+public class PunktSentenceTokenizerTest {
+
+	/*
+	 * Parameters made up to try each heuristic of the second pass.
+	 */
+	private static PunktParams makeParams()
+	{
+		PunktParams params = new PunktParams();
+		params.getAbbreviations().addAll(Arrays.asList("p.m", "u.s", "etc"));
+		params.getSentenceStarters().add("however");
+		params.getCollocations().add(new Tuple("s", "bach"));
+
+		// Then starts sentences, Smith is always upper case and Bach is both
+		// upper and lower case in the middle of sentences.
+		params.addOrthoContext("then", OrthoGraphFlag.BEGINNING_UC);
+		params.addOrthoContext("then", OrthoGraphFlag.MIDDLE_LC);
+		params.addOrthoContext("smith", OrthoGraphFlag.BEGINNING_UC);
+		params.addOrthoContext("smith", OrthoGraphFlag.MIDDLE_UC);
+		params.addOrthoContext("bach", OrthoGraphFlag.MIDDLE_UC);
+		params.addOrthoContext("bach", OrthoGraphFlag.MIDDLE_LC);
+
+		return params;
+	}
+
+	@Test
+	public void orthoContextTest() {
+		PunktParams params = makeParams();
+		long then = OrthoGraphFlag.BEGINNING_UC | OrthoGraphFlag.MIDDLE_LC;
+
+		// Any kind of characters finds the context, frozen or not
+		for(PunktParams p: new PunktParams[] {params, params.freeze()})
+		{
+			assertEquals("String context wrong!", then, p.getOrthoContext("then"));
+			assertEquals("Builder context wrong!", then, p.getOrthoContext(new StringBuilder("then")));
+			assertEquals("Window context wrong!", then,
+					p.getOrthoContext(new CharWindow(false).set("and then.", 4, 4)));
+			assertEquals("Unseen context!", 0, p.getOrthoContext(new StringBuilder("when")));
+		}
+	}
+
+	/*
+	 * The tokens of a list with their annotations.
+	 */
+	private static String describe(List<Token> tokens)
+	{
+		StringBuilder sb = new StringBuilder();
+		for(Token token: tokens)
+			sb.append(token).append(' ');
+
+		return sb.toString().trim();
+	}
+
+	@Test
+	public void secondPassTest() {
+		PunktSentenceTokenizer tokenizer = new PunktSentenceTokenizer(makeParams());
+		String text = "We met at 3 p.m. Then we left. J. Smith and S. Bach met K. Bach. In the U.S. However " +
+				"was a name. It was 1990. the year we left etc. , and so on. Wait ... Then go.";
+
+		String annotated = describe(tokenizer.annotate(tokenizer.createTokenStream(text)));
+
+		// An abbreviation before a sentence starter by orthography
+		assertTrue("Abbreviation not a break: " + annotated, annotated.contains("p.m.<A><S> Then"));
+
+		// An initial before an always upper case word, a collocation and an
+		// initial we can't tell about.
+		assertTrue("Initial a break: " + annotated, annotated.contains("J.<A> Smith"));
+		assertTrue("Collocation a break: " + annotated, annotated.contains("S.<A> Bach"));
+		assertTrue("Initial not a break: " + annotated, annotated.contains("K.<S> Bach"));
+
+		// An abbreviation before a frequent sentence starter
+		assertTrue("Abbreviation not a break: " + annotated, annotated.contains("U.S.<A><S> However"));
+
+		// A number before a lower case word
+		assertTrue("Number a break: " + annotated, annotated.contains("1990.<A> the"));
+
+		// Abbreviations before punctuation, and an ellipsis before a sentence
+		// starter.
+		assertTrue("Abbreviation a break: " + annotated, annotated.contains("etc.<A> ,"));
+		assertTrue("Ellipsis not a break: " + annotated, annotated.contains("...<E><S> Then"));
+
+		// Everything else is as the first pass has it
+		assertTrue("Sentence break lost: " + annotated, annotated.contains("left.<S> J."));
+		assertTrue("Sentence break lost: " + annotated, annotated.endsWith("go.<S>"));
+	}
+
+	/*
+	 * Read a file of the Brown corpus without its tags.
+	 */
+	private static String readBrown(String name) throws IOException
+	{
+		ZipFile zip = new ZipFile("data/brown.zip");
+		try
+		{
+			InputStream in = zip.getInputStream(zip.getEntry(name));
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int n;
+			while((n = in.read(buffer)) > 0)
+				bytes.write(buffer, 0, n);
+
+			return PunktTrainer.untag(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+		}
+		finally
+		{
+			zip.close();
+		}
+	}
+
+	@Test
+	public void firstPassTest() throws IOException {
+		PunktTrainer trainer = new PunktTrainer();
+		trainer.setTaggedCorpus(true);
+		PunktParams params = trainer.trainZip("data/brown.zip", "brown/c[a-c]\\d\\d");
+		String text = readBrown("brown/cf02") + readBrown("brown/cg36") + readBrown("brown/ch13");
+
+		PunktAlgoBase base = new PunktAlgoBase(params);
+		List<Token> first = base.annotate(base.createTokenStream(text));
+		PunktSentenceTokenizer tokenizer = new PunktSentenceTokenizer(params);
+		List<Token> second = tokenizer.annotate(tokenizer.createTokenStream(text));
+
+		// Only tokens that end in a period, and realigned breaks after them,
+		// are changed by the second pass.
+		assertEquals("Tokens differ!", first.size(), second.size());
+		int changed = 0;
+		for(int i=0; i<first.size(); i++)
+		{
+			Token f = first.get(i);
+			Token s = second.get(i);
+			if(f.getIsSentBreak() == s.getIsSentBreak() && f.getIsAbbreviation() == s.getIsAbbreviation())
+				continue;
+
+			changed++;
+			boolean periodFinal = f.getValue().endsWith(".");
+			boolean afterPeriodFinal = i > 0 && first.get(i-1).getValue().endsWith(".");
+			assertTrue("Token changed: " + s, periodFinal || afterPeriodFinal && !f.getIsAbbreviation());
+		}
+		assertTrue("Nothing changed!", changed > 0);
+
+		// The buffer has the same annotations
+		TokenBuffer buffer = tokenizer.annotateBuffer(tokenizer.createTokenStream(text));
+		assertEquals("Buffer differs!", describe(second), describe(buffer));
+	}
+
+	@Test
+	public void streamingTest() {
+		PunktSentenceTokenizer tokenizer = new PunktSentenceTokenizer(makeParams());
+		String text = "We met at 3 p.m. Then we left. J. Smith said \"stop etc.\" Then\n\nK. Bach";
+
+		// A list that only has tokens added to it
+		final List<Token> tokens = new ArrayList<Token>();
+		List<Token> addOnly = new AbstractList<Token>() {
+			@Override
+			public boolean add(Token token)
+			{
+				return tokens.add(token);
+			}
+
+			@Override
+			public Token get(int index)
+			{
+				throw new UnsupportedOperationException("Tokens can't be got!");
+			}
+
+			@Override
+			public int size()
+			{
+				throw new UnsupportedOperationException("Tokens can't be counted!");
+			}
+		};
+		tokenizer.annotate(tokenizer.createTokenStream(text), addOnly);
+
+		assertEquals("Tokens differ!", describe(tokenizer.annotate(tokenizer.createTokenStream(text))),
+				describe(tokens));
+
+		// Nothing to annotate at all
+		assertTrue("Tokens of nothing!", tokenizer.annotate(tokenizer.createTokenStream("")).isEmpty());
+		assertEquals("Wrong single token!", "Bach.<S>",
+				describe(tokenizer.annotate(tokenizer.createTokenStream("Bach."))));
+	}
+
+	/*
+	 * Count the bytes both passes allocate annotating copies of some tokens.
+	 */
+	private long allocation(com.sun.management.ThreadMXBean bean, PunktSentenceTokenizer tokenizer,
+			String text, List<Token> source, int copies)
+	{
+		final List<Token> tokens = new ArrayList<Token>(source.size() * copies);
+		for(int i=0; i<copies; i++)
+			for(Token t: source)
+				tokens.add(new Token(t));
+
+		ArrayList<Token> out = new ArrayList<Token>(tokens.size());
+		TokenStream stream = new TokenStream() {
+			private int index = 0;
+
+			public String getText() { return null; }
+
+			public Token getToken() { return index < tokens.size() ? tokens.get(index++) : null; }
+
+			public Token getPreviousToken() { return index > 1 ? tokens.get(index-2) : null; }
+		};
+
+		long threadId = Thread.currentThread().getId();
+		long before = bean.getThreadAllocatedBytes(threadId);
+		tokenizer.annotate(stream, out);
+		return bean.getThreadAllocatedBytes(threadId) - before;
+	}
+
+	@Test
+	public void allocationTest() {
+		if(!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean))
+			return;
+
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		if(!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled())
+			return;
+
+		PunktSentenceTokenizer tokenizer = new PunktSentenceTokenizer(makeParams());
+		String text = "We met at 3 p.m. Then we left. J. Smith and S. Bach met K. Bach. In the U.S. However " +
+				"was a name. It was 1990. the year we left etc. , and so on. Wait ... Then go. -1,234.5 D. Mrs.";
+		List<Token> tokens = tokenizer.annotate(tokenizer.createTokenStream(text));
+
+		// Warm up, then check that annotating many more tokens costs no more
+		// than a fixed amount.
+		for(int i=0; i<20; i++)
+			allocation(bean, tokenizer, text, tokens, 10);
+
+		long small = allocation(bean, tokenizer, text, tokens, 10);
+		long large = allocation(bean, tokenizer, text, tokens, 1000);
+
+		long perToken = (large - small) / (tokens.size() * 990);
+		assertEquals("Second pass allocates per token! " + small + " " + large, 0, perToken);
+	}
+
+}
@@ -2,6 +2,14 @@ package nlp_test;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
 import org.junit.Test;
 
 import nlp_test.Token;
@@ -9,30 +17,127 @@ import nlp_test.PunktTokenStream;
 
 public class PunktTokenStreamTest {
 
+	/*
+	 * Strings with all the awkward cases for the scanners.
+	 */
+	private String [] testStrings = {
+			"He said, \"It's a good film?\" +1235 Test-Hyphen ... . . . Test-Double-Hyphen--",
+			"Commas,,in words, and,\"quotes\" a,--b a,. . .c a,.. .. ... . . x",
+			"(Parens) [brackets] {braces} `ticks` #tags& @at *star* 'single';colon:",
+			"\n\n  Leading blank lines\r\nWindows line\r\n\r\n\tTabbed paragraph.",
+			"", "\n", "  \n \n", "a"};
+
+	/*
+	 * Make all of our token stream implementations so each test runs
+	 * against the regex, the table driven scanner and the reader.
+	 */
+	private TokenStream[] makeStreams(String s)
+	{
+		return new TokenStream[] {new PunktTokenStream(s), new PunktDFATokenStream(s),
+				new PunktReaderTokenStream(new StringReader(s))};
+	}
+
+	/*
+	 * Check two streams produce the same tokens.
+	 */
+	private void assertSameTokens(TokenStream regex, TokenStream scanner)
+	{
+		Token expected;
+		do
+		{
+			expected = regex.getToken();
+			Token actual = scanner.getToken();
+
+			if(expected == null)
+			{
+				assertNull("Scanner produced too many tokens!", actual);
+				break;
+			}
+
+			assertNotNull("Scanner produced too few tokens!", actual);
+			assertEquals("Token value differs! ", expected.getValue(), actual.getValue());
+			assertEquals("Token position differs! ", expected.getPosition(), actual.getPosition());
+			assertEquals("Line start differs! ", expected.getIsLineStart(), actual.getIsLineStart());
+			assertEquals("Paragraph start differs! ", expected.getIsParaStart(), actual.getIsParaStart());
+		} while(true);
+	}
+
 	@Test
 	public void getTokenTest() {
 		String [] testTokens = {"This ", "string ", "is ", "a ", "basic ", "test ", "for ", "getToken. ",
 								"Here ", "is ", "an ", "ellipsis ", "... ", "and ", "initial ", "D."};
-		
+
 		String testString = "";
 		for(String s: testTokens)
 			testString+=s;
-		
-		TokenStream tStream = new PunktTokenStream(testString);
-		
-		Token curr;
-		int i=0;
-		while( (curr=tStream.getToken()) != null )
+
+		for(TokenStream tStream: makeStreams(testString))
+		{
+			Token curr;
+			int i=0;
+			while( (curr=tStream.getToken()) != null )
+			{
+				assertEquals("Unexpected token! ", testTokens[i].trim(), curr.getValue());
+				if(testTokens[i] == "...")
+					assertTrue("Ellipsis detection failed!", curr.getIsEllipsis());
+				if(testTokens[i] == "D.")
+					assertTrue("Initial detection failed!", curr.getIsInitial());
+
+				i++;
+			}
+		}
+	}
+
+	@Test
+	public void tokenPositionTest() {
+		String testString = "First line, here.\n  Second -- line . . . done\n\n\nNew paragraph...";
+
+		for(TokenStream tStream: makeStreams(testString))
+		{
+			Token curr;
+			while( (curr=tStream.getToken()) != null )
+			{
+				int pos = (int)curr.getPosition();
+				assertEquals("Token position is wrong! ", curr.getValue(),
+						testString.substring(pos, pos+curr.getValue().length()));
+			}
+		}
+	}
+
+	@Test
+	public void scannerMatchesRegexTest() {
+		for(String s: testStrings)
+			assertSameTokens(new PunktTokenStream(s), new PunktDFATokenStream(s));
+	}
+
+	@Test
+	public void readerMatchesRegexTest() throws IOException {
+		String corpus = new String(Files.readAllBytes(Paths.get("data/nlp_data.txt")), StandardCharsets.UTF_8);
+
+		// Tiny buffers make tokens and blank lines run over the end of the
+		// buffer all the time.
+		for(int bufferSize: new int[] {1, 2, 3, 7, 64, 4096})
 		{
-			assertEquals("Unexpected token! ", testTokens[i].trim(), curr.getValue());
-			if(testTokens[i] == "...")
-				assertTrue("Ellipsis detection failed!", curr.getIsEllipsis());
-			if(testTokens[i] == "D.")
-				assertTrue("Initial detection failed!", curr.getIsInitial());
-				
-			i++;
+			for(String s: testStrings)
+				assertSameTokens(new PunktTokenStream(s),
+						new PunktReaderTokenStream(new StringReader(s), new PunktLanguageVariables(), bufferSize));
+
+			assertSameTokens(new PunktTokenStream(corpus),
+					new PunktReaderTokenStream(new StringReader(corpus), new PunktLanguageVariables(), bufferSize));
 		}
 	}
 
+	@Test
+	public void readerChannelTest() throws IOException {
+		byte[] bytes = Files.readAllBytes(Paths.get("data/nlp_data.txt"));
+		String corpus = new String(bytes, StandardCharsets.UTF_8);
+
+		PunktReaderTokenStream stream = new PunktReaderTokenStream(
+				Channels.newChannel(new ByteArrayInputStream(bytes)), StandardCharsets.UTF_8, new PunktLanguageVariables());
+		assertNull("Reader stream has the text!", stream.getText());
+		assertSameTokens(new PunktTokenStream(corpus), stream);
+		assertEquals("Not all of the text was read!", corpus.length(), stream.getOffset());
+		stream.close();
+	}
+
 }
- 
\ No newline at end of file
@@ -0,0 +1,108 @@
+package nlp_test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+public class PunktTrainerTest {
+
+	/*
+	 * The files of the Brown corpus in data/brown.zip.
+	 */
+	private static final String BROWN_FILES = "brown/c[a-r]\\d\\d";
+
+	@Test
+	public void untagTest() {
+		assertEquals("Tags not stripped!", "\tThe jury said `` no '' .\n\n1/2 a/b",
+				PunktTrainer.untag("\tThe/at jury/nn said/vbd ``/`` no/at ''/'' ./.\n\n1/2/cd a/b/nn"));
+		assertEquals("Untagged word changed!", "plain words", PunktTrainer.untag("plain words"));
+	}
+
+	@Test
+	public void brownTest() throws IOException {
+		PunktTrainer trainer = new PunktTrainer();
+		trainer.setTaggedCorpus(true);
+		PunktParams params = trainer.trainZip("data/brown.zip", BROWN_FILES);
+
+		for(String abbrev: new String[] {"mr", "mrs", "dr", "jr", "gen", "calif", "e.g", "u.s"})
+			assertTrue("Abbreviation not learned: " + abbrev, params.isAbbreviation(abbrev));
+		assertFalse("Word learned as an abbreviation!", params.isAbbreviation("jury"));
+
+		assertTrue("Sentence starter not learned!", params.isSentenceStarter("however"));
+		assertFalse("Collocations not learned!", params.getCollocations().isEmpty());
+
+		long ortho = params.getOrthoContext("the");
+		assertTrue("Orthographic context not learned!", (ortho & OrthoGraphFlag.BEGINNING_UC) != 0);
+		assertTrue("Orthographic context not learned!", (ortho & OrthoGraphFlag.MIDDLE_LC) != 0);
+
+		// The first pass now knows the abbreviations
+		PunktAlgoBase base = new PunktAlgoBase(params);
+		ArrayList<Token> tokens = base.annotate(base.createTokenStream("Gen. Smith arrived. Then he left."));
+		assertTrue("Learned abbreviation not used!", tokens.get(0).getIsAbbreviation());
+		assertTrue("Sentence break lost!", tokens.get(2).getIsSentBreak());
+	}
+
+	@Test
+	public void threadCountTest() throws IOException {
+		PunktParams[] params = new PunktParams[2];
+		int[] threads = {1, 3};
+		for(int i=0; i<params.length; i++)
+		{
+			PunktTrainer trainer = new PunktTrainer();
+			trainer.setTaggedCorpus(true);
+			trainer.setNumThreads(threads[i]);
+			params[i] = trainer.trainZip("data/brown.zip", "brown/c[a-c]\\d\\d");
+		}
+
+		assertEquals("Abbreviations differ!", params[0].getAbbreviations(), params[1].getAbbreviations());
+		assertEquals("Sentence starters differ!", params[0].getSentenceStarters(), params[1].getSentenceStarters());
+		assertEquals("Collocations differ!", params[0].getCollocations(), params[1].getCollocations());
+		assertEquals("Orthographic contexts differ!", params[0].ortho_context, params[1].ortho_context);
+	}
+
+	@Test
+	public void memoryBudgetTest() throws IOException {
+		PunktTrainer exact = new PunktTrainer();
+		exact.setTaggedCorpus(true);
+		PunktParams params = exact.trainZip("data/brown.zip", "brown/c[a-c]\\d\\d");
+
+		// A big enough budget learns the same parameters
+		PunktTrainer trainer = new PunktTrainer();
+		trainer.setTaggedCorpus(true);
+		trainer.setMemoryBudget(16 << 20);
+		PunktParams sketched = trainer.trainZip("data/brown.zip", "brown/c[a-c]\\d\\d");
+		assertEquals("Abbreviations differ!", params.getAbbreviations(), sketched.getAbbreviations());
+		assertEquals("Sentence starters differ!", params.getSentenceStarters(), sketched.getSentenceStarters());
+		assertEquals("Collocations differ!", params.getCollocations(), sketched.getCollocations());
+		for(String typ: sketched.ortho_context.keySet())
+			assertEquals("Orthographic context differs: " + typ, params.getOrthoContext(typ),
+					sketched.getOrthoContext(typ));
+
+		// Only the types after a period have orthographic contexts kept
+		assertTrue("Orthographic contexts not bounded!", sketched.ortho_context.size() < params.ortho_context.size());
+		assertTrue("Orthographic context not kept!", sketched.getOrthoContext("the") != 0);
+
+		// A small one still finds the common abbreviations, and the threads
+		// don't change what is learned
+		PunktParams[] small = new PunktParams[2];
+		int[] threads = {1, 2};
+		for(int i=0; i<small.length; i++)
+		{
+			trainer = new PunktTrainer();
+			trainer.setTaggedCorpus(true);
+			trainer.setMemoryBudget(1 << 20);
+			trainer.setPartitions(2);
+			trainer.setNumThreads(threads[i]);
+			small[i] = trainer.trainZip("data/brown.zip", "brown/c[a-c]\\d\\d");
+		}
+		for(String abbrev: new String[] {"mr", "mrs", "dr", "u.s"})
+			assertTrue("Abbreviation not learned: " + abbrev, small[0].isAbbreviation(abbrev));
+		assertEquals("Abbreviations differ!", small[0].getAbbreviations(), small[1].getAbbreviations());
+		assertEquals("Sentence starters differ!", small[0].getSentenceStarters(), small[1].getSentenceStarters());
+		assertEquals("Collocations differ!", small[0].getCollocations(), small[1].getCollocations());
+	}
+
+}
@@ -0,0 +1,102 @@
+package nlp_test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class PunktTrainingStateTest {
+
+	@Test
+	public void sameAsTrainTest() throws IOException {
+		PunktParams params = BrownCorpusFixture.train();
+
+		PunktParams finalized = BrownCorpusFixture.trainState(BrownCorpusFixture.FILES).finalizeParams();
+		assertEquals("Abbreviations differ!", params.getAbbreviations(), finalized.getAbbreviations());
+		assertEquals("Sentence starters differ!", params.getSentenceStarters(), finalized.getSentenceStarters());
+		assertEquals("Collocations differ!", params.getCollocations(), finalized.getCollocations());
+		assertEquals("Orthographic contexts differ!", params.ortho_context, finalized.ortho_context);
+	}
+
+	@Test
+	public void mergeTest() throws IOException {
+		PunktTrainingState all = BrownCorpusFixture.trainState(BrownCorpusFixture.FILES);
+		PunktTrainingState first = BrownCorpusFixture.trainState(BrownCorpusFixture.FIRST_FILES);
+		PunktTrainingState second = BrownCorpusFixture.trainState(BrownCorpusFixture.SECOND_FILES);
+		long secondTokens = second.getTokenCount();
+
+		first.merge(second);
+		assertEquals("Tokens not added up!", all.getTokenCount(), first.getTokenCount());
+		assertEquals("Documents not added up!", all.getDocumentCount(), first.getDocumentCount());
+		assertEquals("Merged state changed!", secondTokens, second.getTokenCount());
+
+		// The types are the same, so only the rare abbreviations can differ
+		PunktParams params = all.finalizeParams();
+		PunktParams merged = first.finalizeParams();
+		for(String abbrev: new String[] {"mr", "mrs", "dr", "jr", "u.s"})
+			assertTrue("Abbreviation not learned: " + abbrev, merged.isAbbreviation(abbrev));
+		assertTrue("Too many abbreviations lost!",
+				merged.getAbbreviations().size() >= params.getAbbreviations().size() - 5);
+		assertEquals("Sentence starters differ!", params.getSentenceStarters(), merged.getSentenceStarters());
+
+		try
+		{
+			first.merge(first);
+			fail("State merged with itself!");
+		}
+		catch(IllegalArgumentException e)
+		{
+		}
+	}
+
+	@Test
+	public void incrementalTest() throws IOException {
+		PunktTrainer trainer = BrownCorpusFixture.newTrainer();
+		PunktTrainingState state = trainer.newState();
+		trainer.trainZip(state, BrownCorpusFixture.ZIP, BrownCorpusFixture.FIRST_FILES);
+		PunktParams before = state.finalizeParams();
+		trainer.trainZip(state, BrownCorpusFixture.ZIP, BrownCorpusFixture.SECOND_FILES);
+
+		assertEquals("Tokens not added up!", BrownCorpusFixture.trainState(BrownCorpusFixture.FILES).getTokenCount(), state.getTokenCount());
+		assertTrue("Nothing learned from more texts!",
+				!before.getAbbreviations().equals(state.finalizeParams().getAbbreviations()));
+		assertTrue("Abbreviation lost!", state.finalizeParams().isAbbreviation("mr"));
+	}
+
+	@Test
+	public void saveTest() throws IOException {
+		PunktTrainingState state = BrownCorpusFixture.trainState(BrownCorpusFixture.SECOND_FILES);
+		File file = File.createTempFile("punkt", ".state");
+		try
+		{
+			state.save(file.getPath());
+			PunktTrainingState loaded = PunktTrainingState.load(file.getPath());
+
+			assertEquals("Tokens differ!", state.getTokenCount(), loaded.getTokenCount());
+			PunktParams params = state.finalizeParams();
+			PunktParams loadedParams = loaded.finalizeParams();
+			assertEquals("Abbreviations differ!", params.getAbbreviations(), loadedParams.getAbbreviations());
+			assertEquals("Sentence starters differ!", params.getSentenceStarters(),
+					loadedParams.getSentenceStarters());
+			assertEquals("Collocations differ!", params.getCollocations(), loadedParams.getCollocations());
+			assertEquals("Orthographic contexts differ!", params.ortho_context, loadedParams.ortho_context);
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void knownAbbreviationsTest() {
+		PunktParams known = new PunktParams();
+		known.getAbbreviations().add("etc");
+		PunktTrainingState state = new PunktTrainer(known).newState();
+
+		assertTrue("Known abbreviation not kept!", state.finalizeParams().isAbbreviation("etc"));
+		assertEquals("Empty state counted tokens!", 0, state.getTokenCount());
+	}
+
+}
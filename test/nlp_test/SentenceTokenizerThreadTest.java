@@ -0,0 +1,48 @@
+package nlp_test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.junit.Test;
+
+public class SentenceTokenizerThreadTest {
+
+	/*
+	 * Some text with a few sentences.
+	 */
+	private static final String TEXT = "We met at noon. Then we left. It rained all day.";
+
+	@Test
+	public void finishedTest() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		SentenceTokenizerThread worker = new SentenceTokenizerThread(TEXT, out, new PunktFirstPassSentenceTokenizer());
+		worker.run();
+
+		assertNull("Failed writing!", worker.getFailure());
+		assertTrue("Nothing written!", out.size() > 0);
+	}
+
+	@Test
+	public void writeFailsTest() {
+		// A stream that fails part way through the output
+		OutputStream out = new OutputStream() {
+			private int written = 0;
+
+			@Override
+			public void write(int b) throws IOException
+			{
+				if(++written > 10)
+					throw new IOException("Disk full!");
+			}
+		};
+
+		SentenceTokenizerThread worker = new SentenceTokenizerThread(TEXT, out, new PunktFirstPassSentenceTokenizer());
+		worker.run();
+
+		assertNotNull("Failure not kept!", worker.getFailure());
+	}
+
+}
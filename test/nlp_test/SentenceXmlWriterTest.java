@@ -0,0 +1,79 @@
+package nlp_test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SentenceXmlWriterTest {
+
+	/*
+	 * Build the sentences of a file the way NLPTestRunner does and write
+	 * them to a string.
+	 */
+	private String writeXml(String path, NamedEntityMatcher nerer) throws IOException
+	{
+		String text = new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8);
+		SentenceTokenizer tokenizer = new PunktFirstPassSentenceTokenizer();
+		ArrayList<Token> tokens = tokenizer.annotate(tokenizer.createTokenStream(text));
+		if(nerer != null)
+		{
+			List<TokenNE> tokens_mod = nerer.annotate(tokens, text);
+			tokens.clear();
+			tokens.addAll(tokens_mod);
+		}
+
+		StringWriter out = new StringWriter();
+		SentenceXmlWriter writer = new SentenceXmlWriter(out);
+		writer.writeSentences(tokenizer.buildSentenceList(text, tokens));
+		writer.close();
+
+		return out.toString();
+	}
+
+	@Test
+	public void sameAsJaxbTest() throws IOException {
+		// These were marshalled by JAXB
+		String expected = new String(Files.readAllBytes(Paths.get("test_out/nlp_data.xml")), StandardCharsets.UTF_8);
+		assertEquals("XML differs from JAXB!", expected, writeXml("data/nlp_data.txt", null));
+
+		expected = new String(Files.readAllBytes(Paths.get("test_out/nlp_data2.xml")), StandardCharsets.UTF_8);
+		assertEquals("XML with entities differs from JAXB!", expected,
+				writeXml("data/nlp_data.txt", new AhoCorasickNamedEntityMatcher("data/NER.txt")));
+	}
+
+	@Test
+	public void escapeTest() throws IOException {
+		String text = "A<b> & \"c\"\r\nd.";
+		PunktAlgoBase tokenizer = new PunktAlgoBase();
+		List<Token> tokens = tokenizer.annotate(tokenizer.createTokenStream(text));
+
+		StringWriter out = new StringWriter();
+		SentenceXmlWriter writer = new SentenceXmlWriter(out);
+		writer.writeSentences(tokenizer.buildSentenceList(text, tokens));
+		writer.close();
+
+		String xml = out.toString();
+		assertTrue("Token not escaped!", xml.contains("<value>A&lt;b&gt;</value>"));
+		assertTrue("Ampersand not escaped!", xml.contains("<value>&amp;</value>"));
+		assertTrue("Sentence not escaped!", xml.contains(
+				"<stringAnnotated>A&lt;b&gt; &amp; \"c\"&#xD;\nd.&lt;S&gt;\n</stringAnnotated>"));
+	}
+
+	@Test
+	public void emptyTest() throws IOException {
+		StringWriter out = new StringWriter();
+		new SentenceXmlWriter(out).close();
+
+		assertEquals("Wrong empty document!", "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n" +
+				"<sentenceList>\n    <stringAnnotated></stringAnnotated>\n</sentenceList>\n", out.toString());
+	}
+
+}
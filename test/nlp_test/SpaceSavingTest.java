@@ -0,0 +1,82 @@
+package nlp_test;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SpaceSavingTest {
+
+	@Test
+	public void exactTillFullTest() {
+		SpaceSaving<String> summary = new SpaceSaving<String>(3);
+		for(String key: "a b a c a b".split(" "))
+			summary.add(key);
+
+		assertEquals("Wrong count!", 3, summary.getCount("a"));
+		assertEquals("Wrong count!", 2, summary.getCount("b"));
+		assertEquals("Wrong count!", 1, summary.getCount("c"));
+		assertEquals("Error without eviction!", 0, summary.getError("c"));
+		assertEquals("Counters full!", 1, summary.getMinCount());
+
+		// d takes over c's counter, the oldest of the lowest
+		summary.add("d");
+		assertFalse("Lowest counter not taken over!", summary.contains("c"));
+		assertEquals("Wrong count!", 2, summary.getCount("d"));
+		assertEquals("Wrong error!", 1, summary.getError("d"));
+		assertEquals("Wrong guaranteed count!", 1, (long)summary.getGuaranteedCounts().get("d"));
+	}
+
+	@Test
+	public void heavyHittersTest() {
+		SpaceSaving<String> summary = new SpaceSaving<String>(50);
+		HashMap<String, Integer> counts = new HashMap<String, Integer>();
+		Random random = new Random(2);
+		for(int i=0; i<50000; i++)
+		{
+			String key = "w" + (int)Math.pow(5000, random.nextDouble() * random.nextDouble());
+			summary.add(key);
+			Integer c = counts.get(key);
+			counts.put(key, c == null ? 1 : c + 1);
+		}
+
+		assertEquals("Wrong number of counters!", 50, summary.size());
+		for(Map.Entry<String, Long> e: summary.getCounts().entrySet())
+		{
+			long count = counts.get(e.getKey());
+			assertTrue("Count under estimated: " + e.getKey(), e.getValue() >= count);
+			assertTrue("Count over its error: " + e.getKey(), e.getValue() - summary.getError(e.getKey()) <= count);
+		}
+		for(Map.Entry<String, Integer> e: counts.entrySet())
+			if(e.getValue() > summary.getMinCount())
+				assertTrue("Frequent key lost: " + e.getKey(), summary.contains(e.getKey()));
+	}
+
+	@Test
+	public void mergeTest() {
+		SpaceSaving<String> a = new SpaceSaving<String>(2);
+		SpaceSaving<String> b = new SpaceSaving<String>(2);
+		a.add("x", 5);
+		a.add("y", 1);
+		b.add("x", 2);
+		b.add("z", 3);
+		a.merge(b);
+
+		assertEquals("Merged count wrong!", 7, a.getCount("x"));
+		assertEquals("Error added for key in both!", 0, a.getError("x"));
+		// z wasn't seen by a, which could have seen it once
+		assertEquals("Merged count wrong!", 4, a.getCount("z"));
+		assertEquals("Merged error wrong!", 1, a.getError("z"));
+		assertFalse("Lowest key kept!", a.contains("y"));
+
+		// Adding still works on the rebuilt counters
+		a.add("y");
+		a.add("y");
+		assertTrue("Key not counted after merge!", a.contains("y"));
+		assertFalse("Lowest key kept!", a.contains("z"));
+	}
+
+}
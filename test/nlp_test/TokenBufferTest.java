@@ -0,0 +1,87 @@
+package nlp_test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TokenBufferTest {
+
+	private String testString = "This is a sentence. Also one! Another one? End then ... \n\n" +
+			"New paragraph with -1,234.5 and 42.\nNew line. Mr. Smith (\"quoted.\") THIS this.";
+
+	private PunktAlgoBase makeBase()
+	{
+		PunktParams params = new PunktParams();
+		String[] abbrvs = {"mr", "mrs"};
+		params.getAbbreviations().addAll(Arrays.asList(abbrvs));
+
+		return new PunktAlgoBase(params);
+	}
+
+	@Test
+	public void bufferMatchesListTest() {
+		PunktAlgoBase base = makeBase();
+
+		ArrayList<Token> tokens = base.annotate(new PunktTokenStream(testString));
+		TokenBuffer buffer = base.annotateBuffer(new PunktTokenStream(testString));
+
+		assertEquals("Buffer size differs!", tokens.size(), buffer.size());
+
+		for(int i=0; i<tokens.size(); i++)
+		{
+			Token expected = tokens.get(i);
+			Token actual = buffer.get(i);
+
+			assertEquals("Token value differs! ", expected.getValue(), actual.getValue());
+			assertEquals("Token position differs! ", expected.getPosition(), actual.getPosition());
+			assertEquals("Token annotation differs! ", expected.toString(), actual.toString());
+			assertEquals("Token type differs! ", expected.getTokenType(), actual.getTokenType());
+			assertEquals("Token flags differ! ", TokenBuffer.packFlags(expected), buffer.getFlags(i));
+		}
+
+		// Both should build the same sentences
+		SentenceList expectedSents = base.buildSentenceList(testString, tokens);
+		SentenceList actualSents = base.buildSentenceList(testString, buffer);
+		assertEquals("Sentences differ!", expectedSents.toString(), actualSents.toString());
+	}
+
+	@Test
+	public void typeIdTest() {
+		TokenBuffer buffer = makeBase().annotateBuffer(new PunktTokenStream(testString));
+
+		// Tokens with the same type share an id
+		int thisId = -1;
+		for(int i=0; i<buffer.size(); i++)
+		{
+			if(!buffer.get(i).getTokenType().equals("this"))
+				continue;
+
+			if(thisId < 0)
+				thisId = buffer.getTypeId(i);
+
+			assertEquals("Same type has different ids!", thisId, buffer.getTypeId(i));
+		}
+
+		assertEquals("Type for id is wrong!", "this", buffer.getType(thisId));
+	}
+
+	@Test
+	public void viewWriteThroughTest() {
+		TokenBuffer buffer = makeBase().annotateBuffer(new PunktTokenStream(testString));
+
+		BufferedToken view = buffer.get(0);
+		assertFalse("Token[0] is sentence break", view.getIsSentBreak());
+
+		view.setIsSentBreak(true);
+		assertTrue("Flag was not written to buffer", buffer.hasFlag(0, TokenBuffer.SENT_BREAK));
+		assertTrue("Other views do not see the flag", buffer.get(0).getIsSentBreak());
+
+		// A view can be moved through the buffer
+		for(int i=0; i<buffer.size(); i++)
+			assertEquals("Moved view is wrong!", buffer.get(i).getValue(), view.moveTo(i).getValue());
+	}
+
+}
@@ -2,6 +2,10 @@ package nlp_test;
 
 import static org.junit.Assert.*;
 
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+
 import org.junit.Test;
 
 public class TokenTest {
@@ -19,5 +23,77 @@ public class TokenTest {
 		assertTrue("Ellipsis Detection Failed", makeToken("-1,234,453.00").getIsNumber());
 		
 	}
+	
+	@Test
+	public void classifierMatchesRegexTest() {
+		
+		// The regular expressions tokens used to be classified with
+		Pattern number = Pattern.compile("^-?[.,]?\\d[0-9.,]*\\.?");
+		Pattern ellipsis = Pattern.compile("\\.\\.+");
+		Pattern initial = Pattern.compile("[^\\W\\d]\\.", Pattern.UNICODE_CHARACTER_CLASS);
+		Pattern alpha = Pattern.compile("[^\\W\\d]+", Pattern.UNICODE_CHARACTER_CLASS);
+		
+		String alphabet = "-.,09aZ_\u0301\u00e9 '\u0663\ud801\udc00\ud835\udc00\u0130";
+		Random random = new Random(42);
+		
+		for(int i=0; i<200000; i++)
+		{
+			StringBuilder sb = new StringBuilder();
+			int n = random.nextInt(8);
+			for(int j=0; j<n; j++)
+				sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			String s = sb.toString();
+			
+			Token t = makeToken(s);
+			assertEquals("Number differs for [" + s + "]", number.matcher(s).lookingAt(), t.getIsNumber());
+			assertEquals("Ellipsis differs for [" + s + "]", ellipsis.matcher(s).matches(), t.getIsEllipsis());
+			assertEquals("Initial differs for [" + s + "]", initial.matcher(s).matches(), t.getIsInitial());
+			assertEquals("Alpha differs for [" + s + "]", alpha.matcher(s).matches(), t.isAlpha);
+			assertEquals("Type differs for [" + s + "]", 
+					number.matcher(s.toLowerCase()).replaceAll(Token.NUMBER_TAG), t.getTokenType());
+		}
+	}
+	
+	@Test
+	public void lowerCaseTest() {
+		
+		// Every character that is lower cased on its own gets the same
+		// character as String.toLowerCase() gives
+		for(char c=0; c<Character.MAX_VALUE; c++)
+		{
+			String s = String.valueOf(c);
+			if(!Character.isSurrogate(c) && CharSlice.lowerCasesByChar(s, 0, 1))
+				assertEquals("Wrong lower case of " + (int)c, s.toLowerCase(), 
+						String.valueOf(CharSlice.lowerCaseCharAt(s, 0, 1, 0)));
+		}
+		
+		// A final sigma and a dotted capital I are lower cased as a String is
+		String[] words = {"\u039f\u0394\u039f\u03a3", "\u03a3\u039f\u03a3.", "\u0130STANBUL.", "Istanbul"};
+		for(String word: words)
+		{
+			assertEquals("Wrong type!", word.toLowerCase(), Token.makeTokenType(word));
+			assertEquals("Wrong window!", word.toLowerCase(), new CharWindow(true).set(word, 0, word.length()).toString());
+			assertEquals("Wrong slice!", word.toLowerCase(), new CharSlice(word, 0, word.length(), true).toString());
+			assertEquals("Wrong hash!", word.toLowerCase().hashCode(), new CharWindow(true).set(word, 0, word.length()).hashCode());
+			
+			// Windows are narrowed by the characters of the text
+			String noPeriod = word.substring(0, word.length()-1);
+			assertEquals("Wrong narrowed window!", noPeriod.toLowerCase(), 
+					new CharWindow(true).set(word, 0, word.length()).narrow(0, word.length()-1).toString());
+		}
+		
+		// and so is the letter I in Turkish
+		Locale locale = Locale.getDefault();
+		try
+		{
+			Locale.setDefault(new Locale("tr"));
+			assertEquals("Wrong Turkish type!", "\u0131stanbul", Token.makeTokenType("Istanbul"));
+			assertEquals("Wrong Turkish window!", "\u0131stanbul", new CharWindow(true).set("Istanbul", 0, 8).toString());
+		}
+		finally
+		{
+			Locale.setDefault(locale);
+		}
+	}
 
 }
@@ -0,0 +1,72 @@
+package nlp_test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TokenTrieNamedEntityMatcherTest {
+
+	private String testString = "Franz Ferdinand was shot in Sarajevo. Serbian nationalists\n" +
+			"were blamed and Austria-Hungary sent Serbia an ultimatum. FRANZ   ferdinand, again Serbia.";
+
+	private List<TokenNE> annotate(NamedEntityMatcher matcher, String text)
+	{
+		List<Token> tokens = new ArrayList<Token>();
+		TokenStream stream = new PunktTokenStream(text);
+		Token t;
+		while((t = stream.getToken()) != null)
+			tokens.add(t);
+
+		return matcher.annotate(tokens, text);
+	}
+
+	/*
+	 * Get the values of the tokens marked with an entity.
+	 */
+	private List<String> tokensOf(List<TokenNE> tokens, String entity)
+	{
+		List<String> values = new ArrayList<String>();
+		for(TokenNE t: tokens)
+			if(t.entities.contains(entity))
+				values.add(t.getValue());
+
+		return values;
+	}
+
+	@Test
+	public void wholeTokenMatchTest() {
+		List<String> entities = Arrays.asList("Serbia", "Franz Ferdinand", "Sarajevo", "Austria-Hungary", "Austria");
+		List<TokenNE> tokens = annotate(new TokenTrieNamedEntityMatcher(entities), testString);
+
+		// Never inside a word, but still at the end of a sentence
+		assertEquals("Serbia matched wrong tokens!",
+				Arrays.asList("Serbia", "Serbia."), tokensOf(tokens, "Serbia"));
+		assertEquals("Sarajevo matched wrong tokens!",
+				Arrays.asList("Sarajevo."), tokensOf(tokens, "Sarajevo"));
+		assertEquals("Austria matched inside a token!",
+				new ArrayList<String>(), tokensOf(tokens, "Austria"));
+		assertEquals("Austria-Hungary matched wrong tokens!",
+				Arrays.asList("Austria-Hungary"), tokensOf(tokens, "Austria-Hungary"));
+
+		// Any case and any whitespace between the tokens
+		assertEquals("Franz Ferdinand matched wrong tokens!",
+				Arrays.asList("Franz", "Ferdinand", "FRANZ", "ferdinand"), tokensOf(tokens, "Franz Ferdinand"));
+	}
+
+	@Test
+	public void sameAsSimpleMatcherOnWholeTokensTest() {
+		List<String> entities = Arrays.asList("Serbia", "Franz Ferdinand", "ultimatum", "Austria-Hungary", "", "sent");
+		List<TokenNE> expected = annotate(new SimpleNamedEntityMatcher(entities),
+				"Austria-Hungary sent Serbia an ultimatum, sent Franz Ferdinand");
+		List<TokenNE> actual = annotate(new TokenTrieNamedEntityMatcher(entities),
+				"Austria-Hungary sent Serbia an ultimatum, sent Franz Ferdinand");
+
+		for(int i=0; i<expected.size(); i++)
+			assertEquals("Entities differ for token " + i, expected.get(i).entities, actual.get(i).entities);
+	}
+
+}
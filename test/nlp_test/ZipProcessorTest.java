@@ -0,0 +1,293 @@
+package nlp_test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+
+public class ZipProcessorTest {
+
+	/*
+	 * How long to wait for anything that should happen straight away.
+	 */
+	private static final long TIMEOUT_MILLIS = 10000;
+
+	@Test
+	public void budgetBlocksTest() throws InterruptedException {
+		final ZipProcessor.MemoryBudget budget = new ZipProcessor.MemoryBudget(100);
+		budget.acquire(60);
+
+		// This doesn't fit till the first charge is given back
+		Thread waiter = new Thread(new Runnable() {
+			public void run()
+			{
+				try
+				{
+					budget.acquire(50);
+				}
+				catch(InterruptedException e)
+				{
+				}
+			}
+		});
+		waiter.start();
+		waiter.join(200);
+		assertTrue("Acquired more than the budget!", waiter.isAlive());
+		assertEquals("Wrong amount used!", 60, budget.getUsed());
+
+		budget.release(60);
+		waiter.join(TIMEOUT_MILLIS);
+		assertFalse("Never acquired after release!", waiter.isAlive());
+		assertEquals("Wrong amount used!", 50, budget.getUsed());
+	}
+
+	@Test
+	public void budgetChargesTest() throws InterruptedException {
+		ZipProcessor.MemoryBudget budget = new ZipProcessor.MemoryBudget(100);
+
+		// Too big and unknown sizes take the whole budget, but still fit
+		budget.acquire(1000);
+		assertEquals("Big entry charged wrong!", 100, budget.getUsed());
+		budget.release(1000);
+
+		budget.acquire(-1);
+		assertEquals("Unknown size charged wrong!", 100, budget.getUsed());
+		budget.release(-1);
+
+		assertEquals("Budget not all given back!", 0, budget.getUsed());
+	}
+
+	/*
+	 * Check processing finishes when every entry has to go through on its
+	 * own.
+	 */
+	private void assertTinyBudgetFinishes(ZipProcessor.ExecutionMode mode) throws IOException, InterruptedException
+	{
+		File outDir = Files.createTempDirectory("zipout").toFile();
+
+		final ZipProcessor processor = new ZipProcessor("data/nlp_data.zip", outDir.getPath(), 2);
+		processor.setMemoryBudget(1);
+		processor.setExecutionMode(mode);
+
+		final AtomicReference<IOException> failure = new AtomicReference<IOException>();
+		Thread runner = new Thread(new Runnable() {
+			public void run()
+			{
+				try
+				{
+					processor.process();
+				}
+				catch(IOException e)
+				{
+					failure.set(e);
+				}
+			}
+		});
+		runner.start();
+		runner.join(TIMEOUT_MILLIS);
+		assertFalse(mode + " processing never finished!", runner.isAlive());
+		assertNull(mode + " processing failed: " + failure.get(), failure.get());
+	}
+
+	@Test
+	public void tinyBudgetFinishesTest() throws IOException, InterruptedException {
+		assertTinyBudgetFinishes(ZipProcessor.ExecutionMode.FIXED_POOL);
+		assertTinyBudgetFinishes(ZipProcessor.ExecutionMode.THREAD_PER_ENTRY);
+	}
+
+	@Test
+	public void outputFormatTest() throws IOException {
+		for(OutputFormat format: OutputFormat.values())
+		{
+			File outDir = Files.createTempDirectory("zipout").toFile();
+
+			ZipProcessor processor = new ZipProcessor("data/nlp_data.zip", outDir.getPath(), 2);
+			processor.setOutputFormat(format);
+			processor.process();
+
+			File out = new File(outDir, "nlp_data/d01.txt" + format.getExtension());
+			assertTrue(format + " output not written!", out.length() > 0);
+		}
+	}
+
+	/*
+	 * Read all of an entry of a zip file.
+	 */
+	private static byte[] readEntry(ZipFile zip, ZipEntry entry) throws IOException
+	{
+		java.io.InputStream in = zip.getInputStream(entry);
+		try
+		{
+			java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int n;
+			while((n = in.read(buffer)) > 0)
+				bytes.write(buffer, 0, n);
+			return bytes.toByteArray();
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	@Test
+	public void outputArchiveTest() throws IOException {
+		File outDir = Files.createTempDirectory("zipout").toFile();
+		new ZipProcessor("data/nlp_data.zip", outDir.getPath(), 2).process();
+
+		for(ZipProcessor.ExecutionMode mode: ZipProcessor.ExecutionMode.values())
+		{
+			File archiveFile = File.createTempFile("zipout", ".zip");
+			ZipProcessor processor = new ZipProcessor("data/nlp_data.zip", null, 3);
+			processor.setExecutionMode(mode);
+			processor.setOutputArchive(archiveFile.getPath());
+			processor.setMemoryBudget(1024);
+			processor.process();
+
+			// The archive has the files written to the directory, in the
+			// order of the input zip file.
+			ZipFile input = new ZipFile("data/nlp_data.zip");
+			ZipFile archive = new ZipFile(archiveFile);
+			try
+			{
+				Enumeration<? extends ZipEntry> inputEntries = input.entries();
+				Enumeration<? extends ZipEntry> entries = archive.entries();
+				int count = 0;
+				while(inputEntries.hasMoreElements())
+				{
+					ZipEntry inputEntry = inputEntries.nextElement();
+					if(inputEntry.isDirectory() || inputEntry.getName().startsWith("__MACOSX"))
+						continue;
+
+					assertTrue(mode + " archive is missing entries!", entries.hasMoreElements());
+					ZipEntry entry = entries.nextElement();
+					assertEquals(mode + " entry out of order!", inputEntry.getName() + ".xml", entry.getName());
+
+					byte[] expected = Files.readAllBytes(new File(outDir, entry.getName()).toPath());
+					assertTrue(mode + " entry differs: " + entry.getName(),
+							Arrays.equals(expected, readEntry(archive, entry)));
+					count++;
+				}
+
+				assertFalse(mode + " archive has extra entries!", entries.hasMoreElements());
+				assertTrue("No entries!", count > 0);
+			}
+			finally
+			{
+				input.close();
+				archive.close();
+				archiveFile.delete();
+			}
+		}
+	}
+
+	/*
+	 * Write a zip file with one entry of some text.
+	 */
+	private static File writeZip(String name, String text) throws IOException
+	{
+		File file = File.createTempFile("zipin", ".zip");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+		try
+		{
+			out.putNextEntry(new ZipEntry(name));
+			out.write(text.getBytes(StandardCharsets.UTF_8));
+			out.closeEntry();
+		}
+		finally
+		{
+			out.close();
+		}
+
+		return file;
+	}
+
+	@Test
+	public void documentThreadsTest() throws IOException {
+		// Paragraphs enough for the entry to be split into chunks
+		String paragraph = new String(Files.readAllBytes(new File("data/nlp_data.txt").toPath()),
+				StandardCharsets.UTF_8).trim();
+		StringBuilder text = new StringBuilder();
+		while(text.length() < 4 * ParallelDocumentProcessor.DEFAULT_MIN_CHUNK_SIZE)
+			text.append(paragraph).append("\n\n");
+
+		File zipFile = writeZip("doc.txt", text.toString());
+		try
+		{
+			byte[][] outputs = new byte[2][];
+			for(int threads=0; threads<2; threads++)
+			{
+				File outDir = Files.createTempDirectory("zipout").toFile();
+				ZipProcessor processor = new ZipProcessor(zipFile.getPath(), outDir.getPath(), 1);
+				processor.setOutputFormat(OutputFormat.JSON_LINES);
+				processor.setDocumentThreads(2 * threads);
+				processor.process();
+
+				outputs[threads] = Files.readAllBytes(new File(outDir, "doc.txt.jsonl").toPath());
+			}
+
+			// The line breaks of the entry are kept
+			String output = new String(outputs[0], StandardCharsets.UTF_8);
+			assertTrue("Paragraph breaks lost!", output.contains("\"paraStart\":true"));
+
+			assertTrue("Split entry differs!", Arrays.equals(outputs[0], outputs[1]));
+		}
+		finally
+		{
+			zipFile.delete();
+		}
+	}
+
+	@Test
+	public void workersFailTest() throws IOException, InterruptedException {
+		File outDir = Files.createTempDirectory("zipout").toFile();
+
+		// Only the main thread can open the zip file, so every worker dies
+		final ZipProcessor processor = new ZipProcessor("data/nlp_data.zip", outDir.getPath(), 2) {
+			private int opened = 0;
+
+			@Override
+			protected synchronized ZipFile openZipFile() throws IOException
+			{
+				if(opened++ > 0)
+					throw new IOException("Can't open the zip file again!");
+
+				return super.openZipFile();
+			}
+		};
+		processor.setMemoryBudget(1);
+
+		final AtomicReference<IOException> failure = new AtomicReference<IOException>();
+		Thread runner = new Thread(new Runnable() {
+			public void run()
+			{
+				try
+				{
+					processor.process();
+				}
+				catch(IOException e)
+				{
+					failure.set(e);
+				}
+			}
+		});
+		runner.start();
+		runner.join(TIMEOUT_MILLIS);
+		assertFalse("Processing hung when the workers died!", runner.isAlive());
+		assertNotNull("Worker failure not reported!", failure.get());
+		assertFalse("Output written without workers!", new File(outDir, "nlp_data").exists());
+	}
+
+}